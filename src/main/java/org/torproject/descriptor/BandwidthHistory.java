@@ -3,6 +3,7 @@
 
 package org.torproject.descriptor;
 
+import java.nio.LongBuffer;
 import java.util.SortedMap;
 
 /**
@@ -48,5 +49,58 @@ public interface BandwidthHistory {
    * @since 1.0.0
    */
   SortedMap<Long, Long> getBandwidthValues();
+
+  /**
+   * Return a read-only view of the (possibly empty) bandwidth history as
+   * numbers of bytes used in intervals, ordered from oldest to newest
+   * interval, without copying or boxing them.
+   *
+   * <p>The last value belongs to the interval ending at
+   * {@link #getHistoryEndMillis()}, and each value before belongs to the
+   * interval ending {@link #getIntervalLength()} seconds before the interval
+   * of the value following it.</p>
+   *
+   * @since 2.7.0
+   */
+  LongBuffer getBandwidthValuesBuffer();
+
+  /**
+   * Return the total number of bytes used in all intervals, or 0 if the
+   * bandwidth history is empty.
+   *
+   * @since 2.7.0
+   */
+  long getBandwidthSum();
+
+  /**
+   * Return the largest number of bytes used in a single interval, or -1 if
+   * the bandwidth history is empty.
+   *
+   * @since 2.7.0
+   */
+  long getBandwidthMax();
+
+  /**
+   * Return the (possibly empty) bandwidth history resampled to intervals
+   * of the given length, ordered from oldest to newest interval.
+   *
+   * <p>Resampled intervals are aligned to the epoch, so that they end at
+   * multiples of the given interval length, like at midnight UTC for an
+   * interval length of one day.  Each original interval is counted in the
+   * resampled interval that contains its end, including the end of the
+   * resampled interval itself.  The last resampled interval is the one
+   * containing {@link #getHistoryEndMillis()}.</p>
+   *
+   * @param intervalLength Interval length in seconds, which must not be
+   *     shorter than {@link #getIntervalLength()}.
+   *
+   * @return Numbers of bytes used in resampled intervals.
+   *
+   * @throws IllegalArgumentException Thrown if the given interval length is
+   *     shorter than the original interval length.
+   *
+   * @since 2.7.0
+   */
+  long[] getResampledBandwidthValues(long intervalLength);
 }
 
@@ -60,5 +60,52 @@ public interface DescriptorCollector {
   void collectDescriptors(String collecTorBaseUrl,
       String[] remoteDirectories, long minLastModified,
       File localDirectory, boolean deleteExtraneousLocalFiles);
-}
 
+  /**
+   * Download remote files using the given number of download threads
+   * (default: 1).
+   *
+   * <p>With a single download thread, remote files are fetched one after
+   * the other by the thread collecting descriptors.  With more than one
+   * download thread, remote files are fetched by a pool of download
+   * threads, while opening no more than the configured maximum number of
+   * connections to the same host at the same time.  Either way, each file
+   * is first written to a temporary file and only renamed to its final name
+   * after its size has been checked against the index.</p>
+   *
+   * @param numDownloadThreads Number of download threads, which must be 1
+   *     or higher.
+   *
+   * @since 2.7.0
+   */
+  void setNumDownloadThreads(int numDownloadThreads);
+
+  /**
+   * Don't open more than this number of connections to the same host at
+   * the same time when downloading remote files using more than one
+   * download thread (default: 4).
+   *
+   * @param maxConnectionsPerHost Maximum number of connections per host,
+   *     which must be 1 or higher.
+   *
+   * @since 2.7.0
+   */
+  void setMaxConnectionsPerHost(int maxConnectionsPerHost);
+
+  /**
+   * Keep a copy of the remote index in the given directory together with
+   * its ETag and last-modified time, and only fetch the remote index again
+   * if it has changed since it was last fetched (default: none, which
+   * fetches the remote index on every collection).
+   *
+   * <p>This directory should not be the local directory where collected
+   * files are written, because {@link DescriptorReader} would otherwise
+   * attempt to parse the index copy as descriptor file.</p>
+   *
+   * @param indexCacheDirectory Directory for keeping a copy of the remote
+   *     index, or {@code null} for not keeping a copy.
+   *
+   * @since 2.7.0
+   */
+  void setIndexCacheDirectory(File indexCacheDirectory);
+}
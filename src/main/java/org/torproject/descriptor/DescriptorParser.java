@@ -4,6 +4,8 @@
 package org.torproject.descriptor;
 
 import java.io.File;
+import java.io.InputStream;
+import java.util.Set;
 
 /**
  * Descriptor source that parses descriptors from raw descriptor contents.
@@ -40,4 +42,107 @@ public interface DescriptorParser {
    */
   Iterable<Descriptor> parseDescriptors(byte[] rawDescriptorBytes,
       File sourceFile, String fileName);
+
+  /**
+   * Parse descriptors from the given input stream while iterating over the
+   * returned descriptors, rather than reading all raw descriptor bytes into
+   * memory first.
+   *
+   * <p>The input stream is read in chunks.  Descriptors contained in files
+   * with multiple descriptors of the same type, like server descriptors,
+   * extra-info descriptors, or microdescriptors, are returned as soon as the
+   * start of the next descriptor has been read, and Torperf results as soon
+   * as their line has been read, so that only one descriptor needs to be
+   * kept in memory at a time.  Descriptors of other types are read
+   * completely before being parsed.  Channels can be read using
+   * {@link java.nio.channels.Channels#newInputStream}.</p>
+   *
+   * <p>The returned descriptors can only be iterated over once.  The input
+   * stream is not closed after reading it.  If the input stream cannot be
+   * read, a warning is logged and iteration ends after the last descriptor
+   * read completely before that.</p>
+   *
+   * @param inputStream Input stream containing one or more descriptors.
+   * @param sourceFile Optional descriptor source file reference, e.g., the
+   *     name of a tar file that contains descriptors, included in
+   *     parsed/unparseable descriptors.
+   * @param fileName Proper file name for the descriptor used as a parser
+   *     hint, publication time of some descriptor types
+   *
+   * @return Parsed/unparseable descriptors
+   *
+   * @since 2.7.0
+   */
+  Iterable<Descriptor> parseDescriptors(InputStream inputStream,
+      File sourceFile, String fileName);
+
+  /**
+   * Parse descriptors only when they are used rather than right away
+   * (default: false).
+   *
+   * <p>In this mode, descriptors contained in files with multiple descriptors
+   * of the same type, like server descriptors, extra-info descriptors,
+   * microdescriptors, or network statuses, are split but not parsed right
+   * away.  Instead, the returned descriptors implement the same interfaces as
+   * fully parsed descriptors and are parsed when one of their methods is
+   * called for the first time.  Checking their type using {@code instanceof}
+   * and obtaining their descriptor file or raw descriptor bytes does not
+   * parse them.  Descriptors that turn out to be unparseable throw an
+   * {@link IllegalStateException} with a {@link DescriptorParseException} as
+   * cause from all methods that require parsing.</p>
+   *
+   * <p>Lazily parsed descriptors are dynamic proxies, so that every method
+   * call, including calls after parsing, goes through a reflective call to
+   * the parsed descriptor.  This mode therefore pays off if most
+   * descriptors are discarded without calling their methods, but it adds a
+   * small cost to every call otherwise.  Dynamic proxies may also require
+   * extra configuration for ahead-of-time compilation.</p>
+   *
+   * @param lazyParsing Whether to parse descriptors when they are used.
+   *
+   * @since 2.7.0
+   */
+  void setLazyParsing(boolean lazyParsing);
+
+  /**
+   * Only parse descriptors of the given types and skip all others (default:
+   * parse descriptors of all types).
+   *
+   * <p>Types are given as descriptor interfaces, like
+   * {@link RelayNetworkStatusConsensus} or {@link ServerDescriptor}, and a
+   * descriptor is parsed if it is an instance of at least one of them.  Type
+   * detection happens before descriptors are split or parsed, so that
+   * skipping descriptors of other types costs hardly more than looking at
+   * their first bytes.  Descriptors of a requested type that cannot be
+   * parsed are still returned as {@link UnparseableDescriptor}, whereas
+   * descriptors of unknown type are only returned if
+   * {@link UnparseableDescriptor} is among the requested types.</p>
+   *
+   * @param descriptorTypes Descriptor types to parse, or null to parse
+   *     descriptors of all types.
+   *
+   * @since 2.7.0
+   */
+  void setDescriptorTypes(Set<Class<? extends Descriptor>> descriptorTypes);
+
+  /**
+   * Keep status entries of network statuses like consensuses in a compact
+   * columnar representation rather than as one object per entry (default:
+   * false), which reduces their memory footprint to a fraction.
+   *
+   * <p>In this mode, fingerprints and digests are kept as raw bytes, flags
+   * as bitmasks, bandwidths and other numbers in primitive arrays, and
+   * repeated values like versions and protocol versions are shared between
+   * entries.  Status entries are still provided as {@link NetworkStatusEntry}
+   * instances, but these are lightweight views that are created whenever
+   * they are requested, so that requesting the same entry twice returns two
+   * distinct but equivalent instances.  Network statuses with values that
+   * cannot be represented in columns without changing them keep their
+   * status entries as they are.</p>
+   *
+   * @param compactStatusEntries Whether to keep status entries in columns.
+   *
+   * @since 2.7.0
+   */
+  void setCompactStatusEntries(boolean compactStatusEntries);
 }
@@ -4,6 +4,7 @@
 package org.torproject.descriptor;
 
 import java.io.File;
+import java.util.Set;
 import java.util.SortedMap;
 
 /**
@@ -61,6 +62,34 @@ public interface DescriptorReader {
    */
   void saveHistoryFile(File historyFile);
 
+  /**
+   * Append a line to the history file set via {@link #setHistoryFile(File)}
+   * as soon as the last descriptor contained in a descriptor file or
+   * tarball has been returned by the descriptor iterator, rather than only
+   * saving history after reading all descriptors (default: false).
+   *
+   * <p>If reading gets interrupted, for example by a crash, the history
+   * file contains all files whose descriptors were returned up to that
+   * point, so that the next reader using the same history file resumes
+   * after the last file that was processed.  Descriptors that were read
+   * and parsed but were still waiting in the queue are read again.  A file
+   * is recorded when its last descriptor is returned, not when the
+   * application is done processing it, so that an application that gets
+   * interrupted while processing the last descriptor of a file does not
+   * receive that descriptor again.  Lines appended later take
+   * precedence over earlier lines for the same file, and the history file
+   * is rewritten with only current lines whenever it contains more
+   * superseded lines than current lines.  After the descriptor iterator has
+   * returned all descriptors, the history file is rewritten with the same
+   * contents that {@link #saveHistoryFile(File)} would write.</p>
+   *
+   * @param appendToHistoryFile Whether to append lines to the history file
+   *     while reading.
+   *
+   * @since 2.7.0
+   */
+  void setAppendToHistoryFile(boolean appendToHistoryFile);
+
   /**
    * Exclude files if they haven't changed since the corresponding last
    * modified timestamps.
@@ -104,6 +133,155 @@ public interface DescriptorReader {
    */
   void setMaxDescriptorsInQueue(int maxDescriptorsInQueue);
 
+  /**
+   * Parse descriptors using the given number of parser threads (default: 1).
+   *
+   * <p>With a single parser thread, files are read, decompressed, and parsed
+   * by one background thread.  With more than one parser thread, that
+   * background thread only reads and decompresses files and tarball entries
+   * and hands their raw contents over to a pool of parser threads.</p>
+   *
+   * @param numParserThreads Number of parser threads, which must be 1 or
+   *     higher.
+   *
+   * @since 2.7.0
+   */
+  void setNumParserThreads(int numParserThreads);
+
+  /**
+   * Provide descriptors in the same order as the files and tarball entries
+   * they were read from (default: true), or provide them as soon as they are
+   * parsed, regardless of order.
+   *
+   * <p>This setting only has an effect when using more than one parser
+   * thread or more than one decompression thread.  With more than one
+   * decompression thread and without keeping file order, several tarballs
+   * are read at the same time, even with a single parser thread.
+   * Descriptors contained in the same file or tarball entry are always
+   * provided in the order in which they appear there.</p>
+   *
+   * @param keepFileOrder Whether to keep the order of files and tarball
+   *     entries.
+   *
+   * @since 2.7.0
+   */
+  void setKeepFileOrder(boolean keepFileOrder);
+
+  /**
+   * Decompress tarballs using the given number of decompression threads
+   * (default: 1).
+   *
+   * <p>With more than one decompression thread, xz-compressed tarballs
+   * consisting of multiple blocks are decompressed block by block in
+   * parallel.  If file order does not need to be kept, up to this number of
+   * tarballs are also read at the same time, which applies to all supported
+   * compression formats.</p>
+   *
+   * @param numDecompressionThreads Number of decompression threads, which
+   *     must be 1 or higher.
+   *
+   * @since 2.7.0
+   */
+  void setNumDecompressionThreads(int numDecompressionThreads);
+
+  /**
+   * Read tarballs by mapping them into memory rather than by reading them
+   * through streams (default: false).
+   *
+   * <p>Mapping tarballs into memory avoids read system calls and
+   * intermediate buffers while streaming over their entries, which mostly
+   * benefits large uncompressed tarballs: contents of tarball entries are
+   * copied exactly once from the mapped file to the descriptor bytes, and
+   * entries that are skipped are not read at all.  Parsers still work on
+   * copies of descriptor bytes in arrays rather than on the mapped file.
+   * Descriptor files that are not tarballs are always read into an array
+   * as a whole, because mapping them would only add overhead.</p>
+   *
+   * @param memoryMapFiles Whether to map files into memory.
+   *
+   * @since 2.7.0
+   */
+  void setMemoryMapFiles(boolean memoryMapFiles);
+
+  /**
+   * Parse descriptors only when they are used rather than right away
+   * (default: false), which saves parsing time if most descriptors are
+   * discarded after checking their type.
+   *
+   * <p>See {@link DescriptorParser#setLazyParsing(boolean)} for details.
+   * Descriptors that are parsed on demand are parsed by the thread using
+   * them, not by parser threads.</p>
+   *
+   * @param lazyParsing Whether to parse descriptors when they are used.
+   *
+   * @since 2.7.0
+   */
+  void setLazyParsing(boolean lazyParsing);
+
+  /**
+   * Only provide descriptors of the given types and skip all others
+   * (default: provide descriptors of all types).
+   *
+   * <p>Files and tarball entries containing descriptors of other types are
+   * still read, but they are neither split nor parsed.  See
+   * {@link DescriptorParser#setDescriptorTypes(Set)} for details.</p>
+   *
+   * @param descriptorTypes Descriptor types to provide, or null to provide
+   *     descriptors of all types.
+   *
+   * @since 2.7.0
+   */
+  void setDescriptorTypes(Set<Class<? extends Descriptor>> descriptorTypes);
+
+  /**
+   * Keep status entries of network statuses like consensuses in a compact
+   * columnar representation rather than as one object per entry (default:
+   * false), which allows keeping many more network statuses in memory.
+   *
+   * <p>See {@link DescriptorParser#setCompactStatusEntries(boolean)} for
+   * details.</p>
+   *
+   * @param compactStatusEntries Whether to keep status entries in columns.
+   *
+   * @since 2.7.0
+   */
+  void setCompactStatusEntries(boolean compactStatusEntries);
+
+  /**
+   * Cache parsed descriptors in the given directory, so that descriptors in
+   * files and tarballs that have not changed since they were last read are
+   * read back from the cache rather than parsed again (default: do not
+   * cache parsed descriptors).
+   *
+   * <p>The cache contains one entry per descriptor file or tarball, which
+   * is valid as long as the file's absolute path and last-modified time
+   * are the same as when the entry was written, just like the information
+   * in the history file.  Files that are excluded from reading because they
+   * have not changed are not read from the cache either.  Entries are
+   * only valid for the same settings and for the same release of this
+   * library, if the release version is known from the jar manifest.
+   * Entries are also invalidated by any change to the serialized form of
+   * descriptor classes and by parser fixes that change parse results, even
+   * if the library is used without jar manifest.  Descriptors that are
+   * parsed lazily are parsed before they are written to the cache.  Log
+   * descriptors are never cached.</p>
+   *
+   * <p>Whenever the total size of cache entries exceeds the given maximum,
+   * least recently used entries are evicted.  Files or tarballs with
+   * entries exceeding that size on their own are not cached at all.  A good
+   * place for the cache directory is next to the history file.</p>
+   *
+   * @param cacheDirectory Directory for cache entries, or null to not cache
+   *     parsed descriptors.
+   * @param maxCacheBytes Maximum total size of cache entries in bytes.
+   *
+   * @throws IllegalArgumentException Thrown if the maximum size is not
+   *     positive.
+   *
+   * @since 2.7.0
+   */
+  void setParsedDescriptorCache(File cacheDirectory, long maxCacheBytes);
+
   /**
    * Read descriptors from the given descriptor file(s) and return the parsed
    * descriptors.
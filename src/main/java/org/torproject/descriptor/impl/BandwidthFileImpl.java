@@ -7,6 +7,7 @@ import org.torproject.descriptor.BandwidthFile;
 import org.torproject.descriptor.DescriptorParseException;
 
 import java.io.File;
+import java.io.Serializable;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -19,10 +20,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Scanner;
 
 public class BandwidthFileImpl extends DescriptorImpl implements BandwidthFile {
 
+  private static final long serialVersionUID = 1L;
+
   private enum KeyWithStringValue {
     version, software, software_version
   }
@@ -47,26 +49,26 @@ public class BandwidthFileImpl extends DescriptorImpl implements BandwidthFile {
       throws DescriptorParseException {
     super(rawDescriptorBytes, new int[] { 0, rawDescriptorBytes.length },
         descriptorfile, false);
-    try (Scanner scanner = this.newScanner().useDelimiter("\n")) {
-      this.parseTimestampLine(scanner.nextLine());
-      boolean haveFinishedParsingHeader = false;
-      while (scanner.hasNext()) {
-        String line = scanner.nextLine();
-        if (!haveFinishedParsingHeader) {
-          if (line.startsWith("bw=") || line.contains(" bw=")) {
-            haveFinishedParsingHeader = true;
-          } else if ("====".equals(line) || "=====".equals(line)) {
-            haveFinishedParsingHeader = true;
-            continue;
-          }
-        }
-        if (!haveFinishedParsingHeader) {
-          this.parseHeaderLine(line);
-        } else {
-          this.parseRelayLine(line);
+    LineCursor lines = this.newLineCursor();
+    this.parseTimestampLine(lines.next());
+    boolean haveFinishedParsingHeader = false;
+    while (lines.hasNext()) {
+      String line = lines.next();
+      if (!haveFinishedParsingHeader) {
+        if (line.startsWith("bw=") || line.contains(" bw=")) {
+          haveFinishedParsingHeader = true;
+        } else if ("====".equals(line) || "=====".equals(line)) {
+          haveFinishedParsingHeader = true;
+          continue;
         }
       }
+      if (!haveFinishedParsingHeader) {
+        this.parseHeaderLine(line);
+      } else {
+        this.parseRelayLine(line);
+      }
     }
+    this.clearParsedKeys();
   }
 
   private void parseTimestampLine(String line) throws DescriptorParseException {
@@ -166,7 +168,9 @@ public class BandwidthFileImpl extends DescriptorImpl implements BandwidthFile {
     }
   }
 
-  private class RelayLineImpl implements RelayLine {
+  private class RelayLineImpl implements RelayLine, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String nodeId;
 
@@ -6,10 +6,15 @@ package org.torproject.descriptor.impl;
 import org.torproject.descriptor.BandwidthHistory;
 import org.torproject.descriptor.DescriptorParseException;
 
+import java.io.Serializable;
+import java.nio.LongBuffer;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
-public class BandwidthHistoryImpl implements BandwidthHistory {
+public class BandwidthHistoryImpl implements BandwidthHistory,
+    Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   protected BandwidthHistoryImpl(String line,
       String[] partsNoOpt) throws DescriptorParseException {
@@ -101,5 +106,71 @@ public class BandwidthHistoryImpl implements BandwidthHistory {
     }
     return result;
   }
-}
 
+  private static final long[] NO_BANDWIDTH_VALUES = new long[0];
+
+  /* Return the parsed bandwidth values, or an empty array if there are
+   * none, without copying them. */
+  private long[] bandwidthValues() {
+    return null == this.bandwidthValues ? NO_BANDWIDTH_VALUES
+        : this.bandwidthValues;
+  }
+
+  @Override
+  public LongBuffer getBandwidthValuesBuffer() {
+    return LongBuffer.wrap(this.bandwidthValues()).asReadOnlyBuffer();
+  }
+
+  @Override
+  public long getBandwidthSum() {
+    long sum = 0L;
+    for (long value : this.bandwidthValues()) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  @Override
+  public long getBandwidthMax() {
+    long max = -1L;
+    for (long value : this.bandwidthValues()) {
+      max = Math.max(max, value);
+    }
+    return max;
+  }
+
+  @Override
+  public long[] getResampledBandwidthValues(long intervalLength) {
+    if (intervalLength < this.intervalLength) {
+      throw new IllegalArgumentException("Interval length " + intervalLength
+          + " must not be shorter than the original interval length "
+          + this.intervalLength + ".");
+    }
+    long[] values = this.bandwidthValues();
+    if (values.length == 0) {
+      return NO_BANDWIDTH_VALUES;
+    }
+    long originalMillis = this.intervalLength * 1000L;
+    long resampledMillis = intervalLength * 1000L;
+    long firstEndMillis = this.historyEndMillis
+        - (values.length - 1) * originalMillis;
+    long firstInterval = resampledInterval(firstEndMillis, resampledMillis);
+    long[] resampled = new long[(int) (resampledInterval(
+        this.historyEndMillis, resampledMillis) - firstInterval + 1L)];
+    long endMillis = firstEndMillis;
+    for (long value : values) {
+      resampled[(int) (resampledInterval(endMillis, resampledMillis)
+          - firstInterval)] += value;
+      endMillis += originalMillis;
+    }
+    return resampled;
+  }
+
+  /* Return the number of the resampled interval containing the given end
+   * time, where interval i ends at i times the resampled interval length
+   * and includes that end. */
+  private static long resampledInterval(long endMillis,
+      long resampledMillis) {
+    return Math.floorDiv(endMillis - 1L, resampledMillis) + 1L;
+  }
+}
@@ -4,75 +4,179 @@
 package org.torproject.descriptor.impl;
 
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /* Provide an iterator for a queue of objects and block when there are
  * currently no objects in the queue.  Allow the producer to signal that
- * there won't be further objects and unblock any waiting consumers. */
+ * there won't be further objects and unblock any waiting consumers.
+ *
+ * Objects are handed over through a bounded ring queue without locking.
+ * Producers or consumers that need to wait first yield for a short while,
+ * and only if that doesn't help, register themselves and get parked.  Only
+ * registered threads get unparked.
+ *
+ * Producers can attach an action to an object that is run by the consumer
+ * when the object is handed out, and an action that is run by the consumer
+ * when it reaches the end of the stream, so that producers learn how far
+ * the consumer has come. */
 public class BlockingIteratorImpl<T> implements Iterator<T>, Iterable<T> {
 
-  /* Queue containing produced elemnts waiting for consumers. */
-  private Queue<T> queue = new LinkedList<>();
+  /* Queue containing produced elements waiting for consumers, each of
+   * which is either an object or an object with an attached action. */
+  private BoundedRingQueue<Object> queue;
 
-  /* Maximum number of elements in queue. */
-  private int maxQueueSize = 100;
+  /* Object together with an action to run when handing it out. */
+  private static class ObjectWithAction<T> {
+
+    private final T object;
+
+    private final Runnable action;
+
+    private ObjectWithAction(T object, Runnable action) {
+      this.object = object;
+      this.action = action;
+    }
+  }
+
+  /* Action to run when a consumer reaches the end of the stream, or null if
+   * there is no such action or if it has already been run. */
+  private final AtomicReference<Runnable> endOfStreamAction =
+      new AtomicReference<>();
+
+  /* Producers waiting for room in the queue. */
+  private Queue<Thread> waitingProducers = new ConcurrentLinkedQueue<>();
+
+  /* Consumers waiting for objects in the queue or the end of the stream. */
+  private Queue<Thread> waitingConsumers = new ConcurrentLinkedQueue<>();
+
+  /* Number of times to yield to other threads before parking. */
+  private static final int YIELDS_BEFORE_PARKING = 100;
 
   /* Restrict object construction to the impl package. */
   protected BlockingIteratorImpl() {
+    this(null);
   }
 
   /* Create instance with maximum queue size. */
   protected BlockingIteratorImpl(Integer maxQueueSize) {
-    if (null != maxQueueSize) {
-      this.maxQueueSize = maxQueueSize;
-    }
+    this.queue = new BoundedRingQueue<>(null == maxQueueSize ? 100
+        : Math.max(1, maxQueueSize));
   }
 
   /* Add an object to the queue if there's still room. */
-  protected synchronized void add(T object) {
+  protected void add(T object) {
+    this.enqueue(object);
+  }
+
+  /* Add an object to the queue if there's still room, and run the given
+   * action in the consumer thread right before handing out the object. */
+  protected void add(T object, Runnable action) {
+    this.enqueue(new ObjectWithAction<>(object, action));
+  }
+
+  private void enqueue(Object object) {
     if (this.outOfDescriptors) {
       throw new IllegalStateException("Internal error: Adding results to "
           + "descriptor queue not allowed after sending end-of-stream "
           + "object.");
     }
-    while (this.queue.size() >= this.maxQueueSize) {
-      try {
-        wait();
-      } catch (InterruptedException e) {
-        /* nothing to be done */
+    for (int i = 0; i < YIELDS_BEFORE_PARKING && this.queue.isFull(); i++) {
+      Thread.yield();
+    }
+    if (!this.queue.offer(object)) {
+      Thread currentThread = Thread.currentThread();
+      boolean interrupted = false;
+      do {
+        this.waitingProducers.add(currentThread);
+        if (this.queue.isFull()) {
+          LockSupport.park(this);
+          interrupted |= Thread.interrupted();
+        }
+        this.waitingProducers.remove(currentThread);
+      } while (!this.queue.offer(object));
+      if (interrupted) {
+        currentThread.interrupt();
       }
     }
-    this.queue.offer(object);
-    notifyAll();
+    unparkAll(this.waitingConsumers);
   }
 
   /* Signalize that there won't be any further objects to be enqueued. */
-  private boolean outOfDescriptors = false;
+  private volatile boolean outOfDescriptors = false;
+
+  protected void setOutOfDescriptors() {
+    this.setOutOfDescriptors(null);
+  }
 
-  protected synchronized void setOutOfDescriptors() {
+  /* Signalize that there won't be any further objects, and run the given
+   * action, unless null, in the first consumer thread that reaches the end
+   * of the stream. */
+  protected synchronized void setOutOfDescriptors(Runnable action) {
     if (this.outOfDescriptors) {
       throw new IllegalStateException("Internal error: Sending "
           + "end-of-stream object only permitted once.");
     }
+    this.endOfStreamAction.set(action);
     this.outOfDescriptors = true;
-    notifyAll();
+    unparkAll(this.waitingConsumers);
+  }
+
+  /* Block until there are objects in the queue or until the producer has
+   * signalized that there won't be further objects.  Registering as waiting
+   * consumer before checking the queue once more makes sure that a producer
+   * either sees this consumer or this consumer sees the added object. */
+  private void awaitObjectOrEndOfStream() {
+    for (int i = 0; i < YIELDS_BEFORE_PARKING; i++) {
+      if (!this.queue.isEmpty() || this.outOfDescriptors) {
+        return;
+      }
+      Thread.yield();
+    }
+    Thread currentThread = Thread.currentThread();
+    boolean interrupted = false;
+    do {
+      this.waitingConsumers.add(currentThread);
+      if (this.queue.isEmpty() && !this.outOfDescriptors) {
+        LockSupport.park(this);
+        interrupted |= Thread.interrupted();
+      }
+      this.waitingConsumers.remove(currentThread);
+    } while (this.queue.isEmpty() && !this.outOfDescriptors);
+    if (interrupted) {
+      currentThread.interrupt();
+    }
+  }
+
+  private static void unparkAll(Queue<Thread> waitingThreads) {
+    if (!waitingThreads.isEmpty()) {
+      for (Thread waitingThread : waitingThreads) {
+        LockSupport.unpark(waitingThread);
+      }
+    }
   }
 
   /* Return whether there are more objects.  Block if there are currently
    * no objects, but the producer hasn't signalized that there won't be
    * further objects. */
   @Override
-  public synchronized boolean hasNext() {
-    while (!this.outOfDescriptors && this.queue.isEmpty()) {
-      try {
-        wait();
-      } catch (InterruptedException e) {
-        /* nothing to be done */
-      }
+  public boolean hasNext() {
+    this.awaitObjectOrEndOfStream();
+    if (this.queue.isEmpty()) {
+      this.runEndOfStreamAction();
+      return false;
+    }
+    return true;
+  }
+
+  private void runEndOfStreamAction() {
+    Runnable action = this.endOfStreamAction.getAndSet(null);
+    if (null != action) {
+      action.run();
     }
-    return this.queue.peek() != null;
   }
 
   /* Return the next object in the queue or throw an exception when there
@@ -80,19 +184,23 @@ public class BlockingIteratorImpl<T> implements Iterator<T>, Iterable<T> {
    * the producer hasn't signalized that there won't be further
    * objects. */
   @Override
-  public synchronized T next() {
-    while (!this.outOfDescriptors && this.queue.isEmpty()) {
-      try {
-        wait();
-      } catch (InterruptedException e) {
-        /* nothing to be done */
+  @SuppressWarnings("unchecked")
+  public T next() {
+    Object object;
+    while (null == (object = this.queue.poll())) {
+      if (this.outOfDescriptors && this.queue.isEmpty()) {
+        this.runEndOfStreamAction();
+        throw new NoSuchElementException();
       }
+      this.awaitObjectOrEndOfStream();
     }
-    if (this.queue.peek() == null) {
-      throw new NoSuchElementException();
+    unparkAll(this.waitingProducers);
+    if (object instanceof ObjectWithAction) {
+      ObjectWithAction<T> objectWithAction = (ObjectWithAction<T>) object;
+      objectWithAction.action.run();
+      return objectWithAction.object;
     }
-    notifyAll();
-    return this.queue.remove();
+    return (T) object;
   }
 
   /* Don't support explicitly removing objects.  They are removed
@@ -107,4 +215,3 @@ public class BlockingIteratorImpl<T> implements Iterator<T>, Iterable<T> {
     return this;
   }
 }
-
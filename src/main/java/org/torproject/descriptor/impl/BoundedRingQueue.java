@@ -0,0 +1,114 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, array-backed queue that supports multiple producers and
+ * multiple consumers without locking.
+ *
+ * <p>Each slot has a sequence number that tells producers and consumers
+ * whether the slot is ready to be written or read in the current round.
+ * Producers and consumers claim slots by advancing their respective
+ * positions with compare-and-set operations.  This queue never blocks;
+ * callers that need to wait for free slots or elements are responsible
+ * for doing so themselves.</p>
+ */
+class BoundedRingQueue<T> {
+
+  /* Elements, or null for free slots.  Writes and reads are ordered by the
+   * volatile writes and reads of slot sequence numbers. */
+  private final Object[] elements;
+
+  /* Sequence number of each slot, which equals the producer position for
+   * writing to the slot and the consumer position plus one for reading from
+   * it. */
+  private final AtomicLongArray sequences;
+
+  private final int capacity;
+
+  /* Position of the next slot to be written by a producer. */
+  private final AtomicLong producerPosition = new AtomicLong();
+
+  /* Position of the next slot to be read by a consumer. */
+  private final AtomicLong consumerPosition = new AtomicLong();
+
+  BoundedRingQueue(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive.");
+    }
+    this.capacity = capacity;
+    this.elements = new Object[capacity];
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      this.sequences.set(i, i);
+    }
+  }
+
+  /* Add an element if there's still room, and return whether it was
+   * added. */
+  boolean offer(T element) {
+    if (null == element) {
+      throw new NullPointerException();
+    }
+    long position = this.producerPosition.get();
+    while (true) {
+      int slot = (int) (position % this.capacity);
+      long difference = this.sequences.get(slot) - position;
+      if (difference == 0L) {
+        if (this.producerPosition.compareAndSet(position, position + 1L)) {
+          this.elements[slot] = element;
+          this.sequences.set(slot, position + 1L);
+          return true;
+        }
+        position = this.producerPosition.get();
+      } else if (difference < 0L) {
+        return false;
+      } else {
+        position = this.producerPosition.get();
+      }
+    }
+  }
+
+  /* Remove and return the oldest element, or return null if there are
+   * currently no elements. */
+  @SuppressWarnings("unchecked")
+  T poll() {
+    long position = this.consumerPosition.get();
+    while (true) {
+      int slot = (int) (position % this.capacity);
+      long difference = this.sequences.get(slot) - (position + 1L);
+      if (difference == 0L) {
+        if (this.consumerPosition.compareAndSet(position, position + 1L)) {
+          T element = (T) this.elements[slot];
+          this.elements[slot] = null;
+          this.sequences.set(slot, position + this.capacity);
+          return element;
+        }
+        position = this.consumerPosition.get();
+      } else if (difference < 0L) {
+        return null;
+      } else {
+        position = this.consumerPosition.get();
+      }
+    }
+  }
+
+  /* Return whether there are currently no elements that could be polled. */
+  boolean isEmpty() {
+    long position = this.consumerPosition.get();
+    int slot = (int) (position % this.capacity);
+    return this.sequences.get(slot) - (position + 1L) < 0L;
+  }
+
+  /* Return whether there are currently no free slots for adding
+   * elements. */
+  boolean isFull() {
+    long position = this.producerPosition.get();
+    int slot = (int) (position % this.capacity);
+    return this.sequences.get(slot) - position < 0L;
+  }
+}
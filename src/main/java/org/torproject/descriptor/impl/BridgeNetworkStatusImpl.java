@@ -11,7 +11,6 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.SortedMap;
 import java.util.TimeZone;
 
@@ -19,11 +18,14 @@ import java.util.TimeZone;
 public class BridgeNetworkStatusImpl extends NetworkStatusImpl
     implements BridgeNetworkStatus {
 
+  private static final long serialVersionUID = 1L;
+
   protected BridgeNetworkStatusImpl(byte[] rawDescriptorBytes,
       int[] offsetAndLength, File descriptorFile, String fileName)
       throws DescriptorParseException {
     super(rawDescriptorBytes, offsetAndLength, descriptorFile,
         false, false);
+    this.clearParsedKeys();
     this.setPublishedMillisFromFileName(fileName);
   }
 
@@ -73,24 +75,23 @@ public class BridgeNetworkStatusImpl extends NetworkStatusImpl
     this.enoughMtbfInfo = -1;
     this.ignoringAdvertisedBws = -1;
 
-    try (Scanner scanner = this.newScanner(offset, length).useDelimiter(NL)) {
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        String[] parts = line.split("[ \t]+");
-        Key key = Key.get(parts[0]);
-        switch (key) {
-          case PUBLISHED:
-            this.parsePublishedLine(line, parts);
-            break;
-          case FLAG_THRESHOLDS:
-            this.parseFlagThresholdsLine(line, parts);
-            break;
-          default:
-            if (this.unrecognizedLines == null) {
-              this.unrecognizedLines = new ArrayList<>();
-            }
-            this.unrecognizedLines.add(line);
-        }
+    LineCursor lines = this.newLineCursor(offset, length);
+    while (lines.hasNext()) {
+      String line = lines.next();
+      String[] parts = line.split("[ \t]+");
+      Key key = Key.get(parts[0]);
+      switch (key) {
+        case PUBLISHED:
+          this.parsePublishedLine(line, parts);
+          break;
+        case FLAG_THRESHOLDS:
+          this.parseFlagThresholdsLine(line, parts);
+          break;
+        default:
+          if (this.unrecognizedLines == null) {
+            this.unrecognizedLines = new ArrayList<>();
+          }
+          this.unrecognizedLines.add(line);
       }
     }
   }
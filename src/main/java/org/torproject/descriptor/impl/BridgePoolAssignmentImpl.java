@@ -8,13 +8,14 @@ import org.torproject.descriptor.DescriptorParseException;
 
 import java.io.File;
 import java.util.EnumSet;
-import java.util.Scanner;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
 public class BridgePoolAssignmentImpl extends DescriptorImpl
     implements BridgePoolAssignment {
 
+  private static final long serialVersionUID = 1L;
+
   protected BridgePoolAssignmentImpl(byte[] rawDescriptorBytes,
       int[] offsetAndlength, File descriptorFile)
       throws DescriptorParseException {
@@ -26,14 +27,13 @@ public class BridgePoolAssignmentImpl extends DescriptorImpl
   }
 
   private void parseDescriptorBytes() throws DescriptorParseException {
-    try (Scanner scanner = this.newScanner().useDelimiter(NL)) {
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        if (line.startsWith(Key.BRIDGE_POOL_ASSIGNMENT.keyword + SP)) {
-          this.parseBridgePoolAssignmentLine(line);
-        } else {
-          this.parseBridgeLine(line);
-        }
+    LineCursor lines = this.newLineCursor();
+    while (lines.hasNext()) {
+      String line = lines.next();
+      if (line.startsWith(Key.BRIDGE_POOL_ASSIGNMENT.keyword + SP)) {
+        this.parseBridgePoolAssignmentLine(line);
+      } else {
+        this.parseBridgeLine(line);
       }
     }
   }
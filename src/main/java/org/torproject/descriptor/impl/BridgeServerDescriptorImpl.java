@@ -11,6 +11,8 @@ import java.io.File;
 public class BridgeServerDescriptorImpl extends ServerDescriptorImpl
     implements BridgeServerDescriptor {
 
+  private static final long serialVersionUID = 1L;
+
   protected BridgeServerDescriptorImpl(byte[] rawDescriptorBytes,
       int[] offsetAndLength, File descriptorFile)
       throws DescriptorParseException {
@@ -0,0 +1,80 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+/**
+ * Search primitives over ranges of raw descriptor bytes that replace
+ * converting the whole range to a US-ASCII String and searching in that
+ * String.
+ *
+ * <p>All methods compare bytes to the chars of the given ASCII strings, so
+ * that non-ASCII bytes never match, and they return indexes into the byte
+ * array, not relative to the start of the searched range.</p>
+ */
+class BytesHelper {
+
+  private BytesHelper() {
+  }
+
+  /* Return whether the given ASCII string is contained at the given index,
+   * without reading beyond index to. */
+  static boolean regionMatches(byte[] bytes, int index, int to,
+      String ascii) {
+    if (index < 0 || ascii.length() > to - index) {
+      return false;
+    }
+    for (int i = 0; i < ascii.length(); i++) {
+      if (bytes[index + i] != ascii.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* Return the index of the first occurrence of the given byte at or after
+   * index from and before index to, or -1 if it is not contained. */
+  static int indexOf(byte[] bytes, int from, int to, char value) {
+    for (int i = Math.max(0, from); i < to; i++) {
+      if (bytes[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /* Return the index of the first occurrence of the given ASCII string that
+   * starts at or after index from and ends at or before index to, or -1 if
+   * it is not contained. */
+  static int indexOf(byte[] bytes, int from, int to, String ascii) {
+    if (ascii.isEmpty()) {
+      return Math.max(0, Math.min(from, to));
+    }
+    char first = ascii.charAt(0);
+    int last = to - ascii.length();
+    for (int i = Math.max(0, from); i <= last; i++) {
+      if (bytes[i] == first && regionMatches(bytes, i, to, ascii)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /* Return the index of the first occurrence of the given keyword that is
+   * directly preceded by byte before and directly followed by byte after,
+   * where the index is the one of the preceding byte, or -1 if there is no
+   * such occurrence between index from and index to.  This is the same as
+   * searching for before + keyword + after, but without concatenating
+   * strings. */
+  static int indexOf(byte[] bytes, int from, int to, char before,
+      String keyword, char after) {
+    int last = to - keyword.length() - 2;
+    for (int i = Math.max(0, from); i <= last; i++) {
+      if (bytes[i] == before && bytes[i + keyword.length() + 1] == after
+          && regionMatches(bytes, i + 1, to, keyword)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,231 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import org.torproject.descriptor.DescriptorParseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of factories for descriptor types that are split into
+ * descriptors at a keyword, consisting of factories for supported
+ * descriptor types that create descriptors by calling their constructors
+ * directly, and of factories for other descriptor types that are registered
+ * with {@link ServiceLoader} and that are loaded once.
+ */
+final class DescriptorFactories {
+
+  private static final Logger log = LoggerFactory.getLogger(
+      DescriptorFactories.class);
+
+  /* Constructor of a descriptor implementation class. */
+  @FunctionalInterface
+  interface DescriptorConstructor {
+    DescriptorImpl newDescriptor(byte[] rawDescriptorBytes,
+        int[] offsetAndLength, File descriptorFile)
+        throws DescriptorParseException;
+  }
+
+  private static final class ConstructorFactory
+      implements DescriptorFactory {
+
+    private final Class<? extends DescriptorImpl> descriptorClass;
+
+    private final String typeAnnotation;
+
+    private final String keyword;
+
+    private final DescriptorConstructor constructor;
+
+    private ConstructorFactory(Class<? extends DescriptorImpl> descriptorClass,
+        String typeAnnotation, String keyword,
+        DescriptorConstructor constructor) {
+      this.descriptorClass = descriptorClass;
+      this.typeAnnotation = typeAnnotation;
+      this.keyword = keyword;
+      this.constructor = constructor;
+    }
+
+    @Override
+    public Class<? extends DescriptorImpl> getDescriptorClass() {
+      return this.descriptorClass;
+    }
+
+    @Override
+    public String getTypeAnnotation() {
+      return this.typeAnnotation;
+    }
+
+    @Override
+    public String getKeyword() {
+      return this.keyword;
+    }
+
+    @Override
+    public DescriptorImpl newDescriptor(byte[] rawDescriptorBytes,
+        int[] offsetAndLength, File descriptorFile)
+        throws DescriptorParseException {
+      return this.constructor.newDescriptor(rawDescriptorBytes,
+          offsetAndLength, descriptorFile);
+    }
+
+    @Override
+    public String toString() {
+      return this.descriptorClass.getSimpleName() + " factory";
+    }
+  }
+
+  /* Return a factory that creates descriptors using the given constructor,
+   * usually given as constructor reference. */
+  static DescriptorFactory newFactory(
+      Class<? extends DescriptorImpl> descriptorClass, String typeAnnotation,
+      String keyword, DescriptorConstructor constructor) {
+    return new ConstructorFactory(descriptorClass, typeAnnotation, keyword,
+        constructor);
+  }
+
+  static final DescriptorFactory RELAY_NETWORK_STATUS_CONSENSUS = newFactory(
+      RelayNetworkStatusConsensusImpl.class,
+      "@type network-status-consensus-3 1.",
+      Key.NETWORK_STATUS_VERSION.keyword,
+      RelayNetworkStatusConsensusImpl::new);
+
+  static final DescriptorFactory RELAY_NETWORK_STATUS_VOTE = newFactory(
+      RelayNetworkStatusVoteImpl.class, "@type network-status-vote-3 1.",
+      Key.NETWORK_STATUS_VERSION.keyword, RelayNetworkStatusVoteImpl::new);
+
+  static final DescriptorFactory BRIDGE_SERVER_DESCRIPTOR = newFactory(
+      BridgeServerDescriptorImpl.class, "@type bridge-server-descriptor 1.",
+      Key.ROUTER.keyword, BridgeServerDescriptorImpl::new);
+
+  static final DescriptorFactory RELAY_SERVER_DESCRIPTOR = newFactory(
+      RelayServerDescriptorImpl.class, "@type server-descriptor 1.",
+      Key.ROUTER.keyword, RelayServerDescriptorImpl::new);
+
+  static final DescriptorFactory BRIDGE_EXTRA_INFO_DESCRIPTOR = newFactory(
+      BridgeExtraInfoDescriptorImpl.class, "@type bridge-extra-info 1.",
+      Key.EXTRA_INFO.keyword, BridgeExtraInfoDescriptorImpl::new);
+
+  static final DescriptorFactory RELAY_EXTRA_INFO_DESCRIPTOR = newFactory(
+      RelayExtraInfoDescriptorImpl.class, "@type extra-info 1.",
+      Key.EXTRA_INFO.keyword, RelayExtraInfoDescriptorImpl::new);
+
+  static final DescriptorFactory MICRODESCRIPTOR = newFactory(
+      MicrodescriptorImpl.class, "@type microdescriptor 1.",
+      Key.ONION_KEY.keyword, MicrodescriptorImpl::new);
+
+  static final DescriptorFactory BRIDGE_POOL_ASSIGNMENT = newFactory(
+      BridgePoolAssignmentImpl.class, "@type bridge-pool-assignment 1.",
+      Key.BRIDGE_POOL_ASSIGNMENT.keyword, BridgePoolAssignmentImpl::new);
+
+  static final DescriptorFactory DIRECTORY_KEY_CERTIFICATE = newFactory(
+      DirectoryKeyCertificateImpl.class, "@type dir-key-certificate-3 1.",
+      Key.DIR_KEY_CERTIFICATE_VERSION.keyword,
+      DirectoryKeyCertificateImpl::new);
+
+  static final DescriptorFactory RELAY_NETWORK_STATUS = newFactory(
+      RelayNetworkStatusImpl.class, "@type network-status-2 1.",
+      Key.NETWORK_STATUS_VERSION.keyword, RelayNetworkStatusImpl::new);
+
+  static final DescriptorFactory RELAY_DIRECTORY = newFactory(
+      RelayDirectoryImpl.class, "@type directory 1.",
+      Key.SIGNED_DIRECTORY.keyword, RelayDirectoryImpl::new);
+
+  static final DescriptorFactory SNOWFLAKE_STATS = newFactory(
+      SnowflakeStatsImpl.class, "@type snowflake-stats 1.",
+      Key.SNOWFLAKE_STATS_END.keyword, SnowflakeStatsImpl::new);
+
+  /* Type annotations of supported descriptor types that are not split at a
+   * keyword, or that share a factory with another type annotation, which
+   * registered factories must not replace either. */
+  private static final List<String> OTHER_TYPE_ANNOTATIONS = Arrays.asList(
+      "@type network-status-microdesc-consensus-3 1.",
+      "@type bridge-network-status 1.", "@type tordnsel 1.",
+      "@type torperf 1.", "@type bandwidth-file 1.");
+
+  private static final List<DescriptorFactory> SUPPORTED_FACTORIES =
+      Collections.unmodifiableList(Arrays.asList(
+      RELAY_NETWORK_STATUS_CONSENSUS, RELAY_NETWORK_STATUS_VOTE,
+      BRIDGE_SERVER_DESCRIPTOR, RELAY_SERVER_DESCRIPTOR,
+      BRIDGE_EXTRA_INFO_DESCRIPTOR, RELAY_EXTRA_INFO_DESCRIPTOR,
+      MICRODESCRIPTOR, BRIDGE_POOL_ASSIGNMENT, DIRECTORY_KEY_CERTIFICATE,
+      RELAY_NETWORK_STATUS, RELAY_DIRECTORY, SNOWFLAKE_STATS));
+
+  private static final List<DescriptorFactory> REGISTERED_FACTORIES =
+      loadRegisteredFactories();
+
+  /* Load factories registered with ServiceLoader, skipping those that cannot
+   * be loaded, that do not provide a type annotation and keyword, or whose
+   * type annotation would overlap with the type annotation of a supported or
+   * previously loaded descriptor type. */
+  private static List<DescriptorFactory> loadRegisteredFactories() {
+    List<DescriptorFactory> factories = new ArrayList<>();
+    List<String> typeAnnotations = new ArrayList<>(OTHER_TYPE_ANNOTATIONS);
+    for (DescriptorFactory factory : SUPPORTED_FACTORIES) {
+      typeAnnotations.add(factory.getTypeAnnotation());
+    }
+    try {
+      for (DescriptorFactory factory
+          : ServiceLoader.load(DescriptorFactory.class)) {
+        String typeAnnotation = factory.getTypeAnnotation();
+        if (null == typeAnnotation || !typeAnnotation.startsWith("@type ")
+            || null == factory.getKeyword() || factory.getKeyword().isEmpty()
+            || null == factory.getDescriptorClass()) {
+          log.warn("Skipping descriptor factory {} without valid type "
+              + "annotation, keyword, or descriptor class.", factory);
+          continue;
+        }
+        boolean overlapping = false;
+        for (String other : typeAnnotations) {
+          if (other.startsWith(typeAnnotation)
+              || typeAnnotation.startsWith(other)) {
+            overlapping = true;
+            break;
+          }
+        }
+        if (overlapping) {
+          log.warn("Skipping descriptor factory {} with type annotation {} "
+              + "overlapping with the type annotation of another descriptor "
+              + "type.", factory, typeAnnotation);
+          continue;
+        }
+        typeAnnotations.add(typeAnnotation);
+        factories.add(factory);
+      }
+    } catch (ServiceConfigurationError e) {
+      log.warn("Cannot load registered descriptor factories.  Skipping "
+          + "remaining factories.", e);
+    }
+    return Collections.unmodifiableList(factories);
+  }
+
+  /* Return factories registered with ServiceLoader. */
+  static List<DescriptorFactory> registeredFactories() {
+    return REGISTERED_FACTORIES;
+  }
+
+  /* Return the registered factory whose type annotation the given raw
+   * descriptor bytes start with, or null if there is none. */
+  static DescriptorFactory findRegisteredFactory(byte[] rawDescriptorBytes) {
+    for (DescriptorFactory factory : REGISTERED_FACTORIES) {
+      if (BytesHelper.regionMatches(rawDescriptorBytes, 0,
+          rawDescriptorBytes.length, factory.getTypeAnnotation())) {
+        return factory;
+      }
+    }
+    return null;
+  }
+
+  private DescriptorFactories() {
+  }
+}
@@ -0,0 +1,78 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import org.torproject.descriptor.DescriptorParseException;
+
+import java.io.File;
+
+/**
+ * Factory for descriptors of one type, which are contained in descriptor
+ * files starting with a given type annotation and which each start with a
+ * line containing a given keyword.
+ *
+ * <p>Descriptor types that are not supported by this library can be added by
+ * implementing this interface and registering the implementation with
+ * {@link java.util.ServiceLoader} in a resource file
+ * {@code META-INF/services/org.torproject.descriptor.impl.DescriptorFactory}.
+ * Descriptor files starting with the type annotation of a registered factory
+ * are split into descriptors at lines starting with its keyword, and each of
+ * these descriptors is created by the factory.  Registered factories cannot
+ * replace factories of supported descriptor types.</p>
+ *
+ * <p>Created descriptors extend {@link DescriptorImpl}, whose constructors
+ * cut off annotations and whose {@link DescriptorImpl#newLineCursor()}
+ * provides a {@link LineCursor} over the descriptor's lines for parsing
+ * it.</p>
+ *
+ * @since 2.7.0
+ */
+public interface DescriptorFactory {
+
+  /**
+   * Return the implementation class of created descriptors, which is used
+   * to determine whether descriptors of this type have been requested and
+   * which interfaces lazily parsed descriptors implement.
+   *
+   * @since 2.7.0
+   */
+  Class<? extends DescriptorImpl> getDescriptorClass();
+
+  /**
+   * Return the beginning of the type annotation of descriptor files
+   * containing descriptors of this type, including the major version and the
+   * dot separating the minor version, like {@code "@type server-descriptor
+   * 1."}.
+   *
+   * @since 2.7.0
+   */
+  String getTypeAnnotation();
+
+  /**
+   * Return the keyword of the first line of each descriptor of this type,
+   * like {@code "router"}.
+   *
+   * @since 2.7.0
+   */
+  String getKeyword();
+
+  /**
+   * Create and parse a descriptor from the given part of the given raw
+   * descriptor bytes.
+   *
+   * @param rawDescriptorBytes Raw descriptor bytes, possibly containing more
+   *     than one descriptor.
+   * @param offsetAndLength Offset and length of the descriptor, including
+   *     any annotations preceding it.
+   * @param descriptorFile Descriptor file containing the descriptor, or
+   *     null if the descriptor was not read from a file.
+   * @throws DescriptorParseException Thrown if the descriptor cannot be
+   *     parsed.
+   *
+   * @since 2.7.0
+   */
+  DescriptorImpl newDescriptor(byte[] rawDescriptorBytes,
+      int[] offsetAndLength, File descriptorFile)
+      throws DescriptorParseException;
+}
@@ -12,6 +12,7 @@ import org.apache.commons.codec.binary.Hex;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStreamReader;
+import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -22,7 +23,9 @@ import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
 
-public abstract class DescriptorImpl implements Descriptor {
+public abstract class DescriptorImpl implements Descriptor, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   public static final String NL = "\n";
 
@@ -64,7 +67,7 @@ public abstract class DescriptorImpl implements Descriptor {
    *
    * <p>If possible, subclasses should avoid retrieving raw descriptor bytes and
    * converting them to a String themselves and instead rely on
-   * {@link #newScanner()} and related methods to parse the descriptor.</p>
+   * {@link #newLineCursor()} and related methods to parse the descriptor.</p>
    *
    * @return Copy of the full raw descriptor bytes.
    */
@@ -79,7 +82,7 @@ public abstract class DescriptorImpl implements Descriptor {
    *
    * <p>If possible, subclasses should avoid retrieving raw descriptor bytes and
    * converting them to a String themselves and instead rely on
-   * {@link #newScanner()} and related methods to parse the descriptor.</p>
+   * {@link #newLineCursor()} and related methods to parse the descriptor.</p>
    *
    * @param offset The index of the first byte to include.
    * @param length The number of bytes to include.
@@ -97,12 +100,38 @@ public abstract class DescriptorImpl implements Descriptor {
     return result;
   }
 
+  /**
+   * Returns a new {@link LineCursor} for parsing the full raw descriptor line
+   * by line.
+   *
+   * @return Line cursor for the full raw descriptor bytes.
+   */
+  protected LineCursor newLineCursor() {
+    return this.newLineCursor(this.offset, this.length);
+  }
+
+  /**
+   * Returns a new {@link LineCursor} for parsing the raw descriptor starting
+   * at byte {@code offset} containing {@code length} bytes line by line.
+   *
+   * @param offset The index of the first byte to parse.
+   * @param length The number of bytes to parse.
+   * @return Line cursor for the given raw descriptor bytes.
+   */
+  protected LineCursor newLineCursor(int offset, int length) {
+    return new LineCursor(this.rawDescriptorBytes, offset, length,
+        this.countedKeysUpTo < 0 ? null : this);
+  }
+
   /**
    * Returns a new {@link Scanner} for parsing the full raw descriptor using
    * UTF-8 as charset.
    *
    * @return Scanner for the full raw descriptor bytes.
+   * @deprecated Use {@link #newLineCursor()} instead, which splits lines
+   *     without regular expressions and without decoding skipped lines.
    */
+  @Deprecated
   protected Scanner newScanner() {
     return this.newScanner(this.offset, this.length);
   }
@@ -115,7 +144,11 @@ public abstract class DescriptorImpl implements Descriptor {
    * @param offset The index of the first byte to parse.
    * @param length The number of bytes to parse.
    * @return Scanner for the given raw descriptor bytes.
+   * @deprecated Use {@link #newLineCursor(int, int)} instead, which splits
+   *     lines without regular expressions and without decoding skipped
+   *     lines.
    */
+  @Deprecated
   protected Scanner newScanner(int offset, int length) {
     return new Scanner(new InputStreamReader(new ByteArrayInputStream(
         this.rawDescriptorBytes, offset, length), StandardCharsets.UTF_8));
@@ -129,20 +162,24 @@ public abstract class DescriptorImpl implements Descriptor {
    * @return Index of the first occurrence, or -1.
    */
   protected int findFirstIndexOfKey(Key key) {
-    String ascii = new String(this.rawDescriptorBytes, this.offset, this.length,
-        StandardCharsets.US_ASCII);
-    if (ascii.startsWith(key.keyword + SP)
-        || ascii.startsWith(key.keyword + NL)) {
+    byte[] bytes = this.rawDescriptorBytes;
+    int end = this.offset + this.length;
+    int afterKeyword = this.offset + key.keyword.length();
+    if (afterKeyword < end
+        && (bytes[afterKeyword] == ' ' || bytes[afterKeyword] == '\n')
+        && BytesHelper.regionMatches(bytes, this.offset, end, key.keyword)) {
       return this.offset;
     }
-    int keywordIndex = ascii.indexOf(NL + key.keyword + SP);
+    int keywordIndex = BytesHelper.indexOf(bytes, this.offset, end, '\n',
+        key.keyword, ' ');
     if (keywordIndex < 0) {
-      keywordIndex = ascii.indexOf(NL + key.keyword + NL);
+      keywordIndex = BytesHelper.indexOf(bytes, this.offset, end, '\n',
+          key.keyword, '\n');
     }
     if (keywordIndex < 0) {
       return -1;
     } else {
-      return this.offset + keywordIndex + 1;
+      return keywordIndex + 1;
     }
   }
 
@@ -161,25 +198,25 @@ public abstract class DescriptorImpl implements Descriptor {
   protected List<int[]> splitByKey(Key key, int offset, int length,
       boolean truncateTrailingNewlines) {
     List<int[]> splitParts = new ArrayList<>();
-    String ascii = new String(this.rawDescriptorBytes, offset, length,
-        StandardCharsets.US_ASCII);
-    int from = 0;
-    while (from < length) {
-      int to = ascii.indexOf(NL + key.keyword + SP, from);
+    byte[] bytes = this.rawDescriptorBytes;
+    int end = offset + length;
+    int from = offset;
+    while (from < end) {
+      int to = BytesHelper.indexOf(bytes, from, end, '\n', key.keyword, ' ');
       if (to < 0) {
-        to = ascii.indexOf(NL + key.keyword + NL, from);
+        to = BytesHelper.indexOf(bytes, from, end, '\n', key.keyword, '\n');
       }
       if (to < 0) {
-        to = length;
+        to = end;
       } else {
         to += 1;
       }
       int toNoNewline = to;
       while (truncateTrailingNewlines && toNoNewline > from
-          && ascii.charAt(toNoNewline - 1) == '\n') {
+          && bytes[toNoNewline - 1] == '\n') {
         toNoNewline--;
       }
-      splitParts.add(new int[] { offset + from, toNoNewline - from });
+      splitParts.add(new int[] { from, toNoNewline - from });
       from = to;
     }
     return splitParts;
@@ -214,28 +251,37 @@ public abstract class DescriptorImpl implements Descriptor {
       throws DescriptorParseException {
     this(rawDescriptorBytes, offsetAndLength, descriptorFile);
     this.cutOffAnnotations();
-    this.countKeys(rawDescriptorBytes, blankLinesAllowed);
+    if (rawDescriptorBytes.length == 0) {
+      throw new DescriptorParseException("Descriptor is empty.");
+    }
+    this.blankLinesAllowed = blankLinesAllowed;
+    this.countedKeysUpTo = this.offset;
+    if (this.length > 0 && this.rawDescriptorBytes[this.offset] == '\n') {
+      this.countedKeysUpTo++;
+    }
   }
 
   /* Parse annotation lines from the descriptor bytes. */
   private List<String> annotations = new ArrayList<>();
 
   private void cutOffAnnotations() throws DescriptorParseException {
-    int start = 0;
-    String ascii = new String(this.getRawDescriptorBytes(),
-        StandardCharsets.US_ASCII);
-    while ((start == 0 && ascii.startsWith("@"))
-        || (start > 0 && ascii.indexOf(NL + "@", start - 1) >= 0)) {
-      int end = ascii.indexOf(NL, start);
-      if (end < 0) {
+    byte[] bytes = this.rawDescriptorBytes;
+    int end = this.offset + this.length;
+    int start = this.offset;
+    while ((start == this.offset && start < end && bytes[start] == '@')
+        || (start > this.offset
+        && BytesHelper.indexOf(bytes, start - 1, end, NL + "@") >= 0)) {
+      int newline = BytesHelper.indexOf(bytes, start, end, '\n');
+      if (newline < 0) {
         throw new DescriptorParseException("Annotation line does not "
             + "contain a newline.");
       }
-      this.annotations.add(ascii.substring(start, end));
-      start = end + 1;
+      this.annotations.add(new String(bytes, start, newline - start,
+          StandardCharsets.US_ASCII));
+      start = newline + 1;
     }
-    this.offset += start;
-    this.length -= start;
+    this.length -= start - this.offset;
+    this.offset = start;
   }
 
   @Override
@@ -243,49 +289,106 @@ public abstract class DescriptorImpl implements Descriptor {
     return new ArrayList<>(this.annotations);
   }
 
+  private static final String OPT_SP = Key.OPT.keyword + SP;
+
   private Key firstKey = Key.EMPTY;
 
   private Key lastKey = Key.EMPTY;
 
   private Map<Key, Integer> parsedKeys = new EnumMap<>(Key.class);
 
-  /* Count parsed keywords for consistency checks by subclasses. */
-  private void countKeys(byte[] rawDescriptorBytes,
-      boolean blankLinesAllowed) throws DescriptorParseException {
-    if (rawDescriptorBytes.length == 0) {
-      throw new DescriptorParseException("Descriptor is empty.");
+  private boolean blankLinesAllowed;
+
+  /* Index of the first byte of the first line whose keyword has not been
+   * counted yet, or -1 if keywords are not counted for this descriptor.
+   * Keywords are counted while subclasses parse lines using line cursors
+   * obtained from newLineCursor, so that descriptors are not read twice,
+   * and in any lines that subclasses skipped before running checks. */
+  private int countedKeysUpTo = -1;
+
+  private boolean skipCrypto = false;
+
+  /* Count the keyword in the line that a line cursor has just advanced to,
+   * after counting keywords in any lines that were skipped since the last
+   * counted line, unless this line has been counted before. */
+  void countKeysInLine(int lineStart, int lineEnd)
+      throws DescriptorParseException {
+    if (this.countedKeysUpTo < 0 || lineStart < this.countedKeysUpTo) {
+      return;
     }
-    boolean skipCrypto = false;
-    Scanner scanner = this.newScanner().useDelimiter(NL);
-    while (scanner.hasNext()) {
-      String line = scanner.next();
-      if (line.isEmpty() && !blankLinesAllowed) {
+    if (lineStart > this.countedKeysUpTo) {
+      this.countKeysInLines(this.countedKeysUpTo, lineStart);
+    }
+    this.countKey(lineStart, lineEnd);
+    this.countedKeysUpTo = lineEnd + 1;
+  }
+
+  /* Count keywords in all lines that have not been counted yet. */
+  private void finishCountingKeys() throws DescriptorParseException {
+    int end = this.offset + this.length;
+    if (this.countedKeysUpTo >= 0 && this.countedKeysUpTo < end) {
+      this.countKeysInLines(this.countedKeysUpTo, end);
+    }
+  }
+
+  /* Count keywords in all lines starting at index from, which must be the
+   * first byte of a line, and ending before index to. */
+  private void countKeysInLines(int from, int to)
+      throws DescriptorParseException {
+    while (from < to) {
+      int newline = BytesHelper.indexOf(this.rawDescriptorBytes, from, to,
+          '\n');
+      if (newline < 0) {
+        newline = to;
+      }
+      this.countKey(from, newline);
+      from = newline + 1;
+    }
+    this.countedKeysUpTo = Math.max(this.countedKeysUpTo, from);
+  }
+
+  /* Count the keyword in the given line for consistency checks by
+   * subclasses. */
+  private void countKey(int lineStart, int lineEnd)
+      throws DescriptorParseException {
+    byte[] bytes = this.rawDescriptorBytes;
+    if (lineStart == lineEnd) {
+      if (!this.blankLinesAllowed) {
         throw new DescriptorParseException("Blank lines are not allowed.");
-      } else if (line.startsWith(Key.CRYPTO_BEGIN.keyword)) {
-        skipCrypto = true;
-      } else if (line.startsWith(Key.CRYPTO_END.keyword)) {
-        skipCrypto = false;
-      } else if (!line.isEmpty() && !line.startsWith("@")
-          && !skipCrypto) {
-        String lineNoOpt = line.startsWith(Key.OPT.keyword + SP)
-            ? line.substring(Key.OPT.keyword.length() + 1) : line;
-        String keyword = lineNoOpt.split(SP, -1)[0];
-        if (keyword.equals("")) {
-          throw new DescriptorParseException("Illegal keyword in line '"
-              + line + "'.");
-        }
-        Key key = Key.get(keyword);
-        if (Key.EMPTY == this.firstKey) {
-          this.firstKey = key;
-        }
-        lastKey = key;
-        parsedKeys.put(key, parsedKeys.getOrDefault(key, 0) + 1);
       }
+    } else if (BytesHelper.regionMatches(bytes, lineStart, lineEnd,
+        Key.CRYPTO_BEGIN.keyword)) {
+      this.skipCrypto = true;
+    } else if (BytesHelper.regionMatches(bytes, lineStart, lineEnd,
+        Key.CRYPTO_END.keyword)) {
+      this.skipCrypto = false;
+    } else if (bytes[lineStart] != '@' && !this.skipCrypto) {
+      int keywordStart = lineStart;
+      if (BytesHelper.regionMatches(bytes, lineStart, lineEnd, OPT_SP)) {
+        keywordStart += OPT_SP.length();
+      }
+      int keywordEnd = keywordStart;
+      while (keywordEnd < lineEnd && bytes[keywordEnd] != ' ') {
+        keywordEnd++;
+      }
+      if (keywordEnd == keywordStart) {
+        throw new DescriptorParseException("Illegal keyword in line '"
+            + new String(bytes, lineStart, lineEnd - lineStart,
+            StandardCharsets.UTF_8) + "'.");
+      }
+      Key key = Key.get(new String(bytes, keywordStart,
+          keywordEnd - keywordStart, StandardCharsets.UTF_8));
+      if (Key.EMPTY == this.firstKey) {
+        this.firstKey = key;
+      }
+      this.lastKey = key;
+      this.parsedKeys.put(key, this.parsedKeys.getOrDefault(key, 0) + 1);
     }
   }
 
   protected void checkFirstKey(Key key)
       throws DescriptorParseException {
+    this.finishCountingKeys();
     if (this.firstKey != key) {
       throw new DescriptorParseException("Keyword '" + key.keyword + "' must "
           + "be contained in the first line.");
@@ -294,6 +397,7 @@ public abstract class DescriptorImpl implements Descriptor {
 
   protected void checkLastKey(Key key)
       throws DescriptorParseException {
+    this.finishCountingKeys();
     if (this.lastKey != key) {
       throw new DescriptorParseException("Keyword '" + key.keyword + "' must "
           + "be contained in the last line.");
@@ -302,6 +406,7 @@ public abstract class DescriptorImpl implements Descriptor {
 
   protected void checkExactlyOnceKeys(Set<Key> keys)
       throws DescriptorParseException {
+    this.finishCountingKeys();
     for (Key key : keys) {
       int contained = this.parsedKeys.getOrDefault(key, 0);
       if (contained != 1) {
@@ -314,6 +419,7 @@ public abstract class DescriptorImpl implements Descriptor {
 
   protected void checkAtLeastOnceKeys(Set<Key> keys)
       throws DescriptorParseException {
+    this.finishCountingKeys();
     for (Key key : keys) {
       if (!this.parsedKeys.containsKey(key)) {
         throw new DescriptorParseException("Keyword '" + key.keyword + "' is "
@@ -324,6 +430,7 @@ public abstract class DescriptorImpl implements Descriptor {
 
   protected void checkAtMostOnceKeys(Set<Key> keys)
       throws DescriptorParseException {
+    this.finishCountingKeys();
     for (Key key : keys) {
       int contained = this.parsedKeys.getOrDefault(key, 0);
       if (contained > 1) {
@@ -336,6 +443,7 @@ public abstract class DescriptorImpl implements Descriptor {
 
   protected void checkKeysDependOn(Set<Key> dependentKeys,
       Key dependingKey) throws DescriptorParseException {
+    this.finishCountingKeys();
     for (Key dependentKey : dependentKeys) {
       if (this.parsedKeys.containsKey(dependentKey)
           && !this.parsedKeys.containsKey(dependingKey)) {
@@ -346,11 +454,17 @@ public abstract class DescriptorImpl implements Descriptor {
     }
   }
 
-  protected int getKeyCount(Key key) {
+  protected int getKeyCount(Key key) throws DescriptorParseException {
+    this.finishCountingKeys();
     return this.parsedKeys.getOrDefault(key, 0);
   }
 
-  protected void clearParsedKeys() {
+  /* Count keywords in lines that have not been parsed, which includes
+   * checking them for blank lines and illegal keywords, and stop counting
+   * keywords. */
+  protected void clearParsedKeys() throws DescriptorParseException {
+    this.finishCountingKeys();
+    this.countedKeysUpTo = -1;
     this.parsedKeys = null;
   }
 
@@ -363,15 +477,9 @@ public abstract class DescriptorImpl implements Descriptor {
   protected void calculateDigestSha1Hex(String startToken, String endToken)
       throws DescriptorParseException {
     if (null == this.digestSha1Hex) {
-      String ascii = new String(this.rawDescriptorBytes, this.offset,
-          this.length, StandardCharsets.US_ASCII);
-      int start = ascii.indexOf(startToken);
-      int end = -1;
-      if (null == endToken) {
-        end = ascii.length();
-      } else if (ascii.contains(endToken)) {
-        end = ascii.indexOf(endToken) + endToken.length();
-      }
+      int[] startAndEnd = this.findDigestRange(startToken, endToken);
+      int start = startAndEnd[0];
+      int end = startAndEnd[1];
       if (start >= 0 && end >= 0 && end > start) {
         this.digestSha1Hex = Hex.encodeHexString(
             messageDigest("SHA-1", start, end)).toLowerCase();
@@ -383,10 +491,30 @@ public abstract class DescriptorImpl implements Descriptor {
     }
   }
 
+  /* Return the index of the first occurrence of startToken and the index
+   * following the first occurrence of endToken, or the end of the descriptor
+   * if endToken is null, where either index is -1 if not found. */
+  private int[] findDigestRange(String startToken, String endToken) {
+    int descriptorEnd = this.offset + this.length;
+    int start = BytesHelper.indexOf(this.rawDescriptorBytes, this.offset,
+        descriptorEnd, startToken);
+    int end = -1;
+    if (null == endToken) {
+      end = descriptorEnd;
+    } else {
+      int endTokenIndex = BytesHelper.indexOf(this.rawDescriptorBytes,
+          this.offset, descriptorEnd, endToken);
+      if (endTokenIndex >= 0) {
+        end = endTokenIndex + endToken.length();
+      }
+    }
+    return new int[] { start, end };
+  }
+
   private byte[] messageDigest(String alg, int start, int end) {
     try {
       MessageDigest md = MessageDigest.getInstance(alg);
-      md.update(this.rawDescriptorBytes, this.offset + start, end - start);
+      md.update(this.rawDescriptorBytes, start, end - start);
       return md.digest();
     } catch (NoSuchAlgorithmException e) {
       throw new RuntimeException(e);
@@ -406,15 +534,9 @@ public abstract class DescriptorImpl implements Descriptor {
   protected void calculateDigestSha256Base64(String startToken,
       String endToken) throws DescriptorParseException {
     if (null == this.digestSha256Base64) {
-      String ascii = new String(this.rawDescriptorBytes, this.offset,
-          this.length, StandardCharsets.US_ASCII);
-      int start = ascii.indexOf(startToken);
-      int end = -1;
-      if (null == endToken) {
-        end = ascii.length();
-      } else if (ascii.contains(endToken)) {
-        end = ascii.indexOf(endToken) + endToken.length();
-      }
+      int[] startAndEnd = this.findDigestRange(startToken, endToken);
+      int start = startAndEnd[0];
+      int end = startAndEnd[1];
       if (start >= 0 && end >= 0 && end > start) {
         this.digestSha256Base64 = Base64.encodeBase64String(
             messageDigest("SHA-256", start, end)).replaceAll("=", "");
@@ -3,29 +3,65 @@
 
 package org.torproject.descriptor.impl;
 
-import static org.torproject.descriptor.impl.DescriptorImpl.NL;
-import static org.torproject.descriptor.impl.DescriptorImpl.SP;
-
 import org.torproject.descriptor.Descriptor;
 import org.torproject.descriptor.DescriptorParseException;
 import org.torproject.descriptor.DescriptorParser;
 import org.torproject.descriptor.log.LogDescriptorImpl;
+import org.torproject.descriptor.log.WebServerAccessLogImpl;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class DescriptorParserImpl implements DescriptorParser {
 
   private static final Logger log
       = LoggerFactory.getLogger(DescriptorParserImpl.class);
 
+  private boolean lazyParsing = false;
+
+  @Override
+  public void setLazyParsing(boolean lazyParsing) {
+    this.lazyParsing = lazyParsing;
+  }
+
+  private boolean compactStatusEntries = false;
+
+  @Override
+  public void setCompactStatusEntries(boolean compactStatusEntries) {
+    this.compactStatusEntries = compactStatusEntries;
+  }
+
+  /* Requested descriptor types, or null if all types are requested. */
+  private Set<Class<? extends Descriptor>> descriptorTypes = null;
+
+  @Override
+  public void setDescriptorTypes(
+      Set<Class<? extends Descriptor>> descriptorTypes) {
+    this.descriptorTypes = null == descriptorTypes ? null
+        : new HashSet<>(descriptorTypes);
+  }
+
+  /* Return whether descriptors of the given implementation class are of at
+   * least one of the requested types. */
+  boolean isRequested(Class<?> descriptorClass) {
+    if (null == this.descriptorTypes) {
+      return true;
+    }
+    for (Class<? extends Descriptor> descriptorType : this.descriptorTypes) {
+      if (descriptorType.isAssignableFrom(descriptorClass)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public Iterable<Descriptor> parseDescriptors(byte[] rawDescriptorBytes,
       File sourceFile, String fileName) {
@@ -35,203 +71,208 @@ public class DescriptorParserImpl implements DescriptorParser {
     } catch (DescriptorParseException e) {
       log.debug("Cannot parse descriptor file '{}'.", sourceFile, e);
       List<Descriptor> parsedDescriptors = new ArrayList<>();
+      if (!this.isRequested(UnparseableDescriptorImpl.class)) {
+        return parsedDescriptors;
+      }
       parsedDescriptors.add(new UnparseableDescriptorImpl(rawDescriptorBytes,
           new int[] { 0, rawDescriptorBytes.length }, sourceFile, e));
       return parsedDescriptors;
     }
   }
 
+  @Override
+  public Iterable<Descriptor> parseDescriptors(InputStream inputStream,
+      File sourceFile, String fileName) {
+    return new StreamingDescriptorIterator(this, inputStream, sourceFile,
+        fileName);
+  }
+
   private List<Descriptor> detectTypeAndParseDescriptors(
       byte[] rawDescriptorBytes, File sourceFile, String fileName)
       throws DescriptorParseException {
-    byte[] first100Chars = new byte[Math.min(100,
-        rawDescriptorBytes.length)];
-    System.arraycopy(rawDescriptorBytes, 0, first100Chars, 0,
-        first100Chars.length);
-    String firstLines = new String(first100Chars);
-    if (firstLines.startsWith("@type network-status-consensus-3 1.")
-        || firstLines.startsWith(
-        "@type network-status-microdesc-consensus-3 1.")
-        || ((firstLines.startsWith(
-        Key.NETWORK_STATUS_VERSION.keyword + SP + "3")
-        || firstLines.contains(
-        NL + Key.NETWORK_STATUS_VERSION.keyword + SP + "3"))
-        && firstLines.contains(
-        NL + Key.VOTE_STATUS.keyword + SP + "consensus" + NL))) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.NETWORK_STATUS_VERSION, RelayNetworkStatusConsensusImpl.class);
-    } else if (firstLines.startsWith("@type network-status-vote-3 1.")
-        || ((firstLines.startsWith(
-        Key.NETWORK_STATUS_VERSION.keyword + SP + "3" + NL)
-        || firstLines.contains(
-        NL + Key.NETWORK_STATUS_VERSION.keyword + SP + "3" + NL))
-        && firstLines.contains(
-        NL + Key.VOTE_STATUS.keyword + SP + "vote" + NL))) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.NETWORK_STATUS_VERSION, RelayNetworkStatusVoteImpl.class);
-    } else if (firstLines.startsWith("@type bridge-network-status 1.")
-        || firstLines.startsWith(Key.R.keyword + SP)) {
-      List<Descriptor> parsedDescriptors = new ArrayList<>();
-      parsedDescriptors.add(new BridgeNetworkStatusImpl(
-          rawDescriptorBytes, new int[] { 0, rawDescriptorBytes.length },
-          sourceFile, fileName));
-      return parsedDescriptors;
-    } else if (firstLines.startsWith("@type bridge-server-descriptor 1.")) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.ROUTER, BridgeServerDescriptorImpl.class);
-    } else if (firstLines.startsWith("@type server-descriptor 1.")
-        || firstLines.startsWith(Key.ROUTER.keyword + SP)
-        || firstLines.contains(NL + Key.ROUTER.keyword + SP)) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.ROUTER, RelayServerDescriptorImpl.class);
-    } else if (firstLines.startsWith("@type bridge-extra-info 1.")) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.EXTRA_INFO, BridgeExtraInfoDescriptorImpl.class);
-    } else if (firstLines.startsWith("@type extra-info 1.")
-        || firstLines.startsWith(Key.EXTRA_INFO.keyword + SP)
-        || firstLines.contains(NL + Key.EXTRA_INFO.keyword + SP)) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.EXTRA_INFO, RelayExtraInfoDescriptorImpl.class);
-    } else if (firstLines.startsWith("@type microdescriptor 1.")
-        || firstLines.startsWith(Key.ONION_KEY.keyword + NL)
-        || firstLines.contains(NL + Key.ONION_KEY.keyword + NL)) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.ONION_KEY, MicrodescriptorImpl.class);
-    } else if (firstLines.startsWith("@type bridge-pool-assignment 1.")
-        || firstLines.startsWith(Key.BRIDGE_POOL_ASSIGNMENT.keyword + SP)
-        || firstLines.contains(NL + Key.BRIDGE_POOL_ASSIGNMENT.keyword + SP)) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.BRIDGE_POOL_ASSIGNMENT, BridgePoolAssignmentImpl.class);
-    } else if (firstLines.startsWith("@type dir-key-certificate-3 1.")
-        || firstLines.startsWith(Key.DIR_KEY_CERTIFICATE_VERSION.keyword + SP)
-        || firstLines.contains(
-        NL + Key.DIR_KEY_CERTIFICATE_VERSION.keyword + SP)) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.DIR_KEY_CERTIFICATE_VERSION, DirectoryKeyCertificateImpl.class);
-    } else if (firstLines.startsWith("@type tordnsel 1.")
-        || firstLines.startsWith("ExitNode" + SP)
-        || firstLines.contains(NL + "ExitNode" + SP)) {
-      List<Descriptor> parsedDescriptors = new ArrayList<>();
-      parsedDescriptors.add(new ExitListImpl(rawDescriptorBytes, sourceFile,
-          fileName));
-      return parsedDescriptors;
-    } else if (firstLines.startsWith("@type network-status-2 1.")
-        || firstLines.startsWith(
-        Key.NETWORK_STATUS_VERSION.keyword + SP + "2" + NL)
-        || firstLines.contains(
-        NL + Key.NETWORK_STATUS_VERSION.keyword + SP + "2" + NL)) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.NETWORK_STATUS_VERSION, RelayNetworkStatusImpl.class);
-    } else if (firstLines.startsWith("@type directory 1.")
-        || firstLines.startsWith(Key.SIGNED_DIRECTORY.keyword + NL)
-        || firstLines.contains(NL + Key.SIGNED_DIRECTORY.keyword + NL)) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.SIGNED_DIRECTORY, RelayDirectoryImpl.class);
-    } else if (firstLines.startsWith("@type torperf 1.")) {
-      return TorperfResultImpl.parseTorperfResults(rawDescriptorBytes,
-          sourceFile);
-    } else if (firstLines.startsWith("@type snowflake-stats 1.")
-        || firstLines.startsWith(Key.SNOWFLAKE_STATS_END.keyword + SP)
-        || firstLines.contains(NL + Key.SNOWFLAKE_STATS_END.keyword + SP)) {
-      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
-          Key.SNOWFLAKE_STATS_END, SnowflakeStatsImpl.class);
-    } else if (fileName.contains(LogDescriptorImpl.MARKER)) {
-      return LogDescriptorImpl.parse(rawDescriptorBytes, sourceFile, fileName);
-    } else if (firstLines.startsWith("@type bandwidth-file 1.")
-        || firstLines.matches("(?s)[0-9]{10}\\n.*")) {
-      /* Identifying bandwidth files by a 10-digit timestamp in the first line
-       * breaks with files generated before 2002 or after 2286 and when the next
-       * descriptor identifier starts with just a timestamp in the first line
-       * rather than a document type identifier. */
-      List<Descriptor> parsedDescriptors = new ArrayList<>();
-      parsedDescriptors.add(new BandwidthFileImpl(rawDescriptorBytes,
-          sourceFile));
-      return parsedDescriptors;
-    } else {
+    if (!DescriptorFactories.registeredFactories().isEmpty()) {
+      DescriptorFactory registeredFactory
+          = DescriptorFactories.findRegisteredFactory(rawDescriptorBytes);
+      if (null != registeredFactory) {
+        return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
+            registeredFactory);
+      }
+    }
+    DescriptorTypeDetector.Type type = DescriptorTypeDetector.detect(
+        rawDescriptorBytes, fileName);
+    if (null == type) {
       throw new DescriptorParseException("Could not detect descriptor "
-          + "type in descriptor starting with '" + firstLines + "'.");
+          + "type in descriptor starting with '" + new String(
+          rawDescriptorBytes, 0, Math.min(DescriptorTypeDetector.WINDOW_LENGTH,
+          rawDescriptorBytes.length)) + "'.");
+    }
+    DescriptorFactory factory = splittingFactory(type);
+    if (null != factory) {
+      return this.parseOneOrMoreDescriptors(rawDescriptorBytes, sourceFile,
+          factory);
+    }
+    List<Descriptor> parsedDescriptors = new ArrayList<>();
+    switch (type) {
+      case BRIDGE_NETWORK_STATUS:
+        if (!this.isRequested(BridgeNetworkStatusImpl.class)) {
+          return parsedDescriptors;
+        }
+        BridgeNetworkStatusImpl bridgeNetworkStatus
+            = new BridgeNetworkStatusImpl(rawDescriptorBytes,
+            new int[] { 0, rawDescriptorBytes.length }, sourceFile, fileName);
+        if (this.compactStatusEntries) {
+          bridgeNetworkStatus.compactStatusEntries();
+        }
+        parsedDescriptors.add(bridgeNetworkStatus);
+        return parsedDescriptors;
+      case EXIT_LIST:
+        if (!this.isRequested(ExitListImpl.class)) {
+          return parsedDescriptors;
+        }
+        parsedDescriptors.add(new ExitListImpl(rawDescriptorBytes, sourceFile,
+            fileName));
+        return parsedDescriptors;
+      case TORPERF_RESULT:
+        if (!this.isRequested(TorperfResultImpl.class)) {
+          return parsedDescriptors;
+        }
+        return TorperfResultImpl.parseTorperfResults(rawDescriptorBytes,
+            sourceFile);
+      case WEB_SERVER_ACCESS_LOG:
+        if (!this.isRequested(WebServerAccessLogImpl.class)) {
+          return parsedDescriptors;
+        }
+        return LogDescriptorImpl.parse(rawDescriptorBytes, sourceFile,
+            fileName);
+      case BANDWIDTH_FILE:
+      default:
+        if (!this.isRequested(BandwidthFileImpl.class)) {
+          return parsedDescriptors;
+        }
+        parsedDescriptors.add(new BandwidthFileImpl(rawDescriptorBytes,
+            sourceFile));
+        return parsedDescriptors;
     }
   }
 
-  private List<Descriptor> parseOneOrMoreDescriptors(byte[] rawDescriptorBytes,
-      File sourceFile, Key key,
-      Class<? extends DescriptorImpl> descriptorClass) {
+  /* Return the factory of descriptors of the given type if descriptor files
+   * of that type are split into descriptors at a keyword, or null
+   * otherwise. */
+  static DescriptorFactory splittingFactory(DescriptorTypeDetector.Type type) {
+    switch (type) {
+      case RELAY_NETWORK_STATUS_CONSENSUS:
+        return DescriptorFactories.RELAY_NETWORK_STATUS_CONSENSUS;
+      case RELAY_NETWORK_STATUS_VOTE:
+        return DescriptorFactories.RELAY_NETWORK_STATUS_VOTE;
+      case BRIDGE_SERVER_DESCRIPTOR:
+        return DescriptorFactories.BRIDGE_SERVER_DESCRIPTOR;
+      case RELAY_SERVER_DESCRIPTOR:
+        return DescriptorFactories.RELAY_SERVER_DESCRIPTOR;
+      case BRIDGE_EXTRA_INFO_DESCRIPTOR:
+        return DescriptorFactories.BRIDGE_EXTRA_INFO_DESCRIPTOR;
+      case RELAY_EXTRA_INFO_DESCRIPTOR:
+        return DescriptorFactories.RELAY_EXTRA_INFO_DESCRIPTOR;
+      case MICRODESCRIPTOR:
+        return DescriptorFactories.MICRODESCRIPTOR;
+      case BRIDGE_POOL_ASSIGNMENT:
+        return DescriptorFactories.BRIDGE_POOL_ASSIGNMENT;
+      case DIRECTORY_KEY_CERTIFICATE:
+        return DescriptorFactories.DIRECTORY_KEY_CERTIFICATE;
+      case RELAY_NETWORK_STATUS:
+        return DescriptorFactories.RELAY_NETWORK_STATUS;
+      case RELAY_DIRECTORY:
+        return DescriptorFactories.RELAY_DIRECTORY;
+      case SNOWFLAKE_STATS:
+        return DescriptorFactories.SNOWFLAKE_STATS;
+      default:
+        return null;
+    }
+  }
+
+  /* Split the given raw descriptor bytes into descriptors in a single
+   * forward scan over line starts, and parse them.  A descriptor starts with
+   * any annotation lines preceding its first line starting with the keyword,
+   * and it ends before the next line starting with an annotation or with the
+   * keyword.  Lines before the first keyword line are included in the first
+   * descriptor, and lines after the last keyword line that start with an
+   * annotation are skipped. */
+  List<Descriptor> parseOneOrMoreDescriptors(byte[] rawDescriptorBytes,
+      File sourceFile, DescriptorFactory factory) {
     List<Descriptor> parsedDescriptors = new ArrayList<>();
-    Constructor<? extends DescriptorImpl> constructor;
-    try {
-      constructor = descriptorClass.getDeclaredConstructor(byte[].class,
-          int[].class, File.class);
-    } catch (NoSuchMethodException e) {
-      throw new RuntimeException(e);
+    if (!this.isRequested(factory.getDescriptorClass())) {
+      return parsedDescriptors;
     }
-    int startAnnotations = 0;
+    String keyword = factory.getKeyword();
     int endAllDescriptors = rawDescriptorBytes.length;
-    String ascii = new String(rawDescriptorBytes, StandardCharsets.US_ASCII);
-    boolean containsAnnotations = ascii.startsWith("@")
-        || ascii.contains(NL + "@");
-    while (startAnnotations < endAllDescriptors) {
-      int startDescriptor;
-      if (startAnnotations == ascii.indexOf(key.keyword + SP,
-          startAnnotations) || startAnnotations == ascii.indexOf(
-          key.keyword + NL)) {
-        startDescriptor = startAnnotations;
-      } else {
-        startDescriptor = ascii.indexOf(NL + key.keyword + SP,
-            startAnnotations - 1);
-        if (startDescriptor < 0) {
-          startDescriptor = ascii.indexOf(NL + key.keyword + NL,
-              startAnnotations - 1);
-        }
-        if (startDescriptor < 0) {
-          break;
-        } else {
-          startDescriptor += 1;
-        }
-      }
-      int endDescriptor = -1;
-      if (containsAnnotations) {
-        endDescriptor = ascii.indexOf(NL + "@", startDescriptor);
-      }
-      if (endDescriptor < 0) {
-        endDescriptor = ascii.indexOf(NL + key.keyword + SP, startDescriptor);
-      }
-      if (endDescriptor < 0) {
-        endDescriptor = ascii.indexOf(NL + key.keyword + NL, startDescriptor);
-      }
-      if (endDescriptor < 0) {
-        endDescriptor = endAllDescriptors - 1;
+    int startAnnotations = 0;
+    boolean foundKeywordLine = false;
+    int lineStart = 0;
+    while (lineStart < endAllDescriptors) {
+      boolean keywordLine = isKeywordLine(rawDescriptorBytes, lineStart,
+          endAllDescriptors, keyword);
+      if (foundKeywordLine && (keywordLine
+          || rawDescriptorBytes[lineStart] == '@')) {
+        this.addDescriptor(parsedDescriptors, rawDescriptorBytes,
+            new int[] { startAnnotations, lineStart - startAnnotations },
+            sourceFile, factory);
+        startAnnotations = lineStart;
+        foundKeywordLine = false;
       }
-      endDescriptor += 1;
-      int[] offsetAndLength = new int[] { startAnnotations,
-          endDescriptor - startAnnotations };
-      try {
-        parsedDescriptors.add(this.parseOneDescriptor(rawDescriptorBytes,
-            offsetAndLength, sourceFile, constructor));
-      } catch (DescriptorParseException e) {
-        parsedDescriptors.add(new UnparseableDescriptorImpl(
-            rawDescriptorBytes, offsetAndLength, sourceFile, e));
+      foundKeywordLine |= keywordLine;
+      int newline = BytesHelper.indexOf(rawDescriptorBytes, lineStart,
+          endAllDescriptors, '\n');
+      if (newline < 0) {
+        break;
       }
-      startAnnotations = endDescriptor;
+      lineStart = newline + 1;
+    }
+    if (foundKeywordLine) {
+      this.addDescriptor(parsedDescriptors, rawDescriptorBytes,
+          new int[] { startAnnotations,
+          endAllDescriptors - startAnnotations }, sourceFile, factory);
     }
     return parsedDescriptors;
   }
 
-  Descriptor parseOneDescriptor(byte[] rawDescriptorBytes,
-      int[] offsetAndLength, File sourceFile,
-      Constructor<? extends DescriptorImpl> constructor)
-      throws DescriptorParseException {
+  /* Return whether the line starting at the given index starts with the
+   * given keyword followed by a space or newline. */
+  private static boolean isKeywordLine(byte[] rawDescriptorBytes,
+      int lineStart, int end, String keyword) {
+    int afterKeyword = lineStart + keyword.length();
+    return afterKeyword < end && (rawDescriptorBytes[afterKeyword] == ' '
+        || rawDescriptorBytes[afterKeyword] == '\n')
+        && BytesHelper.regionMatches(rawDescriptorBytes, lineStart, end,
+        keyword);
+  }
+
+  /* Add a lazily parsed, parsed, or unparseable descriptor for the given
+   * part of the raw descriptor bytes. */
+  private void addDescriptor(List<Descriptor> parsedDescriptors,
+      byte[] rawDescriptorBytes, int[] offsetAndLength, File sourceFile,
+      DescriptorFactory factory) {
+    if (this.lazyParsing) {
+      parsedDescriptors.add(LazyDescriptorHandler.newHandle(
+          rawDescriptorBytes, offsetAndLength, sourceFile, factory,
+          this.compactStatusEntries));
+      return;
+    }
     try {
-      return constructor.newInstance(rawDescriptorBytes, offsetAndLength,
-          sourceFile);
-    } catch (InvocationTargetException e) {
-      if (null != e.getCause()
-          && e.getCause() instanceof DescriptorParseException) {
-        throw (DescriptorParseException) e.getCause();
-      } else {
-        throw new RuntimeException(e);
-      }
-    } catch (InstantiationException | IllegalAccessException e) {
-      throw new RuntimeException(e);
+      parsedDescriptors.add(parseOneDescriptor(rawDescriptorBytes,
+          offsetAndLength, sourceFile, factory, this.compactStatusEntries));
+    } catch (DescriptorParseException e) {
+      parsedDescriptors.add(new UnparseableDescriptorImpl(
+          rawDescriptorBytes, offsetAndLength, sourceFile, e));
+    }
+  }
+
+  static Descriptor parseOneDescriptor(byte[] rawDescriptorBytes,
+      int[] offsetAndLength, File sourceFile, DescriptorFactory factory,
+      boolean compactStatusEntries) throws DescriptorParseException {
+    DescriptorImpl descriptor = factory.newDescriptor(rawDescriptorBytes,
+        offsetAndLength, sourceFile);
+    if (compactStatusEntries && descriptor instanceof NetworkStatusImpl) {
+      ((NetworkStatusImpl) descriptor).compactStatusEntries();
     }
+    return descriptor;
   }
 }
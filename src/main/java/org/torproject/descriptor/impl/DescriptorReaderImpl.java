@@ -11,25 +11,35 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
+import java.util.SortedSet;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DescriptorReaderImpl implements DescriptorReader {
 
@@ -51,6 +61,17 @@ public class DescriptorReaderImpl implements DescriptorReader {
     this.manualSaveHistoryFile = historyFile;
   }
 
+  private boolean appendToHistoryFile = false;
+
+  @Override
+  public void setAppendToHistoryFile(boolean appendToHistoryFile) {
+    if (this.hasStartedReading) {
+      throw new IllegalStateException("Reconfiguration is not permitted "
+          + "after starting to read.");
+    }
+    this.appendToHistoryFile = appendToHistoryFile;
+  }
+
   private SortedMap<String, Long> excludedFiles;
 
   @Override
@@ -91,6 +112,111 @@ public class DescriptorReaderImpl implements DescriptorReader {
     this.maxDescriptorsInQueue = maxDescriptorsInQueue;
   }
 
+  private int numParserThreads = 1;
+
+  @Override
+  public void setNumParserThreads(int numParserThreads) {
+    if (this.hasStartedReading) {
+      throw new IllegalStateException("Reconfiguration is not permitted "
+          + "after starting to read.");
+    }
+    if (numParserThreads < 1) {
+      throw new IllegalArgumentException("Number of parser threads must be "
+          + "positive.");
+    }
+    this.numParserThreads = numParserThreads;
+  }
+
+  private boolean keepFileOrder = true;
+
+  @Override
+  public void setKeepFileOrder(boolean keepFileOrder) {
+    if (this.hasStartedReading) {
+      throw new IllegalStateException("Reconfiguration is not permitted "
+          + "after starting to read.");
+    }
+    this.keepFileOrder = keepFileOrder;
+  }
+
+  private int numDecompressionThreads = 1;
+
+  @Override
+  public void setNumDecompressionThreads(int numDecompressionThreads) {
+    if (this.hasStartedReading) {
+      throw new IllegalStateException("Reconfiguration is not permitted "
+          + "after starting to read.");
+    }
+    if (numDecompressionThreads < 1) {
+      throw new IllegalArgumentException("Number of decompression threads "
+          + "must be positive.");
+    }
+    this.numDecompressionThreads = numDecompressionThreads;
+  }
+
+  private boolean memoryMapFiles = false;
+
+  @Override
+  public void setMemoryMapFiles(boolean memoryMapFiles) {
+    if (this.hasStartedReading) {
+      throw new IllegalStateException("Reconfiguration is not permitted "
+          + "after starting to read.");
+    }
+    this.memoryMapFiles = memoryMapFiles;
+  }
+
+  private boolean lazyParsing = false;
+
+  @Override
+  public void setLazyParsing(boolean lazyParsing) {
+    if (this.hasStartedReading) {
+      throw new IllegalStateException("Reconfiguration is not permitted "
+          + "after starting to read.");
+    }
+    this.lazyParsing = lazyParsing;
+  }
+
+  private Set<Class<? extends Descriptor>> descriptorTypes = null;
+
+  @Override
+  public void setDescriptorTypes(
+      Set<Class<? extends Descriptor>> descriptorTypes) {
+    if (this.hasStartedReading) {
+      throw new IllegalStateException("Reconfiguration is not permitted "
+          + "after starting to read.");
+    }
+    this.descriptorTypes = descriptorTypes;
+  }
+
+  private boolean compactStatusEntries = false;
+
+  @Override
+  public void setCompactStatusEntries(boolean compactStatusEntries) {
+    if (this.hasStartedReading) {
+      throw new IllegalStateException("Reconfiguration is not permitted "
+          + "after starting to read.");
+    }
+    this.compactStatusEntries = compactStatusEntries;
+  }
+
+  private File parsedDescriptorCacheDirectory = null;
+
+  private long maxParsedDescriptorCacheBytes;
+
+  @Override
+  public void setParsedDescriptorCache(File cacheDirectory,
+      long maxCacheBytes) {
+    if (this.hasStartedReading) {
+      throw new IllegalStateException("Reconfiguration is not permitted "
+          + "after starting to read.");
+    }
+    if (maxCacheBytes < 1L) {
+      throw new IllegalArgumentException("Maximum cache size must be "
+          + "positive.");
+    }
+    this.parsedDescriptorCacheDirectory = cacheDirectory;
+    this.maxParsedDescriptorCacheBytes = maxCacheBytes;
+  }
+
   private DescriptorReaderRunnable reader;
 
   @Override
@@ -103,7 +229,12 @@ public class DescriptorReaderImpl implements DescriptorReader {
     BlockingIteratorImpl<Descriptor> descriptorQueue =
         new BlockingIteratorImpl<>(this.maxDescriptorsInQueue);
     this.reader = new DescriptorReaderRunnable(descriptorFiles, descriptorQueue,
-        this.manualSaveHistoryFile, this.excludedFiles);
+        this.manualSaveHistoryFile, this.appendToHistoryFile,
+        this.excludedFiles, this.numParserThreads,
+        this.keepFileOrder, this.numDecompressionThreads, this.memoryMapFiles,
+        this.lazyParsing, this.descriptorTypes, this.compactStatusEntries,
+        this.parsedDescriptorCacheDirectory,
+        this.maxParsedDescriptorCacheBytes);
     Thread readerThread = new Thread(this.reader);
     readerThread.setDaemon(true);
     readerThread.start();
@@ -139,16 +270,254 @@ public class DescriptorReaderImpl implements DescriptorReader {
 
     private boolean hasFinishedReading = false;
 
+    /* Pool of parser threads, or null if descriptors are parsed by the reader
+     * thread itself. */
+    private ExecutorService parserPool;
+
+    private boolean keepFileOrder;
+
+    /* Maximum number of files or tarball entries that have been read but
+     * whose descriptors have not yet been added to the descriptor queue. */
+    private int maxPendingFiles;
+
+    /* Parse result of a file or tarball entry that is handed over to a parser
+     * thread, together with the file or tarball it belongs to. */
+    private static class PendingParseResult {
+
+      private final Future<Iterable<Descriptor>> descriptors;
+
+      private final FileInProgress fileInProgress;
+
+      private PendingParseResult(Future<Iterable<Descriptor>> descriptors,
+          FileInProgress fileInProgress) {
+        this.descriptors = descriptors;
+        this.fileInProgress = fileInProgress;
+      }
+    }
+
+    /* File or tarball whose descriptors are being read, parsed, and added to
+     * the descriptor queue, possibly by parser threads, which is committed to
+     * the cache of parsed descriptors once all its descriptors have been
+     * added to the queue, and recorded in the appended history once the
+     * queue has handed out its last descriptor. */
+    private class FileInProgress {
+
+      private final File file;
+
+      private final long lastModifiedMillis;
+
+      /* Writer of the cache entry for this file, or null if parsed
+       * descriptors are not cached. */
+      private final ParsedDescriptorCache.Writer cacheWriter;
+
+      /* Number of batches of descriptors, one per file or tarball entry, that
+       * have been handed over for parsing but not yet added to the queue. */
+      private int pendingBatches;
+
+      private boolean finishedReading;
+
+      private boolean aborted;
+
+      /* Most recently parsed descriptor of this file that has not been added
+       * to the queue yet, which is held back until either another descriptor
+       * of this file is parsed or the file is complete, so that the file can
+       * be recorded in the history when this descriptor is handed out. */
+      private Descriptor heldBackDescriptor;
+
+      private FileInProgress(File file) {
+        this.file = file;
+        this.lastModifiedMillis = file.lastModified();
+        this.cacheWriter = null == parsedDescriptorCache ? null
+            : parsedDescriptorCache.newWriter(file);
+      }
+
+      private synchronized void expectBatch() {
+        this.pendingBatches++;
+      }
+
+      /* Add a batch of parsed descriptors to the descriptor queue and to the
+       * cache entry, if any, holding back the last descriptor of the batch
+       * and releasing a previously held back descriptor before any other
+       * descriptor, so that descriptors keep their order. */
+      private void addBatch(Iterable<Descriptor> descriptors) {
+        Descriptor previous = null;
+        for (Descriptor descriptor : descriptors) {
+          if (null == previous) {
+            this.releaseHeldBackDescriptor();
+          } else {
+            descriptorQueue.add(previous);
+          }
+          previous = descriptor;
+        }
+        if (null != this.cacheWriter) {
+          this.cacheWriter.writeBatch(descriptors);
+        }
+        synchronized (this) {
+          if (null != previous) {
+            this.releaseHeldBackDescriptor();
+            if (this.aborted) {
+              descriptorQueue.add(previous);
+            } else {
+              this.heldBackDescriptor = previous;
+            }
+          }
+          this.pendingBatches--;
+          this.completeIfDone();
+        }
+      }
+
+      private synchronized void releaseHeldBackDescriptor() {
+        if (null != this.heldBackDescriptor) {
+          descriptorQueue.add(this.heldBackDescriptor);
+          this.heldBackDescriptor = null;
+        }
+      }
+
+      /* Announce that the file has been read completely and that no further
+       * batches are going to be handed over for parsing. */
+      private synchronized void finishReading() {
+        this.finishedReading = true;
+        this.completeIfDone();
+      }
+
+      /* Give up on this file after failing to read it. */
+      private synchronized void abort() {
+        this.aborted = true;
+        this.releaseHeldBackDescriptor();
+        if (null != this.cacheWriter) {
+          this.cacheWriter.abort();
+        }
+      }
+
+      private void completeIfDone() {
+        if (this.aborted || !this.finishedReading || this.pendingBatches > 0) {
+          return;
+        }
+        if (null != this.cacheWriter) {
+          this.cacheWriter.commit();
+        }
+        addLastDescriptor(this.heldBackDescriptor, this.file,
+            this.lastModifiedMillis);
+        this.heldBackDescriptor = null;
+      }
+    }
+
+    /* Parse results in the order of files and tarball entries, only used when
+     * keeping file order. */
+    private Deque<PendingParseResult> pendingParseResults = new ArrayDeque<>();
+
+    /* Permits for files or tarball entries that may be handed over to parser
+     * threads, only used when not keeping file order. */
+    private Semaphore pendingFilePermits;
+
+    /* Largest array size that is safe to allocate on most JVMs. */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /* Reused buffer per tarball thread for reading tarball entries of
+     * unknown size. */
+    private ThreadLocal<byte[]> tarEntryBuffers =
+        ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+    /* Number of bytes read from tarball entries. */
+    private AtomicLong tarballBytesRead = new AtomicLong();
+
+    /* Number of bytes from tarball entries that had to be copied once more
+     * after reading them, because the entry size was unknown or wrong. */
+    private AtomicLong tarballBytesCopied = new AtomicLong();
+
+    /* Number of decompression threads, or 1 if tarballs are decompressed by
+     * the thread reading them. */
+    private int numDecompressionThreads;
+
+    /* Pool of threads decompressing blocks of xz-compressed tarballs, or null
+     * if tarballs are decompressed by the thread reading them. */
+    private ExecutorService decompressionPool;
+
+    /* Pool of threads reading tarballs at the same time, or null if tarballs
+     * are read one after the other by the reader thread. */
+    private ExecutorService tarballPool;
+
+    /* Whether to read tarballs by mapping them into memory. */
+    private boolean memoryMapFiles;
+
+    /* Cache of parsed descriptors, or null if parsed descriptors are not
+     * cached. */
+    private ParsedDescriptorCache parsedDescriptorCache;
+
+    /* Whether to append lines to the history file while reading. */
+    private boolean appendToHistoryFile;
+
+    /* History file that lines are appended to while reading, or null if
+     * lines are not appended, which is accessed by the thread consuming
+     * descriptors, too. */
+    private volatile HistoryFile appendedHistory;
+
     private DescriptorReaderRunnable(File[] descriptorFiles,
         BlockingIteratorImpl<Descriptor> descriptorQueue,
-        File manualSaveHistoryFile, SortedMap<String, Long> excludedFiles) {
+        File manualSaveHistoryFile, boolean appendToHistoryFile,
+        SortedMap<String, Long> excludedFiles, int numParserThreads,
+        boolean keepFileOrder,
+        int numDecompressionThreads, boolean memoryMapFiles,
+        boolean lazyParsing,
+        Set<Class<? extends Descriptor>> descriptorTypes,
+        boolean compactStatusEntries, File parsedDescriptorCacheDirectory,
+        long maxParsedDescriptorCacheBytes) {
       this.descriptorFiles = descriptorFiles;
       this.descriptorQueue = descriptorQueue;
       this.manualSaveHistoryFile = manualSaveHistoryFile;
       if (excludedFiles != null) {
         this.excludedFilesBefore = excludedFiles;
       }
+      this.appendToHistoryFile = appendToHistoryFile;
       this.descriptorParser = new DescriptorParserImpl();
+      this.descriptorParser.setLazyParsing(lazyParsing);
+      this.descriptorParser.setDescriptorTypes(descriptorTypes);
+      this.descriptorParser.setCompactStatusEntries(compactStatusEntries);
+      if (numParserThreads > 1) {
+        this.parserPool = Executors.newFixedThreadPool(numParserThreads,
+            DescriptorReaderRunnable::newDaemonThread);
+        this.keepFileOrder = keepFileOrder;
+        this.maxPendingFiles = 2 * numParserThreads;
+        this.pendingFilePermits = new Semaphore(this.maxPendingFiles);
+      }
+      this.numDecompressionThreads = numDecompressionThreads;
+      this.memoryMapFiles = memoryMapFiles;
+      if (numDecompressionThreads > 1) {
+        this.decompressionPool = Executors.newFixedThreadPool(
+            numDecompressionThreads, DescriptorReaderRunnable::newDaemonThread);
+        if (!keepFileOrder) {
+          this.tarballPool = Executors.newFixedThreadPool(
+              numDecompressionThreads,
+              DescriptorReaderRunnable::newDaemonThread);
+        }
+      }
+      if (null != parsedDescriptorCacheDirectory) {
+        this.parsedDescriptorCache = new ParsedDescriptorCache(
+            parsedDescriptorCacheDirectory, maxParsedDescriptorCacheBytes,
+            "lazyParsing=" + lazyParsing + " compactStatusEntries="
+            + compactStatusEntries + " descriptorTypes="
+            + describeTypes(descriptorTypes));
+      }
+    }
+
+    /* Return a stable description of the given descriptor types for telling
+     * apart cache entries written with different type settings. */
+    private static String describeTypes(
+        Set<Class<? extends Descriptor>> descriptorTypes) {
+      if (null == descriptorTypes) {
+        return "all";
+      }
+      SortedSet<String> typeNames = new TreeSet<>();
+      for (Class<? extends Descriptor> descriptorType : descriptorTypes) {
+        typeNames.add(descriptorType.getName());
+      }
+      return String.join(",", typeNames);
+    }
+
+    private static Thread newDaemonThread(Runnable runnable) {
+      Thread thread = new Thread(runnable);
+      thread.setDaemon(true);
+      return thread;
     }
 
     public void run() {
@@ -156,64 +525,216 @@ public class DescriptorReaderImpl implements DescriptorReader {
         this.readOldHistory(this.manualSaveHistoryFile);
         this.readDescriptorFiles();
         this.readTarballs();
+        this.finishParsing();
         this.hasFinishedReading = true;
       } catch (Throwable t) {
         log.error("Bug: uncaught exception or error while reading descriptors.",
             t);
       } finally {
+        for (ExecutorService pool : new ExecutorService[] { this.parserPool,
+            this.decompressionPool, this.tarballPool }) {
+          if (null != pool) {
+            pool.shutdownNow();
+          }
+        }
+        if (null != this.parsedDescriptorCache) {
+          this.parsedDescriptorCache.abortOpenWriters();
+        }
         if (null != this.descriptorQueue) {
-          this.descriptorQueue.setOutOfDescriptors();
+          this.descriptorQueue.setOutOfDescriptors(this.hasFinishedReading
+              ? this::finishAppendingToHistory : null);
+        }
+      }
+    }
+
+    /* Parse descriptors contained in a file or tarball entry and add them to
+     * the descriptor queue, either right away or by handing them over to a
+     * parser thread. */
+    private void parseDescriptors(byte[] rawDescriptorBytes, File sourceFile,
+        String fileName, FileInProgress fileInProgress)
+        throws InterruptedException, ExecutionException {
+      fileInProgress.expectBatch();
+      if (null == this.parserPool) {
+        fileInProgress.addBatch(this.descriptorParser.parseDescriptors(
+            rawDescriptorBytes, sourceFile, fileName));
+      } else if (this.keepFileOrder) {
+        if (this.pendingParseResults.size() >= this.maxPendingFiles) {
+          this.addNextParseResult();
+        }
+        this.pendingParseResults.add(new PendingParseResult(
+            this.parserPool.submit(() -> this.descriptorParser
+            .parseDescriptors(rawDescriptorBytes, sourceFile, fileName)),
+            fileInProgress));
+      } else {
+        this.pendingFilePermits.acquire();
+        this.parserPool.execute(() -> {
+          try {
+            fileInProgress.addBatch(this.descriptorParser.parseDescriptors(
+                rawDescriptorBytes, sourceFile, fileName));
+          } catch (Throwable t) {
+            log.error("Bug: uncaught exception or error while parsing "
+                + "descriptors.", t);
+          } finally {
+            this.pendingFilePermits.release();
+          }
+        });
+      }
+    }
+
+    /* Wait for the oldest pending parse result and add its descriptors to the
+     * descriptor queue. */
+    private void addNextParseResult()
+        throws InterruptedException, ExecutionException {
+      PendingParseResult pendingParseResult =
+          this.pendingParseResults.remove();
+      pendingParseResult.fileInProgress.addBatch(
+          pendingParseResult.descriptors.get());
+    }
+
+    /* Add descriptors parsed from the given file or tarball from the cache to
+     * the descriptor queue and return true, or return false if the cache
+     * does not contain descriptors parsed from the file in its current
+     * version or if the cache entry turns out to be corrupt.  The entry is
+     * read completely before adding any of its descriptors, so that a
+     * corrupt entry does not hand out some of the descriptors before the
+     * file is parsed again. */
+    private boolean readCachedDescriptors(File file)
+        throws InterruptedException, ExecutionException {
+      if (null == this.parsedDescriptorCache) {
+        return false;
+      }
+      List<Descriptor[]> batches = new ArrayList<>();
+      try (ParsedDescriptorCache.Reader cacheReader =
+          this.parsedDescriptorCache.openReader(file)) {
+        if (null == cacheReader) {
+          return false;
+        }
+        Descriptor[] descriptors;
+        while (null != (descriptors = cacheReader.readBatch())) {
+          batches.add(descriptors);
+        }
+      } catch (IOException e) {
+        log.warn("Discarding corrupt cache entry for {} and parsing it "
+            + "again.", file, e);
+        return false;
+      }
+      while (!this.pendingParseResults.isEmpty()) {
+        this.addNextParseResult();
+      }
+      Descriptor previous = null;
+      for (Descriptor[] descriptors : batches) {
+        for (Descriptor descriptor : descriptors) {
+          if (null != previous) {
+            this.descriptorQueue.add(previous);
+          }
+          previous = descriptor;
         }
       }
+      this.addLastDescriptor(previous, file, file.lastModified());
+      return true;
     }
 
+    /* Add the last descriptor of the given file or tarball to the descriptor
+     * queue and append a line for the file to the history file when that
+     * descriptor is handed out, or right away if the file did not contain
+     * any descriptors. */
+    private void addLastDescriptor(Descriptor descriptor, File file,
+        long lastModifiedMillis) {
+      if (null == descriptor) {
+        this.appendToHistory(file, lastModifiedMillis);
+      } else if (null == this.appendedHistory) {
+        this.descriptorQueue.add(descriptor);
+      } else {
+        this.descriptorQueue.add(descriptor,
+            () -> this.appendToHistory(file, lastModifiedMillis));
+      }
+    }
+
+    /* Append a line for the given file to the history file, if lines are
+     * appended while reading, and stop appending if that fails. */
+    private void appendToHistory(File file, long lastModifiedMillis) {
+      HistoryFile history = this.appendedHistory;
+      if (null == history) {
+        return;
+      }
+      try {
+        history.append(file.getAbsolutePath(), lastModifiedMillis);
+      } catch (IOException e) {
+        log.warn("Trouble appending to history file.", e);
+        this.appendedHistory = null;
+      }
+    }
+
+    /* Wait until parser threads have parsed all files and tarball entries
+     * handed over to them. */
+    private void finishParsing()
+        throws InterruptedException, ExecutionException {
+      if (null == this.parserPool) {
+        return;
+      }
+      while (!this.pendingParseResults.isEmpty()) {
+        this.addNextParseResult();
+      }
+      this.pendingFilePermits.acquire(this.maxPendingFiles);
+    }
+
+    /* Read the history file, if any, and exclude files that have not changed
+     * since they were last read, and open the history file for appending
+     * lines while reading if requested. */
     private void readOldHistory(File historyFile) {
-      if (historyFile == null || !historyFile.exists()) {
+      if (historyFile == null) {
         return;
       }
-      List<String> lines;
       try {
-        lines = Files.readAllLines(historyFile.toPath(),
-            StandardCharsets.UTF_8);
-        for (String line : lines) {
-          if (!line.contains(" ")) {
-            log.warn("Unexpected line structure in old history: {}", line);
-            continue;
-          }
-          long lastModifiedMillis = Long.parseLong(line.substring(0,
-              line.indexOf(" ")));
-          String absolutePath = line.substring(line.indexOf(" ") + 1);
-          this.excludedFilesBefore.put(absolutePath, lastModifiedMillis);
+        if (this.appendToHistoryFile) {
+          this.appendedHistory = new HistoryFile(historyFile);
+          this.excludedFilesBefore.putAll(this.appendedHistory.getEntries());
+        } else if (historyFile.exists()) {
+          HistoryFile.read(historyFile, this.excludedFilesBefore);
         }
-      } catch (IOException | NumberFormatException e) {
+      } catch (IOException e) {
         log.warn("Trouble reading given history file {}.", historyFile, e);
       }
     }
 
+    /* Return files and last modified times of files that have been parsed or
+     * excluded from parsing. */
+    private SortedMap<String, Long> newHistory() {
+      SortedMap<String, Long> newHistory = new TreeMap<>();
+      newHistory.putAll(this.excludedFilesAfter);
+      newHistory.putAll(this.parsedFilesAfter);
+      return newHistory;
+    }
+
     private void writeNewHistory(File historyFile) {
       if (historyFile == null) {
         return;
       }
-      if (historyFile.getParentFile() != null) {
-        historyFile.getParentFile().mkdirs();
-      }
-      try (BufferedWriter bw = Files.newBufferedWriter(historyFile.toPath(),
-          StandardCharsets.UTF_8)) {
-        SortedMap<String, Long> newHistory = new TreeMap<>();
-        newHistory.putAll(this.excludedFilesAfter);
-        newHistory.putAll(this.parsedFilesAfter);
-        for (Map.Entry<String, Long> e : newHistory.entrySet()) {
-          String absolutePath = e.getKey();
-          String lastModifiedMillis = String.valueOf(e.getValue());
-          bw.write(lastModifiedMillis + " " + absolutePath);
-          bw.newLine();
-        }
+      try {
+        HistoryFile.write(historyFile, this.newHistory());
       } catch (IOException e) {
         log.warn("Trouble writing new history file '{}'.",
             historyFile, e);
       }
     }
 
+    /* Replace the history file that lines have been appended to with one that
+     * contains only the files that have been parsed or excluded from
+     * parsing, just like a newly written history file, once the last
+     * descriptor has been handed out. */
+    private void finishAppendingToHistory() {
+      HistoryFile history = this.appendedHistory;
+      if (null == history) {
+        return;
+      }
+      this.appendedHistory = null;
+      try {
+        history.rewrite(this.newHistory());
+      } catch (IOException e) {
+        log.warn("Trouble rewriting history file.", e);
+      }
+    }
+
     private void readDescriptorFiles() {
       if (null == this.descriptorFiles) {
         return;
@@ -242,18 +763,21 @@ public class DescriptorReaderImpl implements DescriptorReader {
                 || file.getName().endsWith(".tar.xz")) {
               tarballs.add(file);
               continue;
-            } else {
+            } else if (!this.readCachedDescriptors(file)) {
               this.readDescriptorFile(file);
             }
             this.parsedFilesAfter.put(absolutePath, lastModifiedMillis);
           } catch (IOException e) {
             log.warn("Unable to read descriptor file {}.", file, e);
+          } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
           }
         }
       }
     }
 
-    private void readTarballs() {
+    private void readTarballs() throws InterruptedException,
+        ExecutionException {
       if (this.tarballs.isEmpty()) {
         return;
       }
@@ -261,75 +785,171 @@ public class DescriptorReaderImpl implements DescriptorReader {
       for (File tarball : this.tarballs) {
         total += tarball.length();
       }
-      long progress = 0L;
-      for (File tarball : this.tarballs) {
-        try {
+      final long totalBytes = total;
+      AtomicLong progress = new AtomicLong();
+      if (null == this.tarballPool) {
+        for (File tarball : this.tarballs) {
+          this.readTarballAndLogProgress(tarball, progress, totalBytes);
+        }
+      } else {
+        List<Future<?>> readTarballs = new ArrayList<>();
+        for (File tarball : this.tarballs) {
+          readTarballs.add(this.tarballPool.submit(() -> {
+            this.readTarballAndLogProgress(tarball, progress, totalBytes);
+            return null;
+          }));
+        }
+        for (Future<?> readTarball : readTarballs) {
+          readTarball.get();
+        }
+      }
+      statisticsLog.info("Read {} bytes from tarball entries, of which {} "
+          + "bytes were copied once more.", this.tarballBytesRead.get(),
+          this.tarballBytesCopied.get());
+    }
+
+    private void readTarballAndLogProgress(File tarball, AtomicLong progress,
+        long total) throws InterruptedException, ExecutionException {
+      try {
+        if (!this.readCachedDescriptors(tarball)) {
           this.readTarball(tarball);
+        }
+        synchronized (this.parsedFilesAfter) {
           this.parsedFilesAfter.put(tarball.getAbsolutePath(),
               tarball.lastModified());
-        } catch (IOException e) {
-          log.warn("Unable to read tarball {}.", tarball, e);
-        }
-        long previousPercentDone = 100L * progress / total;
-        progress += tarball.length();
-        long percentDone = 100L * progress / total;
-        if (percentDone > previousPercentDone) {
-          statisticsLog.info("Finished reading {}% of tarball bytes.",
-              percentDone);
         }
+      } catch (IOException e) {
+        log.warn("Unable to read tarball {}.", tarball, e);
+      }
+      long length = tarball.length();
+      long previousProgress = progress.getAndAdd(length);
+      long previousPercentDone = 100L * previousProgress / total;
+      long percentDone = 100L * (previousProgress + length) / total;
+      if (percentDone > previousPercentDone) {
+        statisticsLog.info("Finished reading {}% of tarball bytes.",
+            percentDone);
       }
     }
 
-    private void readTarball(File file) throws IOException {
-      try (FileInputStream in = new FileInputStream(file)) {
+    private void readTarball(File file)
+        throws IOException, InterruptedException, ExecutionException {
+      final long startedNanos = System.nanoTime();
+      long uncompressedBytes = 0L;
+      try (InputStream in = this.memoryMapFiles
+          ? new MappedFileInputStream(file) : new FileInputStream(file)) {
         if (in.available() <= 0) {
           return;
         }
         TarArchiveInputStream tais;
         if (file.getName().endsWith(".tar.bz2")) {
-          tais = new TarArchiveInputStream(new BZip2CompressorInputStream(in));
+          tais = new TarArchiveInputStream(new BZip2CompressorInputStream(
+              new BufferedInputStream(in)));
         } else if (file.getName().endsWith(".tar.xz")) {
-          tais = new TarArchiveInputStream(new XZCompressorInputStream(in));
+          tais = new TarArchiveInputStream(this.newXzInputStream(file, in));
         } else if (file.getName().endsWith(".tar")) {
           tais = new TarArchiveInputStream(in);
         } else {
           return;
         }
-        try (BufferedInputStream bis = new BufferedInputStream(tais)) {
+        FileInProgress fileInProgress = new FileInProgress(file);
+        try {
           TarArchiveEntry tae;
           while ((tae = tais.getNextTarEntry()) != null) {
             if (tae.isDirectory()) {
               continue;
             }
-            try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-              int len;
-              byte[] data = new byte[1024];
-              while ((len = bis.read(data, 0, 1024)) >= 0) {
-                baos.write(data, 0, len);
-              }
-              byte[] rawDescriptorBytes = baos.toByteArray();
-              if (rawDescriptorBytes.length < 1) {
-                continue;
-              }
-              String fileName = tae.getName().substring(
-                      tae.getName().lastIndexOf("/") + 1);
-              for (Descriptor descriptor :
-                      this.descriptorParser.parseDescriptors(
-                      rawDescriptorBytes, file, fileName)) {
-                this.descriptorQueue.add(descriptor);
-              }
+            byte[] rawDescriptorBytes = this.readTarEntry(tais, tae);
+            uncompressedBytes += rawDescriptorBytes.length;
+            if (rawDescriptorBytes.length < 1) {
+              continue;
             }
+            String fileName = tae.getName().substring(
+                    tae.getName().lastIndexOf("/") + 1);
+            this.parseDescriptors(rawDescriptorBytes, file, fileName,
+                fileInProgress);
           }
+          fileInProgress.finishReading();
+        } catch (IOException e) {
+          fileInProgress.abort();
+          throw e;
+        } finally {
+          tais.close();
         }
       }
+      long elapsedNanos = Math.max(1L, System.nanoTime() - startedNanos);
+      statisticsLog.info("Read tarball {} with {} compressed and {} "
+          + "uncompressed bytes in {} millis ({} MB/s compressed, {} MB/s "
+          + "uncompressed).", file, file.length(), uncompressedBytes,
+          elapsedNanos / 1_000_000L,
+          String.format("%.1f", 1e3 * file.length() / elapsedNanos),
+          String.format("%.1f", 1e3 * uncompressedBytes / elapsedNanos));
     }
 
-    private void readDescriptorFile(File file) throws IOException {
-      byte[] rawDescriptorBytes = Files.readAllBytes(file.toPath());
-      for (Descriptor descriptor : this.descriptorParser.parseDescriptors(
-          rawDescriptorBytes, file, file.getName())) {
-        this.descriptorQueue.add(descriptor);
+    /* Return a stream for decompressing the given xz-compressed tarball,
+     * either block by block in parallel if there are multiple decompression
+     * threads and the tarball consists of multiple blocks, or sequentially
+     * from the given input stream. */
+    private InputStream newXzInputStream(File file, InputStream in)
+        throws IOException {
+      if (null != this.decompressionPool) {
+        int blockCount = ParallelXzInputStream.countBlocks(file);
+        if (blockCount > 1) {
+          return new ParallelXzInputStream(file, blockCount,
+              this.decompressionPool, this.numDecompressionThreads);
+        }
+      }
+      return new XZCompressorInputStream(new BufferedInputStream(in));
+    }
+
+    /* Read the current tarball entry directly into an array of the size
+     * given in the entry header, or, if that size is unknown, via a reused
+     * buffer that grows as needed. */
+    private byte[] readTarEntry(TarArchiveInputStream tais,
+        TarArchiveEntry tae) throws IOException {
+      long size = tae.getSize();
+      if (size >= 0L && size <= MAX_ARRAY_SIZE) {
+        byte[] rawDescriptorBytes = new byte[(int) size];
+        int read = IOUtils.readFully(tais, rawDescriptorBytes);
+        this.tarballBytesRead.addAndGet(read);
+        if (read < rawDescriptorBytes.length) {
+          this.tarballBytesCopied.addAndGet(read);
+          return Arrays.copyOf(rawDescriptorBytes, read);
+        }
+        return rawDescriptorBytes;
+      }
+      byte[] tarEntryBuffer = this.tarEntryBuffers.get();
+      int length = 0;
+      int read;
+      while ((read = tais.read(tarEntryBuffer, length,
+          tarEntryBuffer.length - length)) >= 0) {
+        length += read;
+        if (length == tarEntryBuffer.length) {
+          if (length >= MAX_ARRAY_SIZE) {
+            throw new IOException("Tarball entry " + tae.getName()
+                + " is too large to be read into memory.");
+          }
+          tarEntryBuffer = Arrays.copyOf(tarEntryBuffer,
+              (int) Math.min(2L * length, MAX_ARRAY_SIZE));
+          this.tarEntryBuffers.set(tarEntryBuffer);
+        }
       }
+      this.tarballBytesRead.addAndGet(length);
+      this.tarballBytesCopied.addAndGet(length);
+      return Arrays.copyOf(tarEntryBuffer, length);
+    }
+
+    /* Read a descriptor file into an array and parse it.  Descriptor files
+     * are read without mapping them into memory, even if requested, because
+     * parsers need the whole file in an array anyway, and copying a mapped
+     * file into an array of the same size only adds mapping overhead to
+     * reading it. */
+    private void readDescriptorFile(File file)
+        throws IOException, InterruptedException, ExecutionException {
+      byte[] rawDescriptorBytes = Files.readAllBytes(file.toPath());
+      FileInProgress fileInProgress = new FileInProgress(file);
+      this.parseDescriptors(rawDescriptorBytes, file, file.getName(),
+          fileInProgress);
+      fileInProgress.finishReading();
     }
   }
 }
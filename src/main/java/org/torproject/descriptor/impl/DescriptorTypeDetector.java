@@ -0,0 +1,279 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import static org.torproject.descriptor.impl.DescriptorImpl.NL;
+import static org.torproject.descriptor.impl.DescriptorImpl.SP;
+
+import org.torproject.descriptor.log.LogDescriptorImpl;
+
+/**
+ * Detector of the descriptor type of raw descriptor bytes, which only looks
+ * at the first bytes and which neither copies nor decodes them.
+ *
+ * <p>Raw descriptor bytes starting with a known type annotation are
+ * detected by walking a byte trie of type annotations.  All other raw
+ * descriptor bytes are detected by walking a byte trie of keywords from the
+ * start of each line in the first {@link #WINDOW_LENGTH} bytes, which
+ * yields the set of keywords found at the start of the first line and at
+ * the start of any later line, and by checking that set for keywords of
+ * descriptor types in a fixed order.  Web server access logs are detected by
+ * their file name, and bandwidth files without type annotation by a
+ * 10-digit timestamp in the first line.</p>
+ */
+final class DescriptorTypeDetector {
+
+  /* Detected descriptor types. */
+  enum Type {
+    RELAY_NETWORK_STATUS_CONSENSUS, RELAY_NETWORK_STATUS_VOTE,
+    BRIDGE_NETWORK_STATUS, BRIDGE_SERVER_DESCRIPTOR, RELAY_SERVER_DESCRIPTOR,
+    BRIDGE_EXTRA_INFO_DESCRIPTOR, RELAY_EXTRA_INFO_DESCRIPTOR,
+    MICRODESCRIPTOR, BRIDGE_POOL_ASSIGNMENT, DIRECTORY_KEY_CERTIFICATE,
+    EXIT_LIST, RELAY_NETWORK_STATUS, RELAY_DIRECTORY, TORPERF_RESULT,
+    SNOWFLAKE_STATS, WEB_SERVER_ACCESS_LOG, BANDWIDTH_FILE
+  }
+
+  /* Number of bytes at the start of raw descriptor bytes that are searched
+   * for keywords. */
+  static final int WINDOW_LENGTH = 100;
+
+  /* Node of a byte trie, with children in parallel arrays of labels and
+   * nodes, because most nodes have a single child. */
+  private static final class Node {
+
+    private byte[] labels = new byte[0];
+
+    private Node[] children = new Node[0];
+
+    /* Value of the string ending at this node, or -1 if no string ends
+     * here. */
+    private int value = -1;
+
+    private Node child(byte label) {
+      for (int i = 0; i < this.labels.length; i++) {
+        if (this.labels[i] == label) {
+          return this.children[i];
+        }
+      }
+      return null;
+    }
+
+    private void add(String ascii, int value) {
+      Node node = this;
+      for (int i = 0; i < ascii.length(); i++) {
+        byte label = (byte) ascii.charAt(i);
+        Node child = node.child(label);
+        if (null == child) {
+          child = new Node();
+          int children = node.labels.length;
+          byte[] labels = new byte[children + 1];
+          System.arraycopy(node.labels, 0, labels, 0, children);
+          labels[children] = label;
+          Node[] nodes = new Node[children + 1];
+          System.arraycopy(node.children, 0, nodes, 0, children);
+          nodes[children] = child;
+          node.labels = labels;
+          node.children = nodes;
+        }
+        node = child;
+      }
+      node.value = value;
+    }
+  }
+
+  private static final Node ANNOTATIONS = new Node();
+
+  private static void addAnnotation(String typeAnnotation, Type type) {
+    ANNOTATIONS.add(typeAnnotation, type.ordinal());
+  }
+
+  static {
+    addAnnotation("@type network-status-consensus-3 1.",
+        Type.RELAY_NETWORK_STATUS_CONSENSUS);
+    addAnnotation("@type network-status-microdesc-consensus-3 1.",
+        Type.RELAY_NETWORK_STATUS_CONSENSUS);
+    addAnnotation("@type network-status-vote-3 1.",
+        Type.RELAY_NETWORK_STATUS_VOTE);
+    addAnnotation("@type bridge-network-status 1.",
+        Type.BRIDGE_NETWORK_STATUS);
+    addAnnotation("@type bridge-server-descriptor 1.",
+        Type.BRIDGE_SERVER_DESCRIPTOR);
+    addAnnotation("@type server-descriptor 1.",
+        Type.RELAY_SERVER_DESCRIPTOR);
+    addAnnotation("@type bridge-extra-info 1.",
+        Type.BRIDGE_EXTRA_INFO_DESCRIPTOR);
+    addAnnotation("@type extra-info 1.", Type.RELAY_EXTRA_INFO_DESCRIPTOR);
+    addAnnotation("@type microdescriptor 1.", Type.MICRODESCRIPTOR);
+    addAnnotation("@type bridge-pool-assignment 1.",
+        Type.BRIDGE_POOL_ASSIGNMENT);
+    addAnnotation("@type dir-key-certificate-3 1.",
+        Type.DIRECTORY_KEY_CERTIFICATE);
+    addAnnotation("@type tordnsel 1.", Type.EXIT_LIST);
+    addAnnotation("@type network-status-2 1.", Type.RELAY_NETWORK_STATUS);
+    addAnnotation("@type directory 1.", Type.RELAY_DIRECTORY);
+    addAnnotation("@type torperf 1.", Type.TORPERF_RESULT);
+    addAnnotation("@type snowflake-stats 1.", Type.SNOWFLAKE_STATS);
+    addAnnotation("@type bandwidth-file 1.", Type.BANDWIDTH_FILE);
+  }
+
+  /* Bits of keywords found at the start of a line. */
+  private static final int NETWORK_STATUS_VERSION_3 = 0;
+
+  private static final int NETWORK_STATUS_VERSION_3_NL = 1;
+
+  private static final int VOTE_STATUS_CONSENSUS = 2;
+
+  private static final int VOTE_STATUS_VOTE = 3;
+
+  private static final int R = 4;
+
+  private static final int ROUTER = 5;
+
+  private static final int EXTRA_INFO = 6;
+
+  private static final int ONION_KEY = 7;
+
+  private static final int BRIDGE_POOL_ASSIGNMENT = 8;
+
+  private static final int DIR_KEY_CERTIFICATE_VERSION = 9;
+
+  private static final int EXIT_NODE = 10;
+
+  private static final int NETWORK_STATUS_VERSION_2 = 11;
+
+  private static final int SIGNED_DIRECTORY = 12;
+
+  private static final int SNOWFLAKE_STATS_END = 13;
+
+  private static final Node KEYWORDS = new Node();
+
+  static {
+    KEYWORDS.add(Key.NETWORK_STATUS_VERSION.keyword + SP + "3",
+        NETWORK_STATUS_VERSION_3);
+    KEYWORDS.add(Key.NETWORK_STATUS_VERSION.keyword + SP + "3" + NL,
+        NETWORK_STATUS_VERSION_3_NL);
+    KEYWORDS.add(Key.VOTE_STATUS.keyword + SP + "consensus" + NL,
+        VOTE_STATUS_CONSENSUS);
+    KEYWORDS.add(Key.VOTE_STATUS.keyword + SP + "vote" + NL,
+        VOTE_STATUS_VOTE);
+    KEYWORDS.add(Key.R.keyword + SP, R);
+    KEYWORDS.add(Key.ROUTER.keyword + SP, ROUTER);
+    KEYWORDS.add(Key.EXTRA_INFO.keyword + SP, EXTRA_INFO);
+    KEYWORDS.add(Key.ONION_KEY.keyword + NL, ONION_KEY);
+    KEYWORDS.add(Key.BRIDGE_POOL_ASSIGNMENT.keyword + SP,
+        BRIDGE_POOL_ASSIGNMENT);
+    KEYWORDS.add(Key.DIR_KEY_CERTIFICATE_VERSION.keyword + SP,
+        DIR_KEY_CERTIFICATE_VERSION);
+    KEYWORDS.add("ExitNode" + SP, EXIT_NODE);
+    KEYWORDS.add(Key.NETWORK_STATUS_VERSION.keyword + SP + "2" + NL,
+        NETWORK_STATUS_VERSION_2);
+    KEYWORDS.add(Key.SIGNED_DIRECTORY.keyword + NL, SIGNED_DIRECTORY);
+    KEYWORDS.add(Key.SNOWFLAKE_STATS_END.keyword + SP, SNOWFLAKE_STATS_END);
+  }
+
+  private static final Type[] TYPES = Type.values();
+
+  private DescriptorTypeDetector() {
+  }
+
+  /* Return the descriptor type of the given raw descriptor bytes read from
+   * a file with the given name, or null if the type cannot be detected. */
+  static Type detect(byte[] rawDescriptorBytes, String fileName) {
+    int end = Math.min(WINDOW_LENGTH, rawDescriptorBytes.length);
+    if (end > 0 && rawDescriptorBytes[0] == '@') {
+      int annotatedType = findAnnotation(rawDescriptorBytes, end);
+      if (annotatedType >= 0) {
+        return TYPES[annotatedType];
+      }
+    }
+    int atStart = findKeywords(rawDescriptorBytes, 0, end);
+    int afterNewline = 0;
+    for (int i = 0; i < end - 1; i++) {
+      if (rawDescriptorBytes[i] == '\n') {
+        afterNewline |= findKeywords(rawDescriptorBytes, i + 1, end);
+      }
+    }
+    int atLineStart = atStart | afterNewline;
+    if (contains(atLineStart, NETWORK_STATUS_VERSION_3)
+        && contains(afterNewline, VOTE_STATUS_CONSENSUS)) {
+      return Type.RELAY_NETWORK_STATUS_CONSENSUS;
+    } else if (contains(atLineStart, NETWORK_STATUS_VERSION_3_NL)
+        && contains(afterNewline, VOTE_STATUS_VOTE)) {
+      return Type.RELAY_NETWORK_STATUS_VOTE;
+    } else if (contains(atStart, R)) {
+      return Type.BRIDGE_NETWORK_STATUS;
+    } else if (contains(atLineStart, ROUTER)) {
+      return Type.RELAY_SERVER_DESCRIPTOR;
+    } else if (contains(atLineStart, EXTRA_INFO)) {
+      return Type.RELAY_EXTRA_INFO_DESCRIPTOR;
+    } else if (contains(atLineStart, ONION_KEY)) {
+      return Type.MICRODESCRIPTOR;
+    } else if (contains(atLineStart, BRIDGE_POOL_ASSIGNMENT)) {
+      return Type.BRIDGE_POOL_ASSIGNMENT;
+    } else if (contains(atLineStart, DIR_KEY_CERTIFICATE_VERSION)) {
+      return Type.DIRECTORY_KEY_CERTIFICATE;
+    } else if (contains(atLineStart, EXIT_NODE)) {
+      return Type.EXIT_LIST;
+    } else if (contains(atLineStart, NETWORK_STATUS_VERSION_2)) {
+      return Type.RELAY_NETWORK_STATUS;
+    } else if (contains(atLineStart, SIGNED_DIRECTORY)) {
+      return Type.RELAY_DIRECTORY;
+    } else if (contains(atLineStart, SNOWFLAKE_STATS_END)) {
+      return Type.SNOWFLAKE_STATS;
+    } else if (fileName.contains(LogDescriptorImpl.MARKER)) {
+      return Type.WEB_SERVER_ACCESS_LOG;
+    } else if (startsWithTimestampLine(rawDescriptorBytes, end)) {
+      /* Identifying bandwidth files by a 10-digit timestamp in the first line
+       * breaks with files generated before 2002 or after 2286 and when the next
+       * descriptor identifier starts with just a timestamp in the first line
+       * rather than a document type identifier. */
+      return Type.BANDWIDTH_FILE;
+    } else {
+      return null;
+    }
+  }
+
+  private static boolean contains(int keywords, int keyword) {
+    return (keywords & (1 << keyword)) != 0;
+  }
+
+  /* Return the value of the type annotation at the start of the given bytes,
+   * or -1 if they don't start with a known type annotation. */
+  private static int findAnnotation(byte[] bytes, int end) {
+    Node node = ANNOTATIONS;
+    for (int i = 0; i < end && null != node; i++) {
+      node = node.child(bytes[i]);
+      if (null != node && node.value >= 0) {
+        return node.value;
+      }
+    }
+    return -1;
+  }
+
+  /* Return the bits of all keywords starting at the given index, without
+   * reading beyond index end. */
+  private static int findKeywords(byte[] bytes, int start, int end) {
+    int keywords = 0;
+    Node node = KEYWORDS;
+    for (int i = start; i < end && null != node; i++) {
+      node = node.child(bytes[i]);
+      if (null != node && node.value >= 0) {
+        keywords |= 1 << node.value;
+      }
+    }
+    return keywords;
+  }
+
+  private static boolean startsWithTimestampLine(byte[] bytes, int end) {
+    if (end < 11 || bytes[10] != '\n') {
+      return false;
+    }
+    for (int i = 0; i < 10; i++) {
+      if (bytes[i] < '0' || bytes[i] > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
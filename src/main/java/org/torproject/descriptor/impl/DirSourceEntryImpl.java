@@ -9,13 +9,15 @@ import static org.torproject.descriptor.impl.DescriptorImpl.SP;
 import org.torproject.descriptor.DescriptorParseException;
 import org.torproject.descriptor.DirSourceEntry;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.Scanner;
 import java.util.Set;
 
-public class DirSourceEntryImpl implements DirSourceEntry {
+public class DirSourceEntryImpl implements DirSourceEntry, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private DescriptorImpl parent;
 
@@ -87,37 +89,35 @@ public class DirSourceEntryImpl implements DirSourceEntry {
     /* We need to pass this.offset and this.length, because the overloaded
      * method without arguments would use this.parent.offset and
      * this.parent.length as bounds, which is not what we want! */
-    try (Scanner scanner = this.parent.newScanner(this.offset, this.length)
-        .useDelimiter(NL)) {
-      boolean skipCrypto = false;
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        String[] parts = line.split(SP);
-        Key key = Key.get(parts[0]);
-        switch (key) {
-          case DIR_SOURCE:
-            this.parseDirSourceLine(line);
-            break;
-          case CONTACT:
-            this.parseContactLine(line);
-            break;
-          case VOTE_DIGEST:
-            this.parseVoteDigestLine(line);
-            break;
-          case CRYPTO_BEGIN:
-            skipCrypto = true;
-            break;
-          case CRYPTO_END:
-            skipCrypto = false;
-            break;
-          default:
-            if (!skipCrypto) {
-              if (this.unrecognizedLines == null) {
-                this.unrecognizedLines = new ArrayList<>();
-              }
-              this.unrecognizedLines.add(line);
+    LineCursor lines = this.parent.newLineCursor(this.offset, this.length);
+    boolean skipCrypto = false;
+    while (lines.hasNext()) {
+      String line = lines.next();
+      String[] parts = line.split(SP);
+      Key key = Key.get(parts[0]);
+      switch (key) {
+        case DIR_SOURCE:
+          this.parseDirSourceLine(line);
+          break;
+        case CONTACT:
+          this.parseContactLine(line);
+          break;
+        case VOTE_DIGEST:
+          this.parseVoteDigestLine(line);
+          break;
+        case CRYPTO_BEGIN:
+          skipCrypto = true;
+          break;
+        case CRYPTO_END:
+          skipCrypto = false;
+          break;
+        default:
+          if (!skipCrypto) {
+            if (this.unrecognizedLines == null) {
+              this.unrecognizedLines = new ArrayList<>();
             }
-        }
+            this.unrecognizedLines.add(line);
+          }
       }
     }
   }
@@ -6,6 +6,7 @@ package org.torproject.descriptor.impl;
 import org.torproject.descriptor.DescriptorParseException;
 import org.torproject.descriptor.ExitList;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -14,7 +15,9 @@ import java.util.Scanner;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
-public class ExitListEntryImpl implements ExitList.Entry {
+public class ExitListEntryImpl implements ExitList.Entry, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private String exitListEntryString;
 
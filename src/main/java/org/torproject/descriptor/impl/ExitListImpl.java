@@ -12,17 +12,19 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Scanner;
 import java.util.Set;
 import java.util.TimeZone;
 
 public class ExitListImpl extends DescriptorImpl implements ExitList {
 
+  private static final long serialVersionUID = 1L;
+
   protected ExitListImpl(byte[] rawDescriptorBytes, File descriptorfile,
       String fileName) throws DescriptorParseException {
     super(rawDescriptorBytes, new int[] { 0, rawDescriptorBytes.length },
         descriptorfile, false);
     this.splitAndParseExitListEntries();
+    this.clearParsedKeys();
     this.setPublishedMillisFromFileName(fileName);
   }
 
@@ -48,53 +50,52 @@ public class ExitListImpl extends DescriptorImpl implements ExitList {
 
   private void splitAndParseExitListEntries()
       throws DescriptorParseException {
-    try (Scanner scanner = this.newScanner().useDelimiter(EOL)) {
-      StringBuilder sb = new StringBuilder();
-      boolean firstEntry = true;
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        if (line.startsWith("@")) { /* Skip annotation. */
-          if (!scanner.hasNext()) {
-            throw new DescriptorParseException("Descriptor is empty.");
+    LineCursor lines = this.newLineCursor();
+    StringBuilder sb = new StringBuilder();
+    boolean firstEntry = true;
+    while (lines.hasNext()) {
+      String line = lines.next();
+      if (line.startsWith("@")) { /* Skip annotation. */
+        if (!lines.hasNext()) {
+          throw new DescriptorParseException("Descriptor is empty.");
+        } else {
+          line = lines.next();
+        }
+      }
+      String[] parts = line.split(" ");
+      String keyword = parts[0];
+      switch (keyword) {
+        case "Downloaded":
+          this.downloadedMillis = ParseHelper.parseTimestampAtIndex(line,
+                  parts, 1, 2);
+          break;
+        case "ExitNode":
+          if (!firstEntry) {
+            this.parseExitListEntry(sb.toString());
           } else {
-            line = scanner.next();
+            firstEntry = false;
           }
-        }
-        String[] parts = line.split(" ");
-        String keyword = parts[0];
-        switch (keyword) {
-          case "Downloaded":
-            this.downloadedMillis = ParseHelper.parseTimestampAtIndex(line,
-                    parts, 1, 2);
-            break;
-          case "ExitNode":
-            if (!firstEntry) {
-              this.parseExitListEntry(sb.toString());
-            } else {
-              firstEntry = false;
-            }
-            sb = new StringBuilder();
-            sb.append(line).append(ExitList.EOL);
-            break;
-          case "Published":
-            sb.append(line).append(ExitList.EOL);
-            break;
-          case "LastStatus":
-            sb.append(line).append(ExitList.EOL);
-            break;
-          case "ExitAddress":
-            sb.append(line).append(ExitList.EOL);
-            break;
-          default:
-            if (this.unrecognizedLines == null) {
-              this.unrecognizedLines = new ArrayList<>();
-            }
-            this.unrecognizedLines.add(line);
-        }
+          sb = new StringBuilder();
+          sb.append(line).append(ExitList.EOL);
+          break;
+        case "Published":
+          sb.append(line).append(ExitList.EOL);
+          break;
+        case "LastStatus":
+          sb.append(line).append(ExitList.EOL);
+          break;
+        case "ExitAddress":
+          sb.append(line).append(ExitList.EOL);
+          break;
+        default:
+          if (this.unrecognizedLines == null) {
+            this.unrecognizedLines = new ArrayList<>();
+          }
+          this.unrecognizedLines.add(line);
       }
-      /* Parse the last entry. */
-      this.parseExitListEntry(sb.toString());
     }
+    /* Parse the last entry. */
+    this.parseExitListEntry(sb.toString());
   }
 
   protected void parseExitListEntry(String exitListEntryString)
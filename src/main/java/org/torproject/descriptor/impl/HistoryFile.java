@@ -0,0 +1,196 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * History file of descriptor files and tarballs that have been read, with
+ * one line per file containing the last-modified time in milliseconds since
+ * the epoch and the absolute path, separated by a space.
+ *
+ * <p>Besides reading and writing history files as a whole, lines can be
+ * appended to a history file as soon as a file has been read, so that a
+ * reader that gets interrupted can resume after the last file it has
+ * read.  If a history file contains more than one line for the same
+ * path, the last line takes precedence.  Whenever appending leaves more
+ * superseded lines than current lines in the history file, it is rewritten
+ * with only current lines.</p>
+ */
+class HistoryFile {
+
+  private static final Logger log = LoggerFactory.getLogger(
+      HistoryFile.class);
+
+  private final File file;
+
+  /* Current entries of the history file, including appended ones. */
+  private final SortedMap<String, Long> entries = new TreeMap<>();
+
+  /* Number of lines in the history file, including superseded ones. */
+  private long lines;
+
+  /* Open the given history file for appending lines, read its current
+   * entries, and rewrite it right away if it contains more superseded lines
+   * than current lines.  If the last line is missing its newline, because
+   * appending it got interrupted, ignore that line and rewrite the file
+   * right away, too, so that the next appended line does not continue it. */
+  HistoryFile(File file) throws IOException {
+    this.file = file;
+    if (file.exists()) {
+      if (endsWithIncompleteLine(file)) {
+        log.warn("Ignoring incomplete last line in history file {}.", file);
+        read(file, this.entries, false);
+        this.rewrite(this.entries);
+      } else {
+        this.lines = read(file, this.entries, true);
+      }
+    }
+    this.compactIfNecessary();
+  }
+
+  private static boolean endsWithIncompleteLine(File file)
+      throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      if (raf.length() < 1L) {
+        return false;
+      }
+      raf.seek(raf.length() - 1L);
+      return raf.read() != '\n';
+    }
+  }
+
+  /* Return an unmodifiable view on the current entries, which changes
+   * whenever lines are appended. */
+  Map<String, Long> getEntries() {
+    return Collections.unmodifiableMap(this.entries);
+  }
+
+  /* Append a line for the given file and write it to disk right away,
+   * without keeping the history file open between lines, so that it does
+   * not matter whether or when the last line is appended. */
+  synchronized void append(String absolutePath, long lastModifiedMillis)
+      throws IOException {
+    if (null != this.file.getParentFile()) {
+      this.file.getParentFile().mkdirs();
+    }
+    try (Writer appender = Files.newBufferedWriter(this.file.toPath(),
+        StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND)) {
+      appender.write(formatLine(absolutePath, lastModifiedMillis));
+    }
+    this.lines++;
+    this.entries.put(absolutePath, lastModifiedMillis);
+    this.compactIfNecessary();
+  }
+
+  private void compactIfNecessary() throws IOException {
+    if (this.lines - this.entries.size() > this.entries.size()) {
+      this.rewrite(this.entries);
+    }
+  }
+
+  /* Replace the history file with one that contains exactly the given
+   * entries. */
+  synchronized void rewrite(Map<String, Long> entries) throws IOException {
+    write(this.file, entries);
+    if (entries != this.entries) {
+      this.entries.clear();
+      this.entries.putAll(entries);
+    }
+    this.lines = this.entries.size();
+  }
+
+  /* Read entries from the given history file into the given map, skipping
+   * malformed lines, and return the number of lines read. */
+  static long read(File historyFile, Map<String, Long> entries)
+      throws IOException {
+    return read(historyFile, entries, true);
+  }
+
+  /* Read entries from the given history file into the given map, skipping
+   * malformed lines and possibly the last line, and return the number of
+   * lines read. */
+  private static long read(File historyFile, Map<String, Long> entries,
+      boolean includeLastLine) throws IOException {
+    long lines = 0L;
+    try (BufferedReader br = Files.newBufferedReader(historyFile.toPath(),
+        StandardCharsets.UTF_8)) {
+      String line;
+      String nextLine = br.readLine();
+      while (null != (line = nextLine)) {
+        nextLine = br.readLine();
+        if (null == nextLine && !includeLastLine) {
+          break;
+        }
+        lines++;
+        int space = line.indexOf(' ');
+        if (space < 1) {
+          log.warn("Unexpected line structure in old history: {}", line);
+          continue;
+        }
+        try {
+          entries.put(line.substring(space + 1),
+              Long.parseLong(line.substring(0, space)));
+        } catch (NumberFormatException e) {
+          log.warn("Unexpected line structure in old history: {}", line);
+        }
+      }
+    }
+    return lines;
+  }
+
+  /* Write the given entries, sorted by path, to a temporary file and
+   * replace the given history file with it, atomically where the file system
+   * supports that, so that the history file is never left incomplete. */
+  static void write(File historyFile, Map<String, Long> entries)
+      throws IOException {
+    if (null != historyFile.getParentFile()) {
+      historyFile.getParentFile().mkdirs();
+    }
+    File tempFile = new File(historyFile.getPath() + ".tmp");
+    SortedMap<String, Long> sortedEntries = entries instanceof SortedMap
+        ? (SortedMap<String, Long>) entries : new TreeMap<>(entries);
+    try (BufferedWriter bw = Files.newBufferedWriter(tempFile.toPath(),
+        StandardCharsets.UTF_8)) {
+      for (Map.Entry<String, Long> e : sortedEntries.entrySet()) {
+        bw.write(formatLine(e.getKey(), e.getValue()));
+      }
+    }
+    try {
+      Files.move(tempFile.toPath(), historyFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      /* Fall back to replacing the history file non-atomically on file
+       * systems that do not support atomic renames, which still leaves the
+       * temporary file complete if it gets interrupted. */
+      Files.move(tempFile.toPath(), historyFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static String formatLine(String absolutePath,
+      long lastModifiedMillis) {
+    return lastModifiedMillis + " " + absolutePath
+        + System.lineSeparator();
+  }
+}
@@ -0,0 +1,148 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe cache of immutable values that are parsed from frequently
+ * repeated descriptor parts, so that equal parts share a single parsed
+ * instance across descriptors and threads.
+ *
+ * <p>The cache holds at most a fixed number of entries, give or take the
+ * number of threads adding entries at the same time.  Whenever it grows
+ * beyond that number, the adding thread evicts entries using a
+ * second-chance policy: entries that have not been looked up since the
+ * previous eviction go first, and only if that does not free enough space,
+ * recently used entries go, too.  Evicting an entry never invalidates
+ * values that were handed out before, because callers keep references to
+ * the values themselves.</p>
+ *
+ * <p>Lookups and additions are counted, so that hit rates can be observed
+ * in long-running applications or tests.</p>
+ */
+class InterningCache<K, V> {
+
+  private static final class Entry<V> {
+
+    private final V value;
+
+    /* Whether this entry has been looked up since the previous eviction. */
+    private volatile boolean referenced;
+
+    private Entry(V value) {
+      this.value = value;
+    }
+  }
+
+  private final ConcurrentHashMap<K, Entry<V>> entries;
+
+  private final int maxSize;
+
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  InterningCache(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Maximum size must be positive.");
+    }
+    this.maxSize = maxSize;
+    this.entries = new ConcurrentHashMap<>(Math.min(maxSize, 64));
+  }
+
+  /* Return the cached value for the given key, or null if there is none,
+   * and count the lookup as hit or miss. */
+  V get(K key) {
+    Entry<V> entry = this.entries.get(key);
+    if (null == entry) {
+      this.misses.increment();
+      return null;
+    }
+    this.hits.increment();
+    if (!entry.referenced) {
+      entry.referenced = true;
+    }
+    return entry.value;
+  }
+
+  /* Add the given value for the given key, unless another thread has added
+   * a value for the same key in the meantime, and return the value that is
+   * cached now and that callers should use. */
+  V intern(K key, V value) {
+    Entry<V> existing = this.entries.putIfAbsent(key, new Entry<>(value));
+    if (null != existing) {
+      return existing.value;
+    }
+    if (this.entries.size() > this.maxSize) {
+      this.evict();
+    }
+    return value;
+  }
+
+  /* Shrink the cache to three quarters of its maximum size, unless another
+   * thread has done that while this thread was waiting for the lock. */
+  private void evict() {
+    this.evictionLock.lock();
+    try {
+      if (this.entries.size() <= this.maxSize) {
+        return;
+      }
+      int excess = this.entries.size() - this.maxSize * 3 / 4;
+      /* First sweep: remove entries that have not been looked up since the
+       * previous eviction, and give all other entries a second chance. */
+      Iterator<Map.Entry<K, Entry<V>>> iterator
+          = this.entries.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Entry<V> entry = iterator.next().getValue();
+        if (excess > 0 && !entry.referenced) {
+          iterator.remove();
+          this.evictions.increment();
+          excess--;
+        } else {
+          entry.referenced = false;
+        }
+      }
+      /* Second sweep, only if all entries were recently used: remove
+       * entries in iteration order until there is enough space again. */
+      iterator = this.entries.entrySet().iterator();
+      while (excess > 0 && iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+        this.evictions.increment();
+        excess--;
+      }
+    } finally {
+      this.evictionLock.unlock();
+    }
+  }
+
+  int size() {
+    return this.entries.size();
+  }
+
+  int maxSize() {
+    return this.maxSize;
+  }
+
+  long hits() {
+    return this.hits.sum();
+  }
+
+  long misses() {
+    return this.misses.sum();
+  }
+
+  long evictions() {
+    return this.evictions.sum();
+  }
+}
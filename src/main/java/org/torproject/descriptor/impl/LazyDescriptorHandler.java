@@ -0,0 +1,190 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import org.torproject.descriptor.Descriptor;
+import org.torproject.descriptor.DescriptorParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Invocation handler of a lightweight descriptor handle that implements the
+ * same interfaces as the descriptor it stands for, but that only parses the
+ * descriptor when one of its methods is called for the first time.
+ *
+ * <p>Checking a handle's type using {@code instanceof}, obtaining its
+ * descriptor file, or obtaining its raw descriptor bytes does not parse the
+ * descriptor.  If parsing fails, the method that triggered parsing and all
+ * subsequent method calls throw an {@link IllegalStateException} with the
+ * {@link DescriptorParseException} as cause.</p>
+ *
+ * <p>Serializing a handle parses the descriptor first, so that the
+ * deserialized handle contains the parsed descriptor or the parse
+ * exception.</p>
+ */
+class LazyDescriptorHandler implements InvocationHandler, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /* Create a new handle for the descriptor in the given raw descriptor bytes
+   * that will be parsed using the given factory when needed. */
+  static Descriptor newHandle(byte[] rawDescriptorBytes,
+      int[] offsetAndLength, File sourceFile, DescriptorFactory factory,
+      boolean compactStatusEntries) {
+    Class<? extends DescriptorImpl> descriptorClass =
+        factory.getDescriptorClass();
+    return (Descriptor) Proxy.newProxyInstance(
+        descriptorClass.getClassLoader(), allInterfaces(descriptorClass),
+        new LazyDescriptorHandler(rawDescriptorBytes, offsetAndLength,
+        sourceFile, factory, compactStatusEntries));
+  }
+
+  /* Return all interfaces implemented by the given class or one of its
+   * superclasses. */
+  private static Class<?>[] allInterfaces(Class<?> descriptorClass) {
+    Set<Class<?>> interfaces = new LinkedHashSet<>();
+    for (Class<?> clazz = descriptorClass; null != clazz;
+        clazz = clazz.getSuperclass()) {
+      interfaces.addAll(Arrays.asList(clazz.getInterfaces()));
+    }
+    return interfaces.toArray(new Class<?>[0]);
+  }
+
+  private final byte[] rawDescriptorBytes;
+
+  private final int offset;
+
+  private final int length;
+
+  private final File sourceFile;
+
+  private transient DescriptorFactory factory;
+
+  private final boolean compactStatusEntries;
+
+  /* Parsed descriptor, or null if it has not been parsed yet. */
+  private volatile Descriptor parsedDescriptor;
+
+  /* Exception thrown while parsing, or null if parsing has not failed. */
+  private volatile DescriptorParseException parseException;
+
+  private LazyDescriptorHandler(byte[] rawDescriptorBytes,
+      int[] offsetAndLength, File sourceFile, DescriptorFactory factory,
+      boolean compactStatusEntries) {
+    this.rawDescriptorBytes = rawDescriptorBytes;
+    this.offset = offsetAndLength[0];
+    this.length = offsetAndLength[1];
+    this.sourceFile = sourceFile;
+    this.factory = factory;
+    this.compactStatusEntries = compactStatusEntries;
+  }
+
+  /* Invoke the given method on the parsed descriptor right away if it has
+   * been parsed before, except for methods declared by Object, so that calls
+   * on a parsed descriptor only cost one volatile read and one reflective
+   * call; otherwise answer calls that do not require parsing, or parse the
+   * descriptor first. */
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable {
+    Descriptor descriptor = this.parsedDescriptor;
+    if (null != descriptor && Object.class != method.getDeclaringClass()) {
+      return invoke(descriptor, method, args);
+    }
+    switch (method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "getDescriptorFile":
+        return this.sourceFile;
+      case "getRawDescriptorBytes":
+      case "getRawDescriptorLength":
+        if (null == this.parsedDescriptor) {
+          int start = this.skipAnnotations();
+          if (start >= 0) {
+            int descriptorLength = this.offset + this.length - start;
+            return "getRawDescriptorLength".equals(method.getName())
+                ? (Object) descriptorLength
+                : Arrays.copyOfRange(this.rawDescriptorBytes, start,
+                start + descriptorLength);
+          }
+        }
+        break;
+      default:
+        break;
+    }
+    return invoke(this.parse(), method, args);
+  }
+
+  /* Invoke the given method on the given parsed descriptor, and rethrow any
+   * exception thrown by that method rather than the wrapping reflection
+   * exception. */
+  private static Object invoke(Descriptor descriptor, Method method,
+      Object[] args) throws Throwable {
+    try {
+      return method.invoke(descriptor, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  /* Return the index of the first byte following any annotation lines, or -1
+   * if an annotation line is not terminated by a newline. */
+  private int skipAnnotations() {
+    int start = this.offset;
+    int end = this.offset + this.length;
+    while (start < end && this.rawDescriptorBytes[start] == '@') {
+      int newline = start;
+      while (newline < end && this.rawDescriptorBytes[newline] != '\n') {
+        newline++;
+      }
+      if (newline >= end) {
+        return -1;
+      }
+      start = newline + 1;
+    }
+    return start;
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    try {
+      this.parse();
+    } catch (IllegalStateException e) {
+      /* The parse exception is serialized together with this handle. */
+    }
+    out.defaultWriteObject();
+  }
+
+  /* Parse the descriptor unless that has happened before, and return it or
+   * throw an exception if it cannot be parsed. */
+  private synchronized Descriptor parse() {
+    if (null == this.parsedDescriptor && null == this.parseException) {
+      try {
+        this.parsedDescriptor = DescriptorParserImpl.parseOneDescriptor(
+            this.rawDescriptorBytes,
+            new int[] { this.offset, this.length }, this.sourceFile,
+            this.factory, this.compactStatusEntries);
+      } catch (DescriptorParseException e) {
+        this.parseException = e;
+      }
+      this.factory = null;
+    }
+    if (null != this.parseException) {
+      throw new IllegalStateException("Unable to parse descriptor "
+          + "on demand.", this.parseException);
+    }
+    return this.parsedDescriptor;
+  }
+}
@@ -0,0 +1,194 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import org.torproject.descriptor.DescriptorParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * Cursor over the newline-separated lines in a range of raw descriptor bytes
+ * that provides the current line as offset and length in the underlying
+ * array and only converts it to a String when requested.
+ *
+ * <p>Lines are split exactly like a {@link java.util.Scanner} using a single
+ * newline as delimiter would split them: a single newline at the start is
+ * skipped, consecutive newlines produce empty lines, and a newline at the
+ * end does not produce an empty last line.  Carriage returns are kept as
+ * part of the line.</p>
+ *
+ * <p>Line cursors are created by {@link DescriptorImpl#newLineCursor()},
+ * also for descriptor implementations that are registered with a
+ * {@link DescriptorFactory}.</p>
+ *
+ * @since 2.7.0
+ */
+public class LineCursor {
+
+  private final byte[] bytes;
+
+  private final int end;
+
+  /* Index of the first byte of the next line. */
+  private int position;
+
+  /* Index of the first byte of the current line, or -1 before advancing to
+   * the first line. */
+  private int lineStart = -1;
+
+  /* Index of the byte following the current line, excluding its newline. */
+  private int lineEnd;
+
+  /* Current line as String, or null if it has not been requested yet. */
+  private String line;
+
+  /* Descriptor counting keywords in lines when advancing to them, or null
+   * if keywords are not counted. */
+  private final DescriptorImpl keyCounter;
+
+  LineCursor(byte[] bytes, int offset, int length) {
+    this(bytes, offset, length, null);
+  }
+
+  LineCursor(byte[] bytes, int offset, int length,
+      DescriptorImpl keyCounter) {
+    this.bytes = bytes;
+    this.keyCounter = keyCounter;
+    this.end = offset + length;
+    this.position = offset;
+    if (this.position < this.end && this.bytes[this.position] == '\n') {
+      this.position++;
+    }
+  }
+
+  /**
+   * Return whether there is at least one more line.
+   *
+   * @since 2.7.0
+   */
+  public boolean hasNext() {
+    return this.position < this.end;
+  }
+
+  /**
+   * Advance to the next line without converting it to a String, and return
+   * false if there are no further lines.
+   *
+   * @throws DescriptorParseException Thrown if keywords are counted while
+   *     advancing and the keyword in the next line occurs more often than
+   *     permitted.
+   *
+   * @since 2.7.0
+   */
+  public boolean advance() throws DescriptorParseException {
+    if (this.position >= this.end) {
+      return false;
+    }
+    int newline = BytesHelper.indexOf(this.bytes, this.position, this.end,
+        '\n');
+    if (newline < 0) {
+      newline = this.end;
+    }
+    this.lineStart = this.position;
+    this.lineEnd = newline;
+    this.position = Math.min(newline + 1, this.end);
+    this.line = null;
+    if (null != this.keyCounter) {
+      this.keyCounter.countKeysInLine(this.lineStart, this.lineEnd);
+    }
+    return true;
+  }
+
+  /**
+   * Advance to the next line and return it as String.
+   *
+   * @throws NoSuchElementException Thrown if there are no further lines.
+   * @throws DescriptorParseException Thrown if keywords are counted while
+   *     advancing and the keyword in the next line occurs more often than
+   *     permitted.
+   *
+   * @since 2.7.0
+   */
+  public String next() throws DescriptorParseException {
+    if (!this.advance()) {
+      throw new NoSuchElementException();
+    }
+    return this.line();
+  }
+
+  /**
+   * Return the current line as String.
+   *
+   * @since 2.7.0
+   */
+  public String line() {
+    if (null == this.line) {
+      this.line = new String(this.bytes, this.lineStart,
+          this.lineEnd - this.lineStart, StandardCharsets.UTF_8);
+    }
+    return this.line;
+  }
+
+  /**
+   * Return the index of the first byte of the current line in the raw
+   * descriptor bytes.
+   *
+   * @since 2.7.0
+   */
+  public int lineOffset() {
+    return this.lineStart;
+  }
+
+  /**
+   * Return the number of bytes of the current line, excluding its newline.
+   *
+   * @since 2.7.0
+   */
+  public int lineLength() {
+    return this.lineEnd - this.lineStart;
+  }
+
+  /**
+   * Return whether the current line is empty.
+   *
+   * @since 2.7.0
+   */
+  public boolean isLineEmpty() {
+    return this.lineEnd == this.lineStart;
+  }
+
+  /**
+   * Return whether the current line starts with the given ASCII prefix.
+   *
+   * @since 2.7.0
+   */
+  public boolean lineStartsWith(String prefix) {
+    return this.lineRegionMatches(0, prefix);
+  }
+
+  /**
+   * Return whether the current line contains the given ASCII string at the
+   * given index relative to the line start.
+   *
+   * @since 2.7.0
+   */
+  public boolean lineRegionMatches(int index, String string) {
+    return index >= 0 && BytesHelper.regionMatches(this.bytes,
+        this.lineStart + index, this.lineEnd, string);
+  }
+
+  /**
+   * Return the index of the first occurrence of the given ASCII char in the
+   * current line at or after the given index, relative to the line start,
+   * or -1 if the line does not contain it.
+   *
+   * @since 2.7.0
+   */
+  public int lineIndexOf(char value, int fromIndex) {
+    int index = BytesHelper.indexOf(this.bytes,
+        this.lineStart + Math.max(0, fromIndex), this.lineEnd, value);
+    return index < 0 ? -1 : index - this.lineStart;
+  }
+}
@@ -0,0 +1,119 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream that reads a file by mapping it into memory, one window of
+ * at most {@link #MAX_WINDOW_SIZE} bytes at a time.
+ *
+ * <p>Reading from this stream copies bytes directly from the mapped file to
+ * the caller's array without any read system calls or intermediate buffers,
+ * and skipping bytes does not touch the skipped part of the file at
+ * all.</p>
+ */
+class MappedFileInputStream extends InputStream {
+
+  /* Maximum number of bytes to map at once, which is below the limit of
+   * FileChannel#map and small enough to not waste address space on 32-bit
+   * JVMs. */
+  static final long MAX_WINDOW_SIZE = 1L << 30;
+
+  private final FileChannel channel;
+
+  private final long fileSize;
+
+  private final long windowSize;
+
+  /* Currently mapped part of the file, or null if nothing is mapped yet. */
+  private MappedByteBuffer window;
+
+  /* Position of the first byte of the current window in the file. */
+  private long windowStart;
+
+  /* Position of the next byte to read in the file. */
+  private long position;
+
+  MappedFileInputStream(File file) throws IOException {
+    this(file, MAX_WINDOW_SIZE);
+  }
+
+  /* Create a stream that maps at most windowSize bytes at once, which is
+   * only configurable for tests. */
+  MappedFileInputStream(File file, long windowSize) throws IOException {
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    this.fileSize = this.channel.size();
+    this.windowSize = Math.max(1L, Math.min(windowSize, MAX_WINDOW_SIZE));
+  }
+
+  long length() {
+    return this.fileSize;
+  }
+
+  /* Make sure that the byte at the current position is mapped, and return
+   * false if the end of the file is reached. */
+  private boolean ensureMapped() throws IOException {
+    if (this.position >= this.fileSize) {
+      return false;
+    }
+    if (null == this.window || this.position < this.windowStart
+        || this.position >= this.windowStart + this.window.limit()) {
+      this.windowStart = this.position;
+      this.window = this.channel.map(FileChannel.MapMode.READ_ONLY,
+          this.windowStart, Math.min(this.windowSize,
+          this.fileSize - this.windowStart));
+    }
+    this.window.position((int) (this.position - this.windowStart));
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!this.ensureMapped()) {
+      return -1;
+    }
+    this.position++;
+    return this.window.get() & 0xff;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!this.ensureMapped()) {
+      return -1;
+    }
+    int read = Math.min(length, this.window.remaining());
+    this.window.get(buffer, offset, read);
+    this.position += read;
+    return read;
+  }
+
+  @Override
+  public long skip(long count) {
+    long skipped = Math.max(0L, Math.min(count,
+        this.fileSize - this.position));
+    this.position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return (int) Math.min(Integer.MAX_VALUE,
+        this.fileSize - this.position);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.window = null;
+    this.channel.close();
+  }
+}
@@ -9,20 +9,21 @@ import static org.torproject.descriptor.impl.DescriptorImpl.SP;
 import org.torproject.descriptor.DescriptorParseException;
 import org.torproject.descriptor.NetworkStatusEntry;
 
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.BitSet;
+import java.util.Collections;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
-public class NetworkStatusEntryImpl implements NetworkStatusEntry {
+public class NetworkStatusEntryImpl implements NetworkStatusEntry,
+    Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private DescriptorImpl parent;
 
@@ -30,6 +31,14 @@ public class NetworkStatusEntryImpl implements NetworkStatusEntry {
 
   private int length;
 
+  int getOffset() {
+    return this.offset;
+  }
+
+  int getLength() {
+    return this.length;
+  }
+
   @Override
   public byte[] getStatusEntryBytes() {
     /* We need to pass this.offset and this.length, because the overloaded
@@ -75,52 +84,50 @@ public class NetworkStatusEntryImpl implements NetworkStatusEntry {
     /* We need to pass this.offset and this.length, because the overloaded
      * method without arguments would use this.parent.offset and
      * this.parent.length as bounds, which is not what we want! */
-    try (Scanner scanner = this.parent.newScanner(this.offset, this.length)
-        .useDelimiter(NL)) {
-      String line;
-      if (!scanner.hasNext() || !(line = scanner.next()).startsWith("r ")) {
-        throw new DescriptorParseException("Status entry must start with "
-                + "an r line.");
-      }
-      String[] rlineParts = line.split("[ \t]+");
-      this.parseRLine(line, rlineParts);
-      while (scanner.hasNext()) {
-        line = scanner.next();
-        String[] parts = !line.startsWith(Key.OPT.keyword + SP)
-                ? line.split("[ \t]+")
-                : line.substring(Key.OPT.keyword.length() + 1).split("[ \t]+");
-        Key key = Key.get(parts[0]);
-        switch (key) {
-          case A:
-            this.parseALine(line, parts);
-            break;
-          case S:
-            this.parseSLine(parts);
-            break;
-          case V:
-            this.parseVLine(line);
-            break;
-          case PR:
-            this.parsePrLine(line, parts);
-            break;
-          case W:
-            this.parseWLine(line, parts);
-            break;
-          case P:
-            this.parsePLine(line, parts);
-            break;
-          case M:
-            this.parseMLine(line, parts);
-            break;
-          case ID:
-            this.parseIdLine(line, parts);
-            break;
-          default:
-            if (this.unrecognizedLines == null) {
-              this.unrecognizedLines = new ArrayList<>();
-            }
-            this.unrecognizedLines.add(line);
-        }
+    LineCursor lines = this.parent.newLineCursor(this.offset, this.length);
+    String line;
+    if (!lines.hasNext() || !(line = lines.next()).startsWith("r ")) {
+      throw new DescriptorParseException("Status entry must start with "
+              + "an r line.");
+    }
+    String[] rlineParts = line.split("[ \t]+");
+    this.parseRLine(line, rlineParts);
+    while (lines.hasNext()) {
+      line = lines.next();
+      String[] parts = !line.startsWith(Key.OPT.keyword + SP)
+              ? line.split("[ \t]+")
+              : line.substring(Key.OPT.keyword.length() + 1).split("[ \t]+");
+      Key key = Key.get(parts[0]);
+      switch (key) {
+        case A:
+          this.parseALine(line, parts);
+          break;
+        case S:
+          this.parseSLine(line, parts);
+          break;
+        case V:
+          this.parseVLine(line);
+          break;
+        case PR:
+          this.parsePrLine(line, parts);
+          break;
+        case W:
+          this.parseWLine(line, parts);
+          break;
+        case P:
+          this.parsePLine(line, parts);
+          break;
+        case M:
+          this.parseMLine(line, parts);
+          break;
+        case ID:
+          this.parseIdLine(line, parts);
+          break;
+        default:
+          if (this.unrecognizedLines == null) {
+            this.unrecognizedLines = new ArrayList<>();
+          }
+          this.unrecognizedLines.add(line);
       }
     }
   }
@@ -161,21 +168,22 @@ public class NetworkStatusEntryImpl implements NetworkStatusEntry {
     this.orAddresses.add(parts[1]);
   }
 
-  private static Map<String, Integer> flagIndexes = new HashMap<>();
+  /* Flags by s line, because there are only a few hundred distinct
+   * combinations of flags in a consensus. */
+  static final InterningCache<String, SortedSet<String>> parsedFlags
+      = new InterningCache<>(1024);
 
-  private static Map<Integer, String> flagStrings = new HashMap<>();
-
-  private void parseSLine(String[] parts)
+  private void parseSLine(String line, String[] parts)
       throws DescriptorParseException {
     this.parsedAtMostOnceKey(Key.S);
-    BitSet flags = new BitSet(flagIndexes.size());
-    for (int i = 1; i < parts.length; i++) {
-      String flag = parts[i];
-      if (!flagIndexes.containsKey(flag)) {
-        flagStrings.put(flagIndexes.size(), flag);
-        flagIndexes.put(flag, flagIndexes.size());
+    SortedSet<String> flags = parsedFlags.get(line);
+    if (null == flags) {
+      flags = new TreeSet<>();
+      for (int i = 1; i < parts.length; i++) {
+        flags.add(parts[i]);
       }
-      flags.set(flagIndexes.get(flag));
+      flags = parsedFlags.intern(line, Collections.unmodifiableSortedSet(
+          flags));
     }
     this.flags = flags;
   }
@@ -346,18 +354,17 @@ public class NetworkStatusEntryImpl implements NetworkStatusEntry {
     return new ArrayList<>(this.orAddresses);
   }
 
-  private BitSet flags;
+  private SortedSet<String> flags;
 
   @Override
   public SortedSet<String> getFlags() {
-    SortedSet<String> result = new TreeSet<>();
-    if (this.flags != null) {
-      for (int i = this.flags.nextSetBit(0); i >= 0;
-          i = this.flags.nextSetBit(i + 1)) {
-        result.add(flagStrings.get(i));
-      }
-    }
-    return result;
+    return this.flags == null ? new TreeSet<>() : new TreeSet<>(this.flags);
+  }
+
+  /* Return the unmodifiable set of flags without copying it, or null if
+   * there was no s line. */
+  SortedSet<String> getFlagsView() {
+    return this.flags;
   }
 
   private String version;
@@ -19,6 +19,8 @@ import java.util.TreeMap;
  * delegate the specific parts to the subclasses. */
 public abstract class NetworkStatusImpl extends DescriptorImpl {
 
+  private static final long serialVersionUID = 1L;
+
   protected NetworkStatusImpl(byte[] rawDescriptorBytes, int[] offsetAndLength,
       File descriptorFile, boolean containsDirSourceEntries,
       boolean blankLinesAllowed) throws DescriptorParseException {
@@ -183,16 +185,40 @@ public abstract class NetworkStatusImpl extends DescriptorImpl {
   protected SortedMap<String, NetworkStatusEntry> statusEntries =
       new TreeMap<>();
 
+  /* Status entries in columnar representation, or null if they are kept in
+   * statusEntries. */
+  private StatusEntryColumns statusEntryColumns;
+
+  /* Replace parsed status entries by their columnar representation, which
+   * takes only a fraction of the memory, unless they contain values that
+   * cannot be represented in columns. */
+  void compactStatusEntries() {
+    if (null == this.statusEntryColumns) {
+      StatusEntryColumns columns = StatusEntryColumns.of(this,
+          this.statusEntries.values());
+      if (null != columns) {
+        this.statusEntryColumns = columns;
+        this.statusEntries = null;
+      }
+    }
+  }
+
   public SortedMap<String, NetworkStatusEntry> getStatusEntries() {
-    return new TreeMap<>(this.statusEntries);
+    return null != this.statusEntryColumns
+        ? this.statusEntryColumns.toSortedMap()
+        : new TreeMap<>(this.statusEntries);
   }
 
   public boolean containsStatusEntry(String fingerprint) {
-    return this.statusEntries.containsKey(fingerprint);
+    return null != this.statusEntryColumns
+        ? this.statusEntryColumns.contains(fingerprint)
+        : this.statusEntries.containsKey(fingerprint);
   }
 
   public NetworkStatusEntry getStatusEntry(String fingerprint) {
-    return this.statusEntries.get(fingerprint);
+    return null != this.statusEntryColumns
+        ? this.statusEntryColumns.get(fingerprint)
+        : this.statusEntries.get(fingerprint);
   }
 
   protected List<DirectorySignature> signatures;
@@ -0,0 +1,165 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Input stream that decompresses an xz file consisting of multiple blocks by
+ * decompressing several blocks in parallel and returning their contents in
+ * the original order.
+ *
+ * <p>xz files written by a single-threaded compressor typically consist of
+ * a single block, which cannot be decompressed in parallel.  Callers should
+ * therefore check {@link #countBlocks(File)} first and fall back to a
+ * sequential decompressor for files with fewer than two blocks.</p>
+ */
+class ParallelXzInputStream extends InputStream {
+
+  /* Largest array size that is safe to allocate on most JVMs. */
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  /* Return the number of blocks in the given xz file. */
+  static int countBlocks(File file) throws IOException {
+    try (SeekableXZInputStream xzis = new SeekableXZInputStream(
+        new SeekableFileInputStream(file))) {
+      return xzis.getBlockCount();
+    }
+  }
+
+  private final File file;
+
+  private final ExecutorService decompressionPool;
+
+  private final int maxPendingBlocks;
+
+  private final int blockCount;
+
+  /* Number of the next block to be handed over to the decompression pool. */
+  private int nextBlockToSubmit = 0;
+
+  /* Blocks being decompressed, in the order of their block numbers. */
+  private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+  /* Decompressed contents of the block currently being read, or null before
+   * reading the first block. */
+  private byte[] currentBlock;
+
+  private int currentBlockPosition;
+
+  /* Create a stream that decompresses up to maxPendingBlocks blocks of the
+   * given xz file at a time using the given decompression pool, where the
+   * given block count is the one returned by countBlocks, so that the
+   * index is not read once more. */
+  ParallelXzInputStream(File file, int blockCount,
+      ExecutorService decompressionPool, int maxPendingBlocks) {
+    this.file = file;
+    this.blockCount = blockCount;
+    this.decompressionPool = decompressionPool;
+    this.maxPendingBlocks = Math.max(1, maxPendingBlocks);
+    this.submitBlocks();
+  }
+
+  private void submitBlocks() {
+    while (this.pendingBlocks.size() < this.maxPendingBlocks
+        && this.nextBlockToSubmit < this.blockCount) {
+      final int blockNumber = this.nextBlockToSubmit++;
+      this.pendingBlocks.add(this.decompressionPool.submit(
+          () -> this.decompressBlock(blockNumber)));
+    }
+  }
+
+  /* Decompress a single block using its own file handle. */
+  private byte[] decompressBlock(int blockNumber) throws IOException {
+    try (SeekableXZInputStream xzis = new SeekableXZInputStream(
+        new SeekableFileInputStream(this.file))) {
+      long blockSize = xzis.getBlockSize(blockNumber);
+      if (blockSize > MAX_ARRAY_SIZE) {
+        throw new IOException("Block " + blockNumber + " of " + this.file
+            + " is too large to be decompressed into memory.");
+      }
+      xzis.seekToBlock(blockNumber);
+      byte[] block = new byte[(int) blockSize];
+      if (IOUtils.readFully(xzis, block) < block.length) {
+        throw new IOException("Block " + blockNumber + " of " + this.file
+            + " is shorter than announced in the index.");
+      }
+      return block;
+    }
+  }
+
+  /* Make sure that the current block has bytes left to read, and return
+   * false if there are no further blocks. */
+  private boolean ensureBytesInCurrentBlock() throws IOException {
+    while (null == this.currentBlock
+        || this.currentBlockPosition >= this.currentBlock.length) {
+      if (this.pendingBlocks.isEmpty()) {
+        return false;
+      }
+      try {
+        this.currentBlock = this.pendingBlocks.remove().get();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted while waiting for "
+            + "decompressed block of " + this.file + ".");
+      } catch (ExecutionException e) {
+        throw new IOException("Unable to decompress block of " + this.file
+            + ".", e.getCause());
+      }
+      this.currentBlockPosition = 0;
+      this.submitBlocks();
+    }
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!this.ensureBytesInCurrentBlock()) {
+      return -1;
+    }
+    return this.currentBlock[this.currentBlockPosition++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!this.ensureBytesInCurrentBlock()) {
+      return -1;
+    }
+    int read = Math.min(length,
+        this.currentBlock.length - this.currentBlockPosition);
+    System.arraycopy(this.currentBlock, this.currentBlockPosition, buffer,
+        offset, read);
+    this.currentBlockPosition += read;
+    return read;
+  }
+
+  @Override
+  public int available() {
+    return null == this.currentBlock ? 0
+        : this.currentBlock.length - this.currentBlockPosition;
+  }
+
+  @Override
+  public void close() {
+    for (Future<byte[]> pendingBlock : this.pendingBlocks) {
+      pendingBlock.cancel(true);
+    }
+    this.pendingBlocks.clear();
+    this.currentBlock = null;
+  }
+}
@@ -187,13 +187,18 @@ public class ParseHelper {
       throw new DescriptorParseException("Line '" + line + "' does not "
           + "contain a timestamp at the expected position.");
     }
-    long result = -1L;
-    try {
-      DateFormat dateTimeFormat = getDateFormat("yyyy-MM-dd HH:mm:ss");
-      result = dateTimeFormat.parse(
-          parts[dateIndex] + " " + parts[timeIndex]).getTime();
-    } catch (ParseException e) {
-      /* Leave result at -1L. */
+    long result = TimestampParser.parseDateTime(parts[dateIndex],
+        parts[timeIndex]);
+    if (result == -1L) {
+      /* Fall back to the slower parser that also accepts timestamps that
+       * are not exactly in the expected fixed-width format. */
+      try {
+        DateFormat dateTimeFormat = getDateFormat("yyyy-MM-dd HH:mm:ss");
+        result = dateTimeFormat.parse(
+            parts[dateIndex] + " " + parts[timeIndex]).getTime();
+      } catch (ParseException e) {
+        /* Leave result at -1L. */
+      }
     }
     if (result < 0L || result / 1000L > (long) Integer.MAX_VALUE) {
       throw new DescriptorParseException("Illegal timestamp format in "
@@ -215,12 +220,14 @@ public class ParseHelper {
       throw new DescriptorParseException("Line '" + line + "' does not "
           + "contain a date at the expected position.");
     }
-    long result = -1L;
-    try {
-      DateFormat dateFormat = getDateFormat("yyyy-MM-dd");
-      result = dateFormat.parse(parts[dateIndex]).getTime();
-    } catch (ParseException e) {
-      /* Leave result at -1L. */
+    long result = TimestampParser.parseDate(parts[dateIndex]);
+    if (result == -1L) {
+      try {
+        DateFormat dateFormat = getDateFormat("yyyy-MM-dd");
+        result = dateFormat.parse(parts[dateIndex]).getTime();
+      } catch (ParseException e) {
+        /* Leave result at -1L. */
+      }
     }
     if (result < 0L || result / 1000L > (long) Integer.MAX_VALUE) {
       throw new DescriptorParseException("Illegal date format in line '"
@@ -507,48 +514,52 @@ public class ParseHelper {
         + "master-key-ed25519 in identity-ed25519.");
   }
 
-  private static Map<String, SortedMap<String, SortedSet<Long>>>
-      parsedProtocolVersions = new HashMap<>();
+  /* Parsed protocol versions by line, because most relays support the
+   * same few combinations of protocol versions. */
+  static final InterningCache<String, SortedMap<String, SortedSet<Long>>>
+      parsedProtocolVersions = new InterningCache<>(1024);
 
   protected static SortedMap<String, SortedSet<Long>> parseProtocolVersions(
       String line, String lineNoOpt, String[] partsNoOpt)
       throws DescriptorParseException {
-    if (!parsedProtocolVersions.containsKey(lineNoOpt)) {
-      SortedMap<String, SortedSet<Long>> parsed = new TreeMap<>();
-      boolean invalid = false;
-      try {
-        for (int i = 1; i < partsNoOpt.length; i++) {
-          String[] part = partsNoOpt[i].split("=");
-          SortedSet<Long> versions = new TreeSet<>();
-          for (String val : part[1].split(",")) {
-            if (val.contains("-")) {
-              String[] fromTo = val.split("-");
-              long from = Long.parseLong(fromTo[0]);
-              long to = Long.parseLong(fromTo[1]);
-              if (from > to || to >= 0x1_0000_0000L) {
-                invalid = true;
-              } else {
-                for (long j = from;
-                    j <= to; j++) {
-                  versions.add(j);
-                }
-              }
+    SortedMap<String, SortedSet<Long>> cached
+        = parsedProtocolVersions.get(lineNoOpt);
+    if (null != cached) {
+      return cached;
+    }
+    SortedMap<String, SortedSet<Long>> parsed = new TreeMap<>();
+    boolean invalid = false;
+    try {
+      for (int i = 1; i < partsNoOpt.length; i++) {
+        String[] part = partsNoOpt[i].split("=");
+        SortedSet<Long> versions = new TreeSet<>();
+        for (String val : part[1].split(",")) {
+          if (val.contains("-")) {
+            String[] fromTo = val.split("-");
+            long from = Long.parseLong(fromTo[0]);
+            long to = Long.parseLong(fromTo[1]);
+            if (from > to || to >= 0x1_0000_0000L) {
+              invalid = true;
             } else {
-              versions.add(Long.parseLong(val));
+              for (long j = from;
+                  j <= to; j++) {
+                versions.add(j);
+              }
             }
+          } else {
+            versions.add(Long.parseLong(val));
           }
-          parsed.put(part[0], Collections.unmodifiableSortedSet(versions));
         }
-      } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
-        throw new DescriptorParseException("Invalid line '" + line + "'.", e);
-      }
-      if (invalid) {
-        throw new DescriptorParseException("Invalid line '" + line + "'.");
+        parsed.put(part[0], Collections.unmodifiableSortedSet(versions));
       }
-      parsedProtocolVersions.put(lineNoOpt,
-          Collections.unmodifiableSortedMap(parsed));
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      throw new DescriptorParseException("Invalid line '" + line + "'.", e);
+    }
+    if (invalid) {
+      throw new DescriptorParseException("Invalid line '" + line + "'.");
     }
-    return parsedProtocolVersions.get(lineNoOpt);
+    return parsedProtocolVersions.intern(lineNoOpt,
+        Collections.unmodifiableSortedMap(parsed));
   }
 }
 
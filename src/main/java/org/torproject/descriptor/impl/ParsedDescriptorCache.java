@@ -0,0 +1,500 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import org.torproject.descriptor.Descriptor;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of parsed descriptors in a directory, with one cache
+ * entry per descriptor file or tarball containing all descriptors parsed
+ * from that file in serialized form, so that they can be read back without
+ * parsing them again.
+ *
+ * <p>Cache entries are keyed by absolute path and last-modified time of the
+ * file they were parsed from, which is the same information that is used
+ * for excluding files from parsing, so that an entry becomes invalid as soon
+ * as its file changes.  Entries further contain a fingerprint of the
+ * serialized classes, of the library and parser versions, and of the
+ * parser configuration, so that entries written by another version of this
+ * library or with other settings are ignored and eventually replaced.</p>
+ *
+ * <p>The total size of cache entries is kept below a given maximum by
+ * evicting least recently used entries, where an entry's last-modified time
+ * is updated whenever it is read.  Entries are first written to temporary
+ * files and only renamed when complete, so that an interrupted run never
+ * leaves incomplete entries behind.</p>
+ *
+ * <p>Entries are only deserialized into descriptor implementations of this
+ * library and the few JDK classes that these contain, so that a file placed
+ * in the cache directory cannot make the reader instantiate arbitrary
+ * serializable classes.</p>
+ */
+class ParsedDescriptorCache {
+
+  private static final Logger log = LoggerFactory.getLogger(
+      ParsedDescriptorCache.class);
+
+  private static final String MAGIC = "parsed-descriptor-cache";
+
+  private static final int FORMAT_VERSION = 1;
+
+  /* Version of parse results, which needs to be incremented whenever a
+   * parser change makes descriptors parse differently without changing the
+   * serialized form of any class, like a bug fix in parsing a line, so that
+   * entries containing descriptors parsed before that change are ignored. */
+  private static final int PARSER_VERSION = 1;
+
+  private static final String ENTRY_SUFFIX = ".cache";
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /* Classes with serialized instances in cache entries, including their
+   * nested classes. */
+  private static final Class<?>[] SERIALIZED_CLASSES = new Class<?>[] {
+      BandwidthFileImpl.class, BandwidthHistoryImpl.class,
+      BridgeExtraInfoDescriptorImpl.class, BridgeNetworkStatusImpl.class,
+      BridgePoolAssignmentImpl.class, BridgeServerDescriptorImpl.class,
+      DescriptorImpl.class, DirSourceEntryImpl.class,
+      DirectoryKeyCertificateImpl.class, DirectorySignatureImpl.class,
+      ExitListEntryImpl.class, ExitListImpl.class,
+      ExtraInfoDescriptorImpl.class, KeyValueMap.class,
+      LazyDescriptorHandler.class, MicrodescriptorImpl.class,
+      NetworkStatusEntryImpl.class, NetworkStatusImpl.class,
+      RelayDirectoryImpl.class, RelayExtraInfoDescriptorImpl.class,
+      RelayNetworkStatusConsensusImpl.class, RelayNetworkStatusImpl.class,
+      RelayNetworkStatusVoteImpl.class, RelayServerDescriptorImpl.class,
+      RouterStatusEntryImpl.class, ServerDescriptorImpl.class,
+      SnowflakeStatsImpl.class, StatusEntryColumns.class,
+      TorperfResultImpl.class, UnparseableDescriptorImpl.class };
+
+  /* Fingerprint of the entry format, the parser version, the library
+   * release version if known, and the serialized fields of all serialized
+   * classes, which changes whenever fields of one of these classes change.
+   * Serialized classes declare a constant serialVersionUID, so that entries
+   * remain valid across compilers, and the fingerprint rather than that
+   * UID is what detects incompatible class changes. */
+  private static final long CLASSES_FINGERPRINT = fingerprintClasses();
+
+  private static long fingerprintClasses() {
+    long fingerprint = FORMAT_VERSION;
+    fingerprint = fingerprint * 31L + PARSER_VERSION;
+    String implementationVersion = ParsedDescriptorCache.class.getPackage()
+        .getImplementationVersion();
+    if (null != implementationVersion) {
+      fingerprint = fingerprint * 31L + implementationVersion.hashCode();
+    }
+    for (Class<?> clazz : SERIALIZED_CLASSES) {
+      List<Class<?>> classes = new ArrayList<>();
+      classes.add(clazz);
+      classes.addAll(Arrays.asList(clazz.getDeclaredClasses()));
+      for (Class<?> serializedClass : classes) {
+        ObjectStreamClass streamClass = ObjectStreamClass.lookup(
+            serializedClass);
+        if (null != streamClass) {
+          fingerprint = fingerprint * 31L + streamClass.getName().hashCode();
+          for (ObjectStreamField field : streamClass.getFields()) {
+            fingerprint = fingerprint * 31L + field.getName().hashCode();
+            fingerprint = fingerprint * 31L + (null == field.getTypeString()
+                ? field.getTypeCode() : field.getTypeString().hashCode());
+          }
+        }
+      }
+    }
+    return fingerprint;
+  }
+
+  /* JDK classes that may occur in serialized descriptors, in addition to
+   * classes in this library's descriptor packages and arrays of primitive
+   * types or of allowed classes. */
+  private static final Set<String> ALLOWED_JDK_CLASSES = new HashSet<>(
+      Arrays.asList("java.io.File", "java.lang.Boolean", "java.lang.Byte",
+      "java.lang.Character", "java.lang.Double", "java.lang.Enum",
+      "java.lang.Float", "java.lang.Integer", "java.lang.Long",
+      "java.lang.Number", "java.lang.Short", "java.lang.String",
+      "java.lang.reflect.Proxy", "java.util.ArrayList",
+      "java.util.Arrays$ArrayList", "java.util.BitSet",
+      "java.util.EnumMap", "java.util.EnumSet$SerializationProxy",
+      "java.util.HashMap", "java.util.HashSet", "java.util.LinkedHashMap",
+      "java.util.LinkedHashSet", "java.util.LinkedList", "java.util.TreeMap",
+      "java.util.TreeSet"));
+
+  /* Prefixes of names of nested JDK collection classes that may occur in
+   * serialized descriptors as wrappers of allowed collections. */
+  private static final String[] ALLOWED_JDK_CLASS_PREFIXES = new String[] {
+      "java.util.Collections$Empty", "java.util.Collections$Singleton",
+      "java.util.Collections$Unmodifiable" };
+
+  /* Return whether instances of the class with the given name may be
+   * deserialized from cache entries. */
+  static boolean isAllowedClass(String name) {
+    if (name.startsWith("[")) {
+      String componentName = name.replaceFirst("^\\[+", "");
+      if (componentName.length() == 1) {
+        return "ZBCSIJFD".contains(componentName);
+      }
+      return componentName.startsWith("L") && componentName.endsWith(";")
+          && isAllowedClass(componentName.substring(1,
+          componentName.length() - 1));
+    }
+    String packageName = name.lastIndexOf('.') < 0 ? ""
+        : name.substring(0, name.lastIndexOf('.'));
+    if (packageName.equals("org.torproject.descriptor")
+        || packageName.equals("org.torproject.descriptor.impl")
+        || ALLOWED_JDK_CLASSES.contains(name)) {
+      return true;
+    }
+    for (String prefix : ALLOWED_JDK_CLASS_PREFIXES) {
+      if (name.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /* Object input stream that refuses to resolve classes other than those
+   * that may occur in serialized descriptors, before any instance of them is
+   * created. */
+  static class FilteringObjectInputStream extends ObjectInputStream {
+
+    FilteringObjectInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      if (!isAllowedClass(desc.getName())) {
+        throw new InvalidClassException(desc.getName(),
+            "Class not allowed in parsed descriptor cache entries.");
+      }
+      return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces)
+        throws IOException, ClassNotFoundException {
+      for (String name : interfaces) {
+        if (!name.equals("java.io.Serializable")
+            && !isAllowedClass(name)) {
+          throw new InvalidClassException(name,
+              "Proxy interface not allowed in parsed descriptor cache "
+              + "entries.");
+        }
+      }
+      return super.resolveProxyClass(interfaces);
+    }
+  }
+
+  private final File directory;
+
+  private final long maxBytes;
+
+  private final String configuration;
+
+  /* Total size of cache entries in bytes, updated whenever entries are added
+   * or evicted. */
+  private long totalBytes;
+
+  /* Writers of entries that have not been committed or aborted yet. */
+  private final Set<Writer> openWriters = ConcurrentHashMap.newKeySet();
+
+  /* Create a cache in the given directory, removing any temporary files
+   * left behind by earlier runs, and evicting entries if the directory
+   * contains more than the given number of bytes.  The configuration
+   * string must describe all parser settings that affect parse results. */
+  ParsedDescriptorCache(File directory, long maxBytes,
+      String configuration) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.configuration = configuration;
+    if (!directory.exists() && !directory.mkdirs()) {
+      log.warn("Unable to create parsed descriptor cache directory {}.",
+          directory);
+    }
+    File[] tempFiles = directory.listFiles(
+        (dir, name) -> name.endsWith(TEMP_SUFFIX));
+    if (null != tempFiles) {
+      for (File tempFile : tempFiles) {
+        tempFile.delete();
+      }
+    }
+    synchronized (this) {
+      this.totalBytes = this.sumEntryBytes(this.listEntries());
+      this.evictIfNecessary();
+    }
+  }
+
+  private File[] listEntries() {
+    File[] entries = this.directory.listFiles(
+        (dir, name) -> name.endsWith(ENTRY_SUFFIX));
+    return null == entries ? new File[0] : entries;
+  }
+
+  private long sumEntryBytes(File[] entries) {
+    long sum = 0L;
+    for (File entry : entries) {
+      sum += entry.length();
+    }
+    return sum;
+  }
+
+  /* Return the entry file for the given descriptor file, named after a hash
+   * of its absolute path. */
+  private File entryFile(File file) {
+    return new File(this.directory,
+        DigestUtils.sha256Hex(file.getAbsolutePath()) + ENTRY_SUFFIX);
+  }
+
+  /* Open the cache entry containing descriptors parsed from the given file
+   * and return a reader for them, or return null if there is no valid entry
+   * for the file in its current version. */
+  Reader openReader(File file) {
+    File entryFile = this.entryFile(file);
+    if (!entryFile.exists()) {
+      return null;
+    }
+    ObjectInputStream in = null;
+    try {
+      in = new FilteringObjectInputStream(new BufferedInputStream(
+          new FileInputStream(entryFile)));
+      if (!MAGIC.equals(in.readUTF()) || CLASSES_FINGERPRINT != in.readLong()
+          || !this.configuration.equals(in.readUTF())
+          || !file.getAbsolutePath().equals(in.readUTF())
+          || file.lastModified() != in.readLong()) {
+        in.close();
+        return null;
+      }
+    } catch (IOException e) {
+      log.debug("Discarding unreadable cache entry {}.", entryFile, e);
+      closeQuietly(in);
+      entryFile.delete();
+      return null;
+    }
+    entryFile.setLastModified(System.currentTimeMillis());
+    return new Reader(entryFile, in);
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (null != closeable) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        /* Nothing left to do with this stream. */
+      }
+    }
+  }
+
+  /* Reader of descriptors from a cache entry, in the order in which they
+   * were written. */
+  static class Reader implements Closeable {
+
+    private final File entryFile;
+
+    private final ObjectInputStream in;
+
+    private Reader(File entryFile, ObjectInputStream in) {
+      this.entryFile = entryFile;
+      this.in = in;
+    }
+
+    /* Return the next batch of descriptors, or null if there are no further
+     * descriptors, and delete the entry if it turns out to be corrupt. */
+    Descriptor[] readBatch() throws IOException {
+      try {
+        return (Descriptor[]) this.in.readObject();
+      } catch (IOException | ClassNotFoundException | ClassCastException e) {
+        closeQuietly(this.in);
+        this.entryFile.delete();
+        throw new IOException("Unable to read cache entry "
+            + this.entryFile + ".", e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.in.close();
+    }
+  }
+
+  /* Start writing a cache entry for descriptors parsed from the given file,
+   * or return null if the entry cannot be written. */
+  Writer newWriter(File file) {
+    File entryFile = this.entryFile(file);
+    File tempFile = new File(this.directory, entryFile.getName() + "."
+        + Thread.currentThread().getId() + TEMP_SUFFIX);
+    try {
+      Writer writer = new Writer(file, entryFile, tempFile);
+      this.openWriters.add(writer);
+      return writer;
+    } catch (IOException e) {
+      log.warn("Unable to create cache entry {}.", tempFile, e);
+      tempFile.delete();
+      return null;
+    }
+  }
+
+  /* Abort all writers whose entries have not been committed, for example
+   * because reading descriptors was interrupted. */
+  void abortOpenWriters() {
+    for (Writer writer : this.openWriters) {
+      writer.abort();
+    }
+  }
+
+  /* Writer of descriptors to a cache entry, which receives batches of
+   * descriptors parsed from a descriptor file or from the entries of a
+   * tarball, possibly from different threads, until the entry is either
+   * committed or aborted. */
+  class Writer {
+
+    private final File entryFile;
+
+    private final File tempFile;
+
+    private final FileOutputStream fileOut;
+
+    private final ObjectOutputStream out;
+
+    private boolean closed;
+
+    private Writer(File file, File entryFile, File tempFile)
+        throws IOException {
+      this.entryFile = entryFile;
+      this.tempFile = tempFile;
+      this.fileOut = new FileOutputStream(tempFile);
+      this.out = new ObjectOutputStream(new BufferedOutputStream(
+          this.fileOut));
+      this.out.writeUTF(MAGIC);
+      this.out.writeLong(CLASSES_FINGERPRINT);
+      this.out.writeUTF(ParsedDescriptorCache.this.configuration);
+      this.out.writeUTF(file.getAbsolutePath());
+      this.out.writeLong(file.lastModified());
+    }
+
+    /* Write a batch of descriptors, or abort writing the entry if any of
+     * them cannot be serialized or if the entry grows too large. */
+    synchronized void writeBatch(Iterable<Descriptor> descriptors) {
+      if (this.closed) {
+        return;
+      }
+      List<Descriptor> batch = new ArrayList<>();
+      for (Descriptor descriptor : descriptors) {
+        if (!(descriptor instanceof Serializable)) {
+          this.abort();
+          return;
+        }
+        batch.add(descriptor);
+      }
+      try {
+        this.out.writeObject(batch.toArray(new Descriptor[0]));
+        /* Forget written objects, so that they can be garbage-collected,
+         * while keeping descriptors of a batch that share raw descriptor
+         * bytes from sharing them in the entry, too. */
+        this.out.reset();
+        this.out.flush();
+        if (this.fileOut.getChannel().position()
+            > ParsedDescriptorCache.this.maxBytes) {
+          this.abort();
+          return;
+        }
+      } catch (IOException e) {
+        log.warn("Unable to write cache entry {}.", this.tempFile, e);
+        this.abort();
+      }
+    }
+
+    /* Finish writing the entry after writing all batches, and make it
+     * available for reading, unless writing has been aborted. */
+    synchronized void commit() {
+      if (this.closed) {
+        return;
+      }
+      try {
+        this.out.writeObject(null);
+        this.out.close();
+        this.closed = true;
+        ParsedDescriptorCache.this.openWriters.remove(this);
+        long replacedBytes = this.entryFile.length();
+        Files.move(this.tempFile.toPath(), this.entryFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        ParsedDescriptorCache.this.added(this.entryFile.length()
+            - replacedBytes);
+      } catch (IOException e) {
+        log.warn("Unable to commit cache entry {}.", this.entryFile, e);
+        this.abort();
+      }
+    }
+
+    /* Stop writing the entry and delete what has been written so far. */
+    synchronized void abort() {
+      if (!this.closed) {
+        this.closed = true;
+        closeQuietly(this.out);
+      }
+      ParsedDescriptorCache.this.openWriters.remove(this);
+      this.tempFile.delete();
+    }
+  }
+
+  private synchronized void added(long bytes) {
+    this.totalBytes += bytes;
+    this.evictIfNecessary();
+  }
+
+  /* Evict least recently used entries if the cache has grown beyond its
+   * maximum size, until it is down to three quarters of that size, so that
+   * the next few additions do not require listing all entries again. */
+  private synchronized void evictIfNecessary() {
+    if (this.totalBytes <= this.maxBytes) {
+      return;
+    }
+    File[] entries = this.listEntries();
+    long[] lastModified = new long[entries.length];
+    Integer[] order = new Integer[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      lastModified[i] = entries[i].lastModified();
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+    long remainingBytes = this.sumEntryBytes(entries);
+    long targetBytes = this.maxBytes * 3 / 4;
+    for (int i = 0; i < order.length && remainingBytes > targetBytes; i++) {
+      File entry = entries[order[i]];
+      long entryBytes = entry.length();
+      if (entry.delete()) {
+        remainingBytes -= entryBytes;
+      }
+    }
+    this.totalBytes = remainingBytes;
+  }
+}
@@ -12,12 +12,13 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.Scanner;
 import java.util.Set;
 
 public class RelayDirectoryImpl extends DescriptorImpl
     implements RelayDirectory {
 
+  private static final long serialVersionUID = 1L;
+
   protected RelayDirectoryImpl(byte[] directoryBytes, int[] offsetAndLength,
       File descriptorFile) throws DescriptorParseException {
     super(directoryBytes, offsetAndLength, descriptorFile, true);
@@ -79,112 +80,111 @@ public class RelayDirectoryImpl extends DescriptorImpl
 
   private void parseHeader(int offset, int length)
       throws DescriptorParseException {
-    try (Scanner scanner = this.newScanner(offset, length).useDelimiter(NL)) {
-      String publishedLine = null;
-      Key nextCrypto = Key.EMPTY;
-      String runningRoutersLine = null;
-      String routerStatusLine = null;
-      StringBuilder crypto = null;
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        if (line.isEmpty() || line.startsWith("@")) {
-          continue;
-        }
-        String lineNoOpt = line.startsWith(Key.OPT.keyword + SP)
-                ? line.substring(Key.OPT.keyword.length() + 1) : line;
-        String[] partsNoOpt = lineNoOpt.split("[ \t]+");
-        Key key = Key.get(partsNoOpt[0]);
-        switch (key) {
-          case SIGNED_DIRECTORY:
-            this.parseSignedDirectoryLine(line, lineNoOpt);
-            break;
-          case PUBLISHED:
-            if (publishedLine != null) {
-              throw new DescriptorParseException("Keyword 'published' is "
-                      + "contained more than once, but must be contained "
-                      + "exactly once.");
-            } else {
-              publishedLine = line;
-            }
-            break;
-          case DIR_SIGNING_KEY:
-            this.parseDirSigningKeyLine(line, partsNoOpt);
-            nextCrypto = key;
-            break;
-          case RECOMMENDED_SOFTWARE:
-            this.parseRecommendedSoftwareLine(line, partsNoOpt);
-            break;
-          case RUNNING_ROUTERS:
-            runningRoutersLine = line;
-            break;
-          case ROUTER_STATUS:
-            routerStatusLine = line;
-            break;
-          case CRYPTO_BEGIN:
-            crypto = new StringBuilder();
-            crypto.append(line).append(NL);
-            break;
-          case CRYPTO_END:
+    LineCursor lines = this.newLineCursor(offset, length);
+    String publishedLine = null;
+    Key nextCrypto = Key.EMPTY;
+    String runningRoutersLine = null;
+    String routerStatusLine = null;
+    StringBuilder crypto = null;
+    while (lines.hasNext()) {
+      String line = lines.next();
+      if (line.isEmpty() || line.startsWith("@")) {
+        continue;
+      }
+      String lineNoOpt = line.startsWith(Key.OPT.keyword + SP)
+              ? line.substring(Key.OPT.keyword.length() + 1) : line;
+      String[] partsNoOpt = lineNoOpt.split("[ \t]+");
+      Key key = Key.get(partsNoOpt[0]);
+      switch (key) {
+        case SIGNED_DIRECTORY:
+          this.parseSignedDirectoryLine(line, lineNoOpt);
+          break;
+        case PUBLISHED:
+          if (publishedLine != null) {
+            throw new DescriptorParseException("Keyword 'published' is "
+                    + "contained more than once, but must be contained "
+                    + "exactly once.");
+          } else {
+            publishedLine = line;
+          }
+          break;
+        case DIR_SIGNING_KEY:
+          this.parseDirSigningKeyLine(line, partsNoOpt);
+          nextCrypto = key;
+          break;
+        case RECOMMENDED_SOFTWARE:
+          this.parseRecommendedSoftwareLine(line, partsNoOpt);
+          break;
+        case RUNNING_ROUTERS:
+          runningRoutersLine = line;
+          break;
+        case ROUTER_STATUS:
+          routerStatusLine = line;
+          break;
+        case CRYPTO_BEGIN:
+          crypto = new StringBuilder();
+          crypto.append(line).append(NL);
+          break;
+        case CRYPTO_END:
+          crypto.append(line).append(NL);
+          String cryptoString = crypto.toString();
+          crypto = null;
+          if (nextCrypto.equals(Key.DIR_SIGNING_KEY)
+                  && this.dirSigningKey == null) {
+            this.dirSigningKey = cryptoString;
+          } else {
+            throw new DescriptorParseException("Unrecognized crypto "
+                    + "block in v1 directory.");
+          }
+          nextCrypto = Key.EMPTY;
+          break;
+        default:
+          if (crypto != null) {
             crypto.append(line).append(NL);
-            String cryptoString = crypto.toString();
-            crypto = null;
-            if (nextCrypto.equals(Key.DIR_SIGNING_KEY)
-                    && this.dirSigningKey == null) {
-              this.dirSigningKey = cryptoString;
-            } else {
-              throw new DescriptorParseException("Unrecognized crypto "
-                      + "block in v1 directory.");
-            }
-            nextCrypto = Key.EMPTY;
-            break;
-          default:
-            if (crypto != null) {
-              crypto.append(line).append(NL);
-            } else {
-              if (this.unrecognizedLines == null) {
-                this.unrecognizedLines = new ArrayList<>();
-              }
-              this.unrecognizedLines.add(line);
+          } else {
+            if (this.unrecognizedLines == null) {
+              this.unrecognizedLines = new ArrayList<>();
             }
-        }
-      }
-      if (publishedLine == null) {
-        throw new DescriptorParseException("Keyword 'published' is "
-                + "contained 0 times, but must be contained exactly once.");
-      } else {
-        String publishedLineNoOpt = publishedLine.startsWith(Key.OPT.keyword
-                + SP)
-                ? publishedLine.substring(Key.OPT.keyword.length() + 1)
-                : publishedLine;
-        String[] publishedPartsNoOpt = publishedLineNoOpt.split("[ \t]+");
-        this.parsePublishedLine(publishedLine,
-                publishedPartsNoOpt);
-      }
-      if (routerStatusLine != null) {
-        String routerStatusLineNoOpt =
-                routerStatusLine.startsWith(Key.OPT.keyword + SP)
-                        ? routerStatusLine.substring(Key.OPT.keyword.length()
-                        + 1)
-                        : routerStatusLine;
-        String[] routerStatusPartsNoOpt =
-                routerStatusLineNoOpt.split("[ \t]+");
-        this.parseRouterStatusLine(
-                routerStatusPartsNoOpt);
-      } else if (runningRoutersLine != null) {
-        String runningRoutersLineNoOpt =
-                runningRoutersLine.startsWith(Key.OPT.keyword + SP)
-                        ? runningRoutersLine.substring(Key.OPT.keyword.length()
-                        + 1)
-                        : runningRoutersLine;
-        String[] runningRoutersPartsNoOpt =
-                runningRoutersLineNoOpt.split("[ \t]+");
-        this.parseRunningRoutersLine(
-                runningRoutersPartsNoOpt);
-      } else {
-        throw new DescriptorParseException("Either running-routers or "
-                + "router-status line must be given.");
+            this.unrecognizedLines.add(line);
+          }
       }
     }
+    if (publishedLine == null) {
+      throw new DescriptorParseException("Keyword 'published' is "
+              + "contained 0 times, but must be contained exactly once.");
+    } else {
+      String publishedLineNoOpt = publishedLine.startsWith(Key.OPT.keyword
+              + SP)
+              ? publishedLine.substring(Key.OPT.keyword.length() + 1)
+              : publishedLine;
+      String[] publishedPartsNoOpt = publishedLineNoOpt.split("[ \t]+");
+      this.parsePublishedLine(publishedLine,
+              publishedPartsNoOpt);
+    }
+    if (routerStatusLine != null) {
+      String routerStatusLineNoOpt =
+              routerStatusLine.startsWith(Key.OPT.keyword + SP)
+                      ? routerStatusLine.substring(Key.OPT.keyword.length()
+                      + 1)
+                      : routerStatusLine;
+      String[] routerStatusPartsNoOpt =
+              routerStatusLineNoOpt.split("[ \t]+");
+      this.parseRouterStatusLine(
+              routerStatusPartsNoOpt);
+    } else if (runningRoutersLine != null) {
+      String runningRoutersLineNoOpt =
+              runningRoutersLine.startsWith(Key.OPT.keyword + SP)
+                      ? runningRoutersLine.substring(Key.OPT.keyword.length()
+                      + 1)
+                      : runningRoutersLine;
+      String[] runningRoutersPartsNoOpt =
+              runningRoutersLineNoOpt.split("[ \t]+");
+      this.parseRunningRoutersLine(
+              runningRoutersPartsNoOpt);
+    } else {
+      throw new DescriptorParseException("Either running-routers or "
+              + "router-status line must be given.");
+    }
   }
 
   protected void parseServerDescriptor(int offset, int length) {
@@ -200,46 +200,45 @@ public class RelayDirectoryImpl extends DescriptorImpl
 
   private void parseDirectorySignature(int offset, int length)
       throws DescriptorParseException {
-    try (Scanner scanner = this.newScanner(offset, length).useDelimiter(NL)) {
-      Key nextCrypto = Key.EMPTY;
-      StringBuilder crypto = null;
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        String lineNoOpt = line.startsWith(Key.OPT.keyword + SP)
-                ? line.substring(Key.OPT.keyword.length() + 1) : line;
-        String[] partsNoOpt = lineNoOpt.split("[ \t]+");
-        Key key = Key.get(partsNoOpt[0]);
-        switch (key) {
-          case DIRECTORY_SIGNATURE:
-            this.parseDirectorySignatureLine(line, partsNoOpt);
-            nextCrypto = key;
-            break;
-          case CRYPTO_BEGIN:
-            crypto = new StringBuilder();
-            crypto.append(line).append(NL);
-            break;
-          case CRYPTO_END:
+    LineCursor lines = this.newLineCursor(offset, length);
+    Key nextCrypto = Key.EMPTY;
+    StringBuilder crypto = null;
+    while (lines.hasNext()) {
+      String line = lines.next();
+      String lineNoOpt = line.startsWith(Key.OPT.keyword + SP)
+              ? line.substring(Key.OPT.keyword.length() + 1) : line;
+      String[] partsNoOpt = lineNoOpt.split("[ \t]+");
+      Key key = Key.get(partsNoOpt[0]);
+      switch (key) {
+        case DIRECTORY_SIGNATURE:
+          this.parseDirectorySignatureLine(line, partsNoOpt);
+          nextCrypto = key;
+          break;
+        case CRYPTO_BEGIN:
+          crypto = new StringBuilder();
+          crypto.append(line).append(NL);
+          break;
+        case CRYPTO_END:
+          crypto.append(line).append(NL);
+          String cryptoString = crypto.toString();
+          crypto = null;
+          if (nextCrypto.equals(Key.DIRECTORY_SIGNATURE)) {
+            this.directorySignature = cryptoString;
+          } else {
+            throw new DescriptorParseException("Unrecognized crypto "
+                    + "block in v2 network status.");
+          }
+          nextCrypto = Key.EMPTY;
+          break;
+        default:
+          if (crypto != null) {
             crypto.append(line).append(NL);
-            String cryptoString = crypto.toString();
-            crypto = null;
-            if (nextCrypto.equals(Key.DIRECTORY_SIGNATURE)) {
-              this.directorySignature = cryptoString;
-            } else {
-              throw new DescriptorParseException("Unrecognized crypto "
-                      + "block in v2 network status.");
-            }
-            nextCrypto = Key.EMPTY;
-            break;
-          default:
-            if (crypto != null) {
-              crypto.append(line).append(NL);
-            } else {
-              if (this.unrecognizedLines == null) {
-                this.unrecognizedLines = new ArrayList<>();
-              }
-              this.unrecognizedLines.add(line);
+          } else {
+            if (this.unrecognizedLines == null) {
+              this.unrecognizedLines = new ArrayList<>();
             }
-        }
+            this.unrecognizedLines.add(line);
+          }
       }
     }
   }
@@ -11,7 +11,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.Scanner;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -22,6 +21,8 @@ import java.util.TreeSet;
 public class RelayNetworkStatusConsensusImpl extends NetworkStatusImpl
     implements RelayNetworkStatusConsensus {
 
+  private static final long serialVersionUID = 1L;
+
   protected RelayNetworkStatusConsensusImpl(byte[] consensusBytes,
       int[] offsetAndLimit, File descriptorFile)
       throws DescriptorParseException {
@@ -45,72 +46,71 @@ public class RelayNetworkStatusConsensusImpl extends NetworkStatusImpl
 
   protected void parseHeader(int offset, int length)
       throws DescriptorParseException {
-    try (Scanner scanner = this.newScanner(offset, length).useDelimiter(NL)) {
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        String[] parts = line.split("[ \t]+");
-        Key key = Key.get(parts[0]);
-        switch (key) {
-          case NETWORK_STATUS_VERSION:
-            this.parseNetworkStatusVersionLine(line, parts);
-            break;
-          case VOTE_STATUS:
-            this.parseVoteStatusLine(line, parts);
-            break;
-          case CONSENSUS_METHOD:
-            this.parseConsensusMethodLine(line, parts);
-            break;
-          case VALID_AFTER:
-            this.parseValidAfterLine(line, parts);
-            break;
-          case FRESH_UNTIL:
-            this.parseFreshUntilLine(line, parts);
-            break;
-          case VALID_UNTIL:
-            this.parseValidUntilLine(line, parts);
-            break;
-          case VOTING_DELAY:
-            this.parseVotingDelayLine(line, parts);
-            break;
-          case CLIENT_VERSIONS:
-            this.parseClientVersionsLine(line, parts);
-            break;
-          case SERVER_VERSIONS:
-            this.parseServerVersionsLine(line, parts);
-            break;
-          case RECOMMENDED_CLIENT_PROTOCOLS:
-            this.parseRecommendedClientProtocolsLine(line, parts);
-            break;
-          case RECOMMENDED_RELAY_PROTOCOLS:
-            this.parseRecommendedRelayProtocolsLine(line, parts);
-            break;
-          case REQUIRED_CLIENT_PROTOCOLS:
-            this.parseRequiredClientProtocolsLine(line, parts);
-            break;
-          case REQUIRED_RELAY_PROTOCOLS:
-            this.parseRequiredRelayProtocolsLine(line, parts);
-            break;
-          case PACKAGE:
-            this.parsePackageLine(line, parts);
-            break;
-          case KNOWN_FLAGS:
-            this.parseKnownFlagsLine(line, parts);
-            break;
-          case PARAMS:
-            this.parseParamsLine(line, parts);
-            break;
-          case SHARED_RAND_PREVIOUS_VALUE:
-            this.parseSharedRandPreviousValueLine(line, parts);
-            break;
-          case SHARED_RAND_CURRENT_VALUE:
-            this.parseSharedRandCurrentValueLine(line, parts);
-            break;
-          default:
-            if (this.unrecognizedLines == null) {
-              this.unrecognizedLines = new ArrayList<>();
-            }
-            this.unrecognizedLines.add(line);
-        }
+    LineCursor lines = this.newLineCursor(offset, length);
+    while (lines.hasNext()) {
+      String line = lines.next();
+      String[] parts = line.split("[ \t]+");
+      Key key = Key.get(parts[0]);
+      switch (key) {
+        case NETWORK_STATUS_VERSION:
+          this.parseNetworkStatusVersionLine(line, parts);
+          break;
+        case VOTE_STATUS:
+          this.parseVoteStatusLine(line, parts);
+          break;
+        case CONSENSUS_METHOD:
+          this.parseConsensusMethodLine(line, parts);
+          break;
+        case VALID_AFTER:
+          this.parseValidAfterLine(line, parts);
+          break;
+        case FRESH_UNTIL:
+          this.parseFreshUntilLine(line, parts);
+          break;
+        case VALID_UNTIL:
+          this.parseValidUntilLine(line, parts);
+          break;
+        case VOTING_DELAY:
+          this.parseVotingDelayLine(line, parts);
+          break;
+        case CLIENT_VERSIONS:
+          this.parseClientVersionsLine(line, parts);
+          break;
+        case SERVER_VERSIONS:
+          this.parseServerVersionsLine(line, parts);
+          break;
+        case RECOMMENDED_CLIENT_PROTOCOLS:
+          this.parseRecommendedClientProtocolsLine(line, parts);
+          break;
+        case RECOMMENDED_RELAY_PROTOCOLS:
+          this.parseRecommendedRelayProtocolsLine(line, parts);
+          break;
+        case REQUIRED_CLIENT_PROTOCOLS:
+          this.parseRequiredClientProtocolsLine(line, parts);
+          break;
+        case REQUIRED_RELAY_PROTOCOLS:
+          this.parseRequiredRelayProtocolsLine(line, parts);
+          break;
+        case PACKAGE:
+          this.parsePackageLine(line, parts);
+          break;
+        case KNOWN_FLAGS:
+          this.parseKnownFlagsLine(line, parts);
+          break;
+        case PARAMS:
+          this.parseParamsLine(line, parts);
+          break;
+        case SHARED_RAND_PREVIOUS_VALUE:
+          this.parseSharedRandPreviousValueLine(line, parts);
+          break;
+        case SHARED_RAND_CURRENT_VALUE:
+          this.parseSharedRandCurrentValueLine(line, parts);
+          break;
+        default:
+          if (this.unrecognizedLines == null) {
+            this.unrecognizedLines = new ArrayList<>();
+          }
+          this.unrecognizedLines.add(line);
       }
     }
   }
@@ -134,23 +134,22 @@ public class RelayNetworkStatusConsensusImpl extends NetworkStatusImpl
 
   protected void parseFooter(int offset, int length)
       throws DescriptorParseException {
-    try (Scanner scanner = this.newScanner(offset, length).useDelimiter(NL)) {
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        String[] parts = line.split("[ \t]+");
-        Key key = Key.get(parts[0]);
-        switch (key) {
-          case DIRECTORY_FOOTER:
-            break;
-          case BANDWIDTH_WEIGHTS:
-            this.parseBandwidthWeightsLine(line, parts);
-            break;
-          default:
-            if (this.unrecognizedLines == null) {
-              this.unrecognizedLines = new ArrayList<>();
-            }
-            this.unrecognizedLines.add(line);
-        }
+    LineCursor lines = this.newLineCursor(offset, length);
+    while (lines.hasNext()) {
+      String line = lines.next();
+      String[] parts = line.split("[ \t]+");
+      Key key = Key.get(parts[0]);
+      switch (key) {
+        case DIRECTORY_FOOTER:
+          break;
+        case BANDWIDTH_WEIGHTS:
+          this.parseBandwidthWeightsLine(line, parts);
+          break;
+        default:
+          if (this.unrecognizedLines == null) {
+            this.unrecognizedLines = new ArrayList<>();
+          }
+          this.unrecognizedLines.add(line);
       }
     }
   }
@@ -11,7 +11,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.Scanner;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -19,6 +18,8 @@ import java.util.TreeSet;
 public class RelayNetworkStatusImpl extends NetworkStatusImpl
     implements RelayNetworkStatus {
 
+  private static final long serialVersionUID = 1L;
+
   protected RelayNetworkStatusImpl(byte[] statusBytes, int[] offsetAndLength,
       File descriptorFile) throws DescriptorParseException {
     super(statusBytes, offsetAndLength, descriptorFile, false, true);
@@ -37,71 +38,70 @@ public class RelayNetworkStatusImpl extends NetworkStatusImpl
 
   protected void parseHeader(int offset, int length)
       throws DescriptorParseException {
-    try (Scanner scanner = this.newScanner(offset, length).useDelimiter(NL)) {
-      Key nextCrypto = Key.EMPTY;
-      StringBuilder crypto = null;
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        if (line.isEmpty()) {
-          continue;
-        }
-        String[] parts = line.split("[ \t]+");
-        Key key = Key.get(parts[0]);
-        switch (key) {
-          case NETWORK_STATUS_VERSION:
-            this.parseNetworkStatusVersionLine(line);
-            break;
-          case DIR_SOURCE:
-            this.parseDirSourceLine(line, parts);
-            break;
-          case FINGERPRINT:
-            this.parseFingerprintLine(line, parts);
-            break;
-          case CONTACT:
-            this.parseContactLine(line);
-            break;
-          case DIR_SIGNING_KEY:
-            this.parseDirSigningKeyLine(line);
-            nextCrypto = key;
-            break;
-          case CLIENT_VERSIONS:
-            this.parseClientVersionsLine(line, parts);
-            break;
-          case SERVER_VERSIONS:
-            this.parseServerVersionsLine(line, parts);
-            break;
-          case PUBLISHED:
-            this.parsePublishedLine(line, parts);
-            break;
-          case DIR_OPTIONS:
-            this.parseDirOptionsLine(parts);
-            break;
-          case CRYPTO_BEGIN:
-            crypto = new StringBuilder();
-            crypto.append(line).append(NL);
-            break;
-          case CRYPTO_END:
+    LineCursor lines = this.newLineCursor(offset, length);
+    Key nextCrypto = Key.EMPTY;
+    StringBuilder crypto = null;
+    while (lines.hasNext()) {
+      String line = lines.next();
+      if (line.isEmpty()) {
+        continue;
+      }
+      String[] parts = line.split("[ \t]+");
+      Key key = Key.get(parts[0]);
+      switch (key) {
+        case NETWORK_STATUS_VERSION:
+          this.parseNetworkStatusVersionLine(line);
+          break;
+        case DIR_SOURCE:
+          this.parseDirSourceLine(line, parts);
+          break;
+        case FINGERPRINT:
+          this.parseFingerprintLine(line, parts);
+          break;
+        case CONTACT:
+          this.parseContactLine(line);
+          break;
+        case DIR_SIGNING_KEY:
+          this.parseDirSigningKeyLine(line);
+          nextCrypto = key;
+          break;
+        case CLIENT_VERSIONS:
+          this.parseClientVersionsLine(line, parts);
+          break;
+        case SERVER_VERSIONS:
+          this.parseServerVersionsLine(line, parts);
+          break;
+        case PUBLISHED:
+          this.parsePublishedLine(line, parts);
+          break;
+        case DIR_OPTIONS:
+          this.parseDirOptionsLine(parts);
+          break;
+        case CRYPTO_BEGIN:
+          crypto = new StringBuilder();
+          crypto.append(line).append(NL);
+          break;
+        case CRYPTO_END:
+          crypto.append(line).append(NL);
+          String cryptoString = crypto.toString();
+          crypto = null;
+          if (nextCrypto.equals(Key.DIR_SIGNING_KEY)) {
+            this.dirSigningKey = cryptoString;
+          } else {
+            throw new DescriptorParseException("Unrecognized crypto "
+                    + "block in v2 network status.");
+          }
+          nextCrypto = Key.EMPTY;
+          break;
+        default:
+          if (crypto != null) {
             crypto.append(line).append(NL);
-            String cryptoString = crypto.toString();
-            crypto = null;
-            if (nextCrypto.equals(Key.DIR_SIGNING_KEY)) {
-              this.dirSigningKey = cryptoString;
-            } else {
-              throw new DescriptorParseException("Unrecognized crypto "
-                      + "block in v2 network status.");
+          } else {
+            if (this.unrecognizedLines == null) {
+              this.unrecognizedLines = new ArrayList<>();
             }
-            nextCrypto = Key.EMPTY;
-            break;
-          default:
-            if (crypto != null) {
-              crypto.append(line).append(NL);
-            } else {
-              if (this.unrecognizedLines == null) {
-                this.unrecognizedLines = new ArrayList<>();
-              }
-              this.unrecognizedLines.add(line);
-            }
-        }
+            this.unrecognizedLines.add(line);
+          }
       }
     }
   }
@@ -114,44 +114,43 @@ public class RelayNetworkStatusImpl extends NetworkStatusImpl
 
   protected void parseDirectorySignature(int offset, int length)
       throws DescriptorParseException {
-    try (Scanner scanner = this.newScanner(offset, length).useDelimiter(NL)) {
-      Key nextCrypto = Key.EMPTY;
-      StringBuilder crypto = null;
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        String[] parts = line.split("[ \t]+");
-        Key key = Key.get(parts[0]);
-        switch (key) {
-          case DIRECTORY_SIGNATURE:
-            this.parseDirectorySignatureLine(line, parts);
-            nextCrypto = key;
-            break;
-          case CRYPTO_BEGIN:
-            crypto = new StringBuilder();
-            crypto.append(line).append(NL);
-            break;
-          case CRYPTO_END:
+    LineCursor lines = this.newLineCursor(offset, length);
+    Key nextCrypto = Key.EMPTY;
+    StringBuilder crypto = null;
+    while (lines.hasNext()) {
+      String line = lines.next();
+      String[] parts = line.split("[ \t]+");
+      Key key = Key.get(parts[0]);
+      switch (key) {
+        case DIRECTORY_SIGNATURE:
+          this.parseDirectorySignatureLine(line, parts);
+          nextCrypto = key;
+          break;
+        case CRYPTO_BEGIN:
+          crypto = new StringBuilder();
+          crypto.append(line).append(NL);
+          break;
+        case CRYPTO_END:
+          crypto.append(line).append(NL);
+          String cryptoString = crypto.toString();
+          crypto = null;
+          if (nextCrypto.equals(Key.DIRECTORY_SIGNATURE)) {
+            this.directorySignature = cryptoString;
+          } else {
+            throw new DescriptorParseException("Unrecognized crypto "
+                    + "block in v2 network status.");
+          }
+          nextCrypto = Key.EMPTY;
+          break;
+        default:
+          if (crypto != null) {
             crypto.append(line).append(NL);
-            String cryptoString = crypto.toString();
-            crypto = null;
-            if (nextCrypto.equals(Key.DIRECTORY_SIGNATURE)) {
-              this.directorySignature = cryptoString;
-            } else {
-              throw new DescriptorParseException("Unrecognized crypto "
-                      + "block in v2 network status.");
-            }
-            nextCrypto = Key.EMPTY;
-            break;
-          default:
-            if (crypto != null) {
-              crypto.append(line).append(NL);
-            } else {
-              if (this.unrecognizedLines == null) {
-                this.unrecognizedLines = new ArrayList<>();
-              }
-              this.unrecognizedLines.add(line);
+          } else {
+            if (this.unrecognizedLines == null) {
+              this.unrecognizedLines = new ArrayList<>();
             }
-        }
+            this.unrecognizedLines.add(line);
+          }
       }
     }
   }
@@ -5,7 +5,12 @@ package org.torproject.descriptor.impl;
 
 import org.torproject.descriptor.RouterStatusEntry;
 
-public class RouterStatusEntryImpl implements RouterStatusEntry {
+import java.io.Serializable;
+
+public class RouterStatusEntryImpl implements RouterStatusEntry,
+    Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   protected RouterStatusEntryImpl(String fingerprint, String nickname,
       boolean isLive, boolean isVerified) {
@@ -12,13 +12,14 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.Optional;
-import java.util.Scanner;
 import java.util.Set;
 import java.util.SortedMap;
 
 public class SnowflakeStatsImpl extends DescriptorImpl
     implements SnowflakeStats {
 
+  private static final long serialVersionUID = 1L;
+
   private static final Set<Key> atMostOnce = EnumSet.of(
       Key.SNOWFLAKE_IPS, Key.SNOWFLAKE_IPS_TOTAL, Key.SNOWFLAKE_IDLE_COUNT,
       Key.CLIENT_DENIED_COUNT, Key.CLIENT_SNOWFLAKE_MATCH_COUNT);
@@ -43,41 +44,40 @@ public class SnowflakeStatsImpl extends DescriptorImpl
   }
 
   private void parseDescriptorBytes() throws DescriptorParseException {
-    try (Scanner scanner = this.newScanner().useDelimiter(NL)) {
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        if (line.startsWith("@")) {
-          continue;
-        }
-        String[] parts = line.split("[ \t]+");
-        Key key = Key.get(parts[0]);
-        switch (key) {
-          case SNOWFLAKE_STATS_END:
-            this.parseSnowflakeStatsEnd(line, parts);
-            break;
-          case SNOWFLAKE_IPS:
-            this.parseSnowflakeIps(line, parts);
-            break;
-          case SNOWFLAKE_IPS_TOTAL:
-            this.parseSnowflakeIpsTotal(line, parts);
-            break;
-          case SNOWFLAKE_IDLE_COUNT:
-            this.parseSnowflakeIdleCount(line, parts);
-            break;
-          case CLIENT_DENIED_COUNT:
-            this.parseClientDeniedCount(line, parts);
-            break;
-          case CLIENT_SNOWFLAKE_MATCH_COUNT:
-            this.parseClientSnowflakeMatchCount(line, parts);
-            break;
-          case INVALID:
-          default:
-            ParseHelper.parseKeyword(line, parts[0]);
-            if (this.unrecognizedLines == null) {
-              this.unrecognizedLines = new ArrayList<>();
-            }
-            this.unrecognizedLines.add(line);
-        }
+    LineCursor lines = this.newLineCursor();
+    while (lines.hasNext()) {
+      String line = lines.next();
+      if (line.startsWith("@")) {
+        continue;
+      }
+      String[] parts = line.split("[ \t]+");
+      Key key = Key.get(parts[0]);
+      switch (key) {
+        case SNOWFLAKE_STATS_END:
+          this.parseSnowflakeStatsEnd(line, parts);
+          break;
+        case SNOWFLAKE_IPS:
+          this.parseSnowflakeIps(line, parts);
+          break;
+        case SNOWFLAKE_IPS_TOTAL:
+          this.parseSnowflakeIpsTotal(line, parts);
+          break;
+        case SNOWFLAKE_IDLE_COUNT:
+          this.parseSnowflakeIdleCount(line, parts);
+          break;
+        case CLIENT_DENIED_COUNT:
+          this.parseClientDeniedCount(line, parts);
+          break;
+        case CLIENT_SNOWFLAKE_MATCH_COUNT:
+          this.parseClientSnowflakeMatchCount(line, parts);
+          break;
+        case INVALID:
+        default:
+          ParseHelper.parseKeyword(line, parts[0]);
+          if (this.unrecognizedLines == null) {
+            this.unrecognizedLines = new ArrayList<>();
+          }
+          this.unrecognizedLines.add(line);
       }
     }
   }
@@ -0,0 +1,576 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import org.torproject.descriptor.NetworkStatusEntry;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compact columnar representation of the parsed status entries of a network
+ * status, which keeps the values of all entries in a few primitive arrays
+ * rather than in one object graph per entry.
+ *
+ * <p>Fingerprints, descriptor digests, and microdescriptor digests are kept
+ * as raw bytes, addresses as ints, flags as bitmasks over the flags
+ * contained in the network status, and versions, port lists, and protocol
+ * versions as references to unmodifiable instances that are shared across
+ * all entries and, as far as they fit into bounded caches, across network
+ * statuses, including after deserializing them.  Entries are sorted by
+ * fingerprint and made available through lightweight views that implement
+ * {@link NetworkStatusEntry} and that are created whenever they are
+ * requested.</p>
+ */
+class StatusEntryColumns implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int FINGERPRINT_LENGTH = 20;
+
+  private static final int DIGEST256_LENGTH = 32;
+
+  private static final byte NO_POLICY = 0;
+
+  private static final byte ACCEPT_POLICY = 1;
+
+  private static final byte REJECT_POLICY = 2;
+
+  /* Versions and port lists shared across network statuses, because a
+   * year of consensuses contains the same few hundred values in millions
+   * of entries. */
+  static final InterningCache<String, String> sharedStrings
+      = new InterningCache<>(4096);
+
+  /* Protocol versions shared across network statuses, for the same reason
+   * as versions and port lists, keyed by themselves rather than by line,
+   * because they may have been deserialized. */
+  static final InterningCache<SortedMap<String, SortedSet<Long>>,
+      SortedMap<String, SortedSet<Long>>> sharedProtocols
+      = new InterningCache<>(1024);
+
+  private final DescriptorImpl parent;
+
+  private final int size;
+
+  private final int[] entryOffsets;
+
+  private final int[] entryLengths;
+
+  /* Nicknames of all entries concatenated as ASCII bytes, with the end of
+   * each nickname in nicknameEnds. */
+  private final byte[] nicknames;
+
+  private final int[] nicknameEnds;
+
+  private final byte[] fingerprints;
+
+  /* Descriptor digests, or null if no entry contains one, like in
+   * microdesc consensuses. */
+  private final byte[] descriptors;
+
+  private final BitSet hasDescriptor;
+
+  private final long[] publishedMillis;
+
+  private final int[] addresses;
+
+  private final int[] orPorts;
+
+  private final int[] dirPorts;
+
+  /* Microdescriptor digests, or null if no entry contains one, like in
+   * consensuses that are not microdesc consensuses. */
+  private final byte[] microdescriptorDigests;
+
+  /* Entries with a possibly empty set of microdescriptor digests, and
+   * entries with exactly one microdescriptor digest. */
+  private final BitSet hasMicrodescriptorDigests;
+
+  private final BitSet hasMicrodescriptorDigest;
+
+  /* Additional OR addresses by entry, or null if no entry has any, with a
+   * null element for entries without additional OR addresses. */
+  private final String[][] orAddresses;
+
+  /* Flags contained in at least one entry, where bit i of a flags mask
+   * stands for flagNames[i]. */
+  private final String[] flagNames;
+
+  private final int[] flags;
+
+  private final BitSet hasFlags;
+
+  private final String[] versions;
+
+  private final List<SortedMap<String, SortedSet<Long>>> protocols;
+
+  private final long[] bandwidths;
+
+  private final long[] measured;
+
+  private final BitSet unmeasured;
+
+  private final byte[] defaultPolicies;
+
+  private final String[] portLists;
+
+  /* Ed25519 master keys, or null if no entry contains one, like in all
+   * consensuses. */
+  private final String[] masterKeysEd25519;
+
+  /* Return a columnar representation of the given status entries, which
+   * must be sorted by fingerprint, or null if they contain values that
+   * cannot be represented in columns without changing them, like more than
+   * 32 distinct flags or more than one microdescriptor digest per entry. */
+  static StatusEntryColumns of(DescriptorImpl parent,
+      Collection<NetworkStatusEntry> statusEntries) {
+    SortedSet<String> allFlags = new TreeSet<>();
+    for (NetworkStatusEntry statusEntry : statusEntries) {
+      if (!(statusEntry instanceof NetworkStatusEntryImpl)) {
+        return null;
+      }
+      NetworkStatusEntryImpl entry = (NetworkStatusEntryImpl) statusEntry;
+      if (null != entry.getFlagsView()) {
+        allFlags.addAll(entry.getFlagsView());
+      }
+      Set<String> digests = entry.getMicrodescriptorDigestsSha256Base64();
+      if (allFlags.size() > Integer.SIZE
+          || (null != digests && digests.size() > 1)) {
+        return null;
+      }
+    }
+    try {
+      return new StatusEntryColumns(parent, statusEntries,
+          allFlags.toArray(new String[0]));
+    } catch (IllegalArgumentException e) {
+      /* A value would not be the same after converting it back. */
+      return null;
+    }
+  }
+
+  private StatusEntryColumns(DescriptorImpl parent,
+      Collection<NetworkStatusEntry> statusEntries, String[] flagNames) {
+    this.parent = parent;
+    this.size = statusEntries.size();
+    this.flagNames = flagNames;
+    Map<String, Integer> flagBits = new HashMap<>();
+    for (int i = 0; i < flagNames.length; i++) {
+      flagBits.put(flagNames[i], i);
+    }
+    this.entryOffsets = new int[this.size];
+    this.entryLengths = new int[this.size];
+    this.nicknameEnds = new int[this.size];
+    this.fingerprints = new byte[this.size * FINGERPRINT_LENGTH];
+    this.hasDescriptor = new BitSet();
+    this.publishedMillis = new long[this.size];
+    this.addresses = new int[this.size];
+    this.orPorts = new int[this.size];
+    this.dirPorts = new int[this.size];
+    this.hasMicrodescriptorDigests = new BitSet();
+    this.hasMicrodescriptorDigest = new BitSet();
+    this.flags = new int[this.size];
+    this.hasFlags = new BitSet();
+    this.versions = new String[this.size];
+    this.protocols = new ArrayList<>(Collections.nCopies(this.size, null));
+    this.bandwidths = new long[this.size];
+    this.measured = new long[this.size];
+    this.unmeasured = new BitSet();
+    this.defaultPolicies = new byte[this.size];
+    this.portLists = new String[this.size];
+    StringBuilder nicknames = new StringBuilder();
+    byte[] descriptors = null;
+    byte[] microdescriptorDigests = null;
+    String[][] orAddresses = null;
+    String[] masterKeysEd25519 = null;
+    int row = 0;
+    for (NetworkStatusEntry statusEntry : statusEntries) {
+      NetworkStatusEntryImpl entry = (NetworkStatusEntryImpl) statusEntry;
+      this.entryOffsets[row] = entry.getOffset();
+      this.entryLengths[row] = entry.getLength();
+      nicknames.append(entry.getNickname());
+      this.nicknameEnds[row] = nicknames.length();
+      decodeHex(entry.getFingerprint(), this.fingerprints,
+          row * FINGERPRINT_LENGTH);
+      if (null != entry.getDescriptor()) {
+        if (null == descriptors) {
+          descriptors = new byte[this.size * FINGERPRINT_LENGTH];
+        }
+        decodeHex(entry.getDescriptor(), descriptors,
+            row * FINGERPRINT_LENGTH);
+        this.hasDescriptor.set(row);
+      }
+      this.publishedMillis[row] = entry.getPublishedMillis();
+      this.addresses[row] = encodeAddress(entry.getAddress());
+      this.orPorts[row] = entry.getOrPort();
+      this.dirPorts[row] = entry.getDirPort();
+      Set<String> digests = entry.getMicrodescriptorDigestsSha256Base64();
+      if (null != digests) {
+        if (null == microdescriptorDigests) {
+          microdescriptorDigests = new byte[this.size * DIGEST256_LENGTH];
+        }
+        if (!digests.isEmpty()) {
+          decodeDigest256(digests.iterator().next(), microdescriptorDigests,
+              row * DIGEST256_LENGTH);
+          this.hasMicrodescriptorDigest.set(row);
+        }
+        this.hasMicrodescriptorDigests.set(row);
+      }
+      List<String> entryOrAddresses = entry.getOrAddresses();
+      if (!entryOrAddresses.isEmpty()) {
+        if (null == orAddresses) {
+          orAddresses = new String[this.size][];
+        }
+        orAddresses[row] = entryOrAddresses.toArray(new String[0]);
+      }
+      SortedSet<String> entryFlags = entry.getFlagsView();
+      if (null != entryFlags) {
+        int mask = 0;
+        for (String flag : entryFlags) {
+          mask |= 1 << flagBits.get(flag);
+        }
+        this.flags[row] = mask;
+        this.hasFlags.set(row);
+      }
+      this.versions[row] = intern(sharedStrings, entry.getVersion());
+      this.protocols.set(row, intern(sharedProtocols,
+          entry.getProtocols()));
+      this.bandwidths[row] = entry.getBandwidth();
+      this.measured[row] = entry.getMeasured();
+      this.unmeasured.set(row, entry.getUnmeasured());
+      this.defaultPolicies[row] = encodePolicy(entry.getDefaultPolicy());
+      this.portLists[row] = intern(sharedStrings, entry.getPortList());
+      if (null != entry.getMasterKeyEd25519()) {
+        if (null == masterKeysEd25519) {
+          masterKeysEd25519 = new String[this.size];
+        }
+        masterKeysEd25519[row] = entry.getMasterKeyEd25519();
+      }
+      row++;
+    }
+    this.nicknames = nicknames.toString().getBytes(
+        StandardCharsets.US_ASCII);
+    this.descriptors = descriptors;
+    this.microdescriptorDigests = microdescriptorDigests;
+    this.orAddresses = orAddresses;
+    this.masterKeysEd25519 = masterKeysEd25519;
+  }
+
+  /* Return the shared instance that is equal to the given unmodifiable
+   * value, or the given value if there is none yet. */
+  private static <T> T intern(InterningCache<T, T> cache, T value) {
+    if (null == value) {
+      return null;
+    }
+    T interned = cache.get(value);
+    return null == interned ? cache.intern(value, value) : interned;
+  }
+
+  /* Replace deserialized versions, port lists, and protocol versions with
+   * shared instances, so that network statuses read back from a cache share
+   * them just like freshly parsed ones. */
+  private void readObject(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    for (int row = 0; row < this.size; row++) {
+      this.versions[row] = intern(sharedStrings, this.versions[row]);
+      this.portLists[row] = intern(sharedStrings, this.portLists[row]);
+      this.protocols.set(row, intern(sharedProtocols,
+          this.protocols.get(row)));
+    }
+  }
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  /* Decode the given upper-case hex string into the given array, or throw
+   * an IllegalArgumentException if it is not exactly 20 bytes long. */
+  private static void decodeHex(String hex, byte[] bytes, int offset) {
+    if (hex.length() != 2 * FINGERPRINT_LENGTH) {
+      throw new IllegalArgumentException();
+    }
+    for (int i = 0; i < FINGERPRINT_LENGTH; i++) {
+      int high = Character.digit(hex.charAt(2 * i), 16);
+      int low = Character.digit(hex.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0 || hex.charAt(2 * i) != HEX_DIGITS[high]
+          || hex.charAt(2 * i + 1) != HEX_DIGITS[low]) {
+        throw new IllegalArgumentException();
+      }
+      bytes[offset + i] = (byte) ((high << 4) | low);
+    }
+  }
+
+  private static String encodeHex(byte[] bytes, int offset) {
+    char[] hex = new char[2 * FINGERPRINT_LENGTH];
+    for (int i = 0; i < FINGERPRINT_LENGTH; i++) {
+      hex[2 * i] = HEX_DIGITS[(bytes[offset + i] >> 4) & 0xF];
+      hex[2 * i + 1] = HEX_DIGITS[bytes[offset + i] & 0xF];
+    }
+    return new String(hex);
+  }
+
+  private static void decodeDigest256(String base64, byte[] bytes,
+      int offset) {
+    byte[] digest = Base64.decodeBase64(base64);
+    if (digest.length != DIGEST256_LENGTH) {
+      throw new IllegalArgumentException();
+    }
+    System.arraycopy(digest, 0, bytes, offset, DIGEST256_LENGTH);
+    if (!base64.equals(encodeDigest256(bytes, offset))) {
+      throw new IllegalArgumentException();
+    }
+  }
+
+  private static String encodeDigest256(byte[] bytes, int offset) {
+    byte[] digest = new byte[DIGEST256_LENGTH];
+    System.arraycopy(bytes, offset, digest, 0, DIGEST256_LENGTH);
+    String base64 = Base64.encodeBase64String(digest);
+    return base64.substring(0, base64.indexOf('='));
+  }
+
+  private static int encodeAddress(String address) {
+    String[] octets = address.split("\\.", -1);
+    int encoded = 0;
+    for (String octet : octets) {
+      encoded = (encoded << 8) | Integer.parseInt(octet);
+    }
+    if (!address.equals(decodeAddress(encoded))) {
+      throw new IllegalArgumentException();
+    }
+    return encoded;
+  }
+
+  private static String decodeAddress(int address) {
+    return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF)
+        + "." + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+  }
+
+  private static byte encodePolicy(String policy) {
+    if (null == policy) {
+      return NO_POLICY;
+    }
+    switch (policy) {
+      case "accept":
+        return ACCEPT_POLICY;
+      case "reject":
+        return REJECT_POLICY;
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  /* Return the row of the entry with the given fingerprint, or -1 if there
+   * is no such entry or if the given string is not an upper-case hex
+   * fingerprint. */
+  private int find(String fingerprint) {
+    byte[] key = new byte[FINGERPRINT_LENGTH];
+    try {
+      decodeHex(fingerprint, key, 0);
+    } catch (IllegalArgumentException e) {
+      return -1;
+    }
+    int low = 0;
+    int high = this.size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int comparison = compareFingerprint(middle, key);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  private int compareFingerprint(int row, byte[] key) {
+    int offset = row * FINGERPRINT_LENGTH;
+    for (int i = 0; i < FINGERPRINT_LENGTH; i++) {
+      int comparison = Integer.compare(this.fingerprints[offset + i] & 0xFF,
+          key[i] & 0xFF);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return 0;
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  boolean contains(String fingerprint) {
+    return null != fingerprint && this.find(fingerprint) >= 0;
+  }
+
+  NetworkStatusEntry get(String fingerprint) {
+    int row = null == fingerprint ? -1 : this.find(fingerprint);
+    return row < 0 ? null : new Entry(row);
+  }
+
+  SortedMap<String, NetworkStatusEntry> toSortedMap() {
+    SortedMap<String, NetworkStatusEntry> entries = new TreeMap<>();
+    for (int row = 0; row < this.size; row++) {
+      Entry entry = new Entry(row);
+      entries.put(entry.getFingerprint(), entry);
+    }
+    return entries;
+  }
+
+  /* View of a single row. */
+  private class Entry implements NetworkStatusEntry {
+
+    private final int row;
+
+    private Entry(int row) {
+      this.row = row;
+    }
+
+    @Override
+    public byte[] getStatusEntryBytes() {
+      return StatusEntryColumns.this.parent.getRawDescriptorBytes(
+          entryOffsets[this.row], entryLengths[this.row]);
+    }
+
+    @Override
+    public String getNickname() {
+      int start = this.row == 0 ? 0 : nicknameEnds[this.row - 1];
+      return new String(nicknames, start, nicknameEnds[this.row] - start,
+          StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String getFingerprint() {
+      return encodeHex(fingerprints, this.row * FINGERPRINT_LENGTH);
+    }
+
+    @Override
+    public String getDescriptor() {
+      return hasDescriptor.get(this.row)
+          ? encodeHex(descriptors, this.row * FINGERPRINT_LENGTH) : null;
+    }
+
+    @Override
+    public long getPublishedMillis() {
+      return publishedMillis[this.row];
+    }
+
+    @Override
+    public String getAddress() {
+      return decodeAddress(addresses[this.row]);
+    }
+
+    @Override
+    public int getOrPort() {
+      return orPorts[this.row];
+    }
+
+    @Override
+    public int getDirPort() {
+      return dirPorts[this.row];
+    }
+
+    @Override
+    public Set<String> getMicrodescriptorDigestsSha256Base64() {
+      if (!hasMicrodescriptorDigests.get(this.row)) {
+        return null;
+      }
+      Set<String> digests = new HashSet<>();
+      if (hasMicrodescriptorDigest.get(this.row)) {
+        digests.add(encodeDigest256(microdescriptorDigests,
+            this.row * DIGEST256_LENGTH));
+      }
+      return digests;
+    }
+
+    @Override
+    public List<String> getOrAddresses() {
+      String[] entryOrAddresses = null == orAddresses ? null
+          : orAddresses[this.row];
+      return null == entryOrAddresses ? new ArrayList<>()
+          : new ArrayList<>(Arrays.asList(entryOrAddresses));
+    }
+
+    @Override
+    public SortedSet<String> getFlags() {
+      SortedSet<String> entryFlags = new TreeSet<>();
+      if (hasFlags.get(this.row)) {
+        int mask = flags[this.row];
+        for (int i = 0; i < flagNames.length; i++) {
+          if ((mask & (1 << i)) != 0) {
+            entryFlags.add(flagNames[i]);
+          }
+        }
+      }
+      return entryFlags;
+    }
+
+    @Override
+    public String getVersion() {
+      return versions[this.row];
+    }
+
+    @Override
+    public SortedMap<String, SortedSet<Long>> getProtocols() {
+      return protocols.get(this.row);
+    }
+
+    @Override
+    public long getBandwidth() {
+      return bandwidths[this.row];
+    }
+
+    @Override
+    public long getMeasured() {
+      return measured[this.row];
+    }
+
+    @Override
+    public boolean getUnmeasured() {
+      return unmeasured.get(this.row);
+    }
+
+    @Override
+    public String getDefaultPolicy() {
+      switch (defaultPolicies[this.row]) {
+        case ACCEPT_POLICY:
+          return "accept";
+        case REJECT_POLICY:
+          return "reject";
+        default:
+          return null;
+      }
+    }
+
+    @Override
+    public String getPortList() {
+      return portLists[this.row];
+    }
+
+    @Override
+    public String getMasterKeyEd25519() {
+      return null == masterKeysEd25519 ? null
+          : masterKeysEd25519[this.row];
+    }
+  }
+}
@@ -0,0 +1,352 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import org.torproject.descriptor.Descriptor;
+import org.torproject.descriptor.DescriptorParseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over descriptors parsed from an input stream that is read in
+ * chunks while iterating.
+ *
+ * <p>The descriptor type is detected from the first chunk.  Descriptor
+ * files that are split into descriptors at a keyword are split while
+ * reading, and each descriptor is parsed as soon as the start of the next
+ * descriptor or the end of the stream is found, so that only the bytes of
+ * the current descriptor and of one chunk are kept in memory.  Torperf
+ * results are parsed line by line.  Descriptor files of all other types
+ * consist of a single descriptor or cannot be split without parsing them,
+ * and are read completely and parsed as a whole.</p>
+ *
+ * <p>Descriptors are split in the same way as descriptor files that are
+ * parsed as a whole.  Unlike in those, a Torperf result that cannot be
+ * parsed is returned as unparseable descriptor, rather than making the
+ * whole file unparseable.</p>
+ */
+class StreamingDescriptorIterator
+    implements Iterator<Descriptor>, Iterable<Descriptor> {
+
+  private static final Logger log = LoggerFactory.getLogger(
+      StreamingDescriptorIterator.class);
+
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  /* Number of bytes requested from the input stream at once. */
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  private final DescriptorParserImpl parser;
+
+  private final InputStream inputStream;
+
+  private final File sourceFile;
+
+  private final String fileName;
+
+  /* Bytes read from the input stream, which are moved to the start of the
+   * buffer when it is full and more bytes need to be read. */
+  private byte[] buffer = new byte[CHUNK_SIZE];
+
+  /* Index of the first byte in the buffer that has not been parsed yet,
+   * which is the first byte of the current descriptor. */
+  private int position;
+
+  /* Index after the last byte read into the buffer. */
+  private int length;
+
+  private boolean endOfStream;
+
+  /* Whether the descriptor type has been detected. */
+  private boolean started;
+
+  /* Whether no more descriptors will be parsed. */
+  private boolean finished;
+
+  /* Factory of descriptors if the file is split at a keyword, or null if
+   * the file contains Torperf results. */
+  private DescriptorFactory factory;
+
+  /* Index of the first byte of the current descriptor's keyword line, or -1
+   * if it has not been found yet. */
+  private int startDescriptor = -1;
+
+  /* Index from which to continue searching, so that bytes are not searched
+   * again after reading the next chunk. */
+  private int searchFrom;
+
+  /* Type annotation line preceding the next Torperf result, or null. */
+  private byte[] torperfTypeAnnotation;
+
+  /* Parsed descriptors that have not been returned yet. */
+  private final Deque<Descriptor> parsedDescriptors = new ArrayDeque<>();
+
+  StreamingDescriptorIterator(DescriptorParserImpl parser,
+      InputStream inputStream, File sourceFile, String fileName) {
+    this.parser = parser;
+    this.inputStream = inputStream;
+    this.sourceFile = sourceFile;
+    this.fileName = fileName;
+  }
+
+  @Override
+  public Iterator<Descriptor> iterator() {
+    return this;
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      while (this.parsedDescriptors.isEmpty() && !this.finished) {
+        if (!this.started) {
+          this.detectType();
+        } else if (null != this.factory) {
+          this.splitNextDescriptor();
+        } else {
+          this.parseNextTorperfResult();
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Cannot read descriptors from '{}'.  Skipping remaining "
+          + "descriptors.", this.fileName, e);
+      this.finished = true;
+      this.buffer = null;
+    }
+    return !this.parsedDescriptors.isEmpty();
+  }
+
+  @Override
+  public Descriptor next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return this.parsedDescriptors.poll();
+  }
+
+  /* Read the first bytes, detect the descriptor type, and either continue
+   * reading and splitting descriptors, or read and parse the file as a
+   * whole. */
+  private void detectType() throws IOException {
+    while (this.length < DescriptorTypeDetector.WINDOW_LENGTH
+        && !this.endOfStream) {
+      this.readChunk();
+    }
+    this.started = true;
+    byte[] firstBytes = Arrays.copyOf(this.buffer, this.length);
+    DescriptorFactory factory = null;
+    DescriptorTypeDetector.Type type = null;
+    if (!DescriptorFactories.registeredFactories().isEmpty()) {
+      factory = DescriptorFactories.findRegisteredFactory(firstBytes);
+    }
+    if (null == factory) {
+      type = DescriptorTypeDetector.detect(firstBytes, this.fileName);
+      if (null != type) {
+        factory = DescriptorParserImpl.splittingFactory(type);
+      }
+    }
+    if (null != factory) {
+      if (this.parser.isRequested(factory.getDescriptorClass())) {
+        this.factory = factory;
+        return;
+      }
+    } else if (DescriptorTypeDetector.Type.TORPERF_RESULT == type) {
+      if (this.parser.isRequested(TorperfResultImpl.class)) {
+        return;
+      }
+    } else {
+      while (!this.endOfStream) {
+        this.readChunk();
+      }
+      for (Descriptor descriptor : this.parser.parseDescriptors(
+          Arrays.copyOf(this.buffer, this.length), this.sourceFile,
+          this.fileName)) {
+        this.parsedDescriptors.add(descriptor);
+      }
+    }
+    this.finished = true;
+    this.buffer = null;
+  }
+
+  /* Find the current descriptor's keyword line and the start of the next
+   * descriptor, reading more chunks as necessary, and parse the current
+   * descriptor including any annotations preceding it. */
+  private void splitNextDescriptor() throws IOException {
+    String keyword = this.factory.getKeyword();
+    if (this.startDescriptor < 0) {
+      if (this.length - this.position < keyword.length() + 1
+          && !this.endOfStream) {
+        this.readChunk();
+        return;
+      }
+      if (BytesHelper.regionMatches(this.buffer, this.position, this.length,
+          keyword + DescriptorImpl.SP) || BytesHelper.regionMatches(
+          this.buffer, this.position, this.length,
+          keyword + DescriptorImpl.NL)) {
+        this.startDescriptor = this.position;
+      } else {
+        int lineStart = this.findKeywordLine(keyword, this.searchFrom);
+        if (lineStart < 0) {
+          if (this.endOfStream) {
+            this.finished = true;
+            this.buffer = null;
+          } else {
+            this.searchFrom = Math.max(this.position,
+                this.length - keyword.length() - 1);
+            this.readChunk();
+          }
+          return;
+        }
+        this.startDescriptor = lineStart + 1;
+      }
+      this.searchFrom = this.startDescriptor;
+    }
+    int endDescriptor = BytesHelper.indexOf(this.buffer, this.searchFrom,
+        this.length, "\n@");
+    int nextKeywordLine = this.findKeywordLine(keyword, this.searchFrom);
+    if (endDescriptor < 0 || (nextKeywordLine >= 0
+        && nextKeywordLine < endDescriptor)) {
+      endDescriptor = nextKeywordLine;
+    }
+    if (endDescriptor >= 0) {
+      this.parseDescriptor(endDescriptor + 1);
+    } else if (this.endOfStream) {
+      this.parseDescriptor(this.length);
+      this.finished = true;
+      this.buffer = null;
+    } else {
+      this.searchFrom = Math.max(this.startDescriptor,
+          this.length - keyword.length() - 1);
+      this.readChunk();
+    }
+  }
+
+  /* Return the index of the newline preceding the next line that starts
+   * with the given keyword followed by a space or newline, or -1 if there
+   * is no such line in the buffer. */
+  private int findKeywordLine(String keyword, int from) {
+    int withSpace = BytesHelper.indexOf(this.buffer, from, this.length,
+        '\n', keyword, ' ');
+    int withNewline = BytesHelper.indexOf(this.buffer, from,
+        withSpace < 0 ? this.length : withSpace, '\n', keyword, '\n');
+    return withNewline < 0 ? withSpace : withNewline;
+  }
+
+  /* Parse the bytes from the current position to the given index as
+   * descriptor. */
+  private void parseDescriptor(int end) {
+    byte[] rawDescriptorBytes = Arrays.copyOfRange(this.buffer,
+        this.position, end);
+    this.parsedDescriptors.addAll(this.parser.parseOneOrMoreDescriptors(
+        rawDescriptorBytes, this.sourceFile, this.factory));
+    this.position = end;
+    this.startDescriptor = -1;
+    this.searchFrom = end;
+  }
+
+  /* Parse the next line as Torperf result, or remember it as type
+   * annotation of the next Torperf result. */
+  private void parseNextTorperfResult() throws IOException {
+    int newline = BytesHelper.indexOf(this.buffer, this.searchFrom,
+        this.length, '\n');
+    if (newline < 0) {
+      if (!this.endOfStream) {
+        this.searchFrom = this.length;
+        this.readChunk();
+        return;
+      } else if (this.position == this.length) {
+        this.finished = true;
+        this.buffer = null;
+        return;
+      }
+    }
+    int lineEnd = newline < 0 ? this.length : newline;
+    int next = newline < 0 ? this.length : newline + 1;
+    if (lineEnd > this.position && this.buffer[lineEnd - 1] == '\r') {
+      lineEnd--;
+    }
+    int lineLength = lineEnd - this.position;
+    if (BytesHelper.regionMatches(this.buffer, this.position, lineEnd,
+        "@type torperf ")) {
+      byte[] typeAnnotation = Arrays.copyOfRange(this.buffer, this.position,
+          lineEnd + 1);
+      typeAnnotation[lineLength] = '\n';
+      try {
+        TorperfResultImpl.checkTypeAnnotation(new String(typeAnnotation, 0,
+            lineLength, StandardCharsets.UTF_8));
+        this.torperfTypeAnnotation = typeAnnotation;
+      } catch (DescriptorParseException e) {
+        this.addUnparseable(typeAnnotation, e);
+        this.torperfTypeAnnotation = null;
+      }
+    } else {
+      int annotationLength = null == this.torperfTypeAnnotation ? 0
+          : this.torperfTypeAnnotation.length;
+      byte[] rawDescriptorBytes = new byte[annotationLength + lineLength
+          + 1];
+      if (annotationLength > 0) {
+        System.arraycopy(this.torperfTypeAnnotation, 0, rawDescriptorBytes,
+            0, annotationLength);
+      }
+      System.arraycopy(this.buffer, this.position, rawDescriptorBytes,
+          annotationLength, lineLength);
+      rawDescriptorBytes[rawDescriptorBytes.length - 1] = '\n';
+      try {
+        this.parsedDescriptors.add(new TorperfResultImpl(rawDescriptorBytes,
+            this.sourceFile));
+      } catch (DescriptorParseException e) {
+        this.addUnparseable(rawDescriptorBytes, e);
+      }
+      this.torperfTypeAnnotation = null;
+    }
+    this.position = next;
+    this.searchFrom = next;
+  }
+
+  private void addUnparseable(byte[] rawDescriptorBytes,
+      DescriptorParseException e) {
+    this.parsedDescriptors.add(new UnparseableDescriptorImpl(
+        rawDescriptorBytes, new int[] { 0, rawDescriptorBytes.length },
+        this.sourceFile, e));
+  }
+
+  /* Read the next chunk into the buffer, moving unparsed bytes to the start
+   * of the buffer or growing the buffer if it is full. */
+  private void readChunk() throws IOException {
+    if (this.length == this.buffer.length && this.position > 0) {
+      System.arraycopy(this.buffer, this.position, this.buffer, 0,
+          this.length - this.position);
+      this.length -= this.position;
+      this.searchFrom -= this.position;
+      if (this.startDescriptor >= 0) {
+        this.startDescriptor -= this.position;
+      }
+      this.position = 0;
+    } else if (this.length == this.buffer.length) {
+      if (this.length >= MAX_ARRAY_SIZE) {
+        throw new IOException("Descriptor is too large to be read into "
+            + "memory.");
+      }
+      this.buffer = Arrays.copyOf(this.buffer,
+          (int) Math.min(2L * this.length, MAX_ARRAY_SIZE));
+    }
+    int read = this.inputStream.read(this.buffer, this.length,
+        Math.min(CHUNK_SIZE, this.buffer.length - this.length));
+    if (read < 0) {
+      this.endOfStream = true;
+    } else {
+      this.length += read;
+    }
+  }
+}
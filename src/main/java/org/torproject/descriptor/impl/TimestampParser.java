@@ -0,0 +1,163 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+/**
+ * Parser for UTC timestamps in the fixed-width formats "yyyy-MM-dd
+ * HH:mm:ss" and "yyyy-MM-dd" that are contained in almost all descriptors,
+ * operating on chars without creating any objects.
+ *
+ * <p>All methods return the number of milliseconds since the epoch, or -1
+ * if the input is not a valid timestamp in exactly the expected format, in
+ * which case callers may still fall back to a more lenient parser.  Valid
+ * timestamps are those that a non-lenient {@link java.text.SimpleDateFormat}
+ * would accept, too: months from 1 to 12, days within the month, hours from
+ * 0 to 23, and minutes and seconds from 0 to 59.</p>
+ *
+ * <p>Each thread keeps a small cache of recently parsed timestamps, because
+ * descriptors like consensuses contain thousands of timestamps with only a
+ * few distinct values.</p>
+ */
+class TimestampParser {
+
+  private TimestampParser() {
+  }
+
+  /* Number of cached timestamps per thread, which must be a power of 2. */
+  private static final int CACHE_SIZE = 1024;
+
+  /* Direct-mapped cache of parsed timestamps, keyed by date and time
+   * digits. */
+  private static final class Cache {
+
+    private final long[] keys = new long[CACHE_SIZE];
+
+    private final long[] millis = new long[CACHE_SIZE];
+  }
+
+  private static final ThreadLocal<Cache> caches =
+      ThreadLocal.withInitial(Cache::new);
+
+  private static final long MILLIS_PER_DAY = 86_400_000L;
+
+  /* Parse a timestamp consisting of a "yyyy-MM-dd" date and a "HH:mm:ss"
+   * time, like two space-separated parts of a line. */
+  static long parseDateTime(CharSequence date, CharSequence time) {
+    if (date.length() != 10 || time.length() != 8) {
+      return -1L;
+    }
+    return toMillis(dateDigits(date, 0), timeDigits(time, 0));
+  }
+
+  /* Parse a "yyyy-MM-dd" date. */
+  static long parseDate(CharSequence date) {
+    if (date.length() != 10) {
+      return -1L;
+    }
+    return toMillis(dateDigits(date, 0), 0);
+  }
+
+  /* Return the date digits starting at the given index as a single yyyyMMdd
+   * number, or -1 if they are not in the expected format. */
+  private static int dateDigits(CharSequence chars, int index) {
+    if (chars.charAt(index + 4) != '-' || chars.charAt(index + 7) != '-') {
+      return -1;
+    }
+    return packDigits(digits(chars, index, 4), digits(chars, index + 5, 2),
+        digits(chars, index + 8, 2));
+  }
+
+  /* Return the time digits starting at the given index as a single HHmmss
+   * number, or -1 if they are not in the expected format. */
+  private static int timeDigits(CharSequence chars, int index) {
+    if (chars.charAt(index + 2) != ':' || chars.charAt(index + 5) != ':') {
+      return -1;
+    }
+    return packDigits(digits(chars, index, 2), digits(chars, index + 3, 2),
+        digits(chars, index + 6, 2));
+  }
+
+  private static int packDigits(int high, int middle, int low) {
+    if (high < 0 || middle < 0 || low < 0) {
+      return -1;
+    }
+    return (high * 100 + middle) * 100 + low;
+  }
+
+  /* Return the decimal number formed by the given number of digits, or -1
+   * if any of them is not an ASCII digit. */
+  private static int digits(CharSequence chars, int index, int count) {
+    int value = 0;
+    for (int i = index; i < index + count; i++) {
+      char digit = chars.charAt(i);
+      if (digit < '0' || digit > '9') {
+        return -1;
+      }
+      value = value * 10 + (digit - '0');
+    }
+    return value;
+  }
+
+  /* Convert packed yyyyMMdd and HHmmss numbers to milliseconds since the
+   * epoch, looking them up in the cache first. */
+  private static long toMillis(int date, int time) {
+    if (date < 0 || time < 0) {
+      return -1L;
+    }
+    /* Keys are never 0, because there is no month 0. */
+    long key = date * 1_000_000L + time;
+    Cache cache = caches.get();
+    int slot = (int) (key ^ (key >>> 17)) & (CACHE_SIZE - 1);
+    if (cache.keys[slot] == key) {
+      return cache.millis[slot];
+    }
+    long millis = computeMillis(date / 10000, date / 100 % 100, date % 100,
+        time / 10000, time / 100 % 100, time % 100);
+    if (millis != -1L) {
+      cache.keys[slot] = key;
+      cache.millis[slot] = millis;
+    }
+    return millis;
+  }
+
+  private static long computeMillis(int year, int month, int day, int hour,
+      int minute, int second) {
+    if (month < 1 || month > 12 || day < 1
+        || day > daysInMonth(year, month) || hour > 23 || minute > 59
+        || second > 59) {
+      return -1L;
+    }
+    return daysSinceEpoch(year, month, day) * MILLIS_PER_DAY
+        + ((hour * 60L + minute) * 60L + second) * 1000L;
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)
+            ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /* Return the number of days between 1970-01-01 and the given date in the
+   * proleptic Gregorian calendar, counting years from March to February so
+   * that leap days come last. */
+  private static long daysSinceEpoch(int year, int month, int day) {
+    int shiftedYear = month <= 2 ? year - 1 : year;
+    int era = Math.floorDiv(shiftedYear, 400);
+    int yearOfEra = shiftedYear - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5
+        + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+        + dayOfYear;
+    return era * 146_097L + dayOfEra - 719_468L;
+  }
+}
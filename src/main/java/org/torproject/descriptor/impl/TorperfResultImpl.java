@@ -13,7 +13,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Scanner;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -21,6 +20,13 @@ import java.util.TreeMap;
 public class TorperfResultImpl extends DescriptorImpl
     implements TorperfResult {
 
+  private static final long serialVersionUID = 1L;
+
+  /* Parse Torperf results contained in the given raw descriptor bytes, one
+   * per line, each including the type annotation line directly preceding
+   * it, if any.  Results are parsed in place, unless their lines end with a
+   * carriage return or the last line does not end with a newline, in which
+   * case they are copied to remove or add these characters. */
   protected static List<Descriptor> parseTorperfResults(
       byte[] rawDescriptorBytes, File descriptorFile)
       throws DescriptorParseException {
@@ -28,50 +34,88 @@ public class TorperfResultImpl extends DescriptorImpl
       throw new DescriptorParseException("Descriptor is empty.");
     }
     List<Descriptor> parsedDescriptors = new ArrayList<>();
-    String descriptorString = new String(rawDescriptorBytes,
-        StandardCharsets.UTF_8);
-    try (Scanner scanner =
-                 new Scanner(descriptorString).useDelimiter("\r?\n")) {
-      String typeAnnotation = "";
-      while (scanner.hasNext()) {
-        String line = scanner.next();
-        if (line.startsWith("@type torperf ")) {
-          String[] parts = line.split(" ");
-          if (parts.length != 3) {
-            throw new DescriptorParseException("Illegal line '" + line
-                    + "'.");
-          }
-          String version = parts[2];
-          if (!version.startsWith("1.")) {
-            throw new DescriptorParseException("Unsupported version in "
-                    + " line '" + line + "'.");
-          }
-          typeAnnotation = line + "\n";
-        } else {
+    int end = rawDescriptorBytes.length;
+    int annotationStart = -1;
+    int annotationEnd = -1;
+    int lineStart = 0;
+    while (lineStart < end) {
+      int newline = BytesHelper.indexOf(rawDescriptorBytes, lineStart, end,
+          '\n');
+      int lineEnd = newline < 0 ? end : newline;
+      int nextLineStart = newline < 0 ? end : newline + 1;
+      if (lineEnd > lineStart && rawDescriptorBytes[lineEnd - 1] == '\r') {
+        lineEnd--;
+      }
+      if (BytesHelper.regionMatches(rawDescriptorBytes, lineStart, lineEnd,
+          "@type torperf ")) {
+        checkTypeAnnotation(new String(rawDescriptorBytes, lineStart,
+            lineEnd - lineStart, StandardCharsets.UTF_8));
+        annotationStart = lineStart;
+        annotationEnd = lineEnd;
+      } else {
+        int start = annotationStart < 0 ? lineStart : annotationStart;
+        if (lineEnd == newline && (annotationStart < 0
+            || annotationEnd == lineStart - 1)) {
           /* XXX21932 */
-          parsedDescriptors.add(new TorperfResultImpl(
-                  (typeAnnotation + line + "\n")
-                          .getBytes(StandardCharsets.UTF_8),
-                  descriptorFile));
-          typeAnnotation = "";
+          parsedDescriptors.add(new TorperfResultImpl(rawDescriptorBytes,
+              new int[] { start, nextLineStart - start }, descriptorFile));
+        } else {
+          int annotationLength = annotationStart < 0 ? 0
+              : annotationEnd - annotationStart + 1;
+          byte[] resultBytes = new byte[annotationLength + lineEnd
+              - lineStart + 1];
+          if (annotationLength > 0) {
+            System.arraycopy(rawDescriptorBytes, annotationStart,
+                resultBytes, 0, annotationLength - 1);
+            resultBytes[annotationLength - 1] = '\n';
+          }
+          System.arraycopy(rawDescriptorBytes, lineStart, resultBytes,
+              annotationLength, lineEnd - lineStart);
+          resultBytes[resultBytes.length - 1] = '\n';
+          parsedDescriptors.add(new TorperfResultImpl(resultBytes,
+              new int[] { 0, resultBytes.length }, descriptorFile));
         }
+        annotationStart = -1;
       }
+      lineStart = nextLineStart;
     }
     return parsedDescriptors;
   }
 
+  /* Check that the given type annotation line contains a supported
+   * version. */
+  static void checkTypeAnnotation(String line)
+      throws DescriptorParseException {
+    String[] parts = line.split(" ");
+    if (parts.length != 3) {
+      throw new DescriptorParseException("Illegal line '" + line + "'.");
+    }
+    String version = parts[2];
+    if (!version.startsWith("1.")) {
+      throw new DescriptorParseException("Unsupported version in "
+          + " line '" + line + "'.");
+    }
+  }
+
   protected TorperfResultImpl(byte[] rawDescriptorBytes, File descriptorFile)
       throws DescriptorParseException {
-    super(rawDescriptorBytes, new int[] { 0, rawDescriptorBytes.length },
-        descriptorFile, false);
+    this(rawDescriptorBytes, new int[] { 0, rawDescriptorBytes.length },
+        descriptorFile);
+  }
+
+  protected TorperfResultImpl(byte[] rawDescriptorBytes, int[] offsetAndLength,
+      File descriptorFile) throws DescriptorParseException {
+    super(rawDescriptorBytes, offsetAndLength, descriptorFile, false);
     this.parseTorperfResultLine();
+    this.clearParsedKeys();
   }
 
   private void parseTorperfResultLine()
       throws DescriptorParseException {
     String line = null;
-    try (Scanner scanner = this.newScanner()) {
-      line = scanner.nextLine();
+    LineCursor lines = this.newLineCursor();
+    if (lines.hasNext()) {
+      line = lines.next();
     }
     while (null != line && line.startsWith("@") && line.contains("\n")) {
       line = line.split("\n")[1];
@@ -12,6 +12,8 @@ import java.util.List;
 public class UnparseableDescriptorImpl extends DescriptorImpl
     implements UnparseableDescriptor {
 
+  private static final long serialVersionUID = 1L;
+
   protected UnparseableDescriptorImpl(byte[] rawDescriptorBytes,
       int[] offsetAndLength, File descriptorFile,
       DescriptorParseException descriptorParseException) {
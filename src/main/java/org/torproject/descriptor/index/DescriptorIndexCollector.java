@@ -11,21 +11,40 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * Download files from a CollecTor instance based on the remote
  * instance's index.json.
  *
+ * <p>Remote files are first written to hidden temporary files in the local
+ * directory.  If fetching a file over HTTP fails halfway, the next attempt
+ * requests only the missing bytes, provided that the remote file has not
+ * been modified in the meantime.  If an index cache directory is set, the
+ * remote index is kept there together with its ETag and last-modified
+ * time, so that it is only fetched again if it has changed.</p>
+ *
  * @since 1.4.0
  */
 public class DescriptorIndexCollector implements DescriptorCollector {
@@ -33,6 +52,35 @@ public class DescriptorIndexCollector implements DescriptorCollector {
   private static Logger log = LoggerFactory
       .getLogger(DescriptorIndexCollector.class);
 
+  private int numDownloadThreads = 1;
+
+  @Override
+  public void setNumDownloadThreads(int numDownloadThreads) {
+    if (numDownloadThreads < 1) {
+      throw new IllegalArgumentException("Number of download threads must "
+          + "be positive.");
+    }
+    this.numDownloadThreads = numDownloadThreads;
+  }
+
+  private int maxConnectionsPerHost = 4;
+
+  @Override
+  public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+    if (maxConnectionsPerHost < 1) {
+      throw new IllegalArgumentException("Maximum number of connections per "
+          + "host must be positive.");
+    }
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+  }
+
+  private File indexCacheDirectory;
+
+  @Override
+  public void setIndexCacheDirectory(File indexCacheDirectory) {
+    this.indexCacheDirectory = indexCacheDirectory;
+  }
+
   /**
    * If {@code collecTorIndexUrlString} contains just the
    * base url, e.g. https://some.host.org, the path
@@ -72,7 +120,11 @@ public class DescriptorIndexCollector implements DescriptorCollector {
         indexUrlString += "/index/index.json";
       }
       log.info("Fetching remote index file {}.", indexUrlString);
-      index = IndexNode.fetchIndex(indexUrlString);
+      File cachedIndexFile = null == this.indexCacheDirectory ? null
+          : new File(this.indexCacheDirectory, indexUrlString.substring(
+          indexUrlString.lastIndexOf('/') + 1));
+      index = IndexNode.fetchIndex(indexUrlString, cachedIndexFile,
+          remoteDirectories);
       remoteFiles = index.retrieveFilesIn(remoteDirectories);
     } catch (Exception ex) {
       log.warn("Cannot fetch index file {} and hence cannot determine which "
@@ -96,6 +148,7 @@ public class DescriptorIndexCollector implements DescriptorCollector {
 
   boolean fetchRemoteFiles(String baseUrl, SortedMap<String, FileNode> remotes,
       long minLastModified, File localDir, SortedMap<String, Long> locals) {
+    List<Runnable> downloads = new ArrayList<>();
     for (Map.Entry<String, FileNode> entry : remotes.entrySet()) {
       String filepathname = entry.getKey();
       String filename = entry.getValue().path;
@@ -112,33 +165,156 @@ public class DescriptorIndexCollector implements DescriptorCollector {
             + "Aborting descriptor collection.", filepath, filename);
         return false;
       }
-      File destinationFile = new File(filepath, filename);
-      File tempDestinationFile = new File(filepath, "." + filename);
-      log.debug("Fetching remote file {} with expected size of {} bytes from "
-          + "{}, storing locally to temporary file {}, then renaming to {}.",
-          filepathname, entry.getValue().size, baseUrl,
-          tempDestinationFile.getAbsolutePath(),
-          destinationFile.getAbsolutePath());
-      try (InputStream is = new URL(baseUrl + "/" + filepathname)
-          .openStream()) {
-        Files.copy(is, tempDestinationFile.toPath(),
-            StandardCopyOption.REPLACE_EXISTING);
-        if (tempDestinationFile.length() == entry.getValue().size) {
-          tempDestinationFile.renameTo(destinationFile);
-          destinationFile.setLastModified(lastModifiedMillis);
+      downloads.add(() -> this.fetchRemoteFile(baseUrl, filepathname,
+          entry.getValue(), filepath));
+    }
+    if (this.numDownloadThreads < 2 || downloads.size() < 2) {
+      for (Runnable download : downloads) {
+        download.run();
+      }
+      return true;
+    }
+    return this.runConcurrently(downloads);
+  }
+
+  /* Run the given downloads using a pool of download threads and wait for
+   * all of them to complete. */
+  private boolean runConcurrently(List<Runnable> downloads) {
+    ExecutorService downloadPool = Executors.newFixedThreadPool(
+        Math.min(this.numDownloadThreads, downloads.size()), runnable -> {
+          Thread thread = new Thread(runnable);
+          thread.setDaemon(true);
+          return thread;
+        });
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Runnable download : downloads) {
+        futures.add(downloadPool.submit(download));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          log.warn("Unexpected exception while fetching a remote file.  "
+              + "Continuing with the remaining files.", e.getCause());
+        }
+      }
+      return true;
+    } catch (InterruptedException e) {
+      log.warn("Interrupted while fetching remote files.  Aborting "
+          + "descriptor collection.");
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      downloadPool.shutdownNow();
+    }
+  }
+
+  /* Connection permits by protocol, host, and port, shared by all download
+   * threads of this collector. */
+  private final Map<String, Semaphore> hostPermits
+      = new ConcurrentHashMap<>();
+
+  private void fetchRemoteFile(String baseUrl, String filepathname,
+      FileNode remoteFile, File filepath) {
+    String filename = remoteFile.path;
+    File destinationFile = new File(filepath, filename);
+    File tempDestinationFile = new File(filepath, "." + filename);
+    log.debug("Fetching remote file {} with expected size of {} bytes from "
+        + "{}, storing locally to temporary file {}, then renaming to {}.",
+        filepathname, remoteFile.size, baseUrl,
+        tempDestinationFile.getAbsolutePath(),
+        destinationFile.getAbsolutePath());
+    Semaphore permits = null;
+    try {
+      URL url = new URL(baseUrl + "/" + filepathname);
+      if (this.numDownloadThreads > 1) {
+        Semaphore hostPermits = this.hostPermits.computeIfAbsent(
+            url.getProtocol() + "://" + url.getAuthority(),
+            host -> new Semaphore(this.maxConnectionsPerHost));
+        hostPermits.acquire();
+        permits = hostPermits;
+      }
+      long resumeFrom = tempDestinationFile.length();
+      if (resumeFrom >= remoteFile.size || tempDestinationFile.lastModified()
+          != remoteFile.lastModifiedMillis()) {
+        resumeFrom = 0L;
+      }
+      URLConnection connection = url.openConnection();
+      if (resumeFrom > 0L && connection instanceof HttpURLConnection) {
+        connection.setRequestProperty("Range", "bytes=" + resumeFrom + "-");
+        /* 416 Range Not Satisfiable: the remote file is shorter than what
+         * was fetched before, so fetch it again from the start. */
+        if (416 == ((HttpURLConnection) connection).getResponseCode()) {
+          resumeFrom = 0L;
+          connection = url.openConnection();
+        }
+      } else {
+        resumeFrom = 0L;
+      }
+      boolean startedWriting = false;
+      try (InputStream is = connection.getInputStream()) {
+        startedWriting = true;
+        if (resumeFrom > 0L && HttpURLConnection.HTTP_PARTIAL
+            == ((HttpURLConnection) connection).getResponseCode()) {
+          String contentRange = connection.getHeaderField("Content-Range");
+          if (null == contentRange
+              || !contentRange.startsWith("bytes " + resumeFrom + "-")) {
+            log.warn("Cannot resume fetching remote file {} from {}, because "
+                + "the server responded with unexpected content range {}.  "
+                + "Deleting partially fetched file and skipping it.",
+                filename, baseUrl, contentRange);
+            tempDestinationFile.delete();
+            return;
+          }
+          log.debug("Resuming to fetch remote file {} after {} bytes.",
+              filepathname, resumeFrom);
+          appendTo(is, tempDestinationFile);
         } else {
-          log.warn("Fetched remote file {} from {} has a size of {} bytes "
-              + "which is different from the expected {} bytes.  Not storing "
-              + "this file.",
-              filename, baseUrl, tempDestinationFile.length(),
-              entry.getValue().size);
+          Files.copy(is, tempDestinationFile.toPath(),
+              StandardCopyOption.REPLACE_EXISTING);
         }
       } catch (IOException e) {
-        log.warn("Cannot fetch remote file {} from {}.  Skipping that file.",
-            filename, baseUrl, e);
+        /* Mark a partially fetched file with the remote last-modified time,
+         * so that the next attempt only resumes fetching it if the remote
+         * file has not changed in the meantime. */
+        if (startedWriting && tempDestinationFile.length() > 0L) {
+          tempDestinationFile.setLastModified(
+              remoteFile.lastModifiedMillis());
+        }
+        throw e;
+      }
+      if (tempDestinationFile.length() == remoteFile.size) {
+        tempDestinationFile.renameTo(destinationFile);
+        destinationFile.setLastModified(remoteFile.lastModifiedMillis());
+      } else {
+        log.warn("Fetched remote file {} from {} has a size of {} bytes "
+            + "which is different from the expected {} bytes.  Not storing "
+            + "this file.",
+            filename, baseUrl, tempDestinationFile.length(),
+            remoteFile.size);
+      }
+    } catch (IOException e) {
+      log.warn("Cannot fetch remote file {} from {}.  Skipping that file.",
+          filename, baseUrl, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if (null != permits) {
+        permits.release();
+      }
+    }
+  }
+
+  private static void appendTo(InputStream is, File file) throws IOException {
+    try (OutputStream os = Files.newOutputStream(file.toPath(),
+        StandardOpenOption.APPEND)) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) > 0) {
+        os.write(buffer, 0, read);
       }
     }
-    return true;
   }
 
   static void deleteExtraneousLocalFiles(String[] remoteDirectories,
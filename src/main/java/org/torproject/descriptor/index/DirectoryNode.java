@@ -3,6 +3,10 @@
 
 package org.torproject.descriptor.index;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.HashMap;
+import java.util.Map;
 import java.util.SortedSet;
 
 /**
@@ -21,6 +25,11 @@ public class DirectoryNode implements Comparable<DirectoryNode> {
   /** The directory list is exposed in JSON. Sorted according to path. */
   public final SortedSet<DirectoryNode> directories;
 
+  /* Subdirectories by path, built on first lookup, assuming that
+   * subdirectories are not modified after that. */
+  @JsonIgnore
+  private Map<String, DirectoryNode> directoriesByPath;
+
   /* Added to satisfy Jackson. */
   private DirectoryNode() {
     this.path = null;
@@ -36,6 +45,26 @@ public class DirectoryNode implements Comparable<DirectoryNode> {
     this.directories = directories;
   }
 
+  /* Return the subdirectory with the given path, or null if there is no such
+   * subdirectory. */
+  DirectoryNode findDirectory(String path) {
+    if (null == this.directoriesByPath) {
+      this.directoriesByPath = mapByPath(this.directories);
+    }
+    return this.directoriesByPath.get(path);
+  }
+
+  static Map<String, DirectoryNode> mapByPath(
+      SortedSet<DirectoryNode> directories) {
+    Map<String, DirectoryNode> directoriesByPath = new HashMap<>();
+    if (null != directories) {
+      for (DirectoryNode directory : directories) {
+        directoriesByPath.put(directory.path, directory);
+      }
+    }
+    return directoriesByPath;
+  }
+
   /**
    * This compareTo is not compatible with equals or hash!
    * It simply ensures a path-sorted JSON output.
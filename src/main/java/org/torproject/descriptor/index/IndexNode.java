@@ -6,23 +6,39 @@ package org.torproject.descriptor.index;
 import org.torproject.descriptor.internal.FileType;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
@@ -73,6 +89,11 @@ public class IndexNode {
   /** The file list is exposed in JSON. Sorted according to path. */
   public final SortedSet<FileNode> files;
 
+  /* Top-level directories by path, built on first lookup, assuming that
+   * directories are not modified after that. */
+  @JsonIgnore
+  private Map<String, DirectoryNode> directoriesByPath;
+
   /* Added to satisfy Jackson. */
   private IndexNode() {
     this.created = null;
@@ -117,6 +138,107 @@ public class IndexNode {
     }
   }
 
+  /* Read JSON from the given URL string, unless the remote index has not
+   * changed since it was last fetched and stored to the given local file,
+   * or read it without storing it anywhere if no local file is given.
+   *
+   * Whenever the remote server provides an ETag or Last-Modified header,
+   * the fetched index is stored to the given local file as is, and the
+   * header values are stored to a properties file next to it with suffix
+   * ".validators".  The next fetch sends these values in If-None-Match and
+   * If-Modified-Since headers and reads the local file if the server
+   * responds with 304 Not Modified.  If the local file cannot be read, both
+   * files are deleted, so that the next fetch downloads the index again.
+   *
+   * Only directories on the way to the given remote directories are read,
+   * as in readIndex. */
+  static IndexNode fetchIndex(String urlString, File cachedIndexFile,
+      String[] remoteDirectories) throws Exception {
+    String ending
+        = urlString.substring(urlString.lastIndexOf(".") + 1).toUpperCase();
+    URLConnection connection = (new URL(urlString)).openConnection();
+    connection.setReadTimeout(READ_TIMEOUT);
+    connection.setConnectTimeout(CONNECT_TIMEOUT);
+    if (null == cachedIndexFile
+        || !(connection instanceof HttpURLConnection)) {
+      connection.connect();
+      try (InputStream is = FileType.valueOf(ending)
+          .inputStream(connection.getInputStream())) {
+        return readIndex(is, remoteDirectories);
+      }
+    }
+    File validatorsFile = new File(cachedIndexFile.getPath() + ".validators");
+    HttpURLConnection httpConnection = (HttpURLConnection) connection;
+    if (cachedIndexFile.exists() && validatorsFile.exists()) {
+      Properties validators = new Properties();
+      try (Reader reader = Files.newBufferedReader(validatorsFile.toPath(),
+          StandardCharsets.UTF_8)) {
+        validators.load(reader);
+      }
+      if (validators.containsKey("ETag")) {
+        httpConnection.setRequestProperty("If-None-Match",
+            validators.getProperty("ETag"));
+      }
+      if (validators.containsKey("Last-Modified")) {
+        httpConnection.setRequestProperty("If-Modified-Since",
+            validators.getProperty("Last-Modified"));
+      }
+    }
+    httpConnection.connect();
+    if (HttpURLConnection.HTTP_NOT_MODIFIED
+        == httpConnection.getResponseCode()) {
+      log.info("Remote index file {} has not been modified since it was "
+          + "last fetched.  Reading local copy {}.", urlString,
+          cachedIndexFile);
+      return readCachedIndex(cachedIndexFile, validatorsFile, ending,
+          remoteDirectories);
+    }
+    Properties validators = new Properties();
+    for (String header : new String[] { "ETag", "Last-Modified" }) {
+      String value = httpConnection.getHeaderField(header);
+      if (null != value) {
+        validators.setProperty(header, value);
+      }
+    }
+    if (validators.isEmpty()) {
+      try (InputStream is = FileType.valueOf(ending)
+          .inputStream(httpConnection.getInputStream())) {
+        return readIndex(is, remoteDirectories);
+      }
+    }
+    validatorsFile.delete();
+    if (null != cachedIndexFile.getParentFile()) {
+      cachedIndexFile.getParentFile().mkdirs();
+    }
+    File tempIndexFile = new File(cachedIndexFile.getPath() + ".tmp");
+    try (InputStream is = httpConnection.getInputStream()) {
+      Files.copy(is, tempIndexFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+    Files.move(tempIndexFile.toPath(), cachedIndexFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+    IndexNode index = readCachedIndex(cachedIndexFile, validatorsFile,
+        ending, remoteDirectories);
+    try (Writer writer = Files.newBufferedWriter(validatorsFile.toPath(),
+        StandardCharsets.UTF_8)) {
+      validators.store(writer, null);
+    }
+    return index;
+  }
+
+  private static IndexNode readCachedIndex(File cachedIndexFile,
+      File validatorsFile, String ending, String[] remoteDirectories)
+      throws Exception {
+    try (InputStream is = FileType.valueOf(ending)
+        .inputStream(Files.newInputStream(cachedIndexFile.toPath()))) {
+      return readIndex(is, remoteDirectories);
+    } catch (Exception e) {
+      validatorsFile.delete();
+      cachedIndexFile.delete();
+      throw e;
+    }
+  }
+
   /**
    * Reads JSON from given InputStream.
    * Returns an empty IndexNode in case of an error.
@@ -125,6 +247,152 @@ public class IndexNode {
     return objectMapper.readValue(is, IndexNode.class);
   }
 
+  private static final TypeReference<SortedSet<FileNode>> FILE_NODES
+      = new TypeReference<SortedSet<FileNode>>() { };
+
+  /* Read JSON from the given InputStream, but only keep directories on the
+   * way to the given remote directories and skip all other directories and
+   * top-level files without creating nodes for them.
+   *
+   * Directories on the way to a remote directory are kept together with
+   * their files, so that retrieveFilesIn returns the same files for the
+   * given remote directories as if the whole index had been read. */
+  static IndexNode readIndex(InputStream is, String[] remoteDirectories)
+      throws IOException {
+    List<String[]> requestedPaths = new ArrayList<>();
+    for (String remote : remoteDirectories) {
+      if (null != remote && !remote.isEmpty()) {
+        requestedPaths.add(remote.replaceAll("/", " ").trim().split(" "));
+      }
+    }
+    try (JsonParser parser = objectMapper.getFactory().createParser(is)) {
+      if (JsonToken.START_OBJECT != parser.nextToken()) {
+        throw new JsonParseException(parser, "Expected index object.");
+      }
+      String created = null;
+      String revision = null;
+      String path = null;
+      SortedSet<DirectoryNode> directories = null;
+      while (JsonToken.FIELD_NAME == parser.nextToken()) {
+        String fieldName = parser.getCurrentName();
+        parser.nextToken();
+        switch (fieldName) {
+          case "index_created":
+            created = parser.getValueAsString();
+            break;
+          case "build_revision":
+            revision = parser.getValueAsString();
+            break;
+          case "path":
+            path = parser.getValueAsString();
+            break;
+          case "directories":
+            directories = readDirectories(parser, requestedPaths, 0);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+      if (JsonToken.END_OBJECT != parser.getCurrentToken()) {
+        throw new JsonParseException(parser, "Unexpected end of index.");
+      }
+      return new IndexNode(created, revision, path, null, directories);
+    }
+  }
+
+  /* Read an array of directories at the given depth, keeping only those
+   * on the way to one of the given requested paths, or return null if the
+   * current token is not the start of an array. */
+  private static SortedSet<DirectoryNode> readDirectories(JsonParser parser,
+      List<String[]> requestedPaths, int depth) throws IOException {
+    if (JsonToken.START_ARRAY != parser.getCurrentToken()) {
+      parser.skipChildren();
+      return null;
+    }
+    SortedSet<DirectoryNode> directories = new TreeSet<>();
+    while (JsonToken.START_OBJECT == parser.nextToken()) {
+      DirectoryNode directory = readDirectory(parser, requestedPaths, depth);
+      if (null != directory) {
+        directories.add(directory);
+      }
+    }
+    if (JsonToken.END_ARRAY != parser.getCurrentToken()) {
+      throw new JsonParseException(parser, "Expected directory object.");
+    }
+    return directories;
+  }
+
+  private static DirectoryNode readDirectory(JsonParser parser,
+      List<String[]> requestedPaths, int depth) throws IOException {
+    String path = null;
+    TreeNode filesTree = null;
+    TreeNode directoriesTree = null;
+    SortedSet<FileNode> files = null;
+    SortedSet<DirectoryNode> directories = null;
+    List<String[]> matchingPaths = null;
+    List<String[]> deeperPaths = null;
+    while (JsonToken.FIELD_NAME == parser.nextToken()) {
+      String fieldName = parser.getCurrentName();
+      parser.nextToken();
+      switch (fieldName) {
+        case "path":
+          path = parser.getValueAsString();
+          matchingPaths = new ArrayList<>();
+          deeperPaths = new ArrayList<>();
+          for (String[] requestedPath : requestedPaths) {
+            if (requestedPath[depth].equals(path)) {
+              matchingPaths.add(requestedPath);
+              if (requestedPath.length > depth + 1) {
+                deeperPaths.add(requestedPath);
+              }
+            }
+          }
+          break;
+        case "files":
+          if (null == matchingPaths) {
+            /* Keep files until we know whether we need them, which only
+             * happens if the path comes after them. */
+            filesTree = parser.readValueAsTree();
+          } else if (matchingPaths.isEmpty()) {
+            parser.skipChildren();
+          } else {
+            files = parser.readValueAs(FILE_NODES);
+          }
+          break;
+        case "directories":
+          if (null == deeperPaths) {
+            directoriesTree = parser.readValueAsTree();
+          } else if (deeperPaths.isEmpty()) {
+            parser.skipChildren();
+          } else {
+            directories = readDirectories(parser, deeperPaths, depth + 1);
+          }
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    if (JsonToken.END_OBJECT != parser.getCurrentToken()) {
+      throw new JsonParseException(parser, "Unexpected end of directory.");
+    }
+    if (null == matchingPaths || matchingPaths.isEmpty()) {
+      return null;
+    }
+    if (null != filesTree) {
+      try (JsonParser treeParser = filesTree.traverse(objectMapper)) {
+        treeParser.nextToken();
+        files = treeParser.readValueAs(FILE_NODES);
+      }
+    }
+    if (null != directoriesTree && !deeperPaths.isEmpty()) {
+      try (JsonParser treeParser = directoriesTree.traverse(objectMapper)) {
+        treeParser.nextToken();
+        directories = readDirectories(treeParser, deeperPaths, depth + 1);
+      }
+    }
+    return new DirectoryNode(path, files, directories);
+  }
+
   /** Return a map of file paths for the given directories. */
   public SortedMap<String, FileNode> retrieveFilesIn(String ... remoteDirs) {
     SortedMap<String, FileNode> map = new TreeMap<>();
@@ -133,13 +401,13 @@ public class IndexNode {
         continue;
       }
       String[] dirs = remote.replaceAll("/", " ").trim().split(" ");
-      DirectoryNode currentDir = findPathIn(dirs[0], this.directories);
+      DirectoryNode currentDir = this.findDirectory(dirs[0]);
       if (null == currentDir) {
         continue;
       }
       StringBuilder currentPath = new StringBuilder(dirs[0] + "/");
       for (int k = 1; k < dirs.length; k++) {
-        DirectoryNode dn = findPathIn(dirs[k], currentDir.directories);
+        DirectoryNode dn = currentDir.findDirectory(dirs[k]);
         if (null == dn) {
           break;
         } else {
@@ -159,6 +427,13 @@ public class IndexNode {
     return map;
   }
 
+  private DirectoryNode findDirectory(String path) {
+    if (null == this.directoriesByPath) {
+      this.directoriesByPath = DirectoryNode.mapByPath(this.directories);
+    }
+    return this.directoriesByPath.get(path);
+  }
+
   /** Returns the directory nodes with the given path, but no file nodes. */
   public static DirectoryNode findPathIn(String path,
       SortedSet<DirectoryNode> dirs) {
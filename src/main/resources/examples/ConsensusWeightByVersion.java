@@ -19,9 +19,11 @@ public class ConsensusWeightByVersion {
 
     // Read descriptors from disk.
     DescriptorReader descriptorReader = DescriptorSourceFactory.createDescriptorReader();
+    // Skip files containing other descriptor types without parsing them.
+    descriptorReader.setDescriptorTypes(Collections.singleton(RelayNetworkStatusConsensus.class));
     for (Descriptor descriptor : descriptorReader.readDescriptors(new File("descriptors/recent/relay-descriptors/consensuses"))) {
       if (!(descriptor instanceof RelayNetworkStatusConsensus)) {
-        // We're only interested in consensuses.
+        // Consensuses that could not be parsed are still provided.
         continue;
       }
       RelayNetworkStatusConsensus consensus = (RelayNetworkStatusConsensus) descriptor;
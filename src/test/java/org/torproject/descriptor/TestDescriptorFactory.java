@@ -0,0 +1,66 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor;
+
+import org.torproject.descriptor.impl.DescriptorFactory;
+import org.torproject.descriptor.impl.DescriptorImpl;
+import org.torproject.descriptor.impl.LineCursor;
+
+import java.io.File;
+
+/* Factory for a descriptor type that is not supported by this library,
+ * registered with ServiceLoader in the test resources, which is located
+ * outside of the impl package just like a factory provided by an
+ * application. */
+public class TestDescriptorFactory implements DescriptorFactory {
+
+  public static class TestNamedDescriptor extends DescriptorImpl {
+
+    private static final long serialVersionUID = 1L;
+
+    private String name;
+
+    TestNamedDescriptor(byte[] rawDescriptorBytes, int[] offsetAndLength,
+        File descriptorFile) throws DescriptorParseException {
+      super(rawDescriptorBytes, offsetAndLength, descriptorFile, false);
+      LineCursor lines = this.newLineCursor();
+      while (lines.hasNext()) {
+        String line = lines.next();
+        if (line.startsWith("test-descriptor ")) {
+          this.name = line.substring("test-descriptor ".length());
+        }
+      }
+      if (null == this.name) {
+        throw new DescriptorParseException("Missing name.");
+      }
+    }
+
+    public String getName() {
+      return this.name;
+    }
+  }
+
+  @Override
+  public Class<? extends DescriptorImpl> getDescriptorClass() {
+    return TestNamedDescriptor.class;
+  }
+
+  @Override
+  public String getTypeAnnotation() {
+    return "@type test-descriptor 1.";
+  }
+
+  @Override
+  public String getKeyword() {
+    return "test-descriptor";
+  }
+
+  @Override
+  public DescriptorImpl newDescriptor(byte[] rawDescriptorBytes,
+      int[] offsetAndLength, File descriptorFile)
+      throws DescriptorParseException {
+    return new TestNamedDescriptor(rawDescriptorBytes, offsetAndLength,
+        descriptorFile);
+  }
+}
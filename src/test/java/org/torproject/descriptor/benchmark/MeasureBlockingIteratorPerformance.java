@@ -0,0 +1,156 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.benchmark;
+
+import org.torproject.descriptor.impl.BlockingIteratorImpl;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.function.Consumer;
+
+/** Measure throughput of handing over objects from one or more producer
+ * threads to a consumer thread via {@link BlockingIteratorImpl}, compared to
+ * the earlier implementation using a synchronized linked list.
+ *
+ * <p>Run it with the test classpath and, optionally, the number of
+ * producer threads as argument.</p> */
+public class MeasureBlockingIteratorPerformance {
+
+  private static final int OBJECTS_PER_PRODUCER = 5_000_000;
+
+  private static final int MAX_QUEUE_SIZE = 100;
+
+  private static final int ROUNDS = 5;
+
+  /** Run all measurements with one producer thread, unless another number
+   * of producer threads is given as first argument. */
+  public static void main(String[] args) throws InterruptedException {
+    int producers = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+    for (int round = 0; round < ROUNDS; round++) {
+      SynchronizedLinkedListIterator<Object> previous =
+          new SynchronizedLinkedListIterator<>(MAX_QUEUE_SIZE);
+      measureHandoff("synchronized linked list", producers, previous,
+          previous::add, previous::setOutOfDescriptors);
+      MeasuredBlockingIterator<Object> current =
+          new MeasuredBlockingIterator<>(MAX_QUEUE_SIZE);
+      measureHandoff("lock-free ring queue", producers, current,
+          current::produce, current::finish);
+    }
+  }
+
+  private static void measureHandoff(String name, int producers,
+      Iterator<Object> iterator, Consumer<Object> add,
+      Runnable setOutOfDescriptors) throws InterruptedException {
+    final Object object = new Object();
+    Thread[] producerThreads = new Thread[producers];
+    final long startedNanos = System.nanoTime();
+    for (int p = 0; p < producers; p++) {
+      producerThreads[p] = new Thread(() -> {
+        for (int i = 0; i < OBJECTS_PER_PRODUCER; i++) {
+          add.accept(object);
+        }
+      });
+      producerThreads[p].start();
+    }
+    Thread finisher = new Thread(() -> {
+      for (Thread producerThread : producerThreads) {
+        try {
+          producerThread.join();
+        } catch (InterruptedException e) {
+          e.printStackTrace();
+        }
+      }
+      setOutOfDescriptors.run();
+    });
+    finisher.start();
+    long consumed = 0L;
+    while (iterator.hasNext()) {
+      iterator.next();
+      consumed++;
+    }
+    long endedNanos = System.nanoTime();
+    finisher.join();
+    System.out.printf("%-25s %d producer(s): %d objects in %d millis, "
+        + "%.0f objects/second%n", name, producers, consumed,
+        (endedNanos - startedNanos) / 1_000_000L,
+        consumed * 1e9 / (endedNanos - startedNanos));
+  }
+
+  /* Current implementation, subclassed to make its protected producer
+   * methods available to this benchmark. */
+  private static class MeasuredBlockingIterator<T>
+      extends BlockingIteratorImpl<T> {
+
+    private MeasuredBlockingIterator(int maxQueueSize) {
+      super(maxQueueSize);
+    }
+
+    private void produce(T object) {
+      this.add(object);
+    }
+
+    private void finish() {
+      this.setOutOfDescriptors();
+    }
+  }
+
+  /* Earlier implementation of BlockingIteratorImpl, kept here for
+   * comparison. */
+  private static class SynchronizedLinkedListIterator<T>
+      implements Iterator<T> {
+
+    private Queue<T> queue = new LinkedList<>();
+
+    private int maxQueueSize;
+
+    private boolean outOfDescriptors = false;
+
+    private SynchronizedLinkedListIterator(int maxQueueSize) {
+      this.maxQueueSize = maxQueueSize;
+    }
+
+    private synchronized void add(T object) {
+      while (this.queue.size() >= this.maxQueueSize) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          /* nothing to be done */
+        }
+      }
+      this.queue.offer(object);
+      notifyAll();
+    }
+
+    private synchronized void setOutOfDescriptors() {
+      this.outOfDescriptors = true;
+      notifyAll();
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+      while (!this.outOfDescriptors && this.queue.isEmpty()) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          /* nothing to be done */
+        }
+      }
+      return this.queue.peek() != null;
+    }
+
+    @Override
+    public synchronized T next() {
+      while (!this.outOfDescriptors && this.queue.isEmpty()) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          /* nothing to be done */
+        }
+      }
+      notifyAll();
+      return this.queue.remove();
+    }
+  }
+}
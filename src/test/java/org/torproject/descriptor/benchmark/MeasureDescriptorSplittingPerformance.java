@@ -0,0 +1,163 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.benchmark;
+
+import static org.torproject.descriptor.impl.DescriptorImpl.NL;
+import static org.torproject.descriptor.impl.DescriptorImpl.SP;
+
+import org.torproject.descriptor.Descriptor;
+import org.torproject.descriptor.impl.BenchmarkHooks;
+import org.torproject.descriptor.impl.DescriptorFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Measure throughput of splitting synthetic files with 10k, 100k, and 1M
+ * concatenated descriptors using the single forward scan of the
+ * implementation with lazy parsing, so that descriptors are split but not
+ * parsed, compared to the earlier implementation that searched for the
+ * keyword from the start of the file and rescanned the remaining file for
+ * every descriptor.
+ *
+ * <p>The earlier implementation is only measured with the smallest file,
+ * because it takes minutes to hours with the larger ones.  Run it with the
+ * test classpath and a maximum heap size of at least 2 GiB.</p> */
+public class MeasureDescriptorSplittingPerformance {
+
+  private static final int[] DESCRIPTOR_COUNTS = new int[] { 10_000,
+      100_000, 1_000_000 };
+
+  private static final int MAX_EARLIER_DESCRIPTOR_COUNT = 10_000;
+
+  private static final int ROUNDS = 3;
+
+  /* Microdescriptor without annotation, with a keyword followed by a
+   * newline. */
+  private static final String MICRODESCRIPTOR = "onion-key\n"
+      + "ntor-onion-key RYjTCjtZRvOyfatfubhOjcEib/yDMsyJcjPT82mf6VA=\n"
+      + "id ed25519 ihsbrlWToq8b01rvfszqqTMUl2ulyPV3TniKuTENCzY\n";
+
+  /* Server descriptor with annotation, with a keyword followed by a
+   * space. */
+  private static final String SERVER_DESCRIPTOR =
+      "@type server-descriptor 1.0\n"
+      + "router Unnamed 10.0.0.1 9001 0 0\n"
+      + "platform Tor 0.4.1.5 on Linux\n"
+      + "published 2019-09-01 00:00:00\n";
+
+  /** Run all measurements. */
+  public static void main(String[] args) {
+    for (int descriptorCount : DESCRIPTOR_COUNTS) {
+      byte[] microdescriptors = repeat(MICRODESCRIPTOR, descriptorCount);
+      byte[] serverDescriptors = repeat(SERVER_DESCRIPTOR, descriptorCount);
+      for (int round = 0; round < ROUNDS; round++) {
+        measureSplitting("microdescriptors", microdescriptors,
+            BenchmarkHooks.splittingFactory("MICRODESCRIPTOR"),
+            descriptorCount);
+        measureSplitting("server descriptors", serverDescriptors,
+            BenchmarkHooks.splittingFactory("RELAY_SERVER_DESCRIPTOR"),
+            descriptorCount);
+      }
+    }
+  }
+
+  private static byte[] repeat(String descriptor, int descriptorCount) {
+    byte[] descriptorBytes = descriptor.getBytes(StandardCharsets.US_ASCII);
+    byte[] rawDescriptorBytes = new byte[descriptorBytes.length
+        * descriptorCount];
+    for (int i = 0; i < descriptorCount; i++) {
+      System.arraycopy(descriptorBytes, 0, rawDescriptorBytes,
+          i * descriptorBytes.length, descriptorBytes.length);
+    }
+    return rawDescriptorBytes;
+  }
+
+  private static void measureSplitting(String name, byte[] rawDescriptorBytes,
+      DescriptorFactory factory, int descriptorCount) {
+    long startedNanos = System.nanoTime();
+    List<Descriptor> descriptors = BenchmarkHooks.splitDescriptors(
+        rawDescriptorBytes, factory);
+    long endedNanos = System.nanoTime();
+    printResult("single forward scan", name, descriptors.size(),
+        startedNanos, endedNanos);
+    if (descriptors.size() != descriptorCount) {
+      throw new IllegalStateException("Expected " + descriptorCount
+          + " descriptors, but split " + descriptors.size() + ".");
+    }
+    if (descriptorCount <= MAX_EARLIER_DESCRIPTOR_COUNT) {
+      startedNanos = System.nanoTime();
+      List<int[]> offsetsAndLengths = splitByRescanning(rawDescriptorBytes,
+          factory.getKeyword());
+      endedNanos = System.nanoTime();
+      printResult("rescanning", name, offsetsAndLengths.size(),
+          startedNanos, endedNanos);
+    }
+  }
+
+  private static void printResult(String implementation, String name,
+      int descriptors, long startedNanos, long endedNanos) {
+    System.out.printf("%-20s %-18s %8d descriptors in %6d millis, %5.0f "
+        + "nanos/descriptor%n", implementation, name, descriptors,
+        (endedNanos - startedNanos) / 1_000_000L,
+        (double) (endedNanos - startedNanos) / descriptors);
+  }
+
+  /* Earlier implementation of splitting descriptors in DescriptorParserImpl,
+   * kept here for comparison, returning offsets and lengths rather than
+   * descriptors. */
+  private static List<int[]> splitByRescanning(byte[] rawDescriptorBytes,
+      String keyword) {
+    List<int[]> offsetsAndLengths = new ArrayList<>();
+    int startAnnotations = 0;
+    int endAllDescriptors = rawDescriptorBytes.length;
+    boolean containsAnnotations = (endAllDescriptors > 0
+        && rawDescriptorBytes[0] == '@')
+        || BenchmarkHooks.indexOf(rawDescriptorBytes, 0, endAllDescriptors,
+        NL + "@") >= 0;
+    while (startAnnotations < endAllDescriptors) {
+      int startDescriptor;
+      if (startAnnotations == BenchmarkHooks.indexOf(rawDescriptorBytes,
+          startAnnotations, endAllDescriptors, keyword + SP)
+          || startAnnotations == BenchmarkHooks.indexOf(rawDescriptorBytes, 0,
+          endAllDescriptors, keyword + NL)) {
+        startDescriptor = startAnnotations;
+      } else {
+        startDescriptor = BenchmarkHooks.indexOf(rawDescriptorBytes,
+            startAnnotations - 1, endAllDescriptors, '\n', keyword, ' ');
+        if (startDescriptor < 0) {
+          startDescriptor = BenchmarkHooks.indexOf(rawDescriptorBytes,
+              startAnnotations - 1, endAllDescriptors, '\n', keyword,
+              '\n');
+        }
+        if (startDescriptor < 0) {
+          break;
+        } else {
+          startDescriptor += 1;
+        }
+      }
+      int endDescriptor = -1;
+      if (containsAnnotations) {
+        endDescriptor = BenchmarkHooks.indexOf(rawDescriptorBytes,
+            startDescriptor, endAllDescriptors, NL + "@");
+      }
+      if (endDescriptor < 0) {
+        endDescriptor = BenchmarkHooks.indexOf(rawDescriptorBytes,
+            startDescriptor, endAllDescriptors, '\n', keyword, ' ');
+      }
+      if (endDescriptor < 0) {
+        endDescriptor = BenchmarkHooks.indexOf(rawDescriptorBytes,
+            startDescriptor, endAllDescriptors, '\n', keyword, '\n');
+      }
+      if (endDescriptor < 0) {
+        endDescriptor = endAllDescriptors - 1;
+      }
+      endDescriptor += 1;
+      offsetsAndLengths.add(new int[] { startAnnotations,
+          endDescriptor - startAnnotations });
+      startAnnotations = endDescriptor;
+    }
+    return offsetsAndLengths;
+  }
+}
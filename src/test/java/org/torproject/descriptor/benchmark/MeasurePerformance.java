@@ -4,6 +4,7 @@
 package org.torproject.descriptor.benchmark;
 
 import org.torproject.descriptor.Descriptor;
+import org.torproject.descriptor.DescriptorParser;
 import org.torproject.descriptor.DescriptorReader;
 import org.torproject.descriptor.DescriptorSourceFactory;
 import org.torproject.descriptor.ExtraInfoDescriptor;
@@ -13,7 +14,11 @@ import org.torproject.descriptor.RelayNetworkStatusConsensus;
 import org.torproject.descriptor.ServerDescriptor;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
 
@@ -22,6 +27,8 @@ public class MeasurePerformance {
   /** Check if all necessary files are available and then measure
    * performance of some more or less common use cases. */
   public static void main(String[] args) {
+    measureParsingSampleDescriptors(new File(sampleDir, samplePaths[0]));
+    measureParsingSampleDescriptors(new File(sampleDir, samplePaths[1]));
     if (!filesAvailable()) {
       return;
     }
@@ -63,6 +70,56 @@ public class MeasurePerformance {
     "archive/relay-descriptors/microdescs/microdescs-2015-11.tar"
   };
 
+  /* Directories with sample descriptors from the test resources that are
+   * parsed in memory, which doesn't require any archives to be downloaded
+   * and mostly measures parsing, not reading or decompressing. */
+  private static File sampleDir = new File("src/test/resources");
+  private static String[] samplePaths = new String[] { "relay", "bridge" };
+
+  private static void measureParsingSampleDescriptors(File directory) {
+    File[] sampleFiles = directory.listFiles();
+    if (null == sampleFiles) {
+      System.err.println("Missing sample descriptors: " + directory);
+      return;
+    }
+    List<byte[]> sampleBytes = new ArrayList<>();
+    long totalBytes = 0L;
+    try {
+      for (File sampleFile : sampleFiles) {
+        byte[] bytes = Files.readAllBytes(sampleFile.toPath());
+        sampleBytes.add(bytes);
+        totalBytes += bytes.length;
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      return;
+    }
+    DescriptorParser descriptorParser =
+        DescriptorSourceFactory.createDescriptorParser();
+    for (int round = 0; round < 5; round++) {
+      System.out.println("Starting measureParsingSampleDescriptors");
+      final long startedMillis = System.currentTimeMillis();
+      long countedDescriptors = 0L;
+      for (int iteration = 0; iteration < 200; iteration++) {
+        for (int i = 0; i < sampleFiles.length; i++) {
+          for (Descriptor descriptor : descriptorParser.parseDescriptors(
+              sampleBytes.get(i), sampleFiles[i], sampleFiles[i].getName())) {
+            countedDescriptors++;
+          }
+        }
+      }
+      long endedMillis = System.currentTimeMillis();
+      System.out.println("Ending measureParsingSampleDescriptors");
+      System.out.printf("Total time: %d millis%n",
+          endedMillis - startedMillis);
+      System.out.printf("Processed descriptors in %s: %d%n", directory,
+          countedDescriptors);
+      System.out.printf("Parsed megabytes per second: %.2f%n",
+          200.0 * totalBytes / 1_000_000.0 * 1_000.0
+          / Math.max(1L, endedMillis - startedMillis));
+    }
+  }
+
   private static boolean filesAvailable() {
     if (!resDir.exists() || !resDir.isDirectory()) {
       return false;
@@ -0,0 +1,180 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.benchmark;
+
+import static org.torproject.descriptor.impl.DescriptorImpl.NL;
+import static org.torproject.descriptor.impl.DescriptorImpl.SP;
+
+import org.torproject.descriptor.impl.BenchmarkHooks;
+import org.torproject.descriptor.impl.Key;
+import org.torproject.descriptor.log.LogDescriptorImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Measure throughput of detecting descriptor types of a mixed corpus of
+ * raw descriptor bytes using the byte tries of the implementation, compared
+ * to the earlier implementation that converted the first 100 bytes to a
+ * string and matched that string against type annotations and keywords.
+ *
+ * <p>Run it with the test classpath from the project directory, so that it
+ * finds the test resources.</p> */
+public class MeasureTypeDetectionPerformance {
+
+  private static final int DETECTIONS = 10_000_000;
+
+  private static final int ROUNDS = 5;
+
+  /** Run all measurements. */
+  public static void main(String[] args) throws IOException {
+    List<byte[]> corpus = new ArrayList<>();
+    List<String> fileNames = new ArrayList<>();
+    for (String path : new String[] {
+        "src/test/resources/relay/2017-07-17-17-00-00-consensus",
+        "src/test/resources/relay/2017-07-17-17-00-00-consensus-microdesc",
+        "src/test/resources/relay/2017-07-17-17-00-00-vote-0232AF901C31A04EE"
+        + "9848595AF9BB7620D4C5B2E-6C2F5B0D52DFB3E4CA3DDEEAD690CC563CAF0601",
+        "src/test/resources/relay/2017-07-17-17-20-00-server-descriptors",
+        "src/test/resources/relay/2017-07-17-17-20-00-extra-infos",
+        "src/test/resources/relay/2017-07-17-17-20-00-micro",
+        "src/test/resources/bridge/2017-07-17-17-09-00-server-descriptors",
+        "src/test/resources/bridge/2017-07-17-17-09-00-extra-infos",
+        "src/test/resources/bridge/20170717-170645-1D8F3A91C37C5D1C4C19B1AD1"
+        + "D0CFBE8BF72D8E1",
+        "src/test/resources/other/2017-07-17-17-02-00",
+        "src/test/resources/other/op-nl-5242880-2017-07-17.tpf",
+        "src/test/resources/snowflake/example_metrics.log",
+        "src/test/resources/meronense.torproject.org/xy.host.org_meronense."
+        + "torproject.org_access.log_20170530.log" }) {
+      File file = new File(path);
+      corpus.add(Files.readAllBytes(file.toPath()));
+      fileNames.add(file.getName());
+    }
+    for (String firstLines : new String[] {
+        "network-status-version 3\nvote-status vote\n",
+        "r Unnamed ", "bridge-pool-assignment 2011-03-13 14:38:03\n",
+        "dir-key-certificate-version 3\n", "network-status-version 2\n",
+        "signed-directory\n", "1523911758\nversion=1.1.0\n" }) {
+      corpus.add(firstLines.getBytes(StandardCharsets.US_ASCII));
+      fileNames.add("descriptors");
+    }
+    for (int round = 0; round < ROUNDS; round++) {
+      measureDetection("string matching", corpus, fileNames, false);
+      measureDetection("byte tries", corpus, fileNames, true);
+    }
+  }
+
+  private static void measureDetection(String name, List<byte[]> corpus,
+      List<String> fileNames, boolean tries) {
+    int undetected = 0;
+    int size = corpus.size();
+    final long startedNanos = System.nanoTime();
+    for (int i = 0; i < DETECTIONS; i++) {
+      byte[] rawDescriptorBytes = corpus.get(i % size);
+      String fileName = fileNames.get(i % size);
+      String type = tries
+          ? BenchmarkHooks.detectType(rawDescriptorBytes, fileName)
+          : detectByStringMatching(rawDescriptorBytes, fileName);
+      if (null == type) {
+        undetected++;
+      }
+    }
+    long endedNanos = System.nanoTime();
+    System.out.printf("%-16s %d detections in %d millis, %.0f "
+        + "detections/second, %d undetected%n", name, DETECTIONS,
+        (endedNanos - startedNanos) / 1_000_000L,
+        DETECTIONS * 1e9 / (endedNanos - startedNanos),
+        undetected);
+  }
+
+  /* Earlier implementation of detecting descriptor types in
+   * DescriptorParserImpl, kept here for comparison, returning type names
+   * rather than types. */
+  private static String detectByStringMatching(byte[] rawDescriptorBytes,
+      String fileName) {
+    byte[] first100Chars = new byte[Math.min(100,
+        rawDescriptorBytes.length)];
+    System.arraycopy(rawDescriptorBytes, 0, first100Chars, 0,
+        first100Chars.length);
+    String firstLines = new String(first100Chars);
+    if (firstLines.startsWith("@type network-status-consensus-3 1.")
+        || firstLines.startsWith(
+        "@type network-status-microdesc-consensus-3 1.")
+        || ((firstLines.startsWith(
+        Key.NETWORK_STATUS_VERSION.keyword + SP + "3")
+        || firstLines.contains(
+        NL + Key.NETWORK_STATUS_VERSION.keyword + SP + "3"))
+        && firstLines.contains(
+        NL + Key.VOTE_STATUS.keyword + SP + "consensus" + NL))) {
+      return "RELAY_NETWORK_STATUS_CONSENSUS";
+    } else if (firstLines.startsWith("@type network-status-vote-3 1.")
+        || ((firstLines.startsWith(
+        Key.NETWORK_STATUS_VERSION.keyword + SP + "3" + NL)
+        || firstLines.contains(
+        NL + Key.NETWORK_STATUS_VERSION.keyword + SP + "3" + NL))
+        && firstLines.contains(
+        NL + Key.VOTE_STATUS.keyword + SP + "vote" + NL))) {
+      return "RELAY_NETWORK_STATUS_VOTE";
+    } else if (firstLines.startsWith("@type bridge-network-status 1.")
+        || firstLines.startsWith(Key.R.keyword + SP)) {
+      return "BRIDGE_NETWORK_STATUS";
+    } else if (firstLines.startsWith("@type bridge-server-descriptor 1.")) {
+      return "BRIDGE_SERVER_DESCRIPTOR";
+    } else if (firstLines.startsWith("@type server-descriptor 1.")
+        || firstLines.startsWith(Key.ROUTER.keyword + SP)
+        || firstLines.contains(NL + Key.ROUTER.keyword + SP)) {
+      return "RELAY_SERVER_DESCRIPTOR";
+    } else if (firstLines.startsWith("@type bridge-extra-info 1.")) {
+      return "BRIDGE_EXTRA_INFO_DESCRIPTOR";
+    } else if (firstLines.startsWith("@type extra-info 1.")
+        || firstLines.startsWith(Key.EXTRA_INFO.keyword + SP)
+        || firstLines.contains(NL + Key.EXTRA_INFO.keyword + SP)) {
+      return "RELAY_EXTRA_INFO_DESCRIPTOR";
+    } else if (firstLines.startsWith("@type microdescriptor 1.")
+        || firstLines.startsWith(Key.ONION_KEY.keyword + NL)
+        || firstLines.contains(NL + Key.ONION_KEY.keyword + NL)) {
+      return "MICRODESCRIPTOR";
+    } else if (firstLines.startsWith("@type bridge-pool-assignment 1.")
+        || firstLines.startsWith(Key.BRIDGE_POOL_ASSIGNMENT.keyword + SP)
+        || firstLines.contains(NL + Key.BRIDGE_POOL_ASSIGNMENT.keyword + SP)) {
+      return "BRIDGE_POOL_ASSIGNMENT";
+    } else if (firstLines.startsWith("@type dir-key-certificate-3 1.")
+        || firstLines.startsWith(Key.DIR_KEY_CERTIFICATE_VERSION.keyword + SP)
+        || firstLines.contains(
+        NL + Key.DIR_KEY_CERTIFICATE_VERSION.keyword + SP)) {
+      return "DIRECTORY_KEY_CERTIFICATE";
+    } else if (firstLines.startsWith("@type tordnsel 1.")
+        || firstLines.startsWith("ExitNode" + SP)
+        || firstLines.contains(NL + "ExitNode" + SP)) {
+      return "EXIT_LIST";
+    } else if (firstLines.startsWith("@type network-status-2 1.")
+        || firstLines.startsWith(
+        Key.NETWORK_STATUS_VERSION.keyword + SP + "2" + NL)
+        || firstLines.contains(
+        NL + Key.NETWORK_STATUS_VERSION.keyword + SP + "2" + NL)) {
+      return "RELAY_NETWORK_STATUS";
+    } else if (firstLines.startsWith("@type directory 1.")
+        || firstLines.startsWith(Key.SIGNED_DIRECTORY.keyword + NL)
+        || firstLines.contains(NL + Key.SIGNED_DIRECTORY.keyword + NL)) {
+      return "RELAY_DIRECTORY";
+    } else if (firstLines.startsWith("@type torperf 1.")) {
+      return "TORPERF_RESULT";
+    } else if (firstLines.startsWith("@type snowflake-stats 1.")
+        || firstLines.startsWith(Key.SNOWFLAKE_STATS_END.keyword + SP)
+        || firstLines.contains(NL + Key.SNOWFLAKE_STATS_END.keyword + SP)) {
+      return "SNOWFLAKE_STATS";
+    } else if (fileName.contains(LogDescriptorImpl.MARKER)) {
+      return "WEB_SERVER_ACCESS_LOG";
+    } else if (firstLines.startsWith("@type bandwidth-file 1.")
+        || firstLines.matches("(?s)[0-9]{10}\\n.*")) {
+      return "BANDWIDTH_FILE";
+    } else {
+      return null;
+    }
+  }
+}
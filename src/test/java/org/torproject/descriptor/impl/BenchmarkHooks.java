@@ -0,0 +1,57 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import org.torproject.descriptor.Descriptor;
+
+import java.util.List;
+
+/** Test hooks that give benchmarks in the benchmark package access to
+ * package-internal parts of the implementation. */
+public final class BenchmarkHooks {
+
+  private BenchmarkHooks() {
+  }
+
+  /** Detect the descriptor type of the given raw descriptor bytes and
+   * return its name, or null if the type cannot be detected. */
+  public static String detectType(byte[] rawDescriptorBytes,
+      String fileName) {
+    DescriptorTypeDetector.Type type = DescriptorTypeDetector.detect(
+        rawDescriptorBytes, fileName);
+    return null == type ? null : type.name();
+  }
+
+  /** Return the factory used for splitting descriptor files of the
+   * descriptor type with the given name at its keyword, or null if such
+   * files are not split at a keyword. */
+  public static DescriptorFactory splittingFactory(String typeName) {
+    return DescriptorParserImpl.splittingFactory(
+        DescriptorTypeDetector.Type.valueOf(typeName));
+  }
+
+  /** Split the given raw descriptor bytes into descriptors using the given
+   * factory without parsing them. */
+  public static List<Descriptor> splitDescriptors(byte[] rawDescriptorBytes,
+      DescriptorFactory factory) {
+    DescriptorParserImpl parser = new DescriptorParserImpl();
+    parser.setLazyParsing(true);
+    return parser.parseOneOrMoreDescriptors(rawDescriptorBytes, null,
+        factory);
+  }
+
+  /** Return the index of the first occurrence of the given ASCII string
+   * between index from and index to, or -1 if it is not contained. */
+  public static int indexOf(byte[] bytes, int from, int to, String ascii) {
+    return BytesHelper.indexOf(bytes, from, to, ascii);
+  }
+
+  /** Return the index of the byte preceding the first occurrence of the
+   * given keyword that is enclosed by the given bytes between index from
+   * and index to, or -1 if there is no such occurrence. */
+  public static int indexOf(byte[] bytes, int from, int to, char before,
+      String keyword, char after) {
+    return BytesHelper.indexOf(bytes, from, to, before, keyword, after);
+  }
+}
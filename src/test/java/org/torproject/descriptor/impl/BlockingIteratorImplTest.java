@@ -0,0 +1,106 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class BlockingIteratorImplTest {
+
+  @Test
+  public void testSingleProducerKeepsOrder() throws InterruptedException {
+    BlockingIteratorImpl<Integer> iterator = new BlockingIteratorImpl<>(3);
+    Thread producer = new Thread(() -> {
+      for (int i = 0; i < 10000; i++) {
+        iterator.add(i);
+      }
+      iterator.setOutOfDescriptors();
+    });
+    producer.start();
+    int expected = 0;
+    for (int value : iterator) {
+      assertEquals(expected++, value);
+    }
+    assertEquals(10000, expected);
+    producer.join();
+  }
+
+  @Test
+  public void testMultipleProducers() throws InterruptedException {
+    BlockingIteratorImpl<Integer> iterator = new BlockingIteratorImpl<>(5);
+    List<Thread> producers = new ArrayList<>();
+    for (int p = 0; p < 4; p++) {
+      Thread producer = new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          iterator.add(i);
+        }
+      });
+      producers.add(producer);
+      producer.start();
+    }
+    new Thread(() -> {
+      for (Thread producer : producers) {
+        try {
+          producer.join();
+        } catch (InterruptedException e) {
+          /* Leave it to the consumer to time out. */
+          return;
+        }
+      }
+      iterator.setOutOfDescriptors();
+    }).start();
+    long sum = 0L;
+    int count = 0;
+    while (iterator.hasNext()) {
+      sum += iterator.next();
+      count++;
+    }
+    assertEquals(40000, count);
+    assertEquals(4L * 9999L * 10000L / 2L, sum);
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNextAfterEndOfStream() {
+    BlockingIteratorImpl<Integer> iterator = new BlockingIteratorImpl<>();
+    iterator.add(1);
+    iterator.setOutOfDescriptors();
+    assertTrue(iterator.hasNext());
+    assertEquals(1, (int) iterator.next());
+    assertFalse(iterator.hasNext());
+    iterator.next();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAddAfterEndOfStream() {
+    BlockingIteratorImpl<Integer> iterator = new BlockingIteratorImpl<>();
+    iterator.setOutOfDescriptors();
+    iterator.add(1);
+  }
+
+  @Test
+  public void testActionsRunWhenHandedOut() {
+    BlockingIteratorImpl<Integer> iterator = new BlockingIteratorImpl<>();
+    List<String> actions = new ArrayList<>();
+    iterator.add(1);
+    iterator.add(2, () -> actions.add("handed out 2"));
+    iterator.setOutOfDescriptors(() -> actions.add("end of stream"));
+    assertEquals(1, (int) iterator.next());
+    assertTrue(actions.isEmpty());
+    assertTrue(iterator.hasNext());
+    assertTrue(actions.isEmpty());
+    assertEquals(2, (int) iterator.next());
+    assertEquals(Arrays.asList("handed out 2"), actions);
+    assertFalse(iterator.hasNext());
+    assertFalse(iterator.hasNext());
+    assertEquals(Arrays.asList("handed out 2", "end of stream"), actions);
+  }
+}
@@ -0,0 +1,58 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class BytesHelperTest {
+
+  private static final String ASCII = "router a\nrouter\nrouter-b x\n"
+      + "\u00e9router c\n";
+
+  private static final byte[] BYTES = ASCII.getBytes(
+      StandardCharsets.ISO_8859_1);
+
+  @Test
+  public void testSameIndexesAsString() {
+    String[] patterns = new String[] { "router", "router ", "\nrouter ",
+        "\nrouter\n", "c\n", "x", "" };
+    for (String pattern : patterns) {
+      for (int from = -1; from <= BYTES.length + 1; from++) {
+        assertEquals("Pattern '" + pattern + "' from " + from,
+            ASCII.indexOf(pattern, from),
+            BytesHelper.indexOf(BYTES, from, BYTES.length, pattern));
+      }
+    }
+  }
+
+  @Test
+  public void testKeywordBetween() {
+    assertEquals(ASCII.indexOf("\nrouter\n"),
+        BytesHelper.indexOf(BYTES, 0, BYTES.length, '\n', "router", '\n'));
+    assertEquals(ASCII.indexOf("\nrouter-b "),
+        BytesHelper.indexOf(BYTES, 0, BYTES.length, '\n', "router-b", ' '));
+    assertEquals(-1,
+        BytesHelper.indexOf(BYTES, 0, BYTES.length, '\n', "router", ' '));
+    assertEquals(-1, BytesHelper.indexOf(BYTES, 0, ASCII.indexOf("\nrouter\n")
+        + 7, '\n', "router", '\n'));
+  }
+
+  @Test
+  public void testRangeLimits() {
+    assertEquals(-1, BytesHelper.indexOf(BYTES, 0, 5, "router"));
+    assertEquals(-1, BytesHelper.indexOf(BYTES, 0, 8, '\n'));
+    assertEquals(8, BytesHelper.indexOf(BYTES, 0, 9, '\n'));
+    assertTrue(BytesHelper.regionMatches(BYTES, 0, 6, "router"));
+    assertFalse(BytesHelper.regionMatches(BYTES, 0, 5, "router"));
+    assertFalse(BytesHelper.regionMatches(BYTES, -1, 5, "r"));
+    assertFalse(BytesHelper.regionMatches(BYTES, ASCII.indexOf('\u00e9'),
+        BYTES.length, "?"));
+  }
+}
@@ -101,6 +101,48 @@ public class DescriptorImplTest {
     TestDescriptor des = makeTestDesc("\n\n".getBytes());
   }
 
+  /* Descriptor that parses a given range of lines twice and leaves all
+   * other lines to be counted by the keyword checks. */
+  private static class PartlyParsingDescriptor extends DescriptorImpl {
+
+    private static final long serialVersionUID = 1L;
+
+    private PartlyParsingDescriptor(byte[] bytes, int parseOffset,
+        int parseLength) throws DescriptorParseException {
+      super(bytes, new int[] { 0, bytes.length }, null, false);
+      for (int i = 0; i < 2; i++) {
+        LineCursor lines = this.newLineCursor(parseOffset, parseLength);
+        while (lines.advance()) {
+          lines.line();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCountKeysWhileParsing() throws Exception {
+    String desc = "@type dummy 1.0\n" + Key.ROUTER.keyword + NL + DESC + NL
+        + Key.ROUTER.keyword + NL + Key.CONTACT.keyword + NL;
+    byte[] bytes = desc.getBytes();
+    PartlyParsingDescriptor des = new PartlyParsingDescriptor(bytes,
+        desc.indexOf(DESC), DESC.length() + 1);
+    assertEquals(2, des.getKeyCount(Key.ROUTER));
+    assertEquals(1, des.getKeyCount(Key.CONTACT));
+    assertEquals(0, des.getKeyCount(Key.INVALID));
+    des.checkFirstKey(Key.ROUTER);
+    des.checkLastKey(Key.CONTACT);
+  }
+
+  @Test
+  public void testCountKeysBlankLineNotParsed() throws Exception {
+    byte[] bytes = (KW + NL + NL + KW + NL).getBytes();
+    PartlyParsingDescriptor des = new PartlyParsingDescriptor(bytes, 0,
+        KW.length() + 1);
+    this.thrown.expect(DescriptorParseException.class);
+    this.thrown.expectMessage("Blank lines are not allowed.");
+    des.getKeyCount(Key.INVALID);
+  }
+
   @Test
   public void testDigestsNothing() throws Exception {
     TestDescriptor des = makeTestDesc("\n".getBytes());
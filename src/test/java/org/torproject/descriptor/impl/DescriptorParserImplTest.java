@@ -3,21 +3,44 @@
 
 package org.torproject.descriptor.impl;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.torproject.descriptor.Descriptor;
 import org.torproject.descriptor.DescriptorParseException;
 import org.torproject.descriptor.DescriptorReader;
 import org.torproject.descriptor.DescriptorSourceFactory;
+import org.torproject.descriptor.ExtraInfoDescriptor;
+import org.torproject.descriptor.Microdescriptor;
+import org.torproject.descriptor.NetworkStatusEntry;
+import org.torproject.descriptor.RelayNetworkStatusConsensus;
+import org.torproject.descriptor.RelayServerDescriptor;
+import org.torproject.descriptor.ServerDescriptor;
+import org.torproject.descriptor.TestDescriptorFactory;
+import org.torproject.descriptor.UnparseableDescriptor;
 import org.torproject.descriptor.WebServerAccessLog;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.lang.reflect.Constructor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 
 public class DescriptorParserImplTest {
 
@@ -67,19 +90,335 @@ public class DescriptorParserImplTest {
 
   @Test
   public void testParseDescriptor() throws DescriptorParseException {
-    Constructor<? extends DescriptorImpl> constructor;
-    try {
-      constructor = TestServerDescriptor.class
-          .getDeclaredConstructor(byte[].class, int[].class, File.class);
-    } catch (NoSuchMethodException e) {
-      throw new RuntimeException(e);
-    }
+    DescriptorFactory factory = DescriptorFactories.newFactory(
+        TestServerDescriptor.class, "@type server-descriptor 1.",
+        Key.ROUTER.keyword, TestServerDescriptor::new);
     this.thrown.expect(DescriptorParseException.class);
     this.thrown.expectMessage("'176x.158.53.63' in line 'router UbuntuCore169 "
         + "176x.158.53.63 44583 0 0' is not a valid IPv4 address.");
+    DescriptorParserImpl.parseOneDescriptor(DEFECT.getBytes(),
+        new int[]{0, DEFECT.getBytes().length}, null, factory, false);
+  }
+
+  private List<Descriptor> parseServerDescriptors(boolean lazyParsing)
+      throws Exception {
+    byte[] rawDescriptorBytes = Files.readAllBytes(Paths.get(getClass()
+        .getClassLoader().getResource(
+        "relay/2017-07-17-17-20-00-server-descriptors").toURI()));
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    dpi.setLazyParsing(lazyParsing);
+    List<Descriptor> descriptors = new ArrayList<>();
+    for (Descriptor descriptor : dpi.parseDescriptors(rawDescriptorBytes,
+        null, "2017-07-17-17-20-00-server-descriptors")) {
+      descriptors.add(descriptor);
+    }
+    return descriptors;
+  }
+
+  @Test
+  public void testLazyParsing() throws Exception {
+    List<Descriptor> eager = this.parseServerDescriptors(false);
+    List<Descriptor> lazy = this.parseServerDescriptors(true);
+    assertEquals(eager.size(), lazy.size());
+    for (int i = 0; i < eager.size(); i++) {
+      assertTrue(lazy.get(i) instanceof RelayServerDescriptor);
+      assertEquals(eager.get(i).getRawDescriptorLength(),
+          lazy.get(i).getRawDescriptorLength());
+      assertArrayEquals(eager.get(i).getRawDescriptorBytes(),
+          lazy.get(i).getRawDescriptorBytes());
+      ServerDescriptor eagerServerDescriptor =
+          (ServerDescriptor) eager.get(i);
+      ServerDescriptor lazyServerDescriptor = (ServerDescriptor) lazy.get(i);
+      assertEquals(eagerServerDescriptor.getNickname(),
+          lazyServerDescriptor.getNickname());
+      assertEquals(eagerServerDescriptor.getDigestSha1Hex(),
+          lazyServerDescriptor.getDigestSha1Hex());
+      assertEquals(eagerServerDescriptor.getAnnotations(),
+          lazyServerDescriptor.getAnnotations());
+      assertEquals(lazyServerDescriptor, lazyServerDescriptor);
+    }
+  }
+
+  @Test
+  public void testLazyParsingUnparseable() {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    dpi.setLazyParsing(true);
+    Descriptor descriptor = dpi.parseDescriptors(DEFECT.getBytes(), null,
+        "dummy.file").iterator().next();
+    assertTrue(descriptor instanceof RelayServerDescriptor);
+    assertEquals(DEFECT.length() - "@type server-descriptor 1.0\n".length(),
+        descriptor.getRawDescriptorLength());
+    this.thrown.expect(IllegalStateException.class);
+    this.thrown.expectCause(instanceOf(
+        DescriptorParseException.class));
+    ((RelayServerDescriptor) descriptor).getNickname();
+  }
+
+  @Test
+  public void testDescriptorTypesRequested() {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    dpi.setDescriptorTypes(new HashSet<>(Arrays.asList(
+        ExtraInfoDescriptor.class, ServerDescriptor.class)));
+    Iterator<Descriptor> descriptors = dpi.parseDescriptors(
+        DEFECT.getBytes(), null, "dummy.file").iterator();
+    assertTrue(descriptors.next() instanceof UnparseableDescriptor);
+    assertFalse(descriptors.hasNext());
+  }
+
+  @Test
+  public void testDescriptorTypesNotRequested() {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    dpi.setDescriptorTypes(Collections.singleton(ExtraInfoDescriptor.class));
+    assertFalse(dpi.parseDescriptors(DEFECT.getBytes(), null, "dummy.file")
+        .iterator().hasNext());
+    assertFalse(dpi.parseDescriptors("unknown\n".getBytes(), null,
+        "dummy.file").iterator().hasNext());
+  }
+
+  @Test
+  public void testDescriptorTypesUnknownType() {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    dpi.setDescriptorTypes(Collections.singleton(UnparseableDescriptor.class));
+    assertFalse(dpi.parseDescriptors(MICRO.getBytes(), null, "dummy.file")
+        .iterator().hasNext());
+    assertTrue(dpi.parseDescriptors("unknown\n".getBytes(), null,
+        "dummy.file").iterator().next() instanceof UnparseableDescriptor);
+  }
+
+  private static void assertCompactStatusEntries(Descriptor descriptor,
+      boolean expectCompact) {
+    assertTrue(descriptor instanceof RelayNetworkStatusConsensus);
+    RelayNetworkStatusConsensus consensus
+        = (RelayNetworkStatusConsensus) descriptor;
+    assertEquals(2, consensus.getStatusEntries().size());
+    for (NetworkStatusEntry entry : consensus.getStatusEntries().values()) {
+      assertEquals(expectCompact, !(entry instanceof NetworkStatusEntryImpl));
+      assertEquals(entry.getNickname(), consensus.getStatusEntry(
+          entry.getFingerprint()).getNickname());
+    }
+  }
+
+  @Test
+  public void testCompactStatusEntries() {
+    byte[] consensusBytes = new ConsensusBuilder().buildConsensusBytes();
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    assertCompactStatusEntries(dpi.parseDescriptors(consensusBytes, null,
+        "dummy.file").iterator().next(), false);
+    dpi.setCompactStatusEntries(true);
+    assertCompactStatusEntries(dpi.parseDescriptors(consensusBytes, null,
+        "dummy.file").iterator().next(), true);
+    dpi.setLazyParsing(true);
+    assertCompactStatusEntries(dpi.parseDescriptors(consensusBytes, null,
+        "dummy.file").iterator().next(), true);
+  }
+
+  private static final String REGISTERED =
+      "@type test-descriptor 1.0\n"
+      + "test-descriptor first\n"
+      + "router looks like a server descriptor\n"
+      + "test-descriptor second\n"
+      + "test-descriptor\n";
+
+  @Test
+  public void testRegisteredFactory() {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    List<Descriptor> descriptors = new ArrayList<>();
+    for (Descriptor descriptor : dpi.parseDescriptors(REGISTERED.getBytes(),
+        null, "dummy.file")) {
+      descriptors.add(descriptor);
+    }
+    assertEquals(3, descriptors.size());
+    assertEquals("first", ((TestDescriptorFactory.TestNamedDescriptor)
+        descriptors.get(0)).getName());
+    assertEquals(Collections.singletonList("@type test-descriptor 1.0"),
+        descriptors.get(0).getAnnotations());
+    assertEquals("second", ((TestDescriptorFactory.TestNamedDescriptor)
+        descriptors.get(1)).getName());
+    assertTrue(descriptors.get(2) instanceof UnparseableDescriptor);
+  }
+
+  @Test
+  public void testRegisteredFactoryNotRequested() {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    dpi.setDescriptorTypes(Collections.singleton(ServerDescriptor.class));
+    assertFalse(dpi.parseDescriptors(REGISTERED.getBytes(), null,
+        "dummy.file").iterator().hasNext());
+  }
+
+  @Test
+  public void testRegisteredFactoryLoaded() {
+    assertEquals(1, DescriptorFactories.registeredFactories().size());
+    assertTrue(DescriptorFactories.findRegisteredFactory(
+        REGISTERED.getBytes()) instanceof TestDescriptorFactory);
+    assertNull(DescriptorFactories.findRegisteredFactory(
+        DEFECT.getBytes()));
+  }
+
+  @Test
+  public void testSplitAtKeywordAndAnnotationLines() {
+    String unannotated = MICRO.substring(MICRO.indexOf('\n') + 1);
+    List<String> expected = Arrays.asList(unannotated, MICRO, unannotated,
+        "@downloaded-at 2017-07-17 17:20:00\n" + MICRO);
+    StringBuilder sb = new StringBuilder();
+    for (String descriptor : expected) {
+      sb.append(descriptor);
+    }
+    sb.append("@type microdescriptor 1.0\n");
     DescriptorParserImpl dpi = new DescriptorParserImpl();
-    dpi.parseOneDescriptor(DEFECT.getBytes(),
-        new int[]{0, DEFECT.getBytes().length}, null, constructor);
+    List<String> split = new ArrayList<>();
+    for (Descriptor descriptor : dpi.parseDescriptors(
+        sb.toString().getBytes(), null, "dummy.file")) {
+      assertTrue(descriptor instanceof Microdescriptor);
+      StringBuilder annotations = new StringBuilder();
+      for (String annotation : descriptor.getAnnotations()) {
+        annotations.append(annotation).append('\n');
+      }
+      split.add(annotations + new String(descriptor.getRawDescriptorBytes()));
+    }
+    assertEquals(expected, split);
+  }
+
+  /* Input stream that returns at most a few bytes per read, so that
+   * descriptors and keywords are split across chunks, and that fails after
+   * the given number of bytes. */
+  private static class TrickleInputStream extends InputStream {
+
+    private final byte[] bytes;
+
+    private final int failAfter;
+
+    private int position;
+
+    private TrickleInputStream(byte[] bytes, int failAfter) {
+      this.bytes = bytes;
+      this.failAfter = failAfter;
+    }
+
+    @Override
+    public int read() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (this.position >= this.failAfter) {
+        throw new IOException("Read failed.");
+      } else if (this.position >= this.bytes.length) {
+        return -1;
+      }
+      int read = Math.min(Math.min(length, 1 + this.position % 7),
+          this.bytes.length - this.position);
+      System.arraycopy(this.bytes, this.position, buffer, offset, read);
+      this.position += read;
+      return read;
+    }
+  }
+
+  private static List<String> rawDescriptors(
+      Iterable<Descriptor> descriptors) {
+    List<String> rawDescriptors = new ArrayList<>();
+    for (Descriptor descriptor : descriptors) {
+      rawDescriptors.add(descriptor.getClass().getSimpleName() + ": "
+          + new String(descriptor.getRawDescriptorBytes()));
+    }
+    return rawDescriptors;
+  }
+
+  private static void assertStreamedDescriptors(byte[] rawDescriptorBytes,
+      String fileName) throws IOException {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    List<String> expected = rawDescriptors(dpi.parseDescriptors(
+        rawDescriptorBytes, null, fileName));
+    assertEquals(expected, rawDescriptors(dpi.parseDescriptors(
+        new ByteArrayInputStream(rawDescriptorBytes), null, fileName)));
+    assertEquals(expected, rawDescriptors(dpi.parseDescriptors(
+        new TrickleInputStream(rawDescriptorBytes, Integer.MAX_VALUE), null,
+        fileName)));
+  }
+
+  @Test
+  public void testParseStreamSameDescriptors() throws IOException {
+    for (String path : new String[] {
+        "src/test/resources/relay/2017-07-17-17-20-00-server-descriptors",
+        "src/test/resources/relay/2017-07-17-17-20-00-extra-infos",
+        "src/test/resources/relay/2017-07-17-17-20-00-micro",
+        "src/test/resources/relay/2017-07-17-17-00-00-consensus",
+        "src/test/resources/bridge/2017-07-17-17-09-00-server-descriptors",
+        "src/test/resources/other/2017-07-17-17-02-00",
+        "src/test/resources/other/op-nl-5242880-2017-07-17.tpf" }) {
+      File file = new File(path);
+      assertStreamedDescriptors(Files.readAllBytes(file.toPath()),
+          file.getName());
+    }
+  }
+
+  @Test
+  public void testParseStreamAnnotatedDescriptors() throws IOException {
+    assertStreamedDescriptors((MICRO + MICRO + "trailing\n").getBytes(),
+        "dummy.file");
+    assertStreamedDescriptors((DEFECT + "\n" + DEFECT).getBytes(),
+        "dummy.file");
+  }
+
+  @Test
+  public void testParseStreamDescriptorLargerThanChunk() throws IOException {
+    StringBuilder sb = new StringBuilder(MICRO);
+    while (sb.length() <= 2 * StreamingDescriptorIterator.CHUNK_SIZE) {
+      sb.append("family $0000000000000000000000000000000000000000\n");
+    }
+    sb.append(MICRO);
+    assertStreamedDescriptors(sb.toString().getBytes(), "dummy.file");
+  }
+
+  @Test
+  public void testParseStreamEmpty() throws IOException {
+    assertStreamedDescriptors(new byte[0], "dummy.file");
+  }
+
+  @Test
+  public void testParseStreamTorperfResultUnparseable() {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    Iterator<Descriptor> descriptors = dpi.parseDescriptors(
+        new ByteArrayInputStream("@type torperf 1.1\nBROKEN\n".getBytes()),
+        null, "dummy.file").iterator();
+    assertTrue(descriptors.next() instanceof UnparseableDescriptor);
+    assertFalse(descriptors.hasNext());
+  }
+
+  @Test
+  public void testParseStreamNotRequested() {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    dpi.setDescriptorTypes(Collections.singleton(ExtraInfoDescriptor.class));
+    assertFalse(dpi.parseDescriptors(new TrickleInputStream(
+        (MICRO + MICRO).getBytes(), 200), null, "dummy.file").iterator()
+        .hasNext());
+  }
+
+  @Test
+  public void testParseStreamReadFails() {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    Iterator<Descriptor> descriptors = dpi.parseDescriptors(
+        new TrickleInputStream((MICRO + MICRO + MICRO).getBytes(),
+        MICRO.length() + 100),
+        null, "dummy.file").iterator();
+    assertTrue(descriptors.next() instanceof Microdescriptor);
+    assertFalse(descriptors.hasNext());
+  }
+
+  @Test
+  public void testParseStreamLazyParsing() {
+    DescriptorParserImpl dpi = new DescriptorParserImpl();
+    dpi.setLazyParsing(true);
+    Iterator<Descriptor> descriptors = dpi.parseDescriptors(
+        new ByteArrayInputStream((MICRO + MICRO).getBytes()), null,
+        "dummy.file").iterator();
+    for (int i = 0; i < 2; i++) {
+      Descriptor descriptor = descriptors.next();
+      assertTrue(Proxy.isProxyClass(descriptor.getClass()));
+      assertEquals("ihsbrlWToq8b01rvfszqqTMUl2ulyPV3TniKuTENCzY",
+          ((Microdescriptor) descriptor).getEd25519Identity());
+    }
+    assertFalse(descriptors.hasNext());
   }
 
   private static final String DEFECT =
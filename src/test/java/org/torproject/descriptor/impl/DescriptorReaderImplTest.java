@@ -4,20 +4,37 @@
 package org.torproject.descriptor.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import org.torproject.descriptor.Descriptor;
 import org.torproject.descriptor.DescriptorReader;
+import org.torproject.descriptor.RelayNetworkStatusConsensus;
+import org.torproject.descriptor.ServerDescriptor;
+import org.torproject.descriptor.UnparseableDescriptor;
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -147,5 +164,483 @@ public class DescriptorReaderImplTest {
     this.assertExcludedFilesParsedFilesAndHistoryFileLines(0, 2, 2);
   }
 
+  @Test
+  public void testAppendToHistoryFile() throws IOException {
+    this.descriptorReader.setHistoryFile(this.historyFile);
+    this.descriptorReader.setAppendToHistoryFile(true);
+    assertEquals(1, this.readAllDescriptors(this.inputDirectory));
+    this.assertExcludedFilesParsedFilesAndHistoryFileLines(1, 1, 2);
+  }
+
+  @Test
+  public void testAppendToHistoryFileResume() throws IOException {
+    /* Simulate a reader that was interrupted after appending lines for both
+     * files, one of them twice, and check that the next reader skips them
+     * and compacts the history file. */
+    File ffe0File = new File(this.inputDirectory, "ffe0");
+    List<String> lines = new ArrayList<>(Files.readAllLines(
+        this.historyFile.toPath(), StandardCharsets.UTF_8));
+    lines.add("0 " + ffe0File.getAbsolutePath());
+    lines.add(ffe0File.lastModified() + " " + ffe0File.getAbsolutePath());
+    lines.add("0 " + new File(this.inputDirectory, "gone").getAbsolutePath());
+    lines.add("0 " + new File(this.inputDirectory, "gone").getAbsolutePath());
+    lines.add("0 " + new File(this.inputDirectory, "gone").getAbsolutePath());
+    Files.write(this.historyFile.toPath(), lines, StandardCharsets.UTF_8);
+    this.descriptorReader.setHistoryFile(this.historyFile);
+    this.descriptorReader.setAppendToHistoryFile(true);
+    assertEquals(0, this.readAllDescriptors(this.inputDirectory));
+    this.assertExcludedFilesParsedFilesAndHistoryFileLines(2, 0, 2);
+  }
+
+  @Test
+  public void testAppendToHistoryFileParserThreads() throws IOException {
+    File manyDirectory = this.createManyDescriptorFiles();
+    File manyHistoryFile = new File(this.temporaryFolder.getRoot(),
+        "history-many");
+    this.descriptorReader.setHistoryFile(manyHistoryFile);
+    this.descriptorReader.setAppendToHistoryFile(true);
+    this.descriptorReader.setNumParserThreads(4);
+    this.descriptorReader.setKeepFileOrder(false);
+    assertEquals(40, this.readAllDescriptors(manyDirectory));
+    assertEquals(40, Files.readAllLines(manyHistoryFile.toPath(),
+        StandardCharsets.UTF_8).size());
+    DescriptorReader nextReader = new DescriptorReaderImpl();
+    nextReader.setHistoryFile(manyHistoryFile);
+    nextReader.setAppendToHistoryFile(true);
+    Iterator<Descriptor> descriptors = nextReader.readDescriptors(
+        manyDirectory).iterator();
+    assertTrue(!descriptors.hasNext());
+    assertEquals(40, nextReader.getExcludedFiles().size());
+  }
+
+  @Test
+  public void testAppendToHistoryFileWhenHandedOut() throws IOException {
+    File manyDirectory = this.createManyDescriptorFiles();
+    File manyHistoryFile = new File(this.temporaryFolder.getRoot(),
+        "history-many");
+    this.descriptorReader.setHistoryFile(manyHistoryFile);
+    this.descriptorReader.setAppendToHistoryFile(true);
+    this.descriptorReader.setNumParserThreads(4);
+    Iterator<Descriptor> descriptors = this.descriptorReader
+        .readDescriptors(manyDirectory).iterator();
+    /* Files are only recorded once their descriptors have been handed out,
+     * no matter how far the reader has got in the meantime. */
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Descriptor descriptor = descriptors.next();
+      expected.add(descriptor.getDescriptorFile().lastModified() + " "
+          + descriptor.getDescriptorFile().getAbsolutePath());
+      assertEquals(expected, Files.readAllLines(manyHistoryFile.toPath(),
+          StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testAppendToHistoryFileTarballWhenHandedOut()
+      throws IOException {
+    File tarball = new File(this.temporaryFolder.newFolder("tar"),
+        "descriptors.tar");
+    int count = this.writeTarball(new FileOutputStream(tarball),
+        tarball.getName(), 3).size();
+    File tarballHistoryFile = new File(this.temporaryFolder.getRoot(),
+        "history-tarball");
+    this.descriptorReader.setHistoryFile(tarballHistoryFile);
+    this.descriptorReader.setAppendToHistoryFile(true);
+    Iterator<Descriptor> descriptors = this.descriptorReader
+        .readDescriptors(tarball).iterator();
+    for (int i = 0; i < count - 1; i++) {
+      descriptors.next();
+    }
+    assertTrue(!tarballHistoryFile.exists());
+    descriptors.next();
+    assertEquals(1, Files.readAllLines(tarballHistoryFile.toPath(),
+        StandardCharsets.UTF_8).size());
+    assertTrue(!descriptors.hasNext());
+    assertEquals(Collections.singletonList(tarball.lastModified() + " "
+        + tarball.getAbsolutePath()), Files.readAllLines(
+        tarballHistoryFile.toPath(), StandardCharsets.UTF_8));
+  }
+
+  /* Copies both input descriptor files multiple times into a new directory
+   * and returns that directory. */
+  private File createManyDescriptorFiles() throws IOException {
+    File manyDirectory = this.temporaryFolder.newFolder("many");
+    for (File inputFile : this.inputDirectory.listFiles()) {
+      for (int i = 0; i < 20; i++) {
+        Files.copy(inputFile.toPath(),
+            new File(manyDirectory, inputFile.getName() + "-" + i).toPath());
+      }
+    }
+    return manyDirectory;
+  }
+
+  /* Reads all descriptors using the given reader and returns descriptor file
+   * names and raw descriptor lengths in the order they were provided. */
+  private List<String> readFileNamesAndLengths(DescriptorReader reader,
+      File... dirs) {
+    List<String> fileNamesAndLengths = new ArrayList<>();
+    for (Descriptor descriptor : reader.readDescriptors(dirs)) {
+      fileNamesAndLengths.add(descriptor.getDescriptorFile().getName() + " "
+          + descriptor.getRawDescriptorLength());
+    }
+    return fileNamesAndLengths;
+  }
+
+  @Test
+  public void testNumParserThreadsKeepFileOrder() throws IOException {
+    File manyDirectory = this.createManyDescriptorFiles();
+    List<String> expected = this.readFileNamesAndLengths(
+        new DescriptorReaderImpl(), manyDirectory);
+    this.descriptorReader.setNumParserThreads(4);
+    this.descriptorReader.setKeepFileOrder(true);
+    assertEquals(expected, this.readFileNamesAndLengths(
+        this.descriptorReader, manyDirectory));
+    assertEquals(40, this.descriptorReader.getParsedFiles().size());
+  }
+
+  @Test
+  public void testNumParserThreadsRelaxFileOrder() throws IOException {
+    File manyDirectory = this.createManyDescriptorFiles();
+    List<String> expected = this.readFileNamesAndLengths(
+        new DescriptorReaderImpl(), manyDirectory);
+    this.descriptorReader.setNumParserThreads(4);
+    this.descriptorReader.setKeepFileOrder(false);
+    List<String> actual = this.readFileNamesAndLengths(this.descriptorReader,
+        manyDirectory);
+    Collections.sort(expected);
+    Collections.sort(actual);
+    assertEquals(expected, actual);
+    assertEquals(40, this.descriptorReader.getParsedFiles().size());
+  }
+
+  /* Writes a tarball containing the given number of copies of both input
+   * descriptor files to the given stream and returns tarball name and raw
+   * descriptor lengths of contained descriptors. */
+  private List<String> writeTarball(OutputStream out, String tarballName,
+      int copies) throws IOException {
+    List<String> expected = new ArrayList<>();
+    try (TarArchiveOutputStream taos = new TarArchiveOutputStream(out)) {
+      taos.putArchiveEntry(new TarArchiveEntry("descriptors/"));
+      taos.closeArchiveEntry();
+      for (int i = 0; i < copies; i++) {
+        for (File inputFile : this.inputDirectory.listFiles()) {
+          taos.putArchiveEntry(new TarArchiveEntry(inputFile,
+              "descriptors/" + inputFile.getName() + "-" + i));
+          Files.copy(inputFile.toPath(), taos);
+          taos.closeArchiveEntry();
+          for (Descriptor descriptor : new DescriptorParserImpl()
+              .parseDescriptors(Files.readAllBytes(inputFile.toPath()),
+              inputFile, inputFile.getName())) {
+            expected.add(tarballName + " "
+                + descriptor.getRawDescriptorLength());
+          }
+        }
+      }
+    }
+    return expected;
+  }
+
+  @Test
+  public void testTarball() throws IOException {
+    File tarball = new File(this.temporaryFolder.newFolder("tar"),
+        "descriptors.tar");
+    List<String> expected = this.writeTarball(new FileOutputStream(tarball),
+        tarball.getName(), 1);
+    assertEquals(expected, this.readFileNamesAndLengths(
+        this.descriptorReader, tarball));
+    assertEquals(1, this.descriptorReader.getParsedFiles().size());
+  }
+
+  @Test
+  public void testMultiBlockXzTarball() throws IOException {
+    File tarball = new File(this.temporaryFolder.newFolder("tar"),
+        "descriptors.tar.xz");
+    ByteArrayOutputStream tarBytes = new ByteArrayOutputStream();
+    List<String> expected = this.writeTarball(tarBytes, tarball.getName(),
+        10);
+    try (XZOutputStream xzos = new XZOutputStream(
+        new FileOutputStream(tarball), new LZMA2Options())) {
+      byte[] bytes = tarBytes.toByteArray();
+      for (int offset = 0; offset < bytes.length; offset += 4096) {
+        xzos.write(bytes, offset, Math.min(4096, bytes.length - offset));
+        xzos.endBlock();
+      }
+    }
+    assertTrue(ParallelXzInputStream.countBlocks(tarball) > 1);
+    this.descriptorReader.setNumDecompressionThreads(3);
+    assertEquals(expected, this.readFileNamesAndLengths(
+        this.descriptorReader, tarball));
+    assertEquals(1, this.descriptorReader.getParsedFiles().size());
+  }
+
+  @Test
+  public void testConcurrentBz2Tarballs() throws IOException {
+    File tarballDirectory = this.temporaryFolder.newFolder("tar");
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      String tarballName = "descriptors-" + i + ".tar.bz2";
+      expected.addAll(this.writeTarball(new BZip2CompressorOutputStream(
+          new FileOutputStream(new File(tarballDirectory, tarballName))),
+          tarballName, 5));
+    }
+    this.descriptorReader.setKeepFileOrder(false);
+    this.descriptorReader.setNumDecompressionThreads(3);
+    List<String> actual = this.readFileNamesAndLengths(this.descriptorReader,
+        tarballDirectory);
+    Collections.sort(expected);
+    Collections.sort(actual);
+    assertEquals(expected, actual);
+    assertEquals(3, this.descriptorReader.getParsedFiles().size());
+  }
+
+  @Test
+  public void testMemoryMapFiles() throws IOException {
+    File tarballDirectory = this.temporaryFolder.newFolder("tar");
+    List<String> expected = this.readFileNamesAndLengths(
+        new DescriptorReaderImpl(), this.inputDirectory);
+    expected.addAll(this.writeTarball(new FileOutputStream(
+        new File(tarballDirectory, "descriptors.tar")), "descriptors.tar", 3));
+    this.descriptorReader.setMemoryMapFiles(true);
+    assertEquals(expected, this.readFileNamesAndLengths(
+        this.descriptorReader, this.inputDirectory, tarballDirectory));
+    assertEquals(3, this.descriptorReader.getParsedFiles().size());
+  }
+
+  @Test
+  public void testDescriptorTypesRequested() throws IOException {
+    File tarballDirectory = this.temporaryFolder.newFolder("tar");
+    List<String> expected = this.readFileNamesAndLengths(
+        new DescriptorReaderImpl(), this.inputDirectory);
+    expected.addAll(this.writeTarball(new FileOutputStream(
+        new File(tarballDirectory, "descriptors.tar")), "descriptors.tar", 2));
+    this.descriptorReader.setDescriptorTypes(
+        Collections.singleton(ServerDescriptor.class));
+    assertEquals(expected, this.readFileNamesAndLengths(
+        this.descriptorReader, this.inputDirectory, tarballDirectory));
+    assertEquals(3, this.descriptorReader.getParsedFiles().size());
+  }
+
+  @Test
+  public void testDescriptorTypesNotRequested() throws IOException {
+    File tarballDirectory = this.temporaryFolder.newFolder("tar");
+    this.writeTarball(new FileOutputStream(
+        new File(tarballDirectory, "descriptors.tar")), "descriptors.tar", 2);
+    this.descriptorReader.setDescriptorTypes(
+        Collections.singleton(RelayNetworkStatusConsensus.class));
+    assertEquals(0, this.readAllDescriptors(this.inputDirectory,
+        tarballDirectory));
+    assertEquals(3, this.descriptorReader.getParsedFiles().size());
+  }
+
+  /* Copies descriptor files of all kinds from test resources into a new
+   * directory and returns that directory. */
+  private File createDescriptorFilesOfAllTypes() throws IOException {
+    File allDirectory = this.temporaryFolder.newFolder("all");
+    for (String resource : new String[] {
+        "relay/2017-07-17-17-00-00-consensus",
+        "relay/2017-07-17-17-00-00-consensus-microdesc",
+        "relay/2017-07-17-17-20-00-server-descriptors",
+        "relay/2017-07-17-17-20-00-micro",
+        "relay/2017-07-17-17-20-00-extra-infos",
+        "bridge/2017-07-17-17-09-00-extra-infos",
+        "bridge/20170717-170645-1D8F3A91C37C5D1C4C19B1AD1D0CFBE8BF72D8E1",
+        "other/op-nl-5242880-2017-07-17.tpf",
+        "other/2017-07-17-17-02-00" }) {
+      Files.copy(getClass().getClassLoader().getResource(resource)
+          .openStream(), new File(allDirectory, resource.replace('/', '-'))
+          .toPath());
+    }
+    return allDirectory;
+  }
+
+  /* Reads all descriptors using the given reader and returns descriptor
+   * classes, file names, and raw descriptor bytes in the order they were
+   * provided. */
+  private List<String> readClassesAndRawDescriptors(DescriptorReader reader,
+      File... dirs) {
+    List<String> classesAndRawDescriptors = new ArrayList<>();
+    for (Descriptor descriptor : reader.readDescriptors(dirs)) {
+      classesAndRawDescriptors.add(descriptor.getClass().getName() + " "
+          + descriptor.getDescriptorFile().getName() + " "
+          + new String(descriptor.getRawDescriptorBytes(),
+          StandardCharsets.US_ASCII));
+    }
+    return classesAndRawDescriptors;
+  }
+
+  @Test
+  public void testParsedDescriptorCache() throws IOException {
+    File allDirectory = this.createDescriptorFilesOfAllTypes();
+    File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    List<String> expected = this.readClassesAndRawDescriptors(
+        new DescriptorReaderImpl(), allDirectory);
+    this.descriptorReader.setParsedDescriptorCache(cacheDirectory,
+        1L << 30);
+    assertEquals(expected, this.readClassesAndRawDescriptors(
+        this.descriptorReader, allDirectory));
+    assertEquals(9, cacheDirectory.list().length);
+    /* Overwrite all files without changing their last-modified times, so
+     * that parsing them would fail, and read them from the cache. */
+    for (File file : allDirectory.listFiles()) {
+      long lastModified = file.lastModified();
+      Files.write(file.toPath(), "garbage\n".getBytes(
+          StandardCharsets.US_ASCII));
+      assertTrue(file.setLastModified(lastModified));
+    }
+    DescriptorReader cachedReader = new DescriptorReaderImpl();
+    cachedReader.setParsedDescriptorCache(cacheDirectory, 1L << 30);
+    assertEquals(expected, this.readClassesAndRawDescriptors(cachedReader,
+        allDirectory));
+    assertEquals(9, cachedReader.getParsedFiles().size());
+    DescriptorReader consensusReader = new DescriptorReaderImpl();
+    consensusReader.setParsedDescriptorCache(cacheDirectory, 1L << 30);
+    RelayNetworkStatusConsensus consensus = null;
+    for (Descriptor descriptor : consensusReader.readDescriptors(
+        allDirectory)) {
+      if (descriptor.getDescriptorFile().getName().equals(
+          "relay-2017-07-17-17-00-00-consensus")) {
+        consensus = (RelayNetworkStatusConsensus) descriptor;
+      }
+    }
+    assertNotNull(consensus);
+    assertEquals(5, consensus.getStatusEntries().size());
+  }
+
+  @Test
+  public void testParsedDescriptorCacheChangedFile() throws IOException {
+    File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    this.descriptorReader.setParsedDescriptorCache(cacheDirectory,
+        1L << 30);
+    assertEquals(2, this.readAllDescriptors(this.inputDirectory));
+    File fafaFile = new File(this.inputDirectory, "fafa");
+    Files.write(fafaFile.toPath(), "@type server-descriptor 1.0\nrouter\n"
+        .getBytes(StandardCharsets.US_ASCII));
+    assertTrue(fafaFile.setLastModified(fafaFile.lastModified() + 1000L));
+    DescriptorReader changedReader = new DescriptorReaderImpl();
+    changedReader.setParsedDescriptorCache(cacheDirectory, 1L << 30);
+    int unparseableDescriptors = 0;
+    for (Descriptor descriptor : changedReader.readDescriptors(
+        this.inputDirectory)) {
+      if (descriptor instanceof UnparseableDescriptor) {
+        unparseableDescriptors++;
+      }
+    }
+    assertEquals(1, unparseableDescriptors);
+    assertEquals(2, cacheDirectory.list().length);
+  }
+
+  @Test
+  public void testParsedDescriptorCacheExcludedFiles() throws IOException {
+    File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    this.descriptorReader.setParsedDescriptorCache(cacheDirectory,
+        1L << 30);
+    this.descriptorReader.setHistoryFile(this.historyFile);
+    assertEquals(1, this.readAllDescriptors(this.inputDirectory));
+    this.assertExcludedFilesParsedFilesAndHistoryFileLines(1, 1, 1);
+    assertEquals(1, cacheDirectory.list().length);
+  }
+
+  @Test
+  public void testParsedDescriptorCacheTruncatedEntry() throws IOException {
+    File tarballDirectory = this.temporaryFolder.newFolder("tar");
+    List<String> expected = this.writeTarball(new FileOutputStream(
+        new File(tarballDirectory, "descriptors.tar")), "descriptors.tar",
+        5);
+    File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    this.descriptorReader.setParsedDescriptorCache(cacheDirectory,
+        1L << 30);
+    assertEquals(expected, this.readFileNamesAndLengths(
+        this.descriptorReader, tarballDirectory));
+    File[] entries = cacheDirectory.listFiles();
+    assertEquals(1, entries.length);
+    byte[] entryBytes = Files.readAllBytes(entries[0].toPath());
+    Files.write(entries[0].toPath(), Arrays.copyOf(entryBytes,
+        entryBytes.length * 2 / 3));
+    File historyFile = new File(this.temporaryFolder.getRoot(),
+        "truncated-history");
+    DescriptorReader truncatedReader = new DescriptorReaderImpl();
+    truncatedReader.setParsedDescriptorCache(cacheDirectory, 1L << 30);
+    truncatedReader.setHistoryFile(historyFile);
+    truncatedReader.setAppendToHistoryFile(true);
+    assertEquals(expected, this.readFileNamesAndLengths(truncatedReader,
+        tarballDirectory));
+    assertEquals(1, truncatedReader.getParsedFiles().size());
+    assertEquals(1, Files.readAllLines(historyFile.toPath()).size());
+    assertTrue(entries[0].length() > entryBytes.length * 2 / 3);
+  }
+
+  @Test
+  public void testParsedDescriptorCacheEviction() throws IOException {
+    File manyDirectory = this.createManyDescriptorFiles();
+    File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    DescriptorReader firstReader = new DescriptorReaderImpl();
+    firstReader.setParsedDescriptorCache(cacheDirectory, 1L << 30);
+    this.readFileNamesAndLengths(firstReader, manyDirectory);
+    File[] entries = cacheDirectory.listFiles();
+    assertEquals(40, entries.length);
+    long entryBytes = 0L;
+    for (File entry : entries) {
+      entryBytes = Math.max(entryBytes, entry.length());
+    }
+    this.descriptorReader.setParsedDescriptorCache(cacheDirectory,
+        10L * entryBytes);
+    this.readFileNamesAndLengths(this.descriptorReader, manyDirectory);
+    long totalBytes = 0L;
+    for (File entry : cacheDirectory.listFiles()) {
+      totalBytes += entry.length();
+    }
+    assertTrue(cacheDirectory.list().length < 40);
+    assertTrue(totalBytes <= 10L * entryBytes);
+  }
+
+  @Test
+  public void testParsedDescriptorCacheParserThreads() throws IOException {
+    File tarballDirectory = this.temporaryFolder.newFolder("tar");
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      String tarballName = "descriptors-" + i + ".tar";
+      expected.addAll(this.writeTarball(new FileOutputStream(
+          new File(tarballDirectory, tarballName)), tarballName, 5));
+    }
+    Collections.sort(expected);
+    File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    for (int run = 0; run < 2; run++) {
+      DescriptorReader reader = new DescriptorReaderImpl();
+      reader.setParsedDescriptorCache(cacheDirectory, 1L << 30);
+      reader.setNumParserThreads(4);
+      reader.setNumDecompressionThreads(3);
+      reader.setKeepFileOrder(false);
+      reader.setLazyParsing(true);
+      reader.setCompactStatusEntries(true);
+      List<String> actual = this.readFileNamesAndLengths(reader,
+          tarballDirectory);
+      Collections.sort(actual);
+      assertEquals(expected, actual);
+      assertEquals(3, cacheDirectory.list().length);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParsedDescriptorCacheZeroBytes() {
+    this.descriptorReader.setParsedDescriptorCache(
+        this.temporaryFolder.getRoot(), 0L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNumDecompressionThreadsZero() {
+    this.descriptorReader.setNumDecompressionThreads(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNumParserThreadsZero() {
+    this.descriptorReader.setNumParserThreads(0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNumParserThreadsAfterStartingToRead() {
+    this.descriptorReader.readDescriptors(this.inputDirectory);
+    this.descriptorReader.setNumParserThreads(2);
+  }
+
 }
 
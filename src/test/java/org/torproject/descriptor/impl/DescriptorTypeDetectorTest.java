@@ -0,0 +1,150 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.torproject.descriptor.impl.DescriptorTypeDetector.Type;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class DescriptorTypeDetectorTest {
+
+  private static Type detect(String firstLines) {
+    return detect(firstLines, "descriptors");
+  }
+
+  private static Type detect(String firstLines, String fileName) {
+    return DescriptorTypeDetector.detect(
+        firstLines.getBytes(StandardCharsets.US_ASCII), fileName);
+  }
+
+  @Test
+  public void testAnnotations() {
+    assertEquals(Type.RELAY_NETWORK_STATUS_CONSENSUS,
+        detect("@type network-status-consensus-3 1.0\n"));
+    assertEquals(Type.RELAY_NETWORK_STATUS_CONSENSUS,
+        detect("@type network-status-microdesc-consensus-3 1.0\n"));
+    assertEquals(Type.RELAY_NETWORK_STATUS_VOTE,
+        detect("@type network-status-vote-3 1.0\n"));
+    assertEquals(Type.BRIDGE_NETWORK_STATUS,
+        detect("@type bridge-network-status 1.2\n"));
+    assertEquals(Type.BRIDGE_SERVER_DESCRIPTOR,
+        detect("@type bridge-server-descriptor 1.2\nrouter MeekGoogle "));
+    assertEquals(Type.RELAY_SERVER_DESCRIPTOR,
+        detect("@type server-descriptor 1.0\n"));
+    assertEquals(Type.BRIDGE_EXTRA_INFO_DESCRIPTOR,
+        detect("@type bridge-extra-info 1.3\nextra-info MeekGoogle "));
+    assertEquals(Type.RELAY_EXTRA_INFO_DESCRIPTOR,
+        detect("@type extra-info 1.0\n"));
+    assertEquals(Type.MICRODESCRIPTOR,
+        detect("@type microdescriptor 1.0\n"));
+    assertEquals(Type.BRIDGE_POOL_ASSIGNMENT,
+        detect("@type bridge-pool-assignment 1.0\n"));
+    assertEquals(Type.DIRECTORY_KEY_CERTIFICATE,
+        detect("@type dir-key-certificate-3 1.0\n"));
+    assertEquals(Type.EXIT_LIST, detect("@type tordnsel 1.0\n"));
+    assertEquals(Type.RELAY_NETWORK_STATUS,
+        detect("@type network-status-2 1.0\n"));
+    assertEquals(Type.RELAY_DIRECTORY, detect("@type directory 1.0\n"));
+    assertEquals(Type.TORPERF_RESULT, detect("@type torperf 1.1\n"));
+    assertEquals(Type.SNOWFLAKE_STATS,
+        detect("@type snowflake-stats 1.0\n"));
+    assertEquals(Type.BANDWIDTH_FILE, detect("@type bandwidth-file 1.0\n"));
+  }
+
+  @Test
+  public void testKeywords() {
+    assertEquals(Type.RELAY_NETWORK_STATUS_CONSENSUS,
+        detect("network-status-version 3 microdesc\n"
+        + "vote-status consensus\n"));
+    assertEquals(Type.RELAY_NETWORK_STATUS_VOTE,
+        detect("network-status-version 3\nvote-status vote\n"));
+    assertEquals(Type.BRIDGE_NETWORK_STATUS, detect("r Unnamed "));
+    assertEquals(Type.RELAY_SERVER_DESCRIPTOR, detect("router Unnamed "));
+    assertEquals(Type.RELAY_EXTRA_INFO_DESCRIPTOR,
+        detect("extra-info Unnamed "));
+    assertEquals(Type.MICRODESCRIPTOR, detect("onion-key\n"));
+    assertEquals(Type.BRIDGE_POOL_ASSIGNMENT,
+        detect("bridge-pool-assignment 2011-03-13 14:38:03\n"));
+    assertEquals(Type.DIRECTORY_KEY_CERTIFICATE,
+        detect("dir-key-certificate-version 3\n"));
+    assertEquals(Type.EXIT_LIST, detect("Downloaded 2016-01-13 05:02:02\n"
+        + "ExitNode 0011BD2485AD45D984EC4159C88FC066E5E3300E\n"));
+    assertEquals(Type.RELAY_NETWORK_STATUS,
+        detect("network-status-version 2\n"));
+    assertEquals(Type.RELAY_DIRECTORY, detect("signed-directory\n"));
+    assertEquals(Type.SNOWFLAKE_STATS,
+        detect("snowflake-stats-end 2019-08-07 19:52:11 (86400 s)\n"));
+    assertEquals(Type.BANDWIDTH_FILE, detect("1523911758\nversion=1.1.0\n"));
+  }
+
+  @Test
+  public void testKeywordsAfterUnknownAnnotation() {
+    assertEquals(Type.RELAY_SERVER_DESCRIPTOR,
+        detect("@type unknown 1.0\nrouter Unnamed "));
+  }
+
+  @Test
+  public void testKeywordAfterNewline() {
+    assertEquals(Type.RELAY_SERVER_DESCRIPTOR,
+        detect("@uploaded-at 2017-07-17 17:20:00\nrouter Unnamed "));
+  }
+
+  @Test
+  public void testBridgeNetworkStatusOnlyAtStart() {
+    assertNull(detect("published 2017-07-17 17:06:45\nr Unnamed "));
+  }
+
+  @Test
+  public void testKeywordNotAtLineStart() {
+    assertNull(detect("contact router extra-info "));
+  }
+
+  @Test
+  public void testKeywordBeyondWindow() {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < DescriptorTypeDetector.WINDOW_LENGTH) {
+      sb.append("opt\n");
+    }
+    sb.append("router Unnamed ");
+    assertNull(detect(sb.toString()));
+  }
+
+  @Test
+  public void testKeywordCutOffByWindow() {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < DescriptorTypeDetector.WINDOW_LENGTH - 5) {
+      sb.append("opt\n");
+    }
+    sb.setLength(DescriptorTypeDetector.WINDOW_LENGTH - 5);
+    sb.setCharAt(sb.length() - 1, '\n');
+    sb.append("router Unnamed ");
+    assertNull(detect(sb.toString()));
+  }
+
+  @Test
+  public void testConsensusWithoutVoteStatus() {
+    assertNull(detect("network-status-version 3\n"));
+  }
+
+  @Test
+  public void testWebServerAccessLog() {
+    assertEquals(Type.WEB_SERVER_ACCESS_LOG, detect("0.0.0.0 - - ",
+        "metrics.torproject.org_meronense.torproject.org_access.log_20170530"));
+  }
+
+  @Test
+  public void testTimestampTooShort() {
+    assertNull(detect("152391175\n"));
+  }
+
+  @Test
+  public void testEmpty() {
+    assertNull(detect(""));
+  }
+}
@@ -25,6 +25,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /* Test parsing of extra-info descriptors. */
 public class ExtraInfoDescriptorImplTest {
@@ -2362,5 +2365,72 @@ public class ExtraInfoDescriptorImplTest {
     assertNull(descriptor.getDigestSha1Hex());
     assertNull(descriptor.getDigestSha256Base64());
   }
-}
 
+  /* Parse the given descriptor and return a summary of the result or the
+   * parse error, to compare results across threads. */
+  private static String parseAndSummarize(byte[] descriptorBytes) {
+    try {
+      ExtraInfoDescriptor descriptor = new RelayExtraInfoDescriptorImpl(
+          descriptorBytes, new int[] { 0, descriptorBytes.length }, null);
+      return descriptor.getNickname() + " " + descriptor.getPublishedMillis()
+          + " " + descriptor.getDirreqStatsEndMillis() + " "
+          + descriptor.getCellStatsEndMillis() + " "
+          + descriptor.getExitStatsEndMillis() + " "
+          + descriptor.getBridgeStatsEndMillis();
+    } catch (DescriptorParseException e) {
+      return e.getMessage();
+    }
+  }
+
+  @Test
+  public void testConcurrentParsing() throws Exception {
+    List<byte[]> descriptors = new ArrayList<>();
+    DescriptorBuilder db = new DescriptorBuilder();
+    db.geoipStatsLines = new GeoipStatsBuilder().buildGeoipStatsLines();
+    db.dirreqStatsLines = new DirreqStatsBuilder().buildDirreqStatsLines();
+    db.entryStatsLines = new EntryStatsBuilder().buildEntryStatsLines();
+    db.cellStatsLines = new CellStatsBuilder().buildCellStatsLines();
+    db.exitStatsLines = new ExitStatsBuilder().buildExitStatsLines();
+    db.bridgeStatsLines = new BridgeStatsBuilder().buildBridgeStatsLines();
+    db.hidservStatsLines = new HidservStatsBuilder().buildHidservStatsLines();
+    descriptors.add(db.buildDescriptorBytes());
+    descriptors.add(new DescriptorBuilder().buildDescriptorBytes());
+    DirreqStatsBuilder dsb = new DirreqStatsBuilder();
+    dsb.dirreqStatsEndLine = null;
+    db = new DescriptorBuilder();
+    db.dirreqStatsLines = dsb.buildDirreqStatsLines();
+    descriptors.add(db.buildDescriptorBytes());
+    ExitStatsBuilder esb = new ExitStatsBuilder();
+    db = new DescriptorBuilder();
+    db.exitStatsLines = esb.buildExitStatsLines() + "\n"
+        + esb.exitStatsEndLine;
+    descriptors.add(db.buildDescriptorBytes());
+    List<String> expectedResults = new ArrayList<>();
+    for (byte[] descriptorBytes : descriptors) {
+      expectedResults.add(parseAndSummarize(descriptorBytes));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<List<String>>> results = new ArrayList<>();
+    for (int task = 0; task < 64; task++) {
+      results.add(executor.submit(() -> {
+        List<String> taskResults = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+          taskResults.clear();
+          for (byte[] descriptorBytes : descriptors) {
+            taskResults.add(parseAndSummarize(descriptorBytes));
+          }
+          assertEquals(expectedResults, taskResults);
+        }
+        return taskResults;
+      }));
+    }
+    executor.shutdown();
+    for (Future<List<String>> result : results) {
+      assertEquals(expectedResults, result.get());
+    }
+    assertEquals("Keyword 'dirreq-v2-direct-dl' is contained, but keyword "
+        + "'dirreq-stats-end' is not.", expectedResults.get(2));
+    assertEquals("Keyword 'exit-stats-end' is contained 2 times, but must be "
+        + "contained at most once.", expectedResults.get(3));
+  }
+}
@@ -0,0 +1,135 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class HistoryFileTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private List<String> readLines(File file) throws IOException {
+    return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testAppendWithoutClosing() throws IOException {
+    File file = new File(this.temporaryFolder.getRoot(), "history");
+    HistoryFile history = new HistoryFile(file);
+    history.append("/a", 1L);
+    history.append("/b", 2L);
+    /* Lines are written right away, so that another reader sees them even
+     * if the first one never finishes, like after a crash. */
+    Map<String, Long> entries = new HashMap<>();
+    assertEquals(2L, HistoryFile.read(file, entries));
+    assertEquals(2L, (long) entries.get("/b"));
+    assertEquals(entries, new HistoryFile(file).getEntries());
+  }
+
+  @Test
+  public void testLaterLinesTakePrecedence() throws IOException {
+    File file = this.temporaryFolder.newFile("history");
+    Files.write(file.toPath(), Arrays.asList("1 /a", "2 /b", "3 /a"),
+        StandardCharsets.UTF_8);
+    HistoryFile history = new HistoryFile(file);
+    assertEquals(3L, (long) history.getEntries().get("/a"));
+    assertEquals(2, history.getEntries().size());
+    assertEquals(3, this.readLines(file).size());
+  }
+
+  @Test
+  public void testCompactWhenOpening() throws IOException {
+    File file = this.temporaryFolder.newFile("history");
+    Files.write(file.toPath(), Arrays.asList("1 /a", "2 /a", "3 /b",
+        "4 /a"), StandardCharsets.UTF_8);
+    new HistoryFile(file);
+    assertEquals(Arrays.asList("1 /a", "2 /a", "3 /b", "4 /a"),
+        this.readLines(file));
+    Files.write(file.toPath(), Arrays.asList("1 /a", "2 /a", "3 /b",
+        "4 /a", "5 /a"), StandardCharsets.UTF_8);
+    new HistoryFile(file);
+    assertEquals(Arrays.asList("5 /a", "3 /b"), this.readLines(file));
+  }
+
+  @Test
+  public void testCompactWhenAppending() throws IOException {
+    File file = new File(this.temporaryFolder.getRoot(), "history");
+    HistoryFile history = new HistoryFile(file);
+    history.append("/a", 1L);
+    history.append("/b", 1L);
+    history.append("/a", 2L);
+    history.append("/a", 3L);
+    assertEquals(4, this.readLines(file).size());
+    history.append("/a", 4L);
+    assertEquals(Arrays.asList("4 /a", "1 /b"), this.readLines(file));
+    history.append("/c", 1L);
+    assertEquals(Arrays.asList("4 /a", "1 /b", "1 /c"),
+        this.readLines(file));
+  }
+
+  @Test
+  public void testRewrite() throws IOException {
+    File file = new File(this.temporaryFolder.getRoot(), "history");
+    HistoryFile history = new HistoryFile(file);
+    history.append("/a", 1L);
+    Map<String, Long> entries = new TreeMap<>();
+    entries.put("/c", 3L);
+    entries.put("/b", 2L);
+    history.rewrite(entries);
+    assertEquals(Arrays.asList("2 /b", "3 /c"), this.readLines(file));
+    assertEquals(entries, history.getEntries());
+    history.append("/d", 4L);
+    assertEquals(Arrays.asList("2 /b", "3 /c", "4 /d"),
+        this.readLines(file));
+  }
+
+  @Test
+  public void testMalformedLines() throws IOException {
+    File file = this.temporaryFolder.newFile("history");
+    Files.write(file.toPath(), Arrays.asList("1 /a", "", " /b", "x /c",
+        "2 /d e"), StandardCharsets.UTF_8);
+    Map<String, Long> entries = new HashMap<>();
+    assertEquals(5L, HistoryFile.read(file, entries));
+    assertEquals(2, entries.size());
+    assertEquals(2L, (long) entries.get("/d e"));
+  }
+
+  @Test
+  public void testIncompleteLastLine() throws IOException {
+    File file = this.temporaryFolder.newFile("history");
+    Files.write(file.toPath(), "1 /a\n2 /b\n3 /c/d".getBytes(
+        StandardCharsets.UTF_8));
+    HistoryFile history = new HistoryFile(file);
+    assertEquals(2, history.getEntries().size());
+    assertEquals(Arrays.asList("1 /a", "2 /b"), this.readLines(file));
+    history.append("/c/de", 3L);
+    assertEquals(Arrays.asList("1 /a", "2 /b", "3 /c/de"),
+        this.readLines(file));
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    File file = this.temporaryFolder.newFile("history");
+    HistoryFile history = new HistoryFile(file);
+    assertTrue(history.getEntries().isEmpty());
+    history.append("/a", 1L);
+    assertEquals(Arrays.asList("1 /a"), this.readLines(file));
+  }
+}
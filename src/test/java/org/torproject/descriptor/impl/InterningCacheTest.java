@@ -0,0 +1,61 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class InterningCacheTest {
+
+  @Test
+  public void testHitsAndMisses() {
+    InterningCache<String, String> cache = new InterningCache<>(4);
+    assertNull(cache.get("a"));
+    String value = new String("value");
+    assertSame(value, cache.intern("a", value));
+    assertSame(value, cache.intern("a", new String("value")));
+    assertSame(value, cache.get("a"));
+    assertSame(value, cache.get("a"));
+    assertEquals(2L, cache.hits());
+    assertEquals(1L, cache.misses());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testEvictUnreferencedFirst() {
+    InterningCache<Integer, Integer> cache = new InterningCache<>(4);
+    for (int i = 0; i < 4; i++) {
+      cache.intern(i, i);
+    }
+    cache.get(1);
+    cache.get(3);
+    cache.intern(4, 4);
+    assertEquals(3, cache.size());
+    assertEquals(2L, cache.evictions());
+    assertEquals(Integer.valueOf(1), cache.get(1));
+    assertEquals(Integer.valueOf(3), cache.get(3));
+    assertNull(cache.get(0));
+    assertNull(cache.get(2));
+  }
+
+  @Test
+  public void testEvictReferencedIfNecessary() {
+    InterningCache<Integer, Integer> cache = new InterningCache<>(4);
+    for (int i = 0; i < 4; i++) {
+      cache.intern(i, i);
+      cache.get(i);
+    }
+    cache.intern(4, 4);
+    assertEquals(3, cache.size());
+    assertEquals(2L, cache.evictions());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroMaxSize() {
+    new InterningCache<String, String>(0);
+  }
+}
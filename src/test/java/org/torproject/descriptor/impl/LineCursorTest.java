@@ -0,0 +1,96 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.torproject.descriptor.DescriptorParseException;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+public class LineCursorTest {
+
+  private static List<String> scannerLines(byte[] bytes, int offset,
+      int length) {
+    List<String> lines = new ArrayList<>();
+    try (Scanner scanner = new Scanner(new InputStreamReader(
+        new ByteArrayInputStream(bytes, offset, length),
+        StandardCharsets.UTF_8)).useDelimiter("\n")) {
+      while (scanner.hasNext()) {
+        lines.add(scanner.next());
+      }
+    }
+    return lines;
+  }
+
+  private static List<String> cursorLines(byte[] bytes, int offset,
+      int length) throws DescriptorParseException {
+    List<String> lines = new ArrayList<>();
+    LineCursor cursor = new LineCursor(bytes, offset, length);
+    while (cursor.hasNext()) {
+      lines.add(cursor.next());
+    }
+    return lines;
+  }
+
+  @Test
+  public void testSameLinesAsScanner() throws DescriptorParseException {
+    String[] inputs = new String[] { "", "\n", "\n\n", "a", "a\n", "a\n\n",
+        "\na", "\n\na", "a\nb", "a\n\nb\n", "a\r\nb\r\n", " a \n\tb",
+        "caf\u00e9\nna\u00efve\n" };
+    for (String input : inputs) {
+      byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+      assertEquals("Input '" + input + "'", scannerLines(bytes, 0,
+          bytes.length), cursorLines(bytes, 0, bytes.length));
+    }
+  }
+
+  @Test
+  public void testRange() throws DescriptorParseException {
+    byte[] bytes = "skip\nfirst\nsecond\nskip".getBytes(
+        StandardCharsets.US_ASCII);
+    assertEquals(scannerLines(bytes, 4, 14), cursorLines(bytes, 4, 14));
+  }
+
+  @Test
+  public void testLineViews() throws DescriptorParseException {
+    byte[] bytes = "@type x 1.0\nopt router a b\n\nend".getBytes(
+        StandardCharsets.US_ASCII);
+    LineCursor cursor = new LineCursor(bytes, 0, bytes.length);
+    assertTrue(cursor.advance());
+    assertTrue(cursor.lineStartsWith("@"));
+    assertEquals(0, cursor.lineOffset());
+    assertEquals(11, cursor.lineLength());
+    assertTrue(cursor.advance());
+    assertTrue(cursor.lineStartsWith("opt "));
+    assertTrue(cursor.lineRegionMatches(4, "router"));
+    assertFalse(cursor.lineRegionMatches(12, "a b c"));
+    assertEquals(10, cursor.lineIndexOf(' ', 4));
+    assertEquals(-1, cursor.lineIndexOf('x', 0));
+    assertEquals("opt router a b", cursor.line());
+    assertTrue(cursor.advance());
+    assertTrue(cursor.isLineEmpty());
+    assertEquals("", cursor.line());
+    assertEquals("end", cursor.next());
+    assertFalse(cursor.hasNext());
+    assertFalse(cursor.advance());
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNextAfterLastLine() throws DescriptorParseException {
+    LineCursor cursor = new LineCursor(new byte[] { 'a', '\n' }, 0, 2);
+    assertEquals("a", cursor.next());
+    cursor.next();
+  }
+}
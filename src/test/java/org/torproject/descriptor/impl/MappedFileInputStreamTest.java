@@ -0,0 +1,63 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class MappedFileInputStreamTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private byte[] contents = new byte[10000];
+
+  private File createFile() throws IOException {
+    for (int i = 0; i < this.contents.length; i++) {
+      this.contents[i] = (byte) i;
+    }
+    File file = this.temporaryFolder.newFile();
+    Files.write(file.toPath(), this.contents);
+    return file;
+  }
+
+  @Test
+  public void testReadAcrossWindows() throws IOException {
+    try (MappedFileInputStream in = new MappedFileInputStream(
+        this.createFile(), 333L)) {
+      assertEquals(this.contents.length, in.length());
+      byte[] read = new byte[this.contents.length];
+      assertEquals(this.contents.length, IOUtils.readFully(in, read));
+      assertArrayEquals(this.contents, read);
+      assertEquals(-1, in.read());
+      assertEquals(-1, in.read(read, 0, 1));
+    }
+  }
+
+  @Test
+  public void testSkipAndReadSingleBytes() throws IOException {
+    try (MappedFileInputStream in = new MappedFileInputStream(
+        this.createFile(), 100L)) {
+      assertEquals(0, in.read());
+      assertEquals(4999L, in.skip(4999L));
+      assertEquals(5000 & 0xff, in.read());
+      byte[] read = new byte[10];
+      assertEquals(10, in.read(read, 0, 10));
+      assertArrayEquals(Arrays.copyOfRange(this.contents, 5001, 5011), read);
+      assertEquals(4989L, in.skip(Long.MAX_VALUE));
+      assertEquals(0, in.available());
+      assertEquals(-1, in.read());
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.torproject.descriptor.Descriptor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ParsedDescriptorCacheTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Object serializeAndDeserialize(Object object)
+      throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+      out.writeObject(object);
+    }
+    try (ObjectInputStream in =
+        new ParsedDescriptorCache.FilteringObjectInputStream(
+        new ByteArrayInputStream(baos.toByteArray()))) {
+      return in.readObject();
+    }
+  }
+
+  @Test
+  public void testAllowedClasses() {
+    assertTrue(ParsedDescriptorCache.isAllowedClass(
+        "org.torproject.descriptor.impl.RelayServerDescriptorImpl"));
+    assertTrue(ParsedDescriptorCache.isAllowedClass(
+        "[Lorg.torproject.descriptor.Descriptor;"));
+    assertTrue(ParsedDescriptorCache.isAllowedClass("[[B"));
+    assertTrue(ParsedDescriptorCache.isAllowedClass("java.util.TreeMap"));
+    assertTrue(ParsedDescriptorCache.isAllowedClass(
+        "java.util.Collections$UnmodifiableSortedMap"));
+  }
+
+  @Test
+  public void testDisallowedClasses() {
+    assertFalse(ParsedDescriptorCache.isAllowedClass(
+        "java.util.concurrent.atomic.AtomicLong"));
+    assertFalse(ParsedDescriptorCache.isAllowedClass(
+        "[Ljava.util.PriorityQueue;"));
+    assertFalse(ParsedDescriptorCache.isAllowedClass(
+        "org.torproject.descriptor.log.WebServerAccessLogImpl"));
+    assertFalse(ParsedDescriptorCache.isAllowedClass(
+        "org.torproject.descriptor.implementation.Gadget"));
+    assertFalse(ParsedDescriptorCache.isAllowedClass("[X"));
+  }
+
+  @Test
+  public void testDeserializeAllowedObject() throws Exception {
+    TreeMap<String, Long> map = new TreeMap<>();
+    map.put("key", 1L);
+    assertEquals(Collections.unmodifiableSortedMap(map),
+        this.serializeAndDeserialize(
+        Collections.unmodifiableSortedMap(map)));
+  }
+
+  @Test(expected = InvalidClassException.class)
+  public void testDeserializeDisallowedObject() throws Exception {
+    this.serializeAndDeserialize(new AtomicLong(1L));
+  }
+
+  @Test(expected = InvalidClassException.class)
+  public void testDeserializeDisallowedObjectInCollection()
+      throws Exception {
+    this.serializeAndDeserialize(Collections.singletonList(
+        new AtomicLong(1L)));
+  }
+
+  @Test
+  public void testEntryWithDisallowedClassDiscarded() throws IOException {
+    File descriptorFile = this.temporaryFolder.newFile("descriptor");
+    Files.write(descriptorFile.toPath(), "@type torperf 1.0\n"
+        .getBytes(StandardCharsets.US_ASCII));
+    File cacheDirectory = this.temporaryFolder.newFolder("cache");
+    ParsedDescriptorCache cache = new ParsedDescriptorCache(cacheDirectory,
+        1L << 20, "test");
+    ParsedDescriptorCache.Writer writer = cache.newWriter(descriptorFile);
+    assertNotNull(writer);
+    writer.commit();
+    File[] entries = cacheDirectory.listFiles();
+    assertEquals(1, entries.length);
+    /* Replace the end-of-entry marker with an object of a class that is
+     * not allowed, keeping the entry header intact. */
+    byte[] entryBytes = Files.readAllBytes(entries[0].toPath());
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+      out.writeObject(new AtomicLong(1L));
+    }
+    byte[] objectBytes = baos.toByteArray();
+    /* Skip the new stream's four-byte header, and drop the old entry's
+     * trailing TC_NULL byte. */
+    byte[] modifiedBytes = new byte[entryBytes.length - 1
+        + objectBytes.length - 4];
+    System.arraycopy(entryBytes, 0, modifiedBytes, 0,
+        entryBytes.length - 1);
+    System.arraycopy(objectBytes, 4, modifiedBytes, entryBytes.length - 1,
+        objectBytes.length - 4);
+    Files.write(entries[0].toPath(), modifiedBytes);
+    try (ParsedDescriptorCache.Reader reader =
+        cache.openReader(descriptorFile)) {
+      assertNotNull(reader);
+      Descriptor[] batch = reader.readBatch();
+      fail("Read batch " + batch + " containing disallowed class.");
+    } catch (IOException e) {
+      assertTrue(e.getCause() instanceof InvalidClassException);
+    }
+    assertFalse(entries[0].exists());
+    assertNull(cache.openReader(descriptorFile));
+  }
+}
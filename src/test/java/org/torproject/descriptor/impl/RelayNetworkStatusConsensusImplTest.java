@@ -7,6 +7,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.torproject.descriptor.DescriptorParseException;
@@ -18,10 +19,21 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /* TODO Add test cases for all lines starting with "opt ". */
 
@@ -1635,5 +1647,246 @@ public class RelayNetworkStatusConsensusImplTest {
     unrecognizedLines.add(unrecognizedLine);
     assertEquals(unrecognizedLines, consensus.getUnrecognizedLines());
   }
-}
 
+  private static final String[] STRESS_FLAGS = new String[] { "Authority",
+      "BadExit", "Exit", "Fast", "Guard", "HSDir", "Named", "Running",
+      "Stable", "V2Dir", "Valid" };
+
+  /* Build a status entry with a distinct combination of flags and a
+   * distinct protocols line for each index. */
+  private static String buildStressStatusEntry(int index) {
+    byte[] fingerprint = new byte[20];
+    fingerprint[0] = (byte) (index >> 8);
+    fingerprint[1] = (byte) index;
+    Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("r r%d %s %s 2011-11-29 %02d:%02d:%02d "
+        + "50.63.8.215 9023 0\n", index, encoder.encodeToString(fingerprint),
+        encoder.encodeToString(new byte[20]), index / 3600, index / 60 % 60,
+        index % 60));
+    sb.append("s");
+    for (int flag = 0; flag < STRESS_FLAGS.length; flag++) {
+      if ((index & (1 << flag)) != 0) {
+        sb.append(" ").append(STRESS_FLAGS[flag]);
+      }
+    }
+    sb.append("\npr Cons=1-2 Link=").append(index).append("\nw Bandwidth=")
+        .append(index);
+    return sb.toString();
+  }
+
+  @Test
+  public void testConcurrentParsing() throws Exception {
+    int numEntries = 1 << STRESS_FLAGS.length;
+    ConsensusBuilder cb = new ConsensusBuilder();
+    cb.statusEntries.clear();
+    for (int i = 0; i < numEntries; i++) {
+      cb.statusEntries.add(buildStressStatusEntry(i));
+    }
+    byte[] consensusBytes = cb.buildConsensusBytes();
+    long previousFlagsMisses = NetworkStatusEntryImpl.parsedFlags.misses();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Void>> results = new ArrayList<>();
+    for (int task = 0; task < 32; task++) {
+      results.add(executor.submit(() -> {
+        RelayNetworkStatusConsensus consensus
+            = new RelayNetworkStatusConsensusImpl(consensusBytes,
+            new int[] { 0, consensusBytes.length }, null);
+        assertEquals(numEntries, consensus.getStatusEntries().size());
+        for (NetworkStatusEntry entry
+            : consensus.getStatusEntries().values()) {
+          int index = Integer.parseInt(entry.getNickname().substring(1));
+          SortedSet<String> expectedFlags = new TreeSet<>();
+          for (int flag = 0; flag < STRESS_FLAGS.length; flag++) {
+            if ((index & (1 << flag)) != 0) {
+              expectedFlags.add(STRESS_FLAGS[flag]);
+            }
+          }
+          assertEquals(expectedFlags, entry.getFlags());
+          assertEquals(new TreeSet<>(Collections.singleton((long) index)),
+              entry.getProtocols().get("Link"));
+          assertEquals(1322524800000L + index * 1000L,
+              entry.getPublishedMillis());
+          assertEquals(index, entry.getBandwidth());
+        }
+        return null;
+      }));
+    }
+    executor.shutdown();
+    for (Future<Void> result : results) {
+      result.get();
+    }
+    InterningCache<String, SortedSet<String>> flagsCache
+        = NetworkStatusEntryImpl.parsedFlags;
+    assertTrue(flagsCache.misses() - previousFlagsMisses >= numEntries);
+    assertTrue(flagsCache.hits() > 0L);
+    assertTrue(flagsCache.evictions() > 0L);
+    assertTrue(flagsCache.size() <= flagsCache.maxSize() + 8);
+    assertTrue(ParseHelper.parsedProtocolVersions.size()
+        <= ParseHelper.parsedProtocolVersions.maxSize() + 8);
+  }
+
+  private static void assertSameStatusEntry(NetworkStatusEntry expected,
+      NetworkStatusEntry actual) {
+    String fingerprint = expected.getFingerprint();
+    assertEquals(fingerprint, actual.getFingerprint());
+    assertEquals(fingerprint, new String(expected.getStatusEntryBytes()),
+        new String(actual.getStatusEntryBytes()));
+    assertEquals(fingerprint, expected.getNickname(), actual.getNickname());
+    assertEquals(fingerprint, expected.getDescriptor(),
+        actual.getDescriptor());
+    assertEquals(fingerprint, expected.getPublishedMillis(),
+        actual.getPublishedMillis());
+    assertEquals(fingerprint, expected.getAddress(), actual.getAddress());
+    assertEquals(fingerprint, expected.getOrPort(), actual.getOrPort());
+    assertEquals(fingerprint, expected.getDirPort(), actual.getDirPort());
+    assertEquals(fingerprint, expected.getMicrodescriptorDigestsSha256Base64(),
+        actual.getMicrodescriptorDigestsSha256Base64());
+    assertEquals(fingerprint, expected.getOrAddresses(),
+        actual.getOrAddresses());
+    assertEquals(fingerprint, expected.getFlags(), actual.getFlags());
+    assertEquals(fingerprint, expected.getVersion(), actual.getVersion());
+    assertEquals(fingerprint, expected.getProtocols(), actual.getProtocols());
+    assertEquals(fingerprint, expected.getBandwidth(), actual.getBandwidth());
+    assertEquals(fingerprint, expected.getMeasured(), actual.getMeasured());
+    assertEquals(fingerprint, expected.getUnmeasured(),
+        actual.getUnmeasured());
+    assertEquals(fingerprint, expected.getDefaultPolicy(),
+        actual.getDefaultPolicy());
+    assertEquals(fingerprint, expected.getPortList(), actual.getPortList());
+    assertEquals(fingerprint, expected.getMasterKeyEd25519(),
+        actual.getMasterKeyEd25519());
+  }
+
+  @Test
+  public void testCompactStatusEntries() throws DescriptorParseException {
+    ConsensusBuilder cb = new ConsensusBuilder();
+    for (int i = 0; i < 300; i++) {
+      StringBuilder sb = new StringBuilder(buildStressStatusEntry(i + 5));
+      if (i % 3 == 0) {
+        sb.append("\na [2001:db8::").append(i).append("]:9001");
+      }
+      if (i % 4 == 0) {
+        sb.append("\nv Tor 0.3.5.").append(i % 8);
+      }
+      if (i % 5 == 0) {
+        sb.append("\np reject 1-65535");
+      } else if (i % 5 == 1) {
+        sb.append("\np accept 80,443");
+      }
+      if (i % 7 == 0) {
+        byte[] digest = new byte[32];
+        digest[31] = (byte) i;
+        sb.append("\nm 1,2,3 sha256=").append(
+            Base64.getEncoder().withoutPadding().encodeToString(digest));
+      }
+      cb.statusEntries.add(sb.toString());
+    }
+    byte[] consensusBytes = cb.buildConsensusBytes();
+    RelayNetworkStatusConsensusImpl expected
+        = new RelayNetworkStatusConsensusImpl(consensusBytes,
+        new int[] { 0, consensusBytes.length }, null);
+    RelayNetworkStatusConsensusImpl actual
+        = new RelayNetworkStatusConsensusImpl(consensusBytes,
+        new int[] { 0, consensusBytes.length }, null);
+    actual.compactStatusEntries();
+    assertEquals(302, actual.getStatusEntries().size());
+    assertEquals(expected.getStatusEntries().keySet(),
+        actual.getStatusEntries().keySet());
+    for (NetworkStatusEntry expectedEntry
+        : expected.getStatusEntries().values()) {
+      String fingerprint = expectedEntry.getFingerprint();
+      assertTrue(actual.containsStatusEntry(fingerprint));
+      NetworkStatusEntry actualEntry = actual.getStatusEntry(fingerprint);
+      assertFalse(actualEntry instanceof NetworkStatusEntryImpl);
+      assertSameStatusEntry(expectedEntry, actualEntry);
+      assertSameStatusEntry(expectedEntry,
+          actual.getStatusEntries().get(fingerprint));
+      if (!fingerprint.equals(fingerprint.toLowerCase())) {
+        assertFalse(actual.containsStatusEntry(fingerprint.toLowerCase()));
+      }
+    }
+    assertFalse(actual.containsStatusEntry(
+        "0000000000000000000000000000000000000000"));
+    assertNull(actual.getStatusEntry("not a fingerprint"));
+    assertNull(actual.getStatusEntry(null));
+  }
+
+  @Test
+  public void testCompactStatusEntriesShareValues() throws Exception {
+    ConsensusBuilder cb = new ConsensusBuilder();
+    cb.statusEntries.clear();
+    for (int i = 0; i < 2; i++) {
+      cb.statusEntries.add(buildStressStatusEntry(i) + "\nv Tor 0.4.1.5"
+          + "\np accept 80,443");
+    }
+    byte[] consensusBytes = cb.buildConsensusBytes();
+    List<NetworkStatusEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      RelayNetworkStatusConsensusImpl consensus
+          = new RelayNetworkStatusConsensusImpl(consensusBytes,
+          new int[] { 0, consensusBytes.length }, null);
+      consensus.compactStatusEntries();
+      entries.addAll(consensus.getStatusEntries().values());
+      entries.addAll(serializeAndDeserialize(consensus).getStatusEntries()
+          .values());
+    }
+    assertEquals(8, entries.size());
+    NetworkStatusEntry first = entries.get(0);
+    assertEquals("Tor 0.4.1.5", first.getVersion());
+    assertEquals("80,443", first.getPortList());
+    for (int i = 0; i < entries.size(); i++) {
+      NetworkStatusEntry entry = entries.get(i);
+      assertSame(first.getVersion(), entry.getVersion());
+      assertSame(first.getPortList(), entry.getPortList());
+      assertSame(entries.get(i % 2).getProtocols(), entry.getProtocols());
+    }
+  }
+
+  private static RelayNetworkStatusConsensus serializeAndDeserialize(
+      RelayNetworkStatusConsensus consensus)
+      throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+      oos.writeObject(consensus);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(
+        new ByteArrayInputStream(baos.toByteArray()))) {
+      return (RelayNetworkStatusConsensus) ois.readObject();
+    }
+  }
+
+  @Test
+  public void testCompactStatusEntriesNonCanonicalDigest()
+      throws DescriptorParseException {
+    /* The last base64 char contains two bits that are not part of the
+     * 32-byte digest and that would be lost when converting back. */
+    String digest = String.format("%043d", 7);
+    ConsensusBuilder cb = new ConsensusBuilder();
+    cb.statusEntries.add(buildStressStatusEntry(1) + "\nm 1 sha256="
+        + digest);
+    RelayNetworkStatusConsensusImpl consensus
+        = (RelayNetworkStatusConsensusImpl) cb.buildConsensus();
+    consensus.compactStatusEntries();
+    for (NetworkStatusEntry entry
+        : consensus.getStatusEntries().values()) {
+      assertTrue(entry instanceof NetworkStatusEntryImpl);
+    }
+  }
+
+  @Test
+  public void testCompactStatusEntriesNotRepresentable()
+      throws DescriptorParseException {
+    StatusEntryBuilder seb = new StatusEntryBuilder();
+    seb.address = "050.63.8.215";
+    RelayNetworkStatusConsensusImpl consensus
+        = (RelayNetworkStatusConsensusImpl) StatusEntryBuilder
+        .createWithStatusEntry(seb.buildStatusEntry());
+    consensus.compactStatusEntries();
+    assertTrue(consensus.getStatusEntry(
+        "00343A8024F70E214728F0C5AF7ACE0C1508F073")
+        instanceof NetworkStatusEntryImpl);
+    assertEquals("050.63.8.215", consensus.getStatusEntry(
+        "00343A8024F70E214728F0C5AF7ACE0C1508F073").getAddress());
+  }
+}
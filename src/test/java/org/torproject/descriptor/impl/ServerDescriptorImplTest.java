@@ -3,6 +3,7 @@
 
 package org.torproject.descriptor.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -21,6 +22,7 @@ import org.junit.rules.ExpectedException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -625,7 +627,8 @@ public class ServerDescriptorImplTest {
   @Test
   public void testOrPortNewline() throws DescriptorParseException {
     this.thrown.expect(DescriptorParseException.class);
-    this.thrown.expectMessage("Illegal keyword in line ' 0 0'.");
+    this.thrown.expectMessage("Illegal line 'router saberrider2008 "
+        + "94.134.192.243 0' in server descriptor.");
     DescriptorBuilder.createWithRouterLine("router saberrider2008 "
         + "94.134.192.243 0\n 0 0");
   }
@@ -1309,6 +1312,49 @@ public class ServerDescriptorImplTest {
     assertTrue(bandwidthValues.isEmpty());
   }
 
+  @Test
+  public void testWriteHistoryAggregates() throws DescriptorParseException {
+    BandwidthHistory writeHistory = DescriptorBuilder
+        .createWithWriteHistoryLine("write-history 2012-01-01 03:51:44 "
+        + "(900 s) 4345856,261120,7591936,1748992").getWriteHistory();
+    LongBuffer buffer = writeHistory.getBandwidthValuesBuffer();
+    assertTrue(buffer.isReadOnly());
+    assertEquals(4, buffer.remaining());
+    assertEquals(4345856L, buffer.get(0));
+    assertEquals(1748992L, buffer.get(3));
+    assertEquals(13947904L, writeHistory.getBandwidthSum());
+    assertEquals(7591936L, writeHistory.getBandwidthMax());
+    assertArrayEquals(new long[] { 4345856L, 261120L, 7591936L, 1748992L },
+        writeHistory.getResampledBandwidthValues(900L));
+    assertArrayEquals(new long[] { 4606976L, 9340928L },
+        writeHistory.getResampledBandwidthValues(1800L));
+    assertArrayEquals(new long[] { 13947904L },
+        writeHistory.getResampledBandwidthValues(86400L));
+  }
+
+  @Test
+  public void testWriteHistoryResampledAlignment()
+      throws DescriptorParseException {
+    BandwidthHistory writeHistory = DescriptorBuilder
+        .createWithWriteHistoryLine("write-history 2012-01-01 12:00:00 "
+        + "(14400 s) 1,2,3,4,5,6,7").getWriteHistory();
+    assertArrayEquals(new long[] { 10L, 18L },
+        writeHistory.getResampledBandwidthValues(86400L));
+    assertArrayEquals(new long[] { 3L, 7L, 11L, 7L },
+        writeHistory.getResampledBandwidthValues(28800L));
+  }
+
+  @Test
+  public void testWriteHistoryResampledShorterInterval()
+      throws DescriptorParseException {
+    this.thrown.expect(IllegalArgumentException.class);
+    this.thrown.expectMessage("Interval length 600 must not be shorter than "
+        + "the original interval length 900.");
+    DescriptorBuilder.createWithWriteHistoryLine("write-history "
+        + "2012-01-01 03:51:44 (900 s) 4345856").getWriteHistory()
+        .getResampledBandwidthValues(600L);
+  }
+
   @Test
   public void testWriteHistoryOpt() throws DescriptorParseException {
     ServerDescriptor descriptor = DescriptorBuilder
@@ -1389,6 +1435,12 @@ public class ServerDescriptorImplTest {
         .getIntervalLength());
     assertTrue(descriptor.getWriteHistory().getBandwidthValues()
         .isEmpty());
+    assertEquals(0, descriptor.getWriteHistory().getBandwidthValuesBuffer()
+        .remaining());
+    assertEquals(0L, descriptor.getWriteHistory().getBandwidthSum());
+    assertEquals(-1L, descriptor.getWriteHistory().getBandwidthMax());
+    assertEquals(0, descriptor.getWriteHistory()
+        .getResampledBandwidthValues(86400L).length);
   }
 
   @Test
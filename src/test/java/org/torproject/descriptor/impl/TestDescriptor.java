@@ -7,10 +7,15 @@ import org.torproject.descriptor.DescriptorParseException;
 
 public class TestDescriptor extends DescriptorImpl {
 
+  private static final long serialVersionUID = 1L;
+
   protected TestDescriptor(byte[] rawDescriptorBytes, int[] offsetAndLength,
       boolean blankLinesAllowed)
       throws DescriptorParseException {
     super(rawDescriptorBytes, offsetAndLength, null, blankLinesAllowed);
+    /* Check all lines for blank lines and illegal keywords, just like
+     * subclasses do after parsing. */
+    this.clearParsedKeys();
   }
 
   protected TestDescriptor(byte[] rawDescriptorBytes, int[] offsetAndLength) {
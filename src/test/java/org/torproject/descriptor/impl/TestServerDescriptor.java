@@ -9,6 +9,8 @@ import java.io.File;
 
 public class TestServerDescriptor extends ServerDescriptorImpl {
 
+  private static final long serialVersionUID = 1L;
+
   protected TestServerDescriptor(byte[] rawDescriptorBytes,
       int[] offsetAndLength, File descriptorFile)
       throws DescriptorParseException {
@@ -0,0 +1,87 @@
+/* Copyright 2019 The Tor Project
+ * See LICENSE for licensing information */
+
+package org.torproject.descriptor.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+
+public class TimestampParserTest {
+
+  private static long parseWithDateFormat(String format, String input) {
+    DateFormat dateFormat = ParseHelper.getDateFormat(format);
+    try {
+      return dateFormat.parse(input).getTime();
+    } catch (ParseException e) {
+      return -1L;
+    }
+  }
+
+  private static final String[] VALID_TIMESTAMPS = new String[] {
+      "1970-01-01 00:00:00", "2012-01-01 04:03:19", "2012-02-29 23:59:59",
+      "2000-02-29 12:00:00", "2019-12-31 00:00:59", "2038-01-19 03:14:07",
+      "2039-01-01 04:03:19", "1960-11-29 21:34:27", "9999-11-29 21:34:27",
+      "2019-06-30 10:30:00" };
+
+  private static final String[] INVALID_TIMESTAMPS = new String[] {
+      "2012-02-30 04:03:19", "2100-02-29 00:00:00", "2019-04-31 00:00:00",
+      "2019-13-01 00:00:00", "2019-00-01 00:00:00", "2019-01-00 00:00:00",
+      "2019-01-01 24:00:00", "2019-01-01 00:60:00", "2019-01-01 00:00:60",
+      "2019-01-01T00:00:00", "2019/01/01 00:00:00", "2019-01-01 00-00-00",
+      "2019-1-01 00:00:00x", "20a9-01-01 00:00:00", "2019-01-01 00:00:0",
+      "2019-01-01 00:00:000", "2019-01-01", "", "long ago 12:00:00" };
+
+  @Test
+  public void testSameMillisAsDateFormat() {
+    for (String timestamp : VALID_TIMESTAMPS) {
+      long expected = parseWithDateFormat("yyyy-MM-dd HH:mm:ss", timestamp);
+      String[] parts = timestamp.split(" ");
+      assertEquals(timestamp, expected,
+          TimestampParser.parseDateTime(parts[0], parts[1]));
+      assertEquals(timestamp, parseWithDateFormat("yyyy-MM-dd", parts[0]),
+          TimestampParser.parseDate(parts[0]));
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    for (String timestamp : INVALID_TIMESTAMPS) {
+      int space = timestamp.indexOf(' ');
+      if (space >= 0) {
+        assertEquals(timestamp, -1L, TimestampParser.parseDateTime(
+            timestamp.substring(0, space), timestamp.substring(space + 1)));
+      } else {
+        assertEquals(timestamp, -1L,
+            TimestampParser.parseDateTime(timestamp, ""));
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidDates() {
+    String[] dates = new String[] { "2019-02-29", "2019-1-01", "2019-01-1",
+        "2019 01 01", "2019-01-01 ", "yyyy-MM-dd" };
+    for (String date : dates) {
+      assertEquals(date, -1L, TimestampParser.parseDate(date));
+    }
+  }
+
+  @Test
+  public void testCachedTimestamps() {
+    /* Parse more distinct timestamps than the cache can hold, twice, to
+     * make sure that slots are replaced and never confused. */
+    for (int round = 0; round < 2; round++) {
+      for (int minute = 0; minute < 60; minute++) {
+        for (int hour = 0; hour < 24; hour++) {
+          String time = String.format("%02d:%02d:00", hour, minute);
+          assertEquals(time, 1546300800000L + (hour * 60L + minute) * 60000L,
+              TimestampParser.parseDateTime("2019-01-01", time));
+        }
+      }
+    }
+  }
+}
@@ -65,6 +65,33 @@ public class TorperfResultImplTest {
         result.get(2).getAnnotations().size());
   }
 
+  @Test
+  public void testCarriageReturnsRemoved() throws Exception {
+    String crlfInput = input.replace("\n", "\r\n");
+    byte[] asciiBytes = (torperfAnnotation.replace("\n", "\r\n")
+        + crlfInput + crlfInput).getBytes("US-ASCII");
+    List<Descriptor> result = TorperfResultImpl.parseTorperfResults(
+        asciiBytes, null);
+    assertEquals(2, result.size());
+    for (Descriptor descriptor : result) {
+      assertEquals(input, new String(descriptor.getRawDescriptorBytes(),
+          StandardCharsets.US_ASCII));
+    }
+    assertEquals(torperfAnnotation.substring(0, 17),
+        result.get(0).getAnnotations().get(0));
+  }
+
+  @Test
+  public void testMissingTrailingNewlineAdded() throws Exception {
+    byte[] asciiBytes = (torperfAnnotation + input + input.trim())
+        .getBytes("US-ASCII");
+    List<Descriptor> result = TorperfResultImpl.parseTorperfResults(
+        asciiBytes, null);
+    assertEquals(2, result.size());
+    assertEquals(input, new String(result.get(1).getRawDescriptorBytes(),
+        StandardCharsets.US_ASCII));
+  }
+
   @Test
   public void testTrailingNewlinesRetained() throws Exception {
     byte[] asciiBytes = (torperfAnnotation + input
@@ -3,6 +3,7 @@
 
 package org.torproject.descriptor.index;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -10,6 +11,9 @@ import static org.junit.Assert.assertTrue;
 
 import org.torproject.descriptor.DescriptorCollector;
 
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -17,12 +21,24 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Queue;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DescriptorIndexCollectorTest {
 
@@ -290,5 +306,252 @@ public class DescriptorIndexCollectorTest {
     new DescriptorIndexCollector()
         .fetchRemoteFiles("", fm, 100L, dir, new TreeMap<>());
   }
+
+  private final AtomicInteger requests = new AtomicInteger();
+
+  private final AtomicInteger maxConnections = new AtomicInteger();
+
+  private final Queue<String> rangeHeaders = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger indexResponses = new AtomicInteger();
+
+  private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+  private HttpServer server;
+
+  @After
+  public void stopServer() {
+    if (null != this.server) {
+      this.server.stop(0);
+      ((ExecutorService) this.server.getExecutor()).shutdownNow();
+    }
+  }
+
+  /* Return the contents of remote file fN, which are N + 1 bytes. */
+  private static byte[] remoteFileContents(int index) {
+    byte[] contents = new byte[index + 1];
+    for (int i = 0; i < contents.length; i++) {
+      contents[i] = (byte) ('a' + i % 26);
+    }
+    return contents;
+  }
+
+  /* Start an HTTP server on the loopback interface that serves the given
+   * number of files a/f0, a/f1, and so on, with file fN containing N + 1
+   * bytes, and an index of these files at index/index.json that lists
+   * file f<wrongSizeIndex> with a wrong size.  The server supports range
+   * requests for files, conditional requests for the index, and keeps each
+   * connection for a file open for a moment to make concurrent downloads
+   * overlap. */
+  private void startServer(int numFiles, long wrongSizeIndex)
+      throws Exception {
+    AtomicInteger connections = new AtomicInteger();
+    this.server = HttpServer.create(new InetSocketAddress(
+        InetAddress.getLoopbackAddress(), 0), 0);
+    this.server.createContext("/a/", exchange -> {
+      int current = connections.incrementAndGet();
+      this.maxConnections.accumulateAndGet(current, Math::max);
+      this.requests.incrementAndGet();
+      try {
+        Thread.sleep(100L);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        /* Stop counting this connection before responding, because the
+         * client may send its next request as soon as it has read the
+         * response. */
+        connections.decrementAndGet();
+      }
+      String name = exchange.getRequestURI().getPath().substring(3);
+      int index = Integer.parseInt(name.substring(1));
+      if (index >= numFiles) {
+        exchange.sendResponseHeaders(404, -1);
+        exchange.close();
+        return;
+      }
+      byte[] body = remoteFileContents(index);
+      String range = exchange.getRequestHeaders().getFirst("Range");
+      if (null != range) {
+        this.rangeHeaders.add(name + " " + range);
+        int from = Integer.parseInt(range.substring(6, range.length() - 1));
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + from
+            + "-" + (body.length - 1) + "/" + body.length);
+        body = Arrays.copyOfRange(body, from, body.length);
+        exchange.sendResponseHeaders(206, body.length);
+      } else {
+        exchange.sendResponseHeaders(200, body.length);
+      }
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    });
+    byte[] index = IndexNode.makeJsonString(this.newServerIndex(numFiles,
+        wrongSizeIndex)).getBytes(StandardCharsets.UTF_8);
+    this.server.createContext("/index/index.json", exchange -> {
+      if ("\"v1\"".equals(
+          exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        this.notModifiedResponses.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return;
+      }
+      this.indexResponses.incrementAndGet();
+      exchange.getResponseHeaders().add("ETag", "\"v1\"");
+      exchange.sendResponseHeaders(200, index.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(index);
+      }
+    });
+    this.server.setExecutor(Executors.newCachedThreadPool());
+    this.server.start();
+  }
+
+  private String serverUrl() {
+    return "http://" + this.server.getAddress().getHostString() + ":"
+        + this.server.getAddress().getPort();
+  }
+
+  private IndexNode newServerIndex(int numFiles, long wrongSizeIndex) {
+    SortedSet<FileNode> files = new TreeSet<>();
+    for (int i = 0; i < numFiles; i++) {
+      files.add(new FileNode("f" + i, i == wrongSizeIndex ? 0L : i + 1L,
+          "2100-01-01 01:01"));
+    }
+    SortedSet<DirectoryNode> directories = new TreeSet<>();
+    directories.add(new DirectoryNode("a", files, null));
+    return new IndexNode("2016-01-01 01:01", this.serverUrl(), null,
+        directories);
+  }
+
+  @Test
+  public void testConcurrentDownloads() throws Exception {
+    this.startServer(8, 5L);
+    File localFolder = tmpf.newFolder();
+    DescriptorCollector dc = new DescriptorIndexCollector();
+    dc.setNumDownloadThreads(4);
+    dc.setMaxConnectionsPerHost(2);
+    dc.collectDescriptors(this.serverUrl(), new String[] { "a" }, 0L,
+        localFolder, false);
+    assertEquals(8, this.requests.get());
+    assertEquals(2, this.maxConnections.get());
+    SortedMap<String, Long> locals
+        = DescriptorIndexCollector.statLocalDirectory(localFolder);
+    for (int i = 0; i < 8; i++) {
+      File file = new File(localFolder, "a/f" + i);
+      if (i == 5) {
+        assertFalse("Stored file with wrong size.", file.exists());
+      } else {
+        assertArrayEquals(remoteFileContents(i),
+            Files.readAllBytes(file.toPath()));
+        assertEquals(4102448460000L, (long) locals.get("a/f" + i));
+      }
+    }
+  }
+
+  @Test
+  public void testSequentialDownloads() throws Exception {
+    this.startServer(3, -1L);
+    File indexFile = tmpf.newFile("server-index.json");
+    IndexNode.writeIndex(indexFile.toPath(), this.newServerIndex(4, -1L));
+    File localFolder = tmpf.newFolder();
+    new DescriptorIndexCollector().collectDescriptors(
+        indexFile.toURI().toURL().toString(), new String[] { "a" }, 0L,
+        localFolder, false);
+    assertEquals(4, this.requests.get());
+    assertEquals(1, this.maxConnections.get());
+    assertEquals(3, DescriptorIndexCollector.statLocalDirectory(
+        localFolder).size());
+    assertFalse(new File(localFolder, "a/f3").exists());
+  }
+
+  @Test
+  public void testResumeDownload() throws Exception {
+    this.startServer(3, -1L);
+    File localFolder = tmpf.newFolder();
+    File remoteDir = makeDirs(localFolder.toString(), "a");
+    File partialFile = new File(remoteDir, ".f2");
+    Files.write(partialFile.toPath(),
+        Arrays.copyOf(remoteFileContents(2), 2));
+    partialFile.setLastModified(4102448460000L);
+    File stalePartialFile = new File(remoteDir, ".f1");
+    Files.write(stalePartialFile.toPath(), new byte[] { 'x' });
+    new DescriptorIndexCollector().collectDescriptors(this.serverUrl(),
+        new String[] { "a" }, 0L, localFolder, false);
+    assertEquals(Collections.singletonList("f2 bytes=2-"),
+        new ArrayList<>(this.rangeHeaders));
+    for (int i = 0; i < 3; i++) {
+      assertArrayEquals(remoteFileContents(i), Files.readAllBytes(
+          new File(remoteDir, "f" + i).toPath()));
+    }
+  }
+
+  @Test
+  public void testConditionalIndexFetch() throws Exception {
+    this.startServer(2, -1L);
+    File localFolder = tmpf.newFolder();
+    File cacheFolder = tmpf.newFolder();
+    DescriptorCollector dc = new DescriptorIndexCollector();
+    dc.setIndexCacheDirectory(cacheFolder);
+    dc.collectDescriptors(this.serverUrl(), new String[] { "a" }, 0L,
+        localFolder, false);
+    assertEquals(1, this.indexResponses.get());
+    assertEquals(0, this.notModifiedResponses.get());
+    assertTrue(new File(cacheFolder, "index.json").exists());
+    new File(localFolder, "a/f1").delete();
+    dc.collectDescriptors(this.serverUrl(), new String[] { "a" }, 0L,
+        localFolder, false);
+    assertEquals(1, this.indexResponses.get());
+    assertEquals(1, this.notModifiedResponses.get());
+    assertEquals(3, this.requests.get());
+    assertTrue(new File(localFolder, "a/f1").exists());
+  }
+
+  @Test
+  public void testConditionalIndexFetchBrokenLocalCopy() throws Exception {
+    this.startServer(2, -1L);
+    File localFolder = tmpf.newFolder();
+    File cacheFolder = tmpf.newFolder();
+    DescriptorCollector dc = new DescriptorIndexCollector();
+    dc.setIndexCacheDirectory(cacheFolder);
+    dc.collectDescriptors(this.serverUrl(), new String[] { "a" }, 0L,
+        localFolder, false);
+    Files.write(new File(cacheFolder, "index.json").toPath(),
+        new byte[] { '{' });
+    new File(localFolder, "a/f1").delete();
+    dc.collectDescriptors(this.serverUrl(), new String[] { "a" }, 0L,
+        localFolder, false);
+    assertEquals(1, this.notModifiedResponses.get());
+    assertFalse(new File(localFolder, "a/f1").exists());
+    dc.collectDescriptors(this.serverUrl(), new String[] { "a" }, 0L,
+        localFolder, false);
+    assertEquals(2, this.indexResponses.get());
+    assertTrue(new File(localFolder, "a/f1").exists());
+  }
+
+  @Test
+  public void testIndexNotWrittenToLocalDirectory() throws Exception {
+    this.startServer(2, -1L);
+    File localFolder = tmpf.newFolder();
+    DescriptorCollector dc = new DescriptorIndexCollector();
+    dc.collectDescriptors(this.serverUrl(), new String[] { "a" }, 0L,
+        localFolder, false);
+    dc.setIndexCacheDirectory(tmpf.newFolder());
+    dc.collectDescriptors(this.serverUrl(), new String[] { "a" }, 0L,
+        localFolder, false);
+    assertEquals(2, this.indexResponses.get());
+    assertEquals(Arrays.asList("a"), Arrays.asList(localFolder.list()));
+    assertEquals(2, DescriptorIndexCollector.statLocalDirectory(
+        localFolder).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroDownloadThreads() {
+    new DescriptorIndexCollector().setNumDownloadThreads(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroConnectionsPerHost() {
+    new DescriptorIndexCollector().setMaxConnectionsPerHost(0);
+  }
 }
 
@@ -13,11 +13,15 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.SortedMap;
 
@@ -139,5 +143,75 @@ public class IndexNodeTest {
     map = index.retrieveFilesIn("a1/p3");
     assertTrue("map was " + map, map.isEmpty());
   }
+
+  @Test
+  public void testReadIndexRetrievesSameFiles() throws Exception {
+    String[][] remoteDirectories = new String[][] {
+        { "archive" }, { "archive/path-one" }, { "/archive/path-two/" },
+        { "archive/path-one", "archive/path-two" }, { "archive/x" },
+        { "a1" }, { "a1/p1" }, { "y", "a1/x", "a1/p1" }, { "a1/p2" },
+        { "a1/p1/z" }, { "/", "" }, { } };
+    for (String fileName : new String[] { "index1.json", "index2.json",
+        "index3.json", "indexNormal.json" }) {
+      URL indexUrl = getClass().getClassLoader().getResource(fileName);
+      IndexNode fullIndex = IndexNode.fetchIndex(indexUrl.toString());
+      for (String[] remotes : remoteDirectories) {
+        IndexNode index;
+        try (InputStream is = indexUrl.openStream()) {
+          index = IndexNode.readIndex(is, remotes);
+        }
+        assertEquals(fullIndex.path, index.path);
+        assertEquals(fullIndex.created, index.created);
+        assertEquals(fileName + " " + Arrays.toString(remotes),
+            fullIndex.retrieveFilesIn(remotes).keySet(),
+            index.retrieveFilesIn(remotes).keySet());
+      }
+    }
+  }
+
+  @Test
+  public void testReadIndexSkipsOtherDirectories() throws Exception {
+    URL indexUrl = getClass().getClassLoader().getResource("index1.json");
+    IndexNode index;
+    try (InputStream is = indexUrl.openStream()) {
+      index = IndexNode.readIndex(is, new String[] { "archive/path-two" });
+    }
+    assertEquals(1, index.directories.size());
+    DirectoryNode archive = index.directories.first();
+    assertEquals(1, archive.directories.size());
+    assertEquals("path-two", archive.directories.first().path);
+    assertEquals("file-three.tar.xz",
+        archive.directories.first().files.first().path);
+    try (InputStream is = indexUrl.openStream()) {
+      index = IndexNode.readIndex(is, new String[] { "other" });
+    }
+    assertTrue(index.directories.isEmpty());
+  }
+
+  @Test
+  public void testReadIndexPathAfterContents() throws Exception {
+    String json = "{\"directories\":[{\"files\":[{\"path\":\"f1\","
+        + "\"size\":1,\"last_modified\":\"2019-01-01 00:00\"}],"
+        + "\"directories\":[{\"files\":[{\"path\":\"f2\",\"size\":2,"
+        + "\"last_modified\":\"2019-01-01 00:00\"}],\"path\":\"b\"},"
+        + "{\"path\":\"c\"}],\"path\":\"a\"},{\"path\":\"d\"}],"
+        + "\"path\":\"https://some.collector.url\"}";
+    IndexNode index = IndexNode.readIndex(new ByteArrayInputStream(
+        json.getBytes(StandardCharsets.UTF_8)), new String[] { "a/b" });
+    assertEquals("https://some.collector.url", index.path);
+    assertEquals(1, index.directories.size());
+    assertEquals(1, index.directories.first().directories.size());
+    SortedMap<String, FileNode> files = index.retrieveFilesIn("a/b");
+    assertEquals(1, files.size());
+    assertEquals(2L, files.get("a/b/f2").size);
+  }
+
+  @Test(expected = JsonParseException.class)
+  public void testReadIndexTruncated() throws Exception {
+    String json = "{\"path\":\"https://some.collector.url\","
+        + "\"directories\":[{\"path\":\"a\",\"files\":[]},";
+    IndexNode.readIndex(new ByteArrayInputStream(
+        json.getBytes(StandardCharsets.UTF_8)), new String[] { "a" });
+  }
 }
 